@@ -0,0 +1,141 @@
+package com.stockmarket.backtest;
+
+import com.stockmarket.strategy.OrderSink;
+import java.util.Arrays;
+
+/**
+ * Lekkie konto używane w backtestach zamiast Portfolio.
+ *
+ * Pozycje to zwykła tablica int indeksowana id aktywa z historii, a lista
+ * posiadanych id pozwala wyceniać konto bez przeglądania wszystkich aktywów.
+ * Nic nie jest wypisywane na konsolę i nie powstają obiekty na transakcję.
+ * Tak jak w StrategyEngine zlecenia są buforowane i wykonywane po onTick()
+ * po cenie z bieżącego ticka.
+ */
+final class BacktestAccount implements OrderSink {
+
+    private final HistoryView view;
+    private final int maxOrders;
+    private double cash;
+    private final int[] quantities;
+    private int[] heldIds = new int[8];
+    private int heldCount;
+
+    private int[] orderIds = new int[8];
+    private int[] orderQuantities = new int[8];
+    private int orderCount;
+
+    private int trades;
+    private int rejected;
+
+    BacktestAccount(HistoryView view, double initialCash, int maxOrders) {
+        this.view = view;
+        this.cash = initialCash;
+        this.maxOrders = maxOrders;
+        this.quantities = new int[view.size()];
+    }
+
+    @Override
+    public boolean buy(int id, int quantity) {
+        return addOrder(id, quantity, quantity);
+    }
+
+    @Override
+    public boolean sell(int id, int quantity) {
+        return addOrder(id, quantity, -quantity);
+    }
+
+    private boolean addOrder(int id, int quantity, int signedQuantity) {
+        if (quantity <= 0 || id < 0 || id >= quantities.length || orderCount >= maxOrders) {
+            rejected++;
+            return false;
+        }
+        if (orderCount == orderIds.length) {
+            orderIds = Arrays.copyOf(orderIds, orderCount * 2);
+            orderQuantities = Arrays.copyOf(orderQuantities, orderCount * 2);
+        }
+        orderIds[orderCount] = id;
+        orderQuantities[orderCount] = signedQuantity;
+        orderCount++;
+        return true;
+    }
+
+    /**
+     * Wykonuje zlecenia złożone w bieżącym ticku.
+     */
+    void executeOrders() {
+        for (int i = 0; i < orderCount; i++) {
+            int id = orderIds[i];
+            int quantity = orderQuantities[i];
+            double price = view.getPrice(id);
+            if (Double.isNaN(price)) {
+                rejected++;
+            } else if (quantity > 0 && cash >= price * quantity) {
+                cash -= price * quantity;
+                if (quantities[id] == 0) {
+                    addHeld(id);
+                }
+                quantities[id] += quantity;
+                trades++;
+            } else if (quantity < 0 && quantities[id] >= -quantity) {
+                cash -= price * quantity;
+                quantities[id] += quantity;
+                if (quantities[id] == 0) {
+                    removeHeld(id);
+                }
+                trades++;
+            } else {
+                rejected++;
+            }
+        }
+        orderCount = 0;
+    }
+
+    private void addHeld(int id) {
+        if (heldCount == heldIds.length) {
+            heldIds = Arrays.copyOf(heldIds, heldCount * 2);
+        }
+        heldIds[heldCount++] = id;
+    }
+
+    private void removeHeld(int id) {
+        for (int i = 0; i < heldCount; i++) {
+            if (heldIds[i] == id) {
+                heldIds[i] = heldIds[--heldCount];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wartość konta po cenach z bieżącego ticka. Aktywa bez ceny (NaN) liczą się jako 0.
+     */
+    double value() {
+        double total = cash;
+        for (int i = 0; i < heldCount; i++) {
+            double price = view.getPrice(heldIds[i]);
+            if (!Double.isNaN(price)) {
+                total += price * quantities[heldIds[i]];
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public double getCash() {
+        return cash;
+    }
+
+    @Override
+    public int getQuantity(int id) {
+        return id >= 0 && id < quantities.length ? quantities[id] : 0;
+    }
+
+    int getTrades() {
+        return trades;
+    }
+
+    int getRejected() {
+        return rejected;
+    }
+}
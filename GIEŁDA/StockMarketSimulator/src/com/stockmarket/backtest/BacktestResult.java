@@ -0,0 +1,17 @@
+package com.stockmarket.backtest;
+
+/**
+ * Wynik jednego przebiegu backtestu.
+ *
+ * @param configIndex numer konfiguracji w ParameterSpace
+ * @param parameters wartości parametrów
+ * @param finalValue wartość konta na końcu przebiegu
+ * @param totalReturn zwrot z całego przebiegu (0.1 = +10%)
+ * @param maxDrawdown największy spadek od szczytu (0.2 = -20%)
+ * @param sharpeRatio średni zwrot na tick podzielony przez odchylenie standardowe
+ * @param trades liczba wykonanych transakcji
+ */
+public record BacktestResult(int configIndex, double[] parameters, double finalValue,
+                             double totalReturn, double maxDrawdown, double sharpeRatio,
+                             int trades) {
+}
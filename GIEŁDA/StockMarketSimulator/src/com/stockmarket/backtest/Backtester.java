@@ -0,0 +1,195 @@
+package com.stockmarket.backtest;
+
+import com.stockmarket.strategy.Strategy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Backtester - uruchamia strategię na historii cen dla wielu konfiguracji parametrów.
+ *
+ * Wszystkie przebiegi czytają tę samą niezmienną PriceHistory (bez kopiowania),
+ * a każdy ma własną instancję strategii i lekkie konto. Dzięki temu przebiegi
+ * są całkowicie niezależne i wykonują się równolegle na wszystkich rdzeniach.
+ * Konfiguracje są przetwarzane blokami - blok liczony równolegle, a jego wyniki
+ * dopisywane do pliku w kolejności numerów konfiguracji.
+ *
+ * Przykład:
+ * <pre>
+ * PriceHistory history = PriceHistory.record(market, 250);
+ * Backtester backtester = new Backtester(history,
+ *     params -> new MomentumStrategy("CDR", params[0], (int) params[1]), 10_000.0);
+ * ParameterGrid grid = new ParameterGrid().addRange("threshold", 0.0, 0.05, 0.005).add("lot", 1, 5, 10);
+ * BacktestResult best = backtester.sweep(grid, 0, history.getTickCount(), Path.of("wyniki.bin"));
+ * </pre>
+ */
+public class Backtester {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    private final PriceHistory history;
+    private final StrategyFactory factory;
+    private final double initialCash;
+    private int maxOrdersPerTick = 100;
+    private ToDoubleFunction<BacktestResult> objective = BacktestResult::totalReturn;
+
+    public Backtester(PriceHistory history, StrategyFactory factory, double initialCash) {
+        if (initialCash <= 0) {
+            throw new IllegalArgumentException("Początkowa gotówka musi być dodatnia");
+        }
+        this.history = history;
+        this.factory = factory;
+        this.initialCash = initialCash;
+    }
+
+    /**
+     * Ustawia kryterium wyboru najlepszej konfiguracji (im więcej, tym lepiej).
+     * Domyślnie całkowity zwrot.
+     */
+    public void setObjective(ToDoubleFunction<BacktestResult> objective) {
+        this.objective = objective;
+    }
+
+    public void setMaxOrdersPerTick(int maxOrdersPerTick) {
+        if (maxOrdersPerTick <= 0) {
+            throw new IllegalArgumentException("Limit zleceń musi być dodatni");
+        }
+        this.maxOrdersPerTick = maxOrdersPerTick;
+    }
+
+    /**
+     * Uruchamia jeden przebieg na wierszach historii od fromTick (włącznie) do toTick (wyłącznie).
+     */
+    public BacktestResult run(int configIndex, double[] parameters, int fromTick, int toTick) {
+        checkRange(fromTick, toTick);
+        Strategy strategy = factory.create(parameters);
+        HistoryView view = new HistoryView(history);
+        BacktestAccount account = new BacktestAccount(view, initialCash, maxOrdersPerTick);
+
+        double previousValue = initialCash;
+        double peak = initialCash;
+        double maxDrawdown = 0.0;
+        // Średnia i wariancja zwrotów liczone w jednym przebiegu (algorytm Welforda)
+        double meanReturn = 0.0;
+        double m2 = 0.0;
+        int n = 0;
+
+        for (int t = fromTick; t < toTick; t++) {
+            view.moveTo(t);
+            strategy.onTick(view, account);
+            account.executeOrders();
+
+            double value = account.value();
+            if (value > peak) {
+                peak = value;
+            } else if (peak > 0) {
+                maxDrawdown = Math.max(maxDrawdown, (peak - value) / peak);
+            }
+            double tickReturn = previousValue > 0 ? value / previousValue - 1.0 : 0.0;
+            n++;
+            double delta = tickReturn - meanReturn;
+            meanReturn += delta / n;
+            m2 += delta * (tickReturn - meanReturn);
+            previousValue = value;
+        }
+
+        double stdDev = n > 1 ? Math.sqrt(m2 / (n - 1)) : 0.0;
+        double sharpe = stdDev > 0 ? meanReturn / stdDev : 0.0;
+        return new BacktestResult(configIndex, parameters, previousValue,
+                previousValue / initialCash - 1.0, maxDrawdown, sharpe, account.getTrades());
+    }
+
+    /**
+     * Przebiega wszystkie konfiguracje równolegle i zwraca wyniki w kolejności numerów.
+     */
+    public BacktestResult[] sweep(ParameterSpace space, int fromTick, int toTick) {
+        checkRange(fromTick, toTick);
+        BacktestResult[] results = new BacktestResult[space.size()];
+        runBlock(space, 0, results.length, fromTick, toTick, results);
+        return results;
+    }
+
+    /**
+     * Przebiega wszystkie konfiguracje równolegle, zapisując wyniki strumieniowo do pliku.
+     * W pamięci trzymany jest tylko jeden blok wyników.
+     *
+     * @return najlepszy wynik według kryterium (setObjective)
+     */
+    public BacktestResult sweep(ParameterSpace space, int fromTick, int toTick, Path resultsFile)
+            throws IOException {
+        checkRange(fromTick, toTick);
+        BacktestResult best = null;
+        BacktestResult[] block = new BacktestResult[Math.min(BLOCK_SIZE, space.size())];
+        try (ResultsFile file = ResultsFile.create(resultsFile, space.getNames())) {
+            for (int start = 0; start < space.size(); start += BLOCK_SIZE) {
+                int end = Math.min(space.size(), start + BLOCK_SIZE);
+                runBlock(space, start, end, fromTick, toTick, block);
+                for (int i = 0; i < end - start; i++) {
+                    file.write(block[i]);
+                    best = better(best, block[i]);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Test walk-forward: historia jest dzielona na kolejne okna. W każdym oknie
+     * wybieramy najlepszą konfigurację na okresie treningowym, a potem sprawdzamy
+     * ją na następnym, niewidzianym okresie testowym. Okna przesuwają się
+     * o długość okresu testowego.
+     *
+     * @param trainTicks długość okresu treningowego (w tickach)
+     * @param testTicks długość okresu testowego (w tickach)
+     * @throws IllegalArgumentException gdy przestrzeń parametrów jest pusta
+     *         (nie byłoby z czego wybrać najlepszej konfiguracji) lub okresy nie są dodatnie
+     */
+    public List<WalkForwardFold> walkForward(ParameterSpace space, int trainTicks, int testTicks) {
+        if (space.size() == 0) {
+            throw new IllegalArgumentException("Przestrzeń parametrów jest pusta");
+        }
+        if (trainTicks <= 0 || testTicks <= 0) {
+            throw new IllegalArgumentException("Okresy treningowy i testowy muszą być dodatnie");
+        }
+        List<WalkForwardFold> folds = new ArrayList<>();
+        for (int trainFrom = 0; trainFrom + trainTicks + testTicks <= history.getTickCount();
+             trainFrom += testTicks) {
+            int trainTo = trainFrom + trainTicks;
+            int testTo = trainTo + testTicks;
+
+            BacktestResult best = null;
+            for (BacktestResult result : sweep(space, trainFrom, trainTo)) {
+                best = better(best, result);
+            }
+            BacktestResult outOfSample = run(best.configIndex(), best.parameters(), trainTo, testTo);
+            folds.add(new WalkForwardFold(trainFrom, trainTo, testTo, best, outOfSample));
+        }
+        return folds;
+    }
+
+    private void runBlock(ParameterSpace space, int start, int end, int fromTick, int toTick,
+                          BacktestResult[] target) {
+        int parameterCount = space.getNames().size();
+        IntStream.range(start, end).parallel().forEach(index -> {
+            double[] parameters = new double[parameterCount];
+            space.fill(index, parameters);
+            target[index - start] = run(index, parameters, fromTick, toTick);
+        });
+    }
+
+    private BacktestResult better(BacktestResult best, BacktestResult candidate) {
+        if (best == null || objective.applyAsDouble(candidate) > objective.applyAsDouble(best)) {
+            return candidate;
+        }
+        return best;
+    }
+
+    private void checkRange(int fromTick, int toTick) {
+        if (fromTick < 0 || toTick > history.getTickCount() || fromTick >= toTick) {
+            throw new IllegalArgumentException("Nieprawidłowy zakres ticków: " + fromTick + ".." + toTick);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.stockmarket.backtest;
+
+import com.stockmarket.strategy.PriceView;
+
+/**
+ * Widok cen jednego ticka z historii - kursor przesuwany przez przebieg backtestu.
+ * Nie kopiuje cen, tylko wskazuje wiersz we wspólnej tablicy historii.
+ */
+final class HistoryView implements PriceView {
+
+    private final PriceHistory history;
+    private final double[] prices;
+    private final int assetCount;
+    private int row;
+
+    HistoryView(PriceHistory history) {
+        this.history = history;
+        this.prices = history.prices();
+        this.assetCount = history.getAssetCount();
+    }
+
+    void moveTo(int tickIndex) {
+        this.row = tickIndex;
+    }
+
+    int getRow() {
+        return row;
+    }
+
+    @Override
+    public long getTick() {
+        return history.getFirstTick() + row;
+    }
+
+    @Override
+    public int size() {
+        return assetCount;
+    }
+
+    @Override
+    public double getPrice(int id) {
+        return prices[row * assetCount + id];
+    }
+
+    @Override
+    public double getPreviousPrice(int id) {
+        return row > 0 ? prices[(row - 1) * assetCount + id] : Double.NaN;
+    }
+
+    @Override
+    public int indexOf(String symbol) {
+        return history.indexOf(symbol);
+    }
+
+    @Override
+    public String getSymbol(int id) {
+        return history.getSymbol(id);
+    }
+}
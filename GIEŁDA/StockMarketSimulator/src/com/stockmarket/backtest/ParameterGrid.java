@@ -0,0 +1,81 @@
+package com.stockmarket.backtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pełna siatka parametrów - wszystkie kombinacje podanych wartości.
+ *
+ * Numer konfiguracji jest liczbą w systemie o mieszanych podstawach:
+ * ostatni parametr zmienia się najszybciej.
+ *
+ * Przykład:
+ * <pre>
+ * ParameterGrid grid = new ParameterGrid()
+ *     .add("threshold", 0.01, 0.02, 0.05)
+ *     .add("lot", 1, 5, 10);   // 9 konfiguracji
+ * </pre>
+ */
+public class ParameterGrid implements ParameterSpace {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<double[]> values = new ArrayList<>();
+    private int size = 1;
+
+    /**
+     * Dodaje parametr z listą wartości do sprawdzenia.
+     *
+     * @throws IllegalArgumentException gdy lista jest pusta albo siatka byłaby za duża
+     */
+    public ParameterGrid add(String name, double... parameterValues) {
+        if (parameterValues.length == 0) {
+            throw new IllegalArgumentException("Parametr " + name + " musi mieć co najmniej jedną wartość");
+        }
+        long newSize = (long) size * parameterValues.length;
+        if (newSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Siatka parametrów ma za dużo kombinacji");
+        }
+        names.add(name);
+        values.add(parameterValues.clone());
+        size = (int) newSize;
+        return this;
+    }
+
+    /**
+     * Dodaje parametr z wartościami od min do max (włącznie) co krok.
+     */
+    public ParameterGrid addRange(String name, double min, double max, double step) {
+        if (step <= 0 || max < min) {
+            throw new IllegalArgumentException("Nieprawidłowy zakres parametru " + name);
+        }
+        int count = (int) Math.floor((max - min) / step + 1e-9) + 1;
+        double[] range = new double[count];
+        for (int i = 0; i < count; i++) {
+            range[i] = min + i * step;
+        }
+        return add(name, range);
+    }
+
+    @Override
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void fill(int index, double[] target) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Nie ma konfiguracji numer " + index);
+        }
+        for (int p = values.size() - 1; p >= 0; p--) {
+            double[] options = values.get(p);
+            target[p] = options[index % options.length];
+            index /= options.length;
+        }
+    }
+}
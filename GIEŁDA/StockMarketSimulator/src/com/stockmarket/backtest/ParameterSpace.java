@@ -0,0 +1,27 @@
+package com.stockmarket.backtest;
+
+import java.util.List;
+
+/**
+ * Zbiór konfiguracji parametrów do przetestowania.
+ *
+ * Konfiguracje są numerowane od 0 do size() - 1 i wyliczane na żądanie
+ * z numeru, więc nawet bardzo duża siatka nie zajmuje pamięci.
+ */
+public interface ParameterSpace {
+
+    /**
+     * Zwraca nazwy parametrów.
+     */
+    List<String> getNames();
+
+    /**
+     * Zwraca liczbę konfiguracji.
+     */
+    int size();
+
+    /**
+     * Wpisuje wartości parametrów konfiguracji o podanym numerze do tablicy.
+     */
+    void fill(int index, double[] target);
+}
@@ -0,0 +1,146 @@
+package com.stockmarket.backtest;
+
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketSnapshot;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Niezmienna historia cen wielu aktywów - wspólne źródło danych dla backtestów.
+ *
+ * Ceny są trzymane w jednej płaskiej tablicy, wiersz po wierszu:
+ * prices[tickIndex * assetCount + id]. Cały wiersz jednego ticka leży obok siebie
+ * w pamięci, więc strategia czytająca wiele aktywów w danym ticku przegląda
+ * kolejne komórki. Po utworzeniu tablica nie jest już modyfikowana, dlatego
+ * dowolna liczba równoległych przebiegów może ją czytać bez kopiowania i blokad.
+ */
+public final class PriceHistory {
+
+    private final String[] symbols;
+    private final Map<String, Integer> ids;
+    private final long firstTick;
+    private final int tickCount;
+    private final double[] prices;
+
+    /**
+     * Tworzy historię z gotowych danych (tablica jest kopiowana).
+     *
+     * @param symbols symbole aktywów - indeks w tablicy to id aktywa w historii
+     * @param firstTick numer ticka rynku, z którego pochodzi pierwszy wiersz
+     * @param prices ceny wiersz po wierszu, długość musi być wielokrotnością liczby aktywów
+     * @throws IllegalArgumentException gdy rozmiar tablicy cen nie pasuje do liczby aktywów
+     */
+    public PriceHistory(String[] symbols, long firstTick, double[] prices) {
+        if (symbols.length == 0 || prices.length % symbols.length != 0) {
+            throw new IllegalArgumentException("Liczba cen musi być wielokrotnością liczby aktywów");
+        }
+        this.symbols = symbols.clone();
+        this.firstTick = firstTick;
+        this.prices = prices.clone();
+        this.tickCount = prices.length / symbols.length;
+        Map<String, Integer> index = new HashMap<>();
+        for (int id = 0; id < symbols.length; id++) {
+            if (this.symbols[id] != null) {
+                index.put(this.symbols[id], id);
+            }
+        }
+        this.ids = index;
+    }
+
+    /**
+     * Nagrywa historię, przesuwając rynek o podaną liczbę ticków.
+     *
+     * Pierwszy wiersz to ceny sprzed pierwszej aktualizacji. Zbiór aktywów jest
+     * ustalany na starcie - aktywa dodane w trakcie nagrania są pomijane,
+     * a wycofane mają od tego momentu cenę Double.NaN.
+     *
+     * @param market rynek, którego ceny nagrywamy
+     * @param ticks liczba aktualizacji cen
+     * @throws IllegalArgumentException gdy liczba ticków jest ujemna albo historia
+     *         nie zmieści się w jednej tablicy
+     */
+    public static PriceHistory record(Market market, int ticks) {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("Liczba ticków nie może być ujemna");
+        }
+        MarketSnapshot start = market.getSnapshot();
+        int assetCount = start.size();
+        String[] symbols = new String[assetCount];
+        for (int id = 0; id < assetCount; id++) {
+            symbols[id] = start.getSymbol(id);
+        }
+
+        // Sprawdzamy rozmiar przed przesunięciem rynku - przepełnienie int dałoby ujemną albo za małą tablicę
+        int cells;
+        try {
+            cells = Math.multiplyExact(Math.addExact(ticks, 1), assetCount);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Historia " + ticks + " ticków x " + assetCount
+                    + " aktywów nie zmieści się w jednej tablicy cen");
+        }
+        double[] prices = new double[cells];
+        copyRow(start, start, prices, 0, assetCount);
+        for (int t = 1; t <= ticks; t++) {
+            market.updatePrices();
+            copyRow(start, market.getSnapshot(), prices, t * assetCount, assetCount);
+        }
+        return new PriceHistory(symbols, start.getTick(), prices);
+    }
+
+    private static void copyRow(MarketSnapshot start, MarketSnapshot snapshot, double[] prices,
+                                int offset, int assetCount) {
+        for (int id = 0; id < assetCount; id++) {
+            // Id mogło zostać zwolnione albo przydzielone innemu aktywu
+            boolean sameAsset = snapshot.getAsset(id) != null && snapshot.getAsset(id) == start.getAsset(id);
+            prices[offset + id] = sameAsset ? snapshot.getPrice(id) : Double.NaN;
+        }
+    }
+
+    public int getTickCount() {
+        return tickCount;
+    }
+
+    public int getAssetCount() {
+        return symbols.length;
+    }
+
+    public long getFirstTick() {
+        return firstTick;
+    }
+
+    public String getSymbol(int id) {
+        return symbols[id];
+    }
+
+    /**
+     * Zwraca id aktywa w historii lub -1 gdy go nie ma.
+     */
+    public int indexOf(String symbol) {
+        Integer id = ids.get(symbol);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Zwraca cenę aktywa w danym wierszu historii (0 = pierwszy nagrany tick).
+     */
+    public double getPrice(int tickIndex, int id) {
+        return prices[tickIndex * symbols.length + id];
+    }
+
+    /**
+     * Kopiuje ceny jednego aktywa z zakresu ticków do podanej tablicy.
+     */
+    public void copyColumn(int id, int fromTick, int toTick, double[] target) {
+        int assetCount = symbols.length;
+        for (int t = fromTick; t < toTick; t++) {
+            target[t - fromTick] = prices[t * assetCount + id];
+        }
+    }
+
+    /**
+     * Daje widokom historii bezpośredni dostęp do tablicy cen (tylko do odczytu!).
+     */
+    double[] prices() {
+        return prices;
+    }
+}
@@ -0,0 +1,83 @@
+package com.stockmarket.backtest;
+
+import com.stockmarket.random.RandomSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Losowe przeszukiwanie - podana liczba konfiguracji z parametrami
+ * wylosowanymi jednostajnie z zakresów.
+ *
+ * Konfiguracja o numerze i jest zawsze taka sama dla danego ziarna
+ * (każda ma własny strumień RandomSource), więc równoległe przebiegi
+ * nie współdzielą generatora, a wyniki da się odtworzyć.
+ */
+public class RandomSearch implements ParameterSpace {
+
+    private final int count;
+    private final RandomSource random;
+    private final List<String> names = new ArrayList<>();
+    private final List<Range> ranges = new ArrayList<>();
+
+    private record Range(double min, double max, boolean integer) {
+    }
+
+    public RandomSearch(int count, long seed) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Liczba konfiguracji musi być dodatnia");
+        }
+        this.count = count;
+        this.random = new RandomSource(seed);
+    }
+
+    /**
+     * Dodaje parametr losowany z przedziału [min, max).
+     */
+    public RandomSearch add(String name, double min, double max) {
+        return addParameter(name, min, max, false);
+    }
+
+    /**
+     * Dodaje parametr całkowity losowany z przedziału [min, max] (włącznie).
+     */
+    public RandomSearch addInteger(String name, int min, int max) {
+        return addParameter(name, min, max, true);
+    }
+
+    private RandomSearch addParameter(String name, double min, double max, boolean integer) {
+        if (max < min) {
+            throw new IllegalArgumentException("Nieprawidłowy zakres parametru " + name);
+        }
+        names.add(name);
+        ranges.add(new Range(min, max, integer));
+        return this;
+    }
+
+    @Override
+    public List<String> getNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void fill(int index, double[] target) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Nie ma konfiguracji numer " + index);
+        }
+        RandomGenerator generator = random.forStream(0, index);
+        for (int p = 0; p < ranges.size(); p++) {
+            Range range = ranges.get(p);
+            if (range.integer()) {
+                target[p] = generator.nextLong((long) range.min(), (long) range.max() + 1);
+            } else {
+                target[p] = range.min() + generator.nextDouble() * (range.max() - range.min());
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.stockmarket.backtest;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Zwarty plik binarny z wynikami przebiegów backtestu.
+ *
+ * Format (DataOutputStream, big-endian):
+ * <pre>
+ * int    MAGIC ("SMBT")
+ * int    VERSION
+ * int    liczba parametrów P, potem P nazw (writeUTF)
+ * rekordy do końca pliku:
+ *   int configIndex, P x double parametry,
+ *   double finalValue, double totalReturn, double maxDrawdown, double sharpeRatio, int trades
+ * </pre>
+ * Rekordy są dopisywane strumieniowo, więc nawet bardzo duże przeszukiwanie
+ * nie musi trzymać wszystkich wyników w pamięci.
+ */
+public final class ResultsFile implements Closeable {
+
+    public static final int MAGIC = 0x534D4254;
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final int parameterCount;
+    private long records;
+
+    private ResultsFile(DataOutputStream out, int parameterCount) {
+        this.out = out;
+        this.parameterCount = parameterCount;
+    }
+
+    /**
+     * Tworzy (albo nadpisuje) plik wyników i zapisuje nagłówek.
+     */
+    public static ResultsFile create(Path path, List<String> parameterNames) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(parameterNames.size());
+        for (String name : parameterNames) {
+            out.writeUTF(name);
+        }
+        return new ResultsFile(out, parameterNames.size());
+    }
+
+    /**
+     * Dopisuje jeden wynik.
+     */
+    public void write(BacktestResult result) throws IOException {
+        out.writeInt(result.configIndex());
+        for (int p = 0; p < parameterCount; p++) {
+            out.writeDouble(result.parameters()[p]);
+        }
+        out.writeDouble(result.finalValue());
+        out.writeDouble(result.totalReturn());
+        out.writeDouble(result.maxDrawdown());
+        out.writeDouble(result.sharpeRatio());
+        out.writeInt(result.trades());
+        records++;
+    }
+
+    /**
+     * Zwraca liczbę zapisanych wyników.
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Wczytuje wszystkie wyniki z pliku.
+     *
+     * @throws IOException gdy plik nie jest plikiem wyników albo ma inną wersję formatu
+     */
+    public static List<BacktestResult> read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Plik " + path + " nie zawiera wyników backtestu");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Nieobsługiwana wersja pliku wyników: " + version);
+            }
+            int parameterCount = in.readInt();
+            for (int p = 0; p < parameterCount; p++) {
+                in.readUTF();
+            }
+
+            List<BacktestResult> results = new ArrayList<>();
+            while (true) {
+                int configIndex;
+                try {
+                    configIndex = in.readInt();
+                } catch (EOFException end) {
+                    return results;
+                }
+                double[] parameters = new double[parameterCount];
+                for (int p = 0; p < parameterCount; p++) {
+                    parameters[p] = in.readDouble();
+                }
+                results.add(new BacktestResult(configIndex, parameters, in.readDouble(),
+                        in.readDouble(), in.readDouble(), in.readDouble(), in.readInt()));
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.stockmarket.backtest;
+
+import com.stockmarket.strategy.Strategy;
+
+/**
+ * Tworzy nową instancję strategii dla podanego zestawu parametrów.
+ *
+ * Każdy przebieg backtestu dostaje własną instancję, więc strategia może
+ * trzymać stan w polach bez synchronizacji.
+ *
+ * Przykład:
+ * <pre>
+ * StrategyFactory factory = params -> new MomentumStrategy("CDR", params[0], (int) params[1]);
+ * </pre>
+ */
+@FunctionalInterface
+public interface StrategyFactory {
+
+    /**
+     * @param parameters wartości parametrów w kolejności z ParameterSpace.getNames()
+     */
+    Strategy create(double[] parameters);
+}
@@ -0,0 +1,15 @@
+package com.stockmarket.backtest;
+
+/**
+ * Jedno okno testu walk-forward: najlepsza konfiguracja wybrana na danych
+ * treningowych i jej wynik na następującym po nich okresie testowym.
+ *
+ * @param trainFrom pierwszy wiersz historii okresu treningowego
+ * @param trainTo wiersz za końcem okresu treningowego (= początek testowego)
+ * @param testTo wiersz za końcem okresu testowego
+ * @param inSample wynik najlepszej konfiguracji na okresie treningowym
+ * @param outOfSample wynik tej samej konfiguracji na okresie testowym
+ */
+public record WalkForwardFold(int trainFrom, int trainTo, int testTo,
+                              BacktestResult inSample, BacktestResult outOfSample) {
+}
@@ -0,0 +1,17 @@
+package com.stockmarket.bars;
+
+/**
+ * Świeca (bar) OHLCV jednego aktywa w jednym przedziale czasowym.
+ *
+ * @param symbol symbol aktywa
+ * @param timeframe długość przedziału w tickach
+ * @param endTick tick zamykający przedział (przedział to ticki endTick - timeframe + 1 .. endTick)
+ * @param open cena otwarcia - pierwsza cena w przedziale
+ * @param high najwyższa cena
+ * @param low najniższa cena
+ * @param close cena zamknięcia - ostatnia cena w przedziale
+ * @param volume liczba sztuk w transakcjach w przedziale
+ */
+public record Bar(String symbol, int timeframe, long endTick,
+                  double open, double high, double low, double close, long volume) {
+}
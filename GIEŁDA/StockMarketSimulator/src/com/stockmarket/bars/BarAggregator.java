@@ -0,0 +1,194 @@
+package com.stockmarket.bars;
+
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+/**
+ * Strumieniowe świece OHLCV dla wszystkich aktywów, w kilku przedziałach
+ * czasowych naraz (np. 1, 5 i 60 ticków).
+ *
+ * Każdy przedział ma własne kolumny open/high/low/close/volume indeksowane id
+ * aktywa (ClosedBars). W każdym ticku silnik przechodzi równolegle po
+ * fragmentach rynku i aktualizuje kolumny wszystkich przedziałów - bez
+ * tworzenia obiektów. Przedział zamyka się w ticku rynku podzielnym przez
+ * jego długość: słuchacze dostają wtedy całe kolumny, a od następnego ticka
+ * te same tablice zbierają kolejne świece.
+ *
+ * Wolumen to przyrost licznika transakcji aktywa (Asset.getTradedVolume())
+ * między tickami, więc świeca zawiera transakcje zawarte od poprzedniego ticka.
+ *
+ * Po podziale akcji (onAssetSplit) otwarte świece aktywa są przeliczane na
+ * jednostki po podziale: ceny open/high/low/close mnożymy przez
+ * denominator / numerator, a wolumen przez numerator / denominator. Świeca nie
+ * dostaje więc sztucznego skoku ceny. Zamknięte świece (już wysłane
+ * słuchaczom) zostają w jednostkach sprzed podziału.
+ *
+ * Przykład:
+ * <pre>
+ * BarAggregator bars = new BarAggregator(market, 1, 5, 60);
+ * bars.addListener(closed -&gt; System.out.println(closed.getTimeframe() + ": " + closed.toBar(0)));
+ * </pre>
+ */
+public class BarAggregator implements MarketListener {
+
+    // Tyle id aktualizuje jedno zadanie - kolumny fragmentu mieszczą się w cache procesora
+    static final int BLOCK_SIZE = 4096;
+
+    private final ClosedBars[] timeframes;
+    private final boolean[] fresh;   // czy następny tick otwiera nowe świece
+    private final List<BarListener> listeners = new CopyOnWriteArrayList<>();
+
+    private double[] prices = new double[0];
+    private long[] tickVolumes = new long[0];
+    private long[] lastVolumes = new long[0];   // id -> licznik transakcji z poprzedniego ticka
+    private Asset[] owners = new Asset[0];
+
+    /**
+     * @param timeframes długości przedziałów w tickach
+     * @throws IllegalArgumentException gdy nie podano przedziałów albo któryś nie jest dodatni
+     */
+    public BarAggregator(Market market, int... timeframes) {
+        if (timeframes.length == 0) {
+            throw new IllegalArgumentException("Podaj przynajmniej jeden przedział czasowy");
+        }
+        this.timeframes = new ClosedBars[timeframes.length];
+        this.fresh = new boolean[timeframes.length];
+        for (int t = 0; t < timeframes.length; t++) {
+            if (timeframes[t] <= 0) {
+                throw new IllegalArgumentException("Przedział czasowy musi być dodatni: " + timeframes[t]);
+            }
+            this.timeframes[t] = new ClosedBars(timeframes[t]);
+            this.fresh[t] = true;
+        }
+        synchronized (market) {
+            // Transakcje sprzed utworzenia silnika nie trafiają do pierwszych świec
+            MarketSnapshot snapshot = market.getSnapshot();
+            ensureCapacity(snapshot.size());
+            for (int id = 0; id < snapshot.size(); id++) {
+                Asset asset = snapshot.getAsset(id);
+                owners[id] = asset;
+                lastVolumes[id] = asset == null ? 0 : asset.getTradedVolume();
+            }
+            market.addListener(this);
+        }
+    }
+
+    public void addListener(BarListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(BarListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void ensureCapacity(int size) {
+        if (prices.length < size) {
+            int capacity = Math.max(size, prices.length * 2);
+            prices = new double[capacity];
+            tickVolumes = new long[capacity];
+            lastVolumes = Arrays.copyOf(lastVolumes, capacity);
+            owners = Arrays.copyOf(owners, capacity);
+            for (ClosedBars bars : timeframes) {
+                bars.ensureCapacity(capacity);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onPricesUpdated(MarketSnapshot previous, MarketSnapshot current) {
+        int size = current.size();
+        ensureCapacity(size);
+        current.copyPrices(prices);
+
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            int from = block * BLOCK_SIZE;
+            int to = Math.min(size, from + BLOCK_SIZE);
+            collectVolumes(current, from, to);
+            for (int t = 0; t < timeframes.length; t++) {
+                update(timeframes[t], fresh[t], from, to);
+            }
+        });
+
+        long tick = current.getTick();
+        for (int t = 0; t < timeframes.length; t++) {
+            ClosedBars bars = timeframes[t];
+            fresh[t] = tick % bars.getTimeframe() == 0;
+            if (fresh[t]) {
+                bars.seal(tick, current);
+                for (BarListener listener : listeners) {
+                    listener.onBarsClosed(bars);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+        if (id >= owners.length || owners[id] != asset) {
+            return;   // aktywo jeszcze bez świec w silniku
+        }
+        double factor = (double) denominator / numerator;
+        for (int t = 0; t < timeframes.length; t++) {
+            if (fresh[t]) {
+                continue;   // świeca zamknięta w ostatnim ticku - następny tick otwiera nową
+            }
+            ClosedBars bars = timeframes[t];
+            bars.open[id] *= factor;
+            bars.high[id] *= factor;
+            bars.low[id] *= factor;
+            bars.close[id] *= factor;
+            bars.volume[id] = bars.volume[id] * numerator / denominator;
+        }
+    }
+
+    /**
+     * Liczy wolumen ticka jako przyrost licznika transakcji. Gdy id zajęło nowe
+     * aktywo, otwarte świece poprzedniego aktywa są porzucane.
+     */
+    private void collectVolumes(MarketSnapshot current, int from, int to) {
+        for (int id = from; id < to; id++) {
+            Asset asset = current.getAsset(id);
+            if (owners[id] != asset) {
+                owners[id] = asset;
+                lastVolumes[id] = 0;
+                for (ClosedBars bars : timeframes) {
+                    bars.open[id] = Double.NaN;
+                }
+            }
+            long total = asset == null ? 0 : asset.getTradedVolume();
+            tickVolumes[id] = total - lastVolumes[id];
+            lastVolumes[id] = total;
+        }
+    }
+
+    private void update(ClosedBars bars, boolean opening, int from, int to) {
+        double[] open = bars.open;
+        double[] high = bars.high;
+        double[] low = bars.low;
+        double[] close = bars.close;
+        long[] volume = bars.volume;
+        for (int id = from; id < to; id++) {
+            double price = prices[id];
+            if (opening || Double.isNaN(open[id])) {
+                // Pierwsza cena świecy (NaN - id bez ceny, świeca jeszcze się nie zaczęła)
+                open[id] = price;
+                high[id] = price;
+                low[id] = price;
+                close[id] = price;
+                volume[id] = tickVolumes[id];
+            } else if (!Double.isNaN(price)) {
+                high[id] = Math.max(high[id], price);
+                low[id] = Math.min(low[id], price);
+                close[id] = price;
+                volume[id] += tickVolumes[id];
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.stockmarket.bars;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Słuchacz zapisujący zamknięte świece do zwartego pliku binarnego.
+ *
+ * Format (DataOutputStream, big-endian):
+ * <pre>
+ * int    MAGIC ("SMBR")
+ * int    VERSION
+ * rekordy do końca pliku:
+ *   String symbol (writeUTF), int timeframe, long endTick,
+ *   double open, double high, double low, double close, long volume
+ * </pre>
+ * Zapisywane są tylko id, które mają świecę w zamykanym przedziale.
+ */
+public final class BarFile implements BarListener, Closeable {
+
+    public static final int MAGIC = 0x534D4252;
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private long records;
+
+    private BarFile(DataOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Tworzy (albo nadpisuje) plik świec i zapisuje nagłówek.
+     */
+    public static BarFile create(Path path) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        return new BarFile(out);
+    }
+
+    /**
+     * Dopisuje wszystkie świece zamkniętego przedziału.
+     *
+     * @throws UncheckedIOException gdy zapis się nie powiódł (słuchacz nie może rzucić IOException)
+     */
+    @Override
+    public synchronized void onBarsClosed(ClosedBars bars) {
+        try {
+            for (int id = 0; id < bars.size(); id++) {
+                if (bars.hasBar(id)) {
+                    out.writeUTF(bars.getSymbol(id));
+                    out.writeInt(bars.getTimeframe());
+                    out.writeLong(bars.getEndTick());
+                    out.writeDouble(bars.getOpen(id));
+                    out.writeDouble(bars.getHigh(id));
+                    out.writeDouble(bars.getLow(id));
+                    out.writeDouble(bars.getClose(id));
+                    out.writeLong(bars.getVolume(id));
+                    records++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Zwraca liczbę zapisanych świec.
+     */
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Wczytuje wszystkie świece z pliku.
+     *
+     * @throws IOException gdy plik nie jest plikiem świec albo ma inną wersję formatu
+     */
+    public static List<Bar> read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Plik " + path + " nie zawiera świec");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Nieobsługiwana wersja pliku świec: " + version);
+            }
+
+            List<Bar> bars = new ArrayList<>();
+            while (true) {
+                String symbol;
+                try {
+                    symbol = in.readUTF();
+                } catch (EOFException end) {
+                    return bars;
+                }
+                bars.add(new Bar(symbol, in.readInt(), in.readLong(), in.readDouble(),
+                        in.readDouble(), in.readDouble(), in.readDouble(), in.readLong()));
+            }
+        }
+    }
+}
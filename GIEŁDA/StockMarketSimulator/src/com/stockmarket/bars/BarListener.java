@@ -0,0 +1,16 @@
+package com.stockmarket.bars;
+
+/**
+ * Interfejs dla odbiorców zamkniętych świec z BarAggregator.
+ */
+public interface BarListener {
+
+    /**
+     * Wywoływana gdy zamykają się świece jednego przedziału czasowego - dla
+     * wszystkich aktywów naraz. Obiekt ClosedBars jest ważny tylko w trakcie
+     * wywołania (potem jego kolumny zbierają kolejne świece).
+     *
+     * @param bars zamknięte świece, indeksowane id aktywa
+     */
+    void onBarsClosed(ClosedBars bars);
+}
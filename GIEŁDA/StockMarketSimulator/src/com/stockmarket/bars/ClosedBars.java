@@ -0,0 +1,113 @@
+package com.stockmarket.bars;
+
+import com.stockmarket.market.MarketSnapshot;
+import java.util.Arrays;
+
+/**
+ * Kolumny świec jednego przedziału czasowego, dla wszystkich aktywów.
+ *
+ * Ten sam obiekt zbiera świece w trakcie przedziału i jest przekazywany
+ * słuchaczom przy zamknięciu - nie powstaje żaden obiekt na świecę.
+ * Odczyt jest indeksowany id aktywa; id bez świecy (wolne albo bez ceny
+ * w całym przedziale) zwraca false z hasBar().
+ */
+public final class ClosedBars {
+
+    private final int timeframe;
+    double[] open = new double[0];
+    double[] high = new double[0];
+    double[] low = new double[0];
+    double[] close = new double[0];
+    long[] volume = new long[0];
+
+    private long endTick;
+    private MarketSnapshot snapshot;
+    private int size;
+
+    ClosedBars(int timeframe) {
+        this.timeframe = timeframe;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (open.length < capacity) {
+            int oldCapacity = open.length;
+            open = Arrays.copyOf(open, capacity);
+            high = Arrays.copyOf(high, capacity);
+            low = Arrays.copyOf(low, capacity);
+            close = Arrays.copyOf(close, capacity);
+            volume = Arrays.copyOf(volume, capacity);
+            // Nowe id nie mają jeszcze świecy
+            Arrays.fill(open, oldCapacity, capacity, Double.NaN);
+        }
+    }
+
+    void seal(long endTick, MarketSnapshot snapshot) {
+        this.endTick = endTick;
+        this.snapshot = snapshot;
+        this.size = snapshot.size();
+    }
+
+    /**
+     * Zwraca długość przedziału w tickach.
+     */
+    public int getTimeframe() {
+        return timeframe;
+    }
+
+    /**
+     * Zwraca tick zamykający przedział.
+     */
+    public long getEndTick() {
+        return endTick;
+    }
+
+    /**
+     * Zwraca liczbę id (część z nich może nie mieć świecy).
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sprawdza czy aktywo o podanym id ma świecę w tym przedziale.
+     */
+    public boolean hasBar(int id) {
+        return !Double.isNaN(open[id]);
+    }
+
+    public String getSymbol(int id) {
+        return snapshot.getSymbol(id);
+    }
+
+    public double getOpen(int id) {
+        return open[id];
+    }
+
+    public double getHigh(int id) {
+        return high[id];
+    }
+
+    public double getLow(int id) {
+        return low[id];
+    }
+
+    public double getClose(int id) {
+        return close[id];
+    }
+
+    public long getVolume(int id) {
+        return volume[id];
+    }
+
+    /**
+     * Tworzy obiekt Bar dla jednego aktywa (np. do zapamiętania poza wywołaniem słuchacza).
+     *
+     * @throws IllegalArgumentException gdy aktywo nie ma świecy w tym przedziale
+     */
+    public Bar toBar(int id) {
+        if (!hasBar(id)) {
+            throw new IllegalArgumentException("Id " + id + " nie ma świecy w tym przedziale");
+        }
+        return new Bar(getSymbol(id), timeframe, endTick, open[id], high[id], low[id], close[id], volume[id]);
+    }
+}
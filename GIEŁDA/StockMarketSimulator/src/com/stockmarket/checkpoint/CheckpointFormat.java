@@ -0,0 +1,38 @@
+package com.stockmarket.checkpoint;
+
+/**
+ * Stałe formatu pliku punktów kontrolnych (DataOutputStream, big-endian).
+ *
+ * <pre>
+ * nagłówek: int MAGIC, int VERSION, int PAGE_SIZE, int liczba walut C, int liczba portfeli P
+ * rekordy do końca pliku:
+ *   byte   RECORD_CHECKPOINT
+ *   long   tick, long ziarno
+ *   int    liczba id N, boolean czy zmienił się układ
+ *          [jeśli tak: N x writeUTF symbol, "" dla wolnego id]
+ *   int    liczba zmienionych stron D
+ *          D x (int numer strony, do PAGE_SIZE x long bity ceny)
+ *   boolean czy są kursy walut
+ *          [jeśli tak: long tick kursów, C x long bity kursu]
+ *   P x    (C x long bity gotówki, int liczba pozycji K, K x (int id, int ilość),
+ *           boolean czy portfel ma ewidencję partii podatkowych
+ *           [jeśli tak: C x long bity zrealizowanego zysku, int liczba aktywów L,
+ *            L x (int id, long bity zrealizowanego zysku, int liczba partii M,
+ *                 M x (int ilość ze znakiem, long bity kosztu na sztukę, long tick otwarcia))])
+ * </pre>
+ *
+ * Waluty są zapisywane w kolejności Currency.ordinal(). Partie są zapisywane
+ * po rozliczeniu zaległych podziałów akcji, czyli w tych samych jednostkach
+ * co ilości pozycji - przy odczycie należą do bieżącej epoki podziałów aktywa.
+ */
+final class CheckpointFormat {
+
+    static final int MAGIC = 0x534D434B;   // "SMCK"
+    static final int VERSION = 3;
+    static final int PAGE_SIZE = 512;      // 512 cen = 4 KB na stronę
+
+    static final byte RECORD_CHECKPOINT = 1;
+
+    private CheckpointFormat() {
+    }
+}
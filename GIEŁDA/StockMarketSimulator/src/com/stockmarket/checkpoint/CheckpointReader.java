@@ -0,0 +1,304 @@
+package com.stockmarket.checkpoint;
+
+import com.stockmarket.fx.FxRates;
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Currency;
+import com.stockmarket.portfolio.Portfolio;
+import com.stockmarket.portfolio.TaxLotLedger;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Odczytuje plik punktów kontrolnych i przywraca z niego stan symulacji.
+ *
+ * Strony cen są zapisane przyrostowo, więc odczyt przechodzi po kolejnych
+ * punktach od początku pliku i nakłada zmienione strony na tablicę cen,
+ * aż dojdzie do wybranego ticka.
+ *
+ * Przywracanie wymaga rynku zbudowanego z tych samych aktywów (ten sam symbol
+ * pod tym samym id) - zwykle tego samego kodu, który uruchomił oryginalny przebieg.
+ * Ziarno, tick i ceny pochodzą z pliku, więc dalsze ticki dają dokładnie te same
+ * ceny co w oryginale. Kursy walut są przywracane do obiektu FxRates podpiętego
+ * do przywracanych portfeli, a partie podatkowe - do ich ewidencji (portfel
+ * musi mieć ją włączoną przed przywróceniem, z tą samą metodą zamykania partii).
+ * Stan strategii i innych słuchaczy nie jest zapisywany.
+ */
+public final class CheckpointReader {
+
+    private CheckpointReader() {
+    }
+
+    /**
+     * Zwraca numery ticków wszystkich punktów kontrolnych w pliku.
+     */
+    public static long[] listTicks(Path path) throws IOException {
+        List<Long> ticks = new ArrayList<>();
+        try (DataInputStream in = open(path)) {
+            int portfolioCount = readHeader(in, path);
+            State state = new State();
+            while (readRecord(in, portfolioCount, state)) {
+                ticks.add(state.tick);
+            }
+        }
+        return ticks.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Przywraca stan rynku i portfeli z punktu kontrolnego o podanym ticku.
+     *
+     * @param portfolios portfele w tej samej kolejności co przy zapisie
+     * @throws IOException gdy plik jest uszkodzony, nie ma takiego ticka,
+     *         układ aktywów rynku nie zgadza się z zapisanym albo punkt zawiera
+     *         kursy walut, a żaden z portfeli nie ma FxRates (albo partie
+     *         podatkowe portfela, który nie ma włączonej ewidencji)
+     */
+    public static void restore(Path path, long tick, Market market, List<Portfolio> portfolios)
+            throws IOException {
+        try (DataInputStream in = open(path)) {
+            int portfolioCount = readHeader(in, path);
+            if (portfolioCount != portfolios.size()) {
+                throw new IOException("Punkt kontrolny zawiera " + portfolioCount
+                        + " portfeli, a podano " + portfolios.size());
+            }
+            State state = new State();
+            while (readRecord(in, portfolioCount, state)) {
+                if (state.tick == tick) {
+                    apply(state, market, portfolios);
+                    return;
+                }
+            }
+        }
+        throw new IOException("W pliku " + path + " nie ma punktu kontrolnego dla ticka " + tick);
+    }
+
+    /**
+     * Przywraca stan z ostatniego punktu kontrolnego w pliku.
+     *
+     * @return numer ticka przywróconego punktu
+     */
+    public static long restoreLatest(Path path, Market market, List<Portfolio> portfolios)
+            throws IOException {
+        long[] ticks = listTicks(path);
+        if (ticks.length == 0) {
+            throw new IOException("Plik " + path + " nie zawiera punktów kontrolnych");
+        }
+        long last = ticks[ticks.length - 1];
+        restore(path, last, market, portfolios);
+        return last;
+    }
+
+    private static void apply(State state, Market market, List<Portfolio> portfolios) throws IOException {
+        synchronized (market) {
+            MarketSnapshot snapshot = market.getSnapshot();
+            if (snapshot.size() != state.symbols.length) {
+                throw new IOException("Rynek ma " + snapshot.size() + " id aktywów, a punkt kontrolny "
+                        + state.symbols.length);
+            }
+            for (int id = 0; id < state.symbols.length; id++) {
+                String expected = state.symbols[id];
+                String actual = snapshot.getSymbol(id);
+                if (!Objects.equals(expected, actual)) {
+                    throw new IOException("Układ aktywów się różni: id " + id + " to " + actual
+                            + ", a w punkcie kontrolnym " + expected);
+                }
+            }
+            market.restoreState(state.seed, state.tick, state.prices.clone());
+            if (state.hasRates) {
+                FxRates fxRates;
+                try {
+                    fxRates = CheckpointWriter.sharedFxRates(portfolios);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                if (fxRates == null) {
+                    throw new IOException("Punkt kontrolny zawiera kursy walut, a portfele nie mają FxRates");
+                }
+                // Po market.restoreState - rynek wywołał już reprice() dla tego ticka
+                fxRates.restoreState(state.ratesTick, state.rates);
+            }
+
+            for (int i = 0; i < portfolios.size(); i++) {
+                Map<String, Integer> quantities = new HashMap<>();
+                int[] ids = state.positionIds[i];
+                int[] amounts = state.positionQuantities[i];
+                for (int k = 0; k < ids.length; k++) {
+                    quantities.put(state.symbols[ids[k]], amounts[k]);
+                }
+                Portfolio portfolio = portfolios.get(i);
+                portfolio.restoreState(state.cash[i], quantities, market);
+                if (state.lots[i] != null) {
+                    restoreTaxLots(state.lots[i], portfolio, i, state, snapshot);
+                }
+            }
+        }
+    }
+
+    private static void restoreTaxLots(TaxLots saved, Portfolio portfolio, int index, State state,
+                                       MarketSnapshot snapshot) throws IOException {
+        TaxLotLedger ledger = portfolio.getTaxLots();
+        if (ledger == null) {
+            throw new IOException("Punkt kontrolny zawiera partie podatkowe portfela " + index
+                    + ", a portfel nie ma włączonej ewidencji");
+        }
+        ledger.restoreState(saved.realizedGains, state.tick);
+        for (int k = 0; k < saved.ids.length; k++) {
+            ledger.restoreLots(snapshot.getAsset(saved.ids[k]), saved.gains[k],
+                    saved.quantities[k], saved.prices[k], saved.ticks[k]);
+        }
+    }
+
+    private static DataInputStream open(Path path) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+    }
+
+    private static int readHeader(DataInputStream in, Path path) throws IOException {
+        if (in.readInt() != CheckpointFormat.MAGIC) {
+            throw new IOException("Plik " + path + " nie zawiera punktów kontrolnych");
+        }
+        int version = in.readInt();
+        if (version != CheckpointFormat.VERSION) {
+            throw new IOException("Nieobsługiwana wersja punktów kontrolnych: " + version);
+        }
+        if (in.readInt() != CheckpointFormat.PAGE_SIZE) {
+            throw new IOException("Nieobsługiwany rozmiar strony punktów kontrolnych");
+        }
+        int currencies = in.readInt();
+        if (currencies != Currency.COUNT) {
+            throw new IOException("Punkt kontrolny zapisano dla " + currencies + " walut, a program zna "
+                    + Currency.COUNT);
+        }
+        return in.readInt();
+    }
+
+    /**
+     * Wczytuje kolejny punkt kontrolny i nakłada go na stan.
+     *
+     * @return false na końcu pliku
+     */
+    private static boolean readRecord(DataInputStream in, int portfolioCount, State state) throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            return false;
+        }
+        if (type != CheckpointFormat.RECORD_CHECKPOINT) {
+            throw new IOException("Nieznany typ rekordu punktu kontrolnego: " + type);
+        }
+        state.tick = in.readLong();
+        state.seed = in.readLong();
+
+        int size = in.readInt();
+        if (in.readBoolean()) {
+            state.symbols = new String[size];
+            for (int id = 0; id < size; id++) {
+                String symbol = in.readUTF();
+                state.symbols[id] = symbol.isEmpty() ? null : symbol;
+            }
+        }
+        if (state.prices.length != size) {
+            double[] resized = Arrays.copyOf(state.prices, size);
+            Arrays.fill(resized, Math.min(state.prices.length, size), size, Double.NaN);
+            state.prices = resized;
+        }
+
+        int dirtyPages = in.readInt();
+        for (int i = 0; i < dirtyPages; i++) {
+            int from = in.readInt() * CheckpointFormat.PAGE_SIZE;
+            int length = Math.min(size, from + CheckpointFormat.PAGE_SIZE) - from;
+            in.readFully(state.page.array(), 0, length * Double.BYTES);
+            state.page.clear();
+            state.page.asDoubleBuffer().get(state.prices, from, length);
+        }
+
+        state.hasRates = in.readBoolean();
+        if (state.hasRates) {
+            state.ratesTick = in.readLong();
+            for (int c = 0; c < Currency.COUNT; c++) {
+                state.rates[c] = Double.longBitsToDouble(in.readLong());
+            }
+        }
+
+        state.cash = new double[portfolioCount][];
+        state.positionIds = new int[portfolioCount][];
+        state.positionQuantities = new int[portfolioCount][];
+        state.lots = new TaxLots[portfolioCount];
+        for (int p = 0; p < portfolioCount; p++) {
+            state.cash[p] = new double[Currency.COUNT];
+            for (int c = 0; c < Currency.COUNT; c++) {
+                state.cash[p][c] = Double.longBitsToDouble(in.readLong());
+            }
+            int count = in.readInt();
+            state.positionIds[p] = new int[count];
+            state.positionQuantities[p] = new int[count];
+            for (int k = 0; k < count; k++) {
+                state.positionIds[p][k] = in.readInt();
+                state.positionQuantities[p][k] = in.readInt();
+            }
+            state.lots[p] = in.readBoolean() ? readTaxLots(in, size) : null;
+        }
+        return true;
+    }
+
+    private static TaxLots readTaxLots(DataInputStream in, int size) throws IOException {
+        TaxLots lots = new TaxLots();
+        for (int c = 0; c < Currency.COUNT; c++) {
+            lots.realizedGains[c] = Double.longBitsToDouble(in.readLong());
+        }
+        int assets = in.readInt();
+        lots.ids = new int[assets];
+        lots.gains = new double[assets];
+        lots.quantities = new int[assets][];
+        lots.prices = new double[assets][];
+        lots.ticks = new long[assets][];
+        for (int a = 0; a < assets; a++) {
+            lots.ids[a] = in.readInt();
+            if (lots.ids[a] < 0 || lots.ids[a] >= size) {
+                throw new IOException("Partie podatkowe aktywa spoza rynku: id " + lots.ids[a]);
+            }
+            lots.gains[a] = Double.longBitsToDouble(in.readLong());
+            int count = in.readInt();
+            lots.quantities[a] = new int[count];
+            lots.prices[a] = new double[count];
+            lots.ticks[a] = new long[count];
+            for (int k = 0; k < count; k++) {
+                lots.quantities[a][k] = in.readInt();
+                lots.prices[a][k] = Double.longBitsToDouble(in.readLong());
+                lots.ticks[a][k] = in.readLong();
+            }
+        }
+        return lots;
+    }
+
+    /**
+     * Stan odtwarzany podczas przechodzenia po kolejnych punktach kontrolnych.
+     */
+    private static final class State {
+        long tick;
+        long seed;
+        String[] symbols = new String[0];
+        double[] prices = new double[0];
+        final ByteBuffer page = ByteBuffer.allocate(CheckpointFormat.PAGE_SIZE * Double.BYTES);
+        boolean hasRates;
+        long ratesTick;
+        final double[] rates = new double[Currency.COUNT];
+        double[][] cash;
+        int[][] positionIds;
+        int[][] positionQuantities;
+        TaxLots[] lots;           // portfel -> zapisane partie albo null bez ewidencji
+    }
+
+    /**
+     * Partie podatkowe jednego portfela z punktu kontrolnego.
+     */
+    private static final class TaxLots {
+        final double[] realizedGains = new double[Currency.COUNT];
+        int[] ids;                // aktywo -> id na rynku
+        double[] gains;           // aktywo -> zrealizowany zysk
+        int[][] quantities;       // aktywo -> ilości partii ze znakiem
+        double[][] prices;
+        long[][] ticks;
+    }
+}
@@ -0,0 +1,272 @@
+package com.stockmarket.checkpoint;
+
+import com.stockmarket.fx.FxRates;
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.Currency;
+import com.stockmarket.portfolio.Portfolio;
+import com.stockmarket.portfolio.PortfolioPosition;
+import com.stockmarket.portfolio.TaxLotLedger;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Zapisuje punkty kontrolne symulacji do pliku binarnego.
+ *
+ * Punkt kontrolny zawiera numer ticka, ziarno losowości, ceny wszystkich aktywów
+ * oraz gotówkę we wszystkich walutach i pozycje portfeli. Jeśli portfele
+ * przeliczają waluty przez FxRates, zapisywane są też kursy i tick, dla którego
+ * je wylosowano - kursy zależą od całej drogi, więc bez nich wznowiony przebieg
+ * miałby inne kursy niż oryginał. Portfel z ewidencją partii podatkowych
+ * zapisuje też otwarte partie (ilość, koszt, tick otwarcia) i zrealizowane
+ * zyski, żeby wznowienie nie zerowało kosztów nabycia. Ceny są zapisywane przyrostowo: tablica cen
+ * jest podzielona na strony po PAGE_SIZE wartości i do pliku trafiają tylko
+ * strony, które zmieniły się od poprzedniego punktu. Układ aktywów (symbol dla
+ * każdego id) jest zapisywany tylko wtedy, gdy się zmienił.
+ *
+ * Punkty kontrolne są dopisywane na końcu jednego pliku - CheckpointReader
+ * odtwarza stan z dowolnego z nich.
+ *
+ * Przykład:
+ * <pre>
+ * try (CheckpointWriter checkpoints = new CheckpointWriter(Path.of("symulacja.ckpt"), market, portfolios)) {
+ *     for (int step = 1; step <= steps; step++) {
+ *         market.updatePrices();
+ *         ...
+ *         if (step % 100 == 0) {
+ *             checkpoints.checkpoint();
+ *         }
+ *     }
+ * }
+ * </pre>
+ */
+public class CheckpointWriter implements Closeable {
+
+    private final DataOutputStream out;
+    private final Market market;
+    private final List<Portfolio> portfolios;
+    private final FxRates fxRates;
+
+    // Stan z poprzedniego punktu kontrolnego - do wyznaczenia zmienionych stron
+    private double[] lastPrices = new double[0];
+    private Asset[] lastLayout = new Asset[0];
+    private double[] prices = new double[0];
+    private final ByteBuffer page = ByteBuffer.allocate(CheckpointFormat.PAGE_SIZE * Double.BYTES);
+
+    private int checkpointCount;
+    private long pagesWritten;
+
+    /**
+     * Tworzy (albo nadpisuje) plik punktów kontrolnych.
+     *
+     * @param path ścieżka pliku
+     * @param market rynek, którego stan zapisujemy
+     * @param portfolios portfele zapisywane w każdym punkcie (w tej kolejności są potem przywracane)
+     * @throws IllegalArgumentException gdy portfele używają różnych obiektów FxRates
+     */
+    public CheckpointWriter(Path path, Market market, List<Portfolio> portfolios) throws IOException {
+        this.market = market;
+        this.portfolios = List.copyOf(portfolios);
+        this.fxRates = sharedFxRates(this.portfolios);
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+        out.writeInt(CheckpointFormat.MAGIC);
+        out.writeInt(CheckpointFormat.VERSION);
+        out.writeInt(CheckpointFormat.PAGE_SIZE);
+        out.writeInt(Currency.COUNT);
+        out.writeInt(this.portfolios.size());
+    }
+
+    /**
+     * Zwraca kursy walut wspólne dla portfeli albo null, gdy żaden ich nie używa.
+     * Punkt kontrolny zapisuje jeden wektor kursów, więc wszystkie portfele muszą dzielić ten sam.
+     */
+    static FxRates sharedFxRates(List<Portfolio> portfolios) {
+        FxRates shared = null;
+        for (Portfolio portfolio : portfolios) {
+            FxRates rates = portfolio.getFxRates();
+            if (rates != null && shared != null && rates != shared) {
+                throw new IllegalArgumentException("Portfele w punkcie kontrolnym muszą używać tych samych kursów walut");
+            }
+            if (rates != null) {
+                shared = rates;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Zapisuje punkt kontrolny bieżącego stanu. Należy wywoływać między tickami,
+     * gdy żaden wątek nie zmienia portfeli.
+     *
+     * @return liczba stron cen zapisanych w tym punkcie
+     */
+    public int checkpoint() throws IOException {
+        int written;
+        // Blokada rynku gwarantuje że ziarno, tick i ceny pochodzą z tej samej chwili
+        synchronized (market) {
+            MarketSnapshot snapshot = market.getSnapshot();
+            out.writeByte(CheckpointFormat.RECORD_CHECKPOINT);
+            out.writeLong(snapshot.getTick());
+            out.writeLong(market.getRandomSource().getSeed());
+            writeLayout(snapshot);
+            written = writeChangedPages(snapshot);
+            writeFxRates();
+            writePortfolios(snapshot);
+        }
+        out.flush();
+        checkpointCount++;
+        pagesWritten += written;
+        return written;
+    }
+
+    private void writeLayout(MarketSnapshot snapshot) throws IOException {
+        int size = snapshot.size();
+        boolean changed = size != lastLayout.length;
+        for (int id = 0; id < size && !changed; id++) {
+            changed = snapshot.getAsset(id) != lastLayout[id];
+        }
+        out.writeInt(size);
+        out.writeBoolean(changed);
+        if (!changed) {
+            return;
+        }
+        lastLayout = new Asset[size];
+        for (int id = 0; id < size; id++) {
+            lastLayout[id] = snapshot.getAsset(id);
+            String symbol = snapshot.getSymbol(id);
+            out.writeUTF(symbol != null ? symbol : "");   // pusty symbol = wolne id
+        }
+    }
+
+    private int writeChangedPages(MarketSnapshot snapshot) throws IOException {
+        int size = snapshot.size();
+        if (prices.length != size) {
+            prices = new double[size];
+        }
+        snapshot.copyPrices(prices);
+        if (lastPrices.length != size) {
+            // Zmiana liczby id - strony poza starym zakresem i tak są nowe
+            double[] resized = Arrays.copyOf(lastPrices, size);
+            Arrays.fill(resized, Math.min(lastPrices.length, size), size, Double.NaN);
+            lastPrices = resized;
+        }
+
+        int pageCount = (size + CheckpointFormat.PAGE_SIZE - 1) / CheckpointFormat.PAGE_SIZE;
+        int[] dirty = new int[pageCount];
+        int dirtyCount = 0;
+        for (int p = 0; p < pageCount; p++) {
+            int from = p * CheckpointFormat.PAGE_SIZE;
+            int to = Math.min(size, from + CheckpointFormat.PAGE_SIZE);
+            // Arrays.equals porównuje bity, więc NaN == NaN, a 0.0 != -0.0 - dokładnie to czego chcemy
+            if (checkpointCount == 0 || !Arrays.equals(prices, from, to, lastPrices, from, to)) {
+                dirty[dirtyCount++] = p;
+            }
+        }
+
+        out.writeInt(dirtyCount);
+        for (int i = 0; i < dirtyCount; i++) {
+            int p = dirty[i];
+            int from = p * CheckpointFormat.PAGE_SIZE;
+            int to = Math.min(size, from + CheckpointFormat.PAGE_SIZE);
+            out.writeInt(p);
+            // Cała strona jednym zapisem - ByteBuffer zachowuje dokładne bity liczb
+            page.clear();
+            page.asDoubleBuffer().put(prices, from, to - from);
+            out.write(page.array(), 0, (to - from) * Double.BYTES);
+            System.arraycopy(prices, from, lastPrices, from, to - from);
+        }
+        return dirtyCount;
+    }
+
+    private void writeFxRates() throws IOException {
+        out.writeBoolean(fxRates != null);
+        if (fxRates == null) {
+            return;
+        }
+        // Kursy zmieniają się w ticku rynku, a trzymamy jego blokadę - tick i wektor są spójne
+        out.writeLong(fxRates.getRatesTick());
+        for (double rate : fxRates.getConversionVector()) {
+            out.writeLong(Double.doubleToRawLongBits(rate));
+        }
+    }
+
+    private void writePortfolios(MarketSnapshot snapshot) throws IOException {
+        for (Portfolio portfolio : portfolios) {
+            for (int c = 0; c < Currency.COUNT; c++) {
+                out.writeLong(Double.doubleToRawLongBits(portfolio.getCash(Currency.byIndex(c))));
+            }
+            Collection<PortfolioPosition> positions = portfolio.getPositions().values();
+            out.writeInt(positions.size());
+            for (PortfolioPosition position : positions) {
+                int id = snapshot.indexOf(position.asset().getSymbol());
+                if (id < 0) {
+                    throw new IllegalStateException("Pozycja w aktywie spoza rynku: " + position.asset().getSymbol());
+                }
+                out.writeInt(id);
+                out.writeInt(position.quantity());
+            }
+            writeTaxLots(portfolio.getTaxLots(), snapshot);
+        }
+    }
+
+    private void writeTaxLots(TaxLotLedger ledger, MarketSnapshot snapshot) throws IOException {
+        out.writeBoolean(ledger != null);
+        if (ledger == null) {
+            return;
+        }
+        for (int c = 0; c < Currency.COUNT; c++) {
+            out.writeLong(Double.doubleToRawLongBits(ledger.getRealizedGain(Currency.byIndex(c))));
+        }
+        // Zysk na aktywach wycofanych z rynku zostaje tylko w sumach walut - nie mają już id
+        List<String> symbols = new ArrayList<>();
+        for (String symbol : ledger.getSymbols()) {
+            if (snapshot.indexOf(symbol) >= 0) {
+                symbols.add(symbol);
+            }
+        }
+        out.writeInt(symbols.size());
+        for (String symbol : symbols) {
+            out.writeInt(snapshot.indexOf(symbol));
+            out.writeLong(Double.doubleToRawLongBits(ledger.getRealizedGain(symbol)));
+            int count = ledger.getLotCount(symbol);
+            int[] quantities = new int[count];
+            double[] prices = new double[count];
+            long[] ticks = new long[count];
+            int[] next = new int[1];
+            ledger.forEachLot(symbol, (quantity, price, tick) -> {
+                quantities[next[0]] = quantity;
+                prices[next[0]] = price;
+                ticks[next[0]++] = tick;
+            });
+            out.writeInt(count);
+            for (int k = 0; k < count; k++) {
+                out.writeInt(quantities[k]);
+                out.writeLong(Double.doubleToRawLongBits(prices[k]));
+                out.writeLong(ticks[k]);
+            }
+        }
+    }
+
+    /**
+     * Zwraca liczbę zapisanych punktów kontrolnych.
+     */
+    public int getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    /**
+     * Zwraca łączną liczbę zapisanych stron cen (miara kosztu zapisu przyrostowego).
+     */
+    public long getPagesWritten() {
+        return pagesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,22 @@
+package com.stockmarket.exception;
+
+/**
+ * Wyjątek rzucany gdy formuła użytkownika zawiera błąd składni
+ * (np. nieznaną funkcję albo niezamknięty nawias).
+ */
+public class FormulaSyntaxException extends Exception {
+
+    private final int position;
+
+    public FormulaSyntaxException(String message, int position) {
+        super(message + " (znak " + (position + 1) + ")");
+        this.position = position;
+    }
+
+    /**
+     * Zwraca pozycję błędu w tekście formuły (licząc od 0).
+     */
+    public int getPosition() {
+        return position;
+    }
+}
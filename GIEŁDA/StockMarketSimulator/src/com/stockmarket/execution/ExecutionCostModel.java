@@ -0,0 +1,148 @@
+package com.stockmarket.execution;
+
+/**
+ * Model kosztów wykonania zlecenia: prowizja, spread i wpływ na rynek.
+ *
+ * Zlecenie o ilości q po cenie środkowej (mid) jest realizowane po cenie:
+ * <pre>
+ * kupno:    mid * (1 + spread / 2 + impact(q))
+ * sprzedaż: mid * (1 - spread / 2 - impact(q))
+ * impact(q) = impactCoefficient * sqrt(q / referenceQuantity)   (model pierwiastkowy)
+ * </pre>
+ * a prowizja to max(minCommission, commissionRate * wartość transakcji).
+ * Minimalna prowizja jest podana w PLN - przy aktywach notowanych w innej
+ * walucie przelicza się ją po kursie tej waluty (commission z plnPerUnit).
+ * Część wpływu (permanentImpactShare) zostaje w cenie aktywa po transakcji -
+ * duże zlecenia przesuwają rynek.
+ *
+ * Wartości impact(q) dla typowych ilości są policzone z góry w tablicy, więc
+ * wycena kosztu przy kupnie i sprzedaży to kilka mnożeń i jeden odczyt z tablicy.
+ * Obiekt jest niezmienny i może być współdzielony przez wiele portfeli i wątków.
+ */
+public final class ExecutionCostModel {
+
+    // Tyle pierwszych ilości ma gotową wartość wpływu (32 KB - mieści się w cache procesora)
+    private static final int TABLE_SIZE = 4096;
+
+    private final double commissionRate;
+    private final double minCommission;
+    private final double halfSpread;
+    private final double impactCoefficient;
+    private final double referenceQuantity;
+    private final double permanentImpactShare;
+    private final double[] impactTable;
+
+    /**
+     * @param commissionRate prowizja jako ułamek wartości transakcji (0.0039 = 0.39%)
+     * @param minCommission minimalna prowizja od transakcji w PLN
+     * @param spread różnica między ceną sprzedaży a kupna jako ułamek ceny (0.001 = 0.1%)
+     * @param impactCoefficient wpływ na cenę zlecenia o ilości referenceQuantity (0.01 = 1%)
+     * @param referenceQuantity ilość, przy której wpływ równa się impactCoefficient
+     * @param permanentImpactShare jaka część wpływu zostaje w cenie po transakcji (0..1)
+     * @throws IllegalArgumentException gdy któryś parametr jest spoza zakresu
+     */
+    public ExecutionCostModel(double commissionRate, double minCommission, double spread,
+                              double impactCoefficient, double referenceQuantity,
+                              double permanentImpactShare) {
+        if (commissionRate < 0 || minCommission < 0 || spread < 0 || spread >= 1 || impactCoefficient < 0) {
+            throw new IllegalArgumentException("Koszty transakcji nie mogą być ujemne");
+        }
+        if (referenceQuantity <= 0) {
+            throw new IllegalArgumentException("Ilość referencyjna musi być dodatnia");
+        }
+        if (permanentImpactShare < 0 || permanentImpactShare > 1) {
+            throw new IllegalArgumentException("Trwała część wpływu musi być z przedziału 0..1");
+        }
+        this.commissionRate = commissionRate;
+        this.minCommission = minCommission;
+        this.halfSpread = spread / 2.0;
+        this.impactCoefficient = impactCoefficient;
+        this.referenceQuantity = referenceQuantity;
+        this.permanentImpactShare = permanentImpactShare;
+
+        this.impactTable = new double[TABLE_SIZE];
+        for (int q = 0; q < TABLE_SIZE; q++) {
+            impactTable[q] = computeImpact(q);
+        }
+    }
+
+    /**
+     * Model bez żadnych kosztów - transakcje po cenie rynkowej, jak dotychczas.
+     */
+    public static ExecutionCostModel free() {
+        return new ExecutionCostModel(0.0, 0.0, 0.0, 0.0, 1.0, 0.0);
+    }
+
+    /**
+     * Typowe koszty rachunku maklerskiego na GPW: prowizja 0.39% (min. 5 PLN),
+     * spread 0.1%, wpływ 1% przy zleceniu na 10 000 sztuk, połowa wpływu trwała.
+     */
+    public static ExecutionCostModel typical() {
+        return new ExecutionCostModel(0.0039, 5.0, 0.001, 0.01, 10_000, 0.5);
+    }
+
+    private double computeImpact(long quantity) {
+        return impactCoefficient * Math.sqrt(quantity / referenceQuantity);
+    }
+
+    /**
+     * Zwraca wpływ zlecenia na cenę jako ułamek ceny (0.002 = 0.2%).
+     */
+    public double impact(int quantity) {
+        return quantity < TABLE_SIZE ? impactTable[quantity] : computeImpact(quantity);
+    }
+
+    /**
+     * Zwraca średnią cenę realizacji kupna.
+     */
+    public double buyPrice(double midPrice, int quantity) {
+        return midPrice * (1.0 + halfSpread + impact(quantity));
+    }
+
+    /**
+     * Zwraca średnią cenę realizacji sprzedaży (nigdy ujemną).
+     */
+    public double sellPrice(double midPrice, int quantity) {
+        return midPrice * Math.max(0.0, 1.0 - halfSpread - impact(quantity));
+    }
+
+    /**
+     * Zwraca prowizję od transakcji o podanej wartości w PLN.
+     */
+    public double commission(double tradeValue) {
+        return commission(tradeValue, 1.0);
+    }
+
+    /**
+     * Zwraca prowizję od transakcji rozliczanej w innej walucie - wartość
+     * transakcji i wynik są w tej walucie, a minimalna prowizja jest
+     * przeliczana z PLN po podanym kursie.
+     *
+     * @param tradeValue wartość transakcji w walucie notowań
+     * @param plnPerUnit ile PLN kosztuje jednostka waluty notowań
+     */
+    public double commission(double tradeValue, double plnPerUnit) {
+        return tradeValue > 0 ? Math.max(minCommission / plnPerUnit, tradeValue * commissionRate) : 0.0;
+    }
+
+    /**
+     * Zwraca cenę rynkową po kupnie - przesuniętą w górę o trwałą część wpływu.
+     */
+    public double priceAfterBuy(double midPrice, int quantity) {
+        return midPrice * (1.0 + permanentImpactShare * impact(quantity));
+    }
+
+    /**
+     * Zwraca cenę rynkową po sprzedaży - przesuniętą w dół o trwałą część wpływu.
+     */
+    public double priceAfterSell(double midPrice, int quantity) {
+        return midPrice * Math.max(0.0, 1.0 - permanentImpactShare * impact(quantity));
+    }
+
+    /**
+     * Sprawdza czy model nalicza jakiekolwiek koszty albo przesuwa ceny.
+     */
+    public boolean isFree() {
+        return commissionRate == 0 && minCommission == 0 && halfSpread == 0 && impactCoefficient == 0;
+    }
+}
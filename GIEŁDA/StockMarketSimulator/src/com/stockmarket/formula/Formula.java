@@ -0,0 +1,166 @@
+package com.stockmarket.formula;
+
+import com.stockmarket.exception.FormulaSyntaxException;
+import com.stockmarket.indicator.IdOwners;
+import com.stockmarket.indicator.IndicatorEngine;
+import com.stockmarket.market.MarketSnapshot;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Skompilowana formuła użytkownika, liczona naraz dla wszystkich aktywów rynku.
+ *
+ * Tekst formuły jest parsowany raz, do listy węzłów (patrz Node). W każdym
+ * ticku formuła liczy kolumnę wyników - po jednej wartości na id aktywa -
+ * fragmentami rynku, które mogą być liczone równolegle.
+ *
+ * Dostępne elementy:
+ * <pre>
+ * pola:      price, prev (cena z poprzedniego ticka), ret (price / prev - 1)
+ * działania: + - * / ( ), porównania &lt; &gt; &lt;= &gt;= (wynik 1 albo 0)
+ * funkcje:   abs(x), sqrt(x), log(x), exp(x), min(x, y), max(x, y)
+ * okna:      sma(x, n), ema(x, n), stddev(x, n), sum(x, n),
+ *            lowest(x, n), highest(x, n), prev(x, n) - wartość sprzed n ticków
+ * </pre>
+ * Dzielenie przez zero i za krótka historia dają NaN.
+ *
+ * Przykład:
+ * <pre>
+ * Formula zScore = Formula.compile("(price - sma(price, 20)) / stddev(price, 20)");
+ * double[] values = zScore.evaluate(previous, current);   // w każdym ticku
+ * </pre>
+ *
+ * Formuły z oknami pamiętają historię, więc evaluate() trzeba wywoływać
+ * dokładnie raz na tick, kolejno, z jednego wątku naraz.
+ */
+public final class Formula {
+
+    // Tyle id liczy jedno zadanie - ten sam podział na fragmenty co we wskaźnikach
+    static final int BLOCK_SIZE = IndicatorEngine.BLOCK_SIZE;
+
+    private final String source;
+    private final Node[] program;
+    private final Node[] statefulNodes;
+    private final Node root;
+
+    private final Node.Inputs inputs = new Node.Inputs();
+    private final IdOwners owners = new IdOwners();   // id -> aktywo, którego historię pamiętamy
+    private long step;
+    private int size;
+
+    private Formula(String source, Node[] program, Node root) {
+        this.source = source;
+        this.program = program;
+        this.root = root;
+        this.statefulNodes = Arrays.stream(program).filter(Node::isStateful).toArray(Node[]::new);
+    }
+
+    /**
+     * Parsuje i kompiluje formułę.
+     *
+     * @throws FormulaSyntaxException gdy formuła zawiera błąd
+     */
+    public static Formula compile(String source) throws FormulaSyntaxException {
+        List<Node> program = new ArrayList<>();
+        Node root = new FormulaParser(source, program).parse();
+        return new Formula(source, program.toArray(new Node[0]), root);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Liczy formułę dla bieżącego ticka, jednym wątkiem.
+     *
+     * @param previous migawka z poprzedniego ticka
+     * @param current migawka z bieżącego ticka
+     * @return wartości indeksowane id aktywa (tablica jest nadpisywana w kolejnym ticku)
+     */
+    public double[] evaluate(MarketSnapshot previous, MarketSnapshot current) {
+        begin(previous, current);
+        evaluateRange(current, 0, size);
+        return finish();
+    }
+
+    /**
+     * Liczy formułę dla bieżącego ticka, równolegle fragmentami po BLOCK_SIZE aktywów.
+     *
+     * @return wartości indeksowane id aktywa (tablica jest nadpisywana w kolejnym ticku)
+     */
+    public double[] evaluateParallel(MarketSnapshot previous, MarketSnapshot current) {
+        begin(previous, current);
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        IntStream.range(0, blocks).parallel().forEach(block ->
+            evaluateRange(current, block * BLOCK_SIZE, Math.min(size, (block + 1) * BLOCK_SIZE)));
+        return finish();
+    }
+
+    /**
+     * Przygotowuje bufory i kolumny wejściowe ticka (jeden wątek).
+     */
+    void begin(MarketSnapshot previous, MarketSnapshot current) {
+        size = current.size();
+        if (inputs.price.length < size) {
+            int capacity = Math.max(size, inputs.price.length * 2);
+            inputs.price = new double[capacity];
+            inputs.prev = new double[capacity];
+            owners.ensureCapacity(capacity);
+        }
+        current.copyPrices(inputs.price);
+        int known = Math.min(previous.size(), size);
+        for (int id = 0; id < known; id++) {
+            // Id ponownie użyte przez inne aktywo nie ma poprzedniej ceny
+            inputs.prev[id] = previous.getAsset(id) == current.getAsset(id) ? previous.getPrice(id) : Double.NaN;
+        }
+        Arrays.fill(inputs.prev, known, size, Double.NaN);
+        for (Node node : program) {
+            node.prepare(size);
+        }
+    }
+
+    /**
+     * Liczy wszystkie węzły dla id z zakresu [from, to) - zakresy są niezależne.
+     */
+    void evaluateRange(MarketSnapshot current, int from, int to) {
+        for (int id = from; id < to; id++) {
+            if (owners.claim(id, current.getAsset(id))) {
+                // Nowe aktywo pod tym id - historia poprzedniego nie może się przenieść
+                for (Node node : statefulNodes) {
+                    node.reset(id);
+                }
+            }
+        }
+        for (Node node : program) {
+            node.evaluate(inputs, step, from, to);
+        }
+    }
+
+    /**
+     * Porzuca historię aktywa o podanym id - przy następnym wywołaniu okna
+     * i średnie tego id zaczną się od nowa (np. po podziale akcji, gdy
+     * zapamiętane ceny są w innej skali niż nowe).
+     */
+    public void forget(int id) {
+        owners.release(id);
+    }
+
+    double[] finish() {
+        step++;
+        return root.values;
+    }
+
+    /**
+     * Zwraca liczbę id w ostatnio policzonej kolumnie.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,137 @@
+package com.stockmarket.formula;
+
+import com.stockmarket.exception.FormulaSyntaxException;
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Silnik formuł użytkownika podłączony do rynku.
+ *
+ * Po każdym ticku liczy wszystkie zarejestrowane formuły w jednym równoległym
+ * przebiegu: rynek jest dzielony na fragmenty po Formula.BLOCK_SIZE aktywów,
+ * a każde zadanie liczy na swoim fragmencie wszystkie formuły po kolei -
+ * ceny fragmentu są wtedy czytane z pamięci raz, a nie raz na formułę.
+ * Wyniki ticka są publikowane razem, przez pole volatile, więc czytelnik
+ * nigdy nie zobaczy wartości jednej formuły z innego ticka niż drugiej.
+ *
+ * Po podziale akcji (onAssetSplit) historia aktywa we wszystkich formułach
+ * jest porzucana, a okna zbierają ją od nowa. Formuła jest dowolnym wyrażeniem
+ * (np. sma(ret, 5) nie zależy od skali ceny, a sma(price, 5) tak), więc nie da
+ * się jej stanu po prostu przeskalować. Pola prev i ret są od razu poprawne -
+ * poprzednia migawka zawiera już cenę po podziale.
+ *
+ * Przykład:
+ * <pre>
+ * FormulaEngine engine = new FormulaEngine(market);
+ * engine.add("zscore", "(price - sma(price, 20)) / stddev(price, 20)");
+ * market.updatePrices();
+ * List&lt;String&gt; top = engine.top("zscore", 10);
+ * </pre>
+ */
+public class FormulaEngine implements MarketListener {
+
+    private final Map<String, Formula> formulas = new LinkedHashMap<>();
+    private volatile Results results;
+
+    public FormulaEngine(Market market) {
+        this.results = new Results(market.getSnapshot(), Map.of());
+        market.addListener(this);
+    }
+
+    /**
+     * Kompiluje formułę i dodaje ją pod podaną nazwą (zastępując poprzednią).
+     * Wartości pojawiają się od najbliższego ticka.
+     *
+     * @throws FormulaSyntaxException gdy formuła zawiera błąd
+     */
+    public synchronized Formula add(String name, String source) throws FormulaSyntaxException {
+        Formula formula = Formula.compile(source);
+        formulas.put(name, formula);
+        return formula;
+    }
+
+    public synchronized void remove(String name) {
+        formulas.remove(name);
+    }
+
+    @Override
+    public synchronized void onPricesUpdated(MarketSnapshot previous, MarketSnapshot current) {
+        Formula[] active = formulas.values().toArray(new Formula[0]);
+        for (Formula formula : active) {
+            formula.begin(previous, current);
+        }
+        int size = current.size();
+        int blocks = (size + Formula.BLOCK_SIZE - 1) / Formula.BLOCK_SIZE;
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            int from = block * Formula.BLOCK_SIZE;
+            int to = Math.min(size, from + Formula.BLOCK_SIZE);
+            for (Formula formula : active) {
+                formula.evaluateRange(current, from, to);
+            }
+        });
+
+        // Kolumny węzłów są nadpisywane w następnym ticku - publikujemy kopie
+        Map<String, double[]> values = new HashMap<>();
+        for (Map.Entry<String, Formula> entry : formulas.entrySet()) {
+            values.put(entry.getKey(), Arrays.copyOf(entry.getValue().finish(), size));
+        }
+        results = new Results(current, values);
+    }
+
+    @Override
+    public synchronized void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+        for (Formula formula : formulas.values()) {
+            formula.forget(id);
+        }
+    }
+
+    /**
+     * Zwraca wartość formuły dla aktywa z ostatniego ticka (NaN gdy jej nie ma).
+     */
+    public double getValue(String name, String symbol) {
+        Results current = results;
+        double[] values = current.values.get(name);
+        int id = current.snapshot.indexOf(symbol);
+        return values != null && id >= 0 ? values[id] : Double.NaN;
+    }
+
+    /**
+     * Zwraca symbole k aktywów o największej wartości formuły (z pominięciem NaN),
+     * od największej.
+     */
+    public List<String> top(String name, int k) {
+        Results current = results;
+        double[] values = current.values.get(name);
+        if (values == null || k <= 0) {
+            return List.of();
+        }
+        // Kopiec minimalny rozmiaru k - O(n log k) zamiast sortowania całego rynku
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k, Comparator.comparingDouble(id -> values[id]));
+        for (int id = 0; id < values.length; id++) {
+            if (Double.isNaN(values[id])) {
+                continue;
+            }
+            if (heap.size() < k) {
+                heap.add(id);
+            } else if (values[id] > values[heap.peek()]) {
+                heap.poll();
+                heap.add(id);
+            }
+        }
+        String[] symbols = new String[heap.size()];
+        for (int i = symbols.length - 1; i >= 0; i--) {
+            symbols[i] = current.snapshot.getSymbol(heap.poll());
+        }
+        return Arrays.asList(symbols);
+    }
+
+    /**
+     * Wyniki wszystkich formuł z jednego ticka.
+     */
+    private record Results(MarketSnapshot snapshot, Map<String, double[]> values) {
+    }
+}
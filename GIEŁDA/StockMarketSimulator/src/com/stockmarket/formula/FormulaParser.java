@@ -0,0 +1,217 @@
+package com.stockmarket.formula;
+
+import com.stockmarket.exception.FormulaSyntaxException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parser formuł metodą zejść rekurencyjnych - od razu buduje węzły do obliczeń.
+ *
+ * Gramatyka (od najniższego priorytetu):
+ * <pre>
+ * formuła    := porównanie
+ * porównanie := suma [('&lt;' | '&gt;' | '&lt;=' | '&gt;=') suma]
+ * suma       := iloczyn (('+' | '-') iloczyn)*
+ * iloczyn    := unarne (('*' | '/') unarne)*
+ * unarne     := '-' unarne | atom
+ * atom       := liczba | pole | funkcja '(' argumenty ')' | '(' formuła ')'
+ * </pre>
+ */
+final class FormulaParser {
+
+    // Najdłuższe dozwolone okno - stan formuły to (liczba aktywów × okno) liczb
+    static final int MAX_WINDOW = 1000;
+
+    private final String source;
+    private final List<Node> program;   // węzły w kolejności obliczeń (postorder)
+    private int pos;
+
+    FormulaParser(String source, List<Node> program) {
+        this.source = source;
+        this.program = program;
+    }
+
+    Node parse() throws FormulaSyntaxException {
+        Node root = parseComparison();
+        skipSpaces();
+        if (pos < source.length()) {
+            throw new FormulaSyntaxException("Nieoczekiwany znak '" + source.charAt(pos) + "'", pos);
+        }
+        return root;
+    }
+
+    private Node parseComparison() throws FormulaSyntaxException {
+        Node left = parseSum();
+        Node.Binary.Op op;
+        if (accept("<=")) {
+            op = Node.Binary.Op.LE;
+        } else if (accept(">=")) {
+            op = Node.Binary.Op.GE;
+        } else if (accept("<")) {
+            op = Node.Binary.Op.LT;
+        } else if (accept(">")) {
+            op = Node.Binary.Op.GT;
+        } else {
+            return left;
+        }
+        return emit(new Node.Binary(op, left, parseSum()));
+    }
+
+    private Node parseSum() throws FormulaSyntaxException {
+        Node left = parseProduct();
+        while (true) {
+            if (accept("+")) {
+                left = emit(new Node.Binary(Node.Binary.Op.ADD, left, parseProduct()));
+            } else if (accept("-")) {
+                left = emit(new Node.Binary(Node.Binary.Op.SUB, left, parseProduct()));
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node parseProduct() throws FormulaSyntaxException {
+        Node left = parseUnary();
+        while (true) {
+            if (accept("*")) {
+                left = emit(new Node.Binary(Node.Binary.Op.MUL, left, parseUnary()));
+            } else if (accept("/")) {
+                left = emit(new Node.Binary(Node.Binary.Op.DIV, left, parseUnary()));
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Node parseUnary() throws FormulaSyntaxException {
+        if (accept("-")) {
+            return emit(new Node.Unary(Node.Unary.Op.NEG, parseUnary()));
+        }
+        return parseAtom();
+    }
+
+    private Node parseAtom() throws FormulaSyntaxException {
+        skipSpaces();
+        if (pos >= source.length()) {
+            throw new FormulaSyntaxException("Nieoczekiwany koniec formuły", pos);
+        }
+        char c = source.charAt(pos);
+        if (c == '(') {
+            pos++;
+            Node inner = parseComparison();
+            expect(")");
+            return inner;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return emit(new Node.Constant(parseNumber()));
+        }
+        if (Character.isLetter(c)) {
+            int start = pos;
+            String name = parseIdentifier();
+            if (accept("(")) {
+                return parseCall(name, start);
+            }
+            return switch (name) {
+                case "price" -> emit(new Node.Field(Node.Field.Kind.PRICE));
+                case "prev" -> emit(new Node.Field(Node.Field.Kind.PREV));
+                case "ret" -> emit(new Node.Field(Node.Field.Kind.RET));
+                default -> throw new FormulaSyntaxException("Nieznane pole '" + name + "'", start);
+            };
+        }
+        throw new FormulaSyntaxException("Nieoczekiwany znak '" + c + "'", pos);
+    }
+
+    private Node parseCall(String name, int start) throws FormulaSyntaxException {
+        Node first = parseComparison();
+        switch (name) {
+            case "abs", "sqrt", "log", "exp" -> {
+                expect(")");
+                return emit(new Node.Unary(Node.Unary.Op.valueOf(name.toUpperCase(Locale.ROOT)), first));
+            }
+            case "min", "max" -> {
+                expect(",");
+                Node second = parseComparison();
+                expect(")");
+                return emit(new Node.Binary(Node.Binary.Op.valueOf(name.toUpperCase(Locale.ROOT)), first, second));
+            }
+            case "sum", "sma", "stddev", "lowest", "highest", "prev", "ema" -> {
+                expect(",");
+                int length = parseWindow();
+                expect(")");
+                if (name.equals("ema")) {
+                    return emit(new Node.Ema(first, length));
+                }
+                return emit(new Node.Rolling(Node.Rolling.Kind.valueOf(name.toUpperCase(Locale.ROOT)), first, length));
+            }
+            default -> throw new FormulaSyntaxException("Nieznana funkcja '" + name + "'", start);
+        }
+    }
+
+    private int parseWindow() throws FormulaSyntaxException {
+        skipSpaces();
+        int start = pos;
+        while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+            pos++;
+        }
+        if (start == pos) {
+            throw new FormulaSyntaxException("Długość okna musi być liczbą całkowitą", pos);
+        }
+        int length;
+        try {
+            length = Integer.parseInt(source.substring(start, pos));
+        } catch (NumberFormatException e) {
+            length = Integer.MAX_VALUE;
+        }
+        if (length < 1 || length > MAX_WINDOW) {
+            throw new FormulaSyntaxException("Długość okna musi być z przedziału 1.." + MAX_WINDOW, start);
+        }
+        return length;
+    }
+
+    private double parseNumber() throws FormulaSyntaxException {
+        int start = pos;
+        while (pos < source.length()
+                && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        try {
+            return Double.parseDouble(source.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw new FormulaSyntaxException("Nieprawidłowa liczba", start);
+        }
+    }
+
+    private String parseIdentifier() {
+        int start = pos;
+        while (pos < source.length() && Character.isLetterOrDigit(source.charAt(pos))) {
+            pos++;
+        }
+        return source.substring(start, pos);
+    }
+
+    private Node emit(Node node) {
+        program.add(node);
+        return node;
+    }
+
+    private boolean accept(String token) {
+        skipSpaces();
+        if (source.startsWith(token, pos)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) throws FormulaSyntaxException {
+        if (!accept(token)) {
+            throw new FormulaSyntaxException("Oczekiwano '" + token + "'", pos);
+        }
+    }
+
+    private void skipSpaces() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.stockmarket.formula;
+
+import com.stockmarket.indicator.ExponentialAverage;
+import com.stockmarket.indicator.RollingWindow;
+import java.util.Arrays;
+
+/**
+ * Węzeł skompilowanej formuły.
+ *
+ * Każdy węzeł liczy od razu całą kolumnę wartości - po jednej na każde id
+ * aktywa - i zapisuje ją we własnej tablicy values. Dzieci są liczone przed
+ * rodzicem (formuła jest spłaszczona do listy węzłów w kolejności postorder),
+ * więc narzut "interpretera" to jedno wywołanie wirtualne na węzeł i fragment
+ * rynku, a nie na węzeł i aktywo. Pętle wewnątrz węzłów to zwykłe przejścia po
+ * tablicach, które JIT kompiluje do zwartego kodu maszynowego.
+ *
+ * Różne wątki mogą liczyć rozłączne zakresy id tego samego węzła jednocześnie.
+ */
+abstract class Node {
+
+    double[] values = new double[0];
+
+    /**
+     * Przygotowuje bufory na podaną liczbę id (wywoływana przed każdym tickiem, w jednym wątku).
+     */
+    void prepare(int size) {
+        if (values.length < size) {
+            values = Arrays.copyOf(values, Math.max(size, values.length * 2));
+        }
+    }
+
+    /**
+     * Liczy wartości dla id z zakresu [from, to).
+     *
+     * @param in kolumny danych rynkowych bieżącego ticka
+     * @param step numer kolejnego wywołania formuły (kolejne ticki)
+     */
+    abstract void evaluate(Inputs in, long step, int from, int to);
+
+    /**
+     * Czyści stan zapamiętany dla id (nowe aktywo pod tym samym id).
+     */
+    void reset(int id) {
+    }
+
+    /**
+     * Sprawdza czy węzeł pamięta stan między tickami.
+     */
+    boolean isStateful() {
+        return false;
+    }
+
+    // ========== RODZAJE WĘZŁÓW ==========
+
+    /**
+     * Stała liczbowa.
+     */
+    static final class Constant extends Node {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        void evaluate(Inputs in, long step, int from, int to) {
+            Arrays.fill(values, from, to, value);
+        }
+    }
+
+    /**
+     * Pole rynkowe: price (cena), prev (cena z poprzedniego ticka), ret (stopa zwrotu).
+     */
+    static final class Field extends Node {
+        enum Kind { PRICE, PREV, RET }
+
+        private final Kind kind;
+
+        Field(Kind kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        void evaluate(Inputs in, long step, int from, int to) {
+            double[] price = in.price;
+            double[] prev = in.prev;
+            switch (kind) {
+                case PRICE -> System.arraycopy(price, from, values, from, to - from);
+                case PREV -> System.arraycopy(prev, from, values, from, to - from);
+                case RET -> {
+                    for (int i = from; i < to; i++) {
+                        values[i] = prev[i] > 0 ? price[i] / prev[i] - 1.0 : Double.NaN;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Działanie dwuargumentowe: + - * / oraz porównania (1 = prawda, 0 = fałsz).
+     * Dzielenie przez zero daje NaN, tak jak w Calculator.divide().
+     */
+    static final class Binary extends Node {
+        enum Op { ADD, SUB, MUL, DIV, LT, GT, LE, GE, MIN, MAX }
+
+        private final Op op;
+        private final Node left;
+        private final Node right;
+
+        Binary(Op op, Node left, Node right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void evaluate(Inputs in, long step, int from, int to) {
+            double[] a = left.values;
+            double[] b = right.values;
+            // Jedno rozgałęzienie na zakres - pętle wewnątrz są proste i łatwe do zwektoryzowania przez JIT
+            switch (op) {
+                case ADD -> { for (int i = from; i < to; i++) values[i] = a[i] + b[i]; }
+                case SUB -> { for (int i = from; i < to; i++) values[i] = a[i] - b[i]; }
+                case MUL -> { for (int i = from; i < to; i++) values[i] = a[i] * b[i]; }
+                case DIV -> { for (int i = from; i < to; i++) values[i] = b[i] != 0 ? a[i] / b[i] : Double.NaN; }
+                case LT -> { for (int i = from; i < to; i++) values[i] = a[i] < b[i] ? 1.0 : 0.0; }
+                case GT -> { for (int i = from; i < to; i++) values[i] = a[i] > b[i] ? 1.0 : 0.0; }
+                case LE -> { for (int i = from; i < to; i++) values[i] = a[i] <= b[i] ? 1.0 : 0.0; }
+                case GE -> { for (int i = from; i < to; i++) values[i] = a[i] >= b[i] ? 1.0 : 0.0; }
+                case MIN -> { for (int i = from; i < to; i++) values[i] = Math.min(a[i], b[i]); }
+                case MAX -> { for (int i = from; i < to; i++) values[i] = Math.max(a[i], b[i]); }
+            }
+        }
+    }
+
+    /**
+     * Funkcja jednoargumentowa: minus, abs, sqrt, log, exp.
+     */
+    static final class Unary extends Node {
+        enum Op { NEG, ABS, SQRT, LOG, EXP }
+
+        private final Op op;
+        private final Node arg;
+
+        Unary(Op op, Node arg) {
+            this.op = op;
+            this.arg = arg;
+        }
+
+        @Override
+        void evaluate(Inputs in, long step, int from, int to) {
+            double[] a = arg.values;
+            switch (op) {
+                case NEG -> { for (int i = from; i < to; i++) values[i] = -a[i]; }
+                case ABS -> { for (int i = from; i < to; i++) values[i] = Math.abs(a[i]); }
+                case SQRT -> { for (int i = from; i < to; i++) values[i] = Math.sqrt(a[i]); }
+                case LOG -> { for (int i = from; i < to; i++) values[i] = Math.log(a[i]); }
+                case EXP -> { for (int i = from; i < to; i++) values[i] = Math.exp(a[i]); }
+            }
+        }
+    }
+
+    /**
+     * Funkcja okienkowa liczona przyrostowo: sum, sma, stddev, lowest, highest, prev.
+     *
+     * Ostatnie n wartości każdego aktywa leży we wspólnym jądrze RollingWindow
+     * (to samo okno, z którego korzystają wskaźniki Sma i BollingerBands):
+     * bufor cykliczny n × id z sumami aktualizowanymi w O(1).
+     * NaN na wejściu (np. aktywo bez ceny) czyści okno danego aktywa.
+     */
+    static final class Rolling extends Node {
+        enum Kind { SUM, SMA, STDDEV, LOWEST, HIGHEST, PREV }
+
+        private final Kind kind;
+        private final Node arg;
+        private final RollingWindow window;
+
+        Rolling(Kind kind, Node arg, int length) {
+            this.kind = kind;
+            this.arg = arg;
+            this.window = new RollingWindow(length, kind == Kind.STDDEV);
+        }
+
+        @Override
+        boolean isStateful() {
+            return true;
+        }
+
+        @Override
+        void prepare(int size) {
+            super.prepare(size);
+            window.ensureCapacity(values.length);
+        }
+
+        @Override
+        void reset(int id) {
+            window.reset(id);
+        }
+
+        @Override
+        void evaluate(Inputs in, long step, int from, int to) {
+            double[] a = arg.values;
+            int slot = window.slot(step);
+            for (int id = from; id < to; id++) {
+                double x = a[id];
+                if (Double.isNaN(x)) {
+                    if (window.count(id) > 0) {
+                        window.reset(id);
+                    }
+                    values[id] = Double.NaN;
+                    continue;
+                }
+                // Wartość sprzed n ticków leży w nadpisanym miejscu, jeśli okno było już pełne
+                boolean wasFull = window.isFull(id);
+                double old = window.push(slot, id, x);
+                if (!window.isFull(id)) {
+                    values[id] = Double.NaN;
+                    continue;
+                }
+                values[id] = switch (kind) {
+                    case PREV -> wasFull ? old : Double.NaN;
+                    case LOWEST -> window.extreme(id, false);
+                    case HIGHEST -> window.extreme(id, true);
+                    case SUM -> window.sum(id);
+                    case SMA -> window.mean(id);
+                    case STDDEV -> window.deviation(id);
+                };
+            }
+        }
+    }
+
+    /**
+     * Wykładnicza średnia krocząca ema(x, n) z wagą 2 / (n + 1), na wspólnym
+     * jądrze ExponentialAverage (tym samym co wskaźnik Ema).
+     * Zaczyna od pierwszej wartości, a wynik podaje po n tickach rozgrzewki.
+     */
+    static final class Ema extends Node {
+        private final Node arg;
+        private final ExponentialAverage average;
+
+        Ema(Node arg, int length) {
+            this.arg = arg;
+            this.average = new ExponentialAverage(length);
+        }
+
+        @Override
+        boolean isStateful() {
+            return true;
+        }
+
+        @Override
+        void prepare(int size) {
+            super.prepare(size);
+            average.ensureCapacity(values.length);
+        }
+
+        @Override
+        void reset(int id) {
+            average.reset(id);
+        }
+
+        @Override
+        void evaluate(Inputs in, long step, int from, int to) {
+            double[] a = arg.values;
+            for (int id = from; id < to; id++) {
+                double x = a[id];
+                if (Double.isNaN(x)) {
+                    average.reset(id);
+                    values[id] = Double.NaN;
+                    continue;
+                }
+                double value = average.update(id, x);
+                values[id] = average.isWarm(id) ? value : Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Kolumny danych rynkowych jednego ticka, wspólne dla wszystkich węzłów.
+     */
+    static final class Inputs {
+        double[] price = new double[0];
+        double[] prev = new double[0];
+    }
+}
@@ -0,0 +1,155 @@
+package com.stockmarket.fx;
+
+import com.stockmarket.market.BatchPricer;
+import com.stockmarket.market.Market;
+import com.stockmarket.model.Currency;
+import java.util.random.RandomGenerator;
+
+/**
+ * Kursy walut zmieniające się razem z rynkiem.
+ *
+ * FxRates jest silnikiem wyceny rynku, więc kursy są losowane w tym samym
+ * ticku co ceny aktywów, z osobnego strumienia liczb losowych rynku - ten sam
+ * seed daje ten sam przebieg kursów. Po każdym ticku publikowany jest wektor
+ * przeliczeniowy: indeks = numer waluty, wartość = ile PLN kosztuje jednostka
+ * waluty. Wycena portfela w wielu walutach to wtedy jedno dodatkowe mnożenie
+ * na pozycję - bez szukania kursu w mapie.
+ *
+ * Przykład:
+ * <pre>
+ * FxRates fx = new FxRates(market, 0.01);
+ * portfolio.setFxRates(fx);
+ * portfolio.exchange(Currency.PLN, Currency.USD, 4000.0);
+ * </pre>
+ */
+public class FxRates implements BatchPricer {
+
+    // Numer strumienia liczb losowych kursów (akcje losują ze strumienia głównego)
+    private static final long FX_STREAM = 0x4658L;
+
+    private final double[] rates = new double[Currency.COUNT];
+    private final double volatility;
+    private long ratesTick = Long.MIN_VALUE;
+
+    // Opublikowana kopia kursów - czytelnicy nigdy nie widzą częściowo zmienionego wektora
+    private volatile double[] conversionVector;
+
+    /**
+     * Tworzy kursy z przybliżonymi wartościami początkowymi i podłącza je do rynku.
+     *
+     * @param market rynek, z którym zmieniają się kursy
+     * @param volatility maksymalna zmiana kursu w jednym ticku jako ułamek (0.01 = +/- 1%)
+     * @throws IllegalArgumentException gdy zmienność jest ujemna lub nie mniejsza od 1
+     */
+    public FxRates(Market market, double volatility) {
+        if (!(volatility >= 0 && volatility < 1)) {
+            throw new IllegalArgumentException("Zmienność kursów musi być z przedziału [0, 1)");
+        }
+        this.volatility = volatility;
+        rates[Currency.PLN.ordinal()] = 1.0;
+        rates[Currency.EUR.ordinal()] = 4.30;
+        rates[Currency.USD.ordinal()] = 4.00;
+        rates[Currency.GBP.ordinal()] = 5.05;
+        rates[Currency.CHF.ordinal()] = 4.50;
+        conversionVector = rates.clone();
+        market.addPricer(this);
+    }
+
+    /**
+     * Ustawia kurs waluty (np. z rzeczywistych notowań).
+     *
+     * @param currency waluta
+     * @param plnPerUnit ile PLN kosztuje jednostka waluty
+     * @throws IllegalArgumentException gdy kurs nie jest dodatni lub zmieniana jest waluta bazowa
+     */
+    public synchronized void setRate(Currency currency, double plnPerUnit) {
+        if (currency == Currency.BASE) {
+            throw new IllegalArgumentException("Kurs waluty bazowej wynosi zawsze 1");
+        }
+        if (!(plnPerUnit > 0)) {
+            throw new IllegalArgumentException("Kurs waluty musi być dodatni");
+        }
+        rates[currency.ordinal()] = plnPerUnit;
+        conversionVector = rates.clone();
+    }
+
+    /**
+     * Losuje kursy na kolejny tick.
+     *
+     * Kursy zmieniają się tylko przy przejściu do następnego ticka - ponowne
+     * wywołanie dla tego samego ticka (np. przy rejestracji silnika albo
+     * przywracaniu punktu kontrolnego) zostawia je bez zmian.
+     */
+    @Override
+    public synchronized void reprice(Market market, long tick) {
+        boolean nextTick = tick == ratesTick + 1;
+        ratesTick = tick;
+        if (!nextTick || volatility == 0) {
+            return;
+        }
+        RandomGenerator random = market.getRandomSource().forStream(tick, FX_STREAM);
+        for (int c = 0; c < rates.length; c++) {
+            if (c != Currency.BASE.ordinal()) {
+                rates[c] *= 1.0 + (random.nextDouble() - 0.5) * 2.0 * volatility;
+            }
+        }
+        conversionVector = rates.clone();
+    }
+
+    /**
+     * Zwraca tick, dla którego zostały wylosowane bieżące kursy.
+     * Razem z getConversionVector() opisuje cały stan kursów (np. do punktu kontrolnego).
+     */
+    public synchronized long getRatesTick() {
+        return ratesTick;
+    }
+
+    /**
+     * Przywraca kursy zapisane w punkcie kontrolnym.
+     *
+     * Kursy zależą od całej drogi (każdy tick mnoży poprzedni kurs), więc po
+     * wznowieniu trzeba odtworzyć zarówno wektor, jak i tick, dla którego był
+     * wylosowany - inaczej następny tick ruszyłby od wartości początkowych.
+     *
+     * @param restoredTick tick zapisanych kursów (getRatesTick() w chwili zapisu)
+     * @param plnPerUnit ile PLN za jednostkę waluty, indeksowane currency.ordinal()
+     * @throws IllegalArgumentException gdy liczba kursów się nie zgadza, kurs nie jest
+     *         dodatni albo kurs waluty bazowej jest różny od 1
+     */
+    public synchronized void restoreState(long restoredTick, double[] plnPerUnit) {
+        if (plnPerUnit.length != rates.length) {
+            throw new IllegalArgumentException("Oczekiwano " + rates.length + " kursów, a podano " + plnPerUnit.length);
+        }
+        for (int c = 0; c < plnPerUnit.length; c++) {
+            if (!(plnPerUnit[c] > 0) || (c == Currency.BASE.ordinal() && plnPerUnit[c] != 1.0)) {
+                throw new IllegalArgumentException("Nieprawidłowy kurs " + Currency.byIndex(c) + ": " + plnPerUnit[c]);
+            }
+        }
+        System.arraycopy(plnPerUnit, 0, rates, 0, rates.length);
+        ratesTick = restoredTick;
+        conversionVector = rates.clone();
+    }
+
+    /**
+     * Zwraca wektor przeliczeniowy bieżącego ticka: ile PLN za jednostkę
+     * waluty o numerze currency.ordinal(). Tablicy nie wolno modyfikować.
+     */
+    public double[] getConversionVector() {
+        return conversionVector;
+    }
+
+    /**
+     * Zwraca ile PLN kosztuje jednostka waluty.
+     */
+    public double getRate(Currency currency) {
+        return conversionVector[currency.ordinal()];
+    }
+
+    /**
+     * Przelicza kwotę z jednej waluty na drugą po bieżących kursach.
+     */
+    public double convert(double amount, Currency from, Currency to) {
+        double[] vector = conversionVector;
+        return from == to ? amount : amount * vector[from.ordinal()] / vector[to.ordinal()];
+    }
+}
@@ -0,0 +1,39 @@
+package com.stockmarket.indicator;
+
+/**
+ * Wstęgi Bollingera: średnia z n cen oraz wstęgi odległe o k odchyleń standardowych.
+ *
+ * Okno (jak w Sma) utrzymuje też sumę kwadratów, więc odchylenie standardowe
+ * też kosztuje O(1) na tick. Odchylenie liczone jest dla populacji
+ * (dzielimy przez n), tak jak w klasycznej definicji wstęg.
+ */
+public class BollingerBands extends Sma {
+
+    public static final int MIDDLE = 0;
+    public static final int UPPER = 1;
+    public static final int LOWER = 2;
+
+    private final double width;
+
+    /**
+     * @param length długość okna w tickach
+     * @param width szerokość wstęg w odchyleniach standardowych (zwykle 2)
+     * @throws IllegalArgumentException gdy długość nie jest dodatnia lub szerokość ujemna
+     */
+    public BollingerBands(int length, double width) {
+        super(length, true, "middle", "upper", "lower");
+        if (!(width >= 0)) {
+            throw new IllegalArgumentException("Szerokość wstęg nie może być ujemna");
+        }
+        this.width = width;
+    }
+
+    @Override
+    void publish(int id) {
+        double mean = window.mean(id);
+        double deviation = window.deviation(id);
+        outputs[MIDDLE][id] = mean;
+        outputs[UPPER][id] = mean + width * deviation;
+        outputs[LOWER][id] = mean - width * deviation;
+    }
+}
@@ -0,0 +1,58 @@
+package com.stockmarket.indicator;
+
+/**
+ * Wykładnicza średnia krocząca z wagą 2 / (n + 1).
+ *
+ * Stan to jedna liczba na aktywo we wspólnym jądrze ExponentialAverage.
+ * Średnia startuje od pierwszej ceny, a wartość jest podawana po n tickach rozgrzewki.
+ */
+public class Ema extends Indicator {
+
+    private final ExponentialAverage average;
+
+    /**
+     * @param length okres średniej w tickach
+     * @throws IllegalArgumentException gdy okres nie jest dodatni
+     */
+    public Ema(int length) {
+        super("ema");
+        this.average = new ExponentialAverage(length);
+    }
+
+    @Override
+    void growState(int oldCapacity, int newCapacity) {
+        average.ensureCapacity(newCapacity);
+    }
+
+    @Override
+    void reset(int id) {
+        average.reset(id);
+        clearOutputs(id);
+    }
+
+    @Override
+    void scale(int id, double factor) {
+        average.scale(id, factor);
+        scaleOutputs(id, factor);
+    }
+
+    @Override
+    void update(double[] prices, long step, int from, int to) {
+        double[] out = outputs[0];
+        for (int id = from; id < to; id++) {
+            double price = prices[id];
+            if (Double.isNaN(price)) {
+                if (average.count(id) > 0) {
+                    reset(id);
+                }
+                continue;
+            }
+            double value = average.update(id, price);
+            out[id] = average.isWarm(id) ? value : Double.NaN;
+        }
+    }
+
+    public int getLength() {
+        return average.getLength();
+    }
+}
@@ -0,0 +1,91 @@
+package com.stockmarket.indicator;
+
+import java.util.Arrays;
+
+/**
+ * Wykładnicza średnia krocząca z wagą 2 / (n + 1) dla wszystkich aktywów -
+ * wspólne jądro wskaźników Ema i Macd oraz funkcji ema(x, n) w formułach.
+ *
+ * Stan to jedna liczba na aktywo (poprzednia średnia) i licznik rozgrzewki.
+ * Średnia startuje od pierwszej wartości, a za rozgrzaną uchodzi po n wartościach.
+ */
+public final class ExponentialAverage {
+
+    private final int length;
+    private final double alpha;
+    private double[] averages = new double[0];
+    private int[] counts = new int[0];
+
+    /**
+     * @param length okres średniej w tickach
+     * @throws IllegalArgumentException gdy okres nie jest dodatni
+     */
+    public ExponentialAverage(int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Okres średniej musi być dodatni");
+        }
+        this.length = length;
+        this.alpha = 2.0 / (length + 1);
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Powiększa kolumny do co najmniej podanej liczby id.
+     */
+    public void ensureCapacity(int size) {
+        if (size <= counts.length) {
+            return;
+        }
+        int newCapacity = Math.max(size, counts.length * 2);
+        averages = Arrays.copyOf(averages, newCapacity);
+        counts = Arrays.copyOf(counts, newCapacity);
+    }
+
+    /**
+     * Dodaje wartość do średniej aktywa.
+     *
+     * @return nowa średnia (także w trakcie rozgrzewki - patrz isWarm())
+     */
+    public double update(int id, double x) {
+        double average = counts[id] == 0 ? x : averages[id] + alpha * (x - averages[id]);
+        averages[id] = average;
+        if (counts[id] < length) {
+            counts[id]++;
+        }
+        return average;
+    }
+
+    /**
+     * Czyści średnią aktywa.
+     */
+    public void reset(int id) {
+        averages[id] = 0.0;
+        counts[id] = 0;
+    }
+
+    /**
+     * Mnoży średnią aktywa przez czynnik (np. ceny po podziale akcji) - średnia
+     * wykładnicza jest liniowa, więc to ten sam wynik co średnia z przeliczonych cen.
+     */
+    public void scale(int id, double factor) {
+        averages[id] *= factor;
+    }
+
+    public int count(int id) {
+        return counts[id];
+    }
+
+    /**
+     * Sprawdza czy średnia widziała już n wartości.
+     */
+    public boolean isWarm(int id) {
+        return counts[id] == length;
+    }
+
+    public double get(int id) {
+        return averages[id];
+    }
+}
@@ -0,0 +1,56 @@
+package com.stockmarket.indicator;
+
+import com.stockmarket.model.Asset;
+import java.util.Arrays;
+
+/**
+ * Pamięta, które aktywo zajmuje każde id - wspólna księgowość silników
+ * trzymających historię per id (IndicatorEngine, formuły).
+ *
+ * Rynek używa ponownie id wycofanych aktywów, więc przed aktualizacją stanu
+ * silnik sprawdza właściciela id: gdy się zmienił, historia poprzedniego
+ * aktywa nie może przejść na nowe i stan id trzeba wyczyścić.
+ * Rozłączne zakresy id mogą być sprawdzane równolegle.
+ */
+public final class IdOwners {
+
+    private Asset[] owners = new Asset[0];
+
+    /**
+     * Powiększa tablicę do co najmniej podanej liczby id (jeden wątek, przed aktualizacją).
+     */
+    public void ensureCapacity(int size) {
+        if (owners.length < size) {
+            owners = Arrays.copyOf(owners, Math.max(size, owners.length * 2));
+        }
+    }
+
+    /**
+     * Zapisuje aktywo jako właściciela id.
+     *
+     * @return true gdy id należało dotąd do innego aktywa (albo do nikogo) - stan id trzeba wyczyścić
+     */
+    public boolean claim(int id, Asset asset) {
+        if (owners[id] == asset) {
+            return false;
+        }
+        owners[id] = asset;
+        return true;
+    }
+
+    /**
+     * Sprawdza czy pamiętany stan id należy do podanego aktywa.
+     */
+    public boolean owns(int id, Asset asset) {
+        return id < owners.length && owners[id] == asset;
+    }
+
+    /**
+     * Zapomina właściciela id - przy następnym claim() stan id zostanie wyczyszczony.
+     */
+    public void release(int id) {
+        if (id < owners.length) {
+            owners[id] = null;
+        }
+    }
+}
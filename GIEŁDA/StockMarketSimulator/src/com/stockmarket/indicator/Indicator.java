@@ -0,0 +1,100 @@
+package com.stockmarket.indicator;
+
+import java.util.Arrays;
+
+/**
+ * Wskaźnik analizy technicznej liczony przyrostowo dla wszystkich aktywów rynku.
+ *
+ * Stan wskaźnika (średnie, bufory okien, kolejki) jest trzymany kolumnowo -
+ * w tablicach indeksowanych id aktywa - więc aktualizacja w ticku to przejście
+ * po ciągłych tablicach, bez obiektu na aktywo i bez przeliczania historii.
+ * Wskaźnik może mieć kilka wyjść (np. wstęgi Bollingera: środek, górna, dolna).
+ *
+ * Wskaźniki są aktualizowane przez IndicatorEngine: w każdym ticku dostają
+ * rozłączne zakresy id, które mogą być liczone równolegle. Po podziale akcji
+ * silnik przelicza historię aktywa (scale), żeby nie mieszała cen sprzed i po podziale.
+ */
+public abstract class Indicator {
+
+    private final String[] outputNames;
+    double[][] outputs;          // wyjście -> id -> wartość
+    int capacity;
+
+    Indicator(String... outputNames) {
+        this.outputNames = outputNames;
+        this.outputs = new double[outputNames.length][0];
+    }
+
+    /**
+     * Zwraca nazwy wyjść wskaźnika (indeks = numer wyjścia).
+     */
+    public String[] getOutputNames() {
+        return outputNames.clone();
+    }
+
+    /**
+     * Zwraca wartość wyjścia dla aktywa o podanym id (NaN gdy za mało historii).
+     * Odczyt spójny z tickiem zapewnia IndicatorEngine.getValue().
+     */
+    double getValue(int output, int id) {
+        return id < capacity ? outputs[output][id] : Double.NaN;
+    }
+
+    /**
+     * Powiększa kolumny do podanej liczby id (jeden wątek, przed aktualizacją).
+     */
+    final void ensureCapacity(int size) {
+        if (size <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(size, capacity * 2);
+        for (int o = 0; o < outputs.length; o++) {
+            outputs[o] = Arrays.copyOf(outputs[o], newCapacity);
+            Arrays.fill(outputs[o], capacity, newCapacity, Double.NaN);
+        }
+        growState(capacity, newCapacity);
+        capacity = newCapacity;
+    }
+
+    /**
+     * Powiększa kolumny stanu wskaźnika.
+     */
+    abstract void growState(int oldCapacity, int newCapacity);
+
+    /**
+     * Aktualizuje wskaźnik cenami bieżącego ticka dla id z zakresu [from, to).
+     * Cena NaN (wolne id) czyści stan aktywa.
+     *
+     * @param step numer ticka w silniku - wspólny dla wszystkich aktywów
+     */
+    abstract void update(double[] prices, long step, int from, int to);
+
+    /**
+     * Czyści stan aktywa (nowe aktywo pod tym samym id).
+     */
+    abstract void reset(int id);
+
+    /**
+     * Przelicza stan i wyjścia aktywa na nową skalę cen (podział akcji:
+     * factor = denominator / numerator), tak jakby cała historia była notowana po podziale.
+     */
+    abstract void scale(int id, double factor);
+
+    /**
+     * Mnoży wszystkie wyjścia aktywa przez czynnik (wyjścia w jednostkach ceny).
+     */
+    final void scaleOutputs(int id, double factor) {
+        for (double[] output : outputs) {
+            output[id] *= factor;
+        }
+    }
+
+    /**
+     * Wpisuje NaN do wszystkich wyjść aktywa.
+     */
+    final void clearOutputs(int id) {
+        for (double[] output : outputs) {
+            output[id] = Double.NaN;
+        }
+    }
+}
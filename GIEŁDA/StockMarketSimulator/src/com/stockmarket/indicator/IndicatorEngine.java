@@ -0,0 +1,154 @@
+package com.stockmarket.indicator;
+
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Silnik wskaźników technicznych aktualizowanych w każdym ticku rynku.
+ *
+ * Po publikacji nowych cen silnik przechodzi równolegle po fragmentach rynku
+ * (po BLOCK_SIZE id) i w każdym fragmencie aktualizuje po kolei wszystkie
+ * wskaźniki - ceny fragmentu są czytane z pamięci raz. Żaden wskaźnik nie
+ * przelicza historii: każdy trzyma tylko stan potrzebny do kolejnego kroku.
+ *
+ * Gdy id zostaje ponownie użyte przez nowe aktywo, stan wszystkich wskaźników
+ * dla tego id jest czyszczony. Po podziale akcji (onAssetSplit) historia
+ * aktywa jest przeliczana na ceny po podziale - okna, średnie i wyjścia są
+ * mnożone przez denominator / numerator - więc średnie nie dostają skoku ceny,
+ * a RSI zostaje bez zmian. Odczyty (getValue) czekają na koniec
+ * aktualizacji, więc zawsze zwracają wartości z jednego, pełnego ticka.
+ *
+ * Przykład:
+ * <pre>
+ * IndicatorEngine indicators = new IndicatorEngine(market);
+ * indicators.add("rsi", new Rsi(14));
+ * indicators.add("bb", new BollingerBands(20, 2.0));
+ * market.updatePrices();
+ * double upper = indicators.getValue("bb", BollingerBands.UPPER, "CDR");
+ * </pre>
+ */
+public class IndicatorEngine implements MarketListener {
+
+    // Tyle id aktualizuje jedno zadanie - stan fragmentu mieści się w cache procesora
+    // (ten sam podział na fragmenty stosują formuły)
+    public static final int BLOCK_SIZE = 4096;
+
+    private final Map<String, Indicator> indicators = new LinkedHashMap<>();
+    private Indicator[] active = new Indicator[0];
+
+    private double[] prices = new double[0];
+    private final IdOwners owners = new IdOwners();   // id -> aktywo, którego stan pamiętamy
+    private long step;
+    private MarketSnapshot snapshot;
+
+    public IndicatorEngine(Market market) {
+        this.snapshot = market.getSnapshot();
+        market.addListener(this);
+    }
+
+    /**
+     * Dodaje wskaźnik pod podaną nazwą (zastępując poprzedni). Wskaźnik zbiera
+     * historię od najbliższego ticka.
+     *
+     * @return dodany wskaźnik
+     */
+    public synchronized <T extends Indicator> T add(String name, T indicator) {
+        indicators.put(name, indicator);
+        indicator.ensureCapacity(prices.length);
+        active = indicators.values().toArray(new Indicator[0]);
+        return indicator;
+    }
+
+    public synchronized void remove(String name) {
+        indicators.remove(name);
+        active = indicators.values().toArray(new Indicator[0]);
+    }
+
+    @Override
+    public synchronized void onPricesUpdated(MarketSnapshot previous, MarketSnapshot current) {
+        int size = current.size();
+        if (prices.length < size) {
+            int capacity = Math.max(size, prices.length * 2);
+            prices = new double[capacity];
+            owners.ensureCapacity(capacity);
+        }
+        for (Indicator indicator : active) {
+            indicator.ensureCapacity(prices.length);
+        }
+        current.copyPrices(prices);
+
+        Indicator[] tickIndicators = active;
+        long tickStep = step;
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            int from = block * BLOCK_SIZE;
+            int to = Math.min(size, from + BLOCK_SIZE);
+            for (int id = from; id < to; id++) {
+                if (owners.claim(id, current.getAsset(id))) {
+                    for (Indicator indicator : tickIndicators) {
+                        indicator.reset(id);
+                    }
+                }
+            }
+            for (Indicator indicator : tickIndicators) {
+                indicator.update(prices, tickStep, from, to);
+            }
+        });
+        step++;
+        snapshot = current;
+    }
+
+    @Override
+    public synchronized void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+        if (!owners.owns(id, asset)) {
+            return;   // aktywo bez historii w silniku - nie ma czego przeliczać
+        }
+        double factor = (double) denominator / numerator;
+        for (Indicator indicator : active) {
+            indicator.scale(id, factor);
+        }
+    }
+
+    /**
+     * Zwraca pierwszą wartość wskaźnika (np. SMA, RSI, linię MACD) dla aktywa.
+     *
+     * @return wartość z ostatniego ticka lub NaN gdy nie ma wskaźnika, aktywa albo historii
+     */
+    public double getValue(String name, String symbol) {
+        return getValue(name, 0, symbol);
+    }
+
+    /**
+     * Zwraca wybrane wyjście wskaźnika (np. BollingerBands.UPPER) dla aktywa.
+     *
+     * @return wartość z ostatniego ticka lub NaN gdy nie ma wskaźnika, aktywa albo historii
+     */
+    public synchronized double getValue(String name, int output, String symbol) {
+        Indicator indicator = indicators.get(name);
+        int id = snapshot.indexOf(symbol);
+        if (indicator == null || id < 0 || !owners.owns(id, snapshot.getAsset(id))) {
+            return Double.NaN;
+        }
+        return indicator.getValue(output, id);
+    }
+
+    /**
+     * Kopiuje wybrane wyjście wskaźnika dla wszystkich id do podanej tablicy
+     * (np. żeby przesiać cały rynek bez blokowania silnika na każdy odczyt).
+     *
+     * @return liczba skopiowanych wartości (liczba id w ostatnim ticku)
+     */
+    public synchronized int copyValues(String name, int output, double[] target) {
+        Indicator indicator = indicators.get(name);
+        if (indicator == null) {
+            throw new IllegalArgumentException("Nie ma wskaźnika " + name);
+        }
+        int size = Math.min(snapshot.size(), indicator.capacity);
+        System.arraycopy(indicator.outputs[output], 0, target, 0, size);
+        return size;
+    }
+}
@@ -0,0 +1,85 @@
+package com.stockmarket.indicator;
+
+/**
+ * MACD: różnica szybkiej i wolnej średniej wykładniczej, jej linia sygnału
+ * (średnia wykładnicza z MACD) oraz histogram (MACD minus sygnał).
+ *
+ * Stan to trzy średnie ExponentialAverage na aktywo - aktualizacja w O(1).
+ */
+public class Macd extends Indicator {
+
+    public static final int LINE = 0;
+    public static final int SIGNAL = 1;
+    public static final int HISTOGRAM = 2;
+
+    private final ExponentialAverage fast;
+    private final ExponentialAverage slow;
+    private final ExponentialAverage signal;
+
+    /**
+     * @param fastLength okres szybkiej średniej (zwykle 12)
+     * @param slowLength okres wolnej średniej (zwykle 26)
+     * @param signalLength okres linii sygnału (zwykle 9)
+     * @throws IllegalArgumentException gdy okresy nie są dodatnie lub szybka nie jest krótsza od wolnej
+     */
+    public Macd(int fastLength, int slowLength, int signalLength) {
+        super("line", "signal", "histogram");
+        if (fastLength <= 0 || signalLength <= 0 || slowLength <= fastLength) {
+            throw new IllegalArgumentException("Okresy muszą być dodatnie, a szybki krótszy od wolnego");
+        }
+        this.fast = new ExponentialAverage(fastLength);
+        this.slow = new ExponentialAverage(slowLength);
+        this.signal = new ExponentialAverage(signalLength);
+    }
+
+    @Override
+    void growState(int oldCapacity, int newCapacity) {
+        fast.ensureCapacity(newCapacity);
+        slow.ensureCapacity(newCapacity);
+        signal.ensureCapacity(newCapacity);
+    }
+
+    @Override
+    void reset(int id) {
+        fast.reset(id);
+        slow.reset(id);
+        signal.reset(id);
+        clearOutputs(id);
+    }
+
+    @Override
+    void scale(int id, double factor) {
+        // Linia MACD i sygnał są liniowe względem ceny
+        fast.scale(id, factor);
+        slow.scale(id, factor);
+        signal.scale(id, factor);
+        scaleOutputs(id, factor);
+    }
+
+    @Override
+    void update(double[] prices, long step, int from, int to) {
+        double[] lineOut = outputs[LINE];
+        double[] signalOut = outputs[SIGNAL];
+        double[] histogramOut = outputs[HISTOGRAM];
+        for (int id = from; id < to; id++) {
+            double price = prices[id];
+            if (Double.isNaN(price)) {
+                if (slow.count(id) > 0) {
+                    reset(id);
+                }
+                continue;
+            }
+            double line = fast.update(id, price) - slow.update(id, price);
+            // Sygnał zaczyna się liczyć dopiero gdy wolna średnia jest rozgrzana
+            if (!slow.isWarm(id)) {
+                continue;
+            }
+            lineOut[id] = line;
+            double signalValue = signal.update(id, line);
+            if (signal.isWarm(id)) {
+                signalOut[id] = signalValue;
+                histogramOut[id] = line - signalValue;
+            }
+        }
+    }
+}
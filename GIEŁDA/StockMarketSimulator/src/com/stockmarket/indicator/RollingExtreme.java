@@ -0,0 +1,121 @@
+package com.stockmarket.indicator;
+
+import java.util.Arrays;
+
+/**
+ * Minimum albo maksimum z ostatnich n cen, liczone metodą bloków
+ * (van Herka / Gila-Wermana) zamiast przeglądania całego okna.
+ *
+ * Ticki są dzielone na bloki po n. Okno kończące się w bieżącym ticku
+ * obejmuje koniec poprzedniego bloku i początek bieżącego, więc:
+ * <pre>
+ * ekstremum = max(sufiks poprzedniego bloku od pozycji slot + 1, prefiks bieżącego bloku)
+ * </pre>
+ * Prefiks bieżącego bloku to jedna liczba na aktywo, aktualizowana w O(1).
+ * Sufiksy bloku są liczone raz, gdy blok się zamyka (n wierszy w jednym
+ * przebiegu) - czyli O(1) zamortyzowane na tick.
+ *
+ * Dla wielu aktywów to szybsze od kolejki monotonicznej: kolejka każdego
+ * aktywa leży gdzie indziej w pamięci i każdy tick to kilka chybień cache na
+ * aktywo. Tutaj okno i sufiksy mają układ n × id (jak w Sma), więc tick czyta
+ * i zapisuje kilka ciągłych wierszy, a procesor pobiera je z wyprzedzeniem.
+ */
+abstract class RollingExtreme extends Indicator {
+
+    private final int length;
+    private final boolean maximum;
+
+    private double[] window = new double[0];     // slot * capacity + id
+    private double[] suffixes = new double[0];   // slot * capacity + id, z poprzedniego bloku
+    private double[] prefixes = new double[0];   // id -> ekstremum bieżącego bloku
+    private int[] counts = new int[0];
+
+    RollingExtreme(int length, boolean maximum, String outputName) {
+        super(outputName);
+        if (length <= 0) {
+            throw new IllegalArgumentException("Długość okna musi być dodatnia");
+        }
+        this.length = length;
+        this.maximum = maximum;
+    }
+
+    @Override
+    void growState(int oldCapacity, int newCapacity) {
+        window = RollingWindow.growRows(window, length, oldCapacity, newCapacity);
+        suffixes = RollingWindow.growRows(suffixes, length, oldCapacity, newCapacity);
+        prefixes = Arrays.copyOf(prefixes, newCapacity);
+        counts = Arrays.copyOf(counts, newCapacity);
+    }
+
+    @Override
+    void reset(int id) {
+        // Wartości sprzed resetu nie trafią do wyniku - wynik jest podawany
+        // dopiero po n nowych cenach, a wtedy całe okno pochodzi już po resecie
+        counts[id] = 0;
+        clearOutputs(id);
+    }
+
+    @Override
+    void scale(int id, double factor) {
+        // Czynnik jest dodatni, więc kolejność cen (a z nią sufiksy i prefiksy) się nie zmienia
+        for (int slot = 0; slot < length; slot++) {
+            window[slot * capacity + id] *= factor;
+            suffixes[slot * capacity + id] *= factor;
+        }
+        prefixes[id] *= factor;
+        scaleOutputs(id, factor);
+    }
+
+    @Override
+    void update(double[] prices, long step, int from, int to) {
+        int slot = (int) (step % length);
+        int row = slot * capacity;
+        // Sufiks od pozycji slot + 1 poprzedniego bloku; w ostatnim slocie okno to cały bieżący blok
+        int suffixRow = slot + 1 < length ? (slot + 1) * capacity : -1;
+        double[] out = outputs[0];
+        for (int id = from; id < to; id++) {
+            double price = prices[id];
+            if (Double.isNaN(price)) {
+                if (counts[id] > 0) {
+                    reset(id);
+                }
+                continue;
+            }
+            window[row + id] = price;
+            double prefix = slot == 0 ? price : better(prefixes[id], price);
+            prefixes[id] = prefix;
+            if (counts[id] < length) {
+                counts[id]++;
+            }
+            if (counts[id] == length) {
+                out[id] = suffixRow >= 0 ? better(suffixes[suffixRow + id], prefix) : prefix;
+            }
+        }
+        if (slot == length - 1) {
+            closeBlock(from, to);
+        }
+    }
+
+    /**
+     * Liczy sufiksy zamkniętego bloku - od ostatniego wiersza do pierwszego.
+     */
+    private void closeBlock(int from, int to) {
+        int last = (length - 1) * capacity;
+        System.arraycopy(window, last + from, suffixes, last + from, to - from);
+        for (int slot = length - 2; slot >= 0; slot--) {
+            int row = slot * capacity;
+            int next = row + capacity;
+            for (int id = from; id < to; id++) {
+                suffixes[row + id] = better(window[row + id], suffixes[next + id]);
+            }
+        }
+    }
+
+    private double better(double a, double b) {
+        return maximum ? Math.max(a, b) : Math.min(a, b);
+    }
+
+    public int getLength() {
+        return length;
+    }
+}
@@ -0,0 +1,15 @@
+package com.stockmarket.indicator;
+
+/**
+ * Najwyższa cena z ostatnich n ticków (np. górna granica kanału Donchiana).
+ */
+public class RollingMax extends RollingExtreme {
+
+    /**
+     * @param length długość okna w tickach
+     * @throws IllegalArgumentException gdy długość nie jest dodatnia
+     */
+    public RollingMax(int length) {
+        super(length, true, "max");
+    }
+}
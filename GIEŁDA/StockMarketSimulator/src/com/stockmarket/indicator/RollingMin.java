@@ -0,0 +1,15 @@
+package com.stockmarket.indicator;
+
+/**
+ * Najniższa cena z ostatnich n ticków (np. dolna granica kanału Donchiana).
+ */
+public class RollingMin extends RollingExtreme {
+
+    /**
+     * @param length długość okna w tickach
+     * @throws IllegalArgumentException gdy długość nie jest dodatnia
+     */
+    public RollingMin(int length) {
+        super(length, false, "min");
+    }
+}
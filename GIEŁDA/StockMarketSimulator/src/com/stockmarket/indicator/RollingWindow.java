@@ -0,0 +1,186 @@
+package com.stockmarket.indicator;
+
+import java.util.Arrays;
+
+/**
+ * Okno kroczące ostatnich n wartości dla wszystkich aktywów - wspólne jądro
+ * średnich i odchyleń we wskaźnikach (Sma, BollingerBands) i w funkcjach
+ * okienkowych formuł (sma, sum, stddev, lowest, highest, prev).
+ *
+ * Wartości leżą w buforze cyklicznym - jednej tablicy n × id. Wszystkie
+ * aktywa przesuwają okno w tym samym ticku, więc pozycja zapisu (slot) jest
+ * wspólna, a tick czyta i zapisuje jeden ciągły wiersz tablicy zamiast skakać
+ * co n liczb. Suma (i opcjonalnie suma kwadratów) jest aktualizowana w O(1),
+ * a co n ticków liczona od nowa z okna, żeby nie gromadziła błędów zaokrągleń.
+ *
+ * Różne wątki mogą zapisywać rozłączne zakresy id jednocześnie; zmiana
+ * pojemności musi się odbyć wcześniej, w jednym wątku.
+ */
+public final class RollingWindow {
+
+    private final int length;
+    private final boolean squares;
+
+    private double[] window = new double[0];   // slot * capacity + id
+    private int capacity;
+    private double[] sums = new double[0];
+    private double[] sumSquares = new double[0];
+    private int[] counts = new int[0];
+
+    /**
+     * @param length długość okna w tickach
+     * @param squares czy utrzymywać sumę kwadratów (potrzebną do odchylenia standardowego)
+     * @throws IllegalArgumentException gdy długość nie jest dodatnia
+     */
+    public RollingWindow(int length, boolean squares) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Długość okna musi być dodatnia");
+        }
+        this.length = length;
+        this.squares = squares;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Powiększa kolumny do co najmniej podanej liczby id, przepisując każdy wiersz okna.
+     */
+    public void ensureCapacity(int size) {
+        if (size <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(size, capacity * 2);
+        window = growRows(window, length, capacity, newCapacity);
+        sums = Arrays.copyOf(sums, newCapacity);
+        if (squares) {
+            sumSquares = Arrays.copyOf(sumSquares, newCapacity);
+        }
+        counts = Arrays.copyOf(counts, newCapacity);
+        capacity = newCapacity;
+    }
+
+    /**
+     * Zwraca wiersz okna, do którego pisze tick o podanym numerze.
+     */
+    public int slot(long step) {
+        return (int) (step % length);
+    }
+
+    /**
+     * Dopisuje wartość aktywa w wierszu slot i aktualizuje sumy.
+     *
+     * @return nadpisana wartość - sprzed n ticków, jeśli okno było już pełne
+     */
+    public double push(int slot, int id, double x) {
+        int index = slot * capacity + id;
+        double old = window[index];
+        window[index] = x;
+        if (counts[id] < length) {
+            counts[id]++;
+        }
+        if (slot == 0 && counts[id] == length) {
+            recomputeSums(id);
+        } else {
+            sums[id] += x - old;
+            if (squares) {
+                sumSquares[id] += x * x - old * old;
+            }
+        }
+        return old;
+    }
+
+    /**
+     * Czyści okno aktywa (nowe aktywo pod tym samym id albo przerwa w danych).
+     */
+    public void reset(int id) {
+        for (int slot = 0; slot < length; slot++) {
+            window[slot * capacity + id] = 0.0;
+        }
+        sums[id] = 0.0;
+        if (squares) {
+            sumSquares[id] = 0.0;
+        }
+        counts[id] = 0;
+    }
+
+    /**
+     * Mnoży wszystkie wartości okna aktywa przez czynnik (np. ceny po podziale akcji).
+     */
+    public void scale(int id, double factor) {
+        for (int slot = 0; slot < length; slot++) {
+            window[slot * capacity + id] *= factor;
+        }
+        sums[id] *= factor;
+        if (squares) {
+            sumSquares[id] *= factor * factor;
+        }
+    }
+
+    /**
+     * Zwraca liczbę wartości w oknie aktywa (najwyżej n).
+     */
+    public int count(int id) {
+        return counts[id];
+    }
+
+    public boolean isFull(int id) {
+        return counts[id] == length;
+    }
+
+    public double sum(int id) {
+        return sums[id];
+    }
+
+    public double mean(int id) {
+        return sums[id] / length;
+    }
+
+    /**
+     * Zwraca odchylenie standardowe populacji (dzielimy przez n, jak we wstęgach Bollingera).
+     * Wymaga okna utworzonego z sumą kwadratów.
+     */
+    public double deviation(int id) {
+        double mean = sums[id] / length;
+        return Math.sqrt(Math.max(0.0, sumSquares[id] / length - mean * mean));
+    }
+
+    /**
+     * Zwraca minimum albo maksimum pełnego okna, przeglądając wszystkie n wartości.
+     */
+    public double extreme(int id, boolean maximum) {
+        double result = window[id];
+        for (int slot = 1; slot < length; slot++) {
+            double v = window[slot * capacity + id];
+            result = maximum ? Math.max(result, v) : Math.min(result, v);
+        }
+        return result;
+    }
+
+    private void recomputeSums(int id) {
+        double sum = 0.0;
+        double sumSquare = 0.0;
+        for (int slot = 0; slot < length; slot++) {
+            double v = window[slot * capacity + id];
+            sum += v;
+            sumSquare += v * v;
+        }
+        sums[id] = sum;
+        if (squares) {
+            sumSquares[id] = sumSquare;
+        }
+    }
+
+    /**
+     * Powiększa tablicę w układzie "wiersz na pozycję w oknie" (slot * capacity + id),
+     * przepisując każdy wiersz na nowe miejsce.
+     */
+    static double[] growRows(double[] rows, int length, int oldCapacity, int newCapacity) {
+        double[] resized = new double[length * newCapacity];
+        for (int slot = 0; slot < length; slot++) {
+            System.arraycopy(rows, slot * oldCapacity, resized, slot * newCapacity, oldCapacity);
+        }
+        return resized;
+    }
+}
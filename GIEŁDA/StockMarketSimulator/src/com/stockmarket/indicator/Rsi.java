@@ -0,0 +1,97 @@
+package com.stockmarket.indicator;
+
+import java.util.Arrays;
+
+/**
+ * Wskaźnik siły względnej (RSI) z wygładzaniem Wildera, w skali 0..100.
+ *
+ * Pierwsze n zmian ceny daje zwykłą średnią wzrostów i spadków, a dalej
+ * średnie są wygładzane: avg = (avg * (n - 1) + zmiana) / n. Stan to trzy
+ * liczby na aktywo, więc aktualizacja kosztuje O(1) niezależnie od okresu.
+ */
+public class Rsi extends Indicator {
+
+    private final int length;
+    private double[] lastPrices = new double[0];
+    private double[] averageGains = new double[0];
+    private double[] averageLosses = new double[0];
+    private int[] counts = new int[0];   // liczba cen widzianych od ostatniego resetu
+
+    /**
+     * @param length okres wskaźnika w tickach (zwykle 14)
+     * @throws IllegalArgumentException gdy okres nie jest dodatni
+     */
+    public Rsi(int length) {
+        super("rsi");
+        if (length <= 0) {
+            throw new IllegalArgumentException("Okres wskaźnika musi być dodatni");
+        }
+        this.length = length;
+    }
+
+    @Override
+    void growState(int oldCapacity, int newCapacity) {
+        lastPrices = Arrays.copyOf(lastPrices, newCapacity);
+        averageGains = Arrays.copyOf(averageGains, newCapacity);
+        averageLosses = Arrays.copyOf(averageLosses, newCapacity);
+        counts = Arrays.copyOf(counts, newCapacity);
+    }
+
+    @Override
+    void reset(int id) {
+        lastPrices[id] = 0.0;
+        averageGains[id] = 0.0;
+        averageLosses[id] = 0.0;
+        counts[id] = 0;
+        clearOutputs(id);
+    }
+
+    @Override
+    void scale(int id, double factor) {
+        // Średnie wzrostów i spadków zmieniają się w tej samej proporcji, więc RSI zostaje bez zmian
+        lastPrices[id] *= factor;
+        averageGains[id] *= factor;
+        averageLosses[id] *= factor;
+    }
+
+    @Override
+    void update(double[] prices, long step, int from, int to) {
+        double[] out = outputs[0];
+        for (int id = from; id < to; id++) {
+            double price = prices[id];
+            if (Double.isNaN(price)) {
+                if (counts[id] > 0) {
+                    reset(id);
+                }
+                continue;
+            }
+            int count = counts[id];
+            if (count > 0) {
+                double change = price - lastPrices[id];
+                double gain = Math.max(change, 0.0);
+                double loss = Math.max(-change, 0.0);
+                if (count <= length) {
+                    // Rozgrzewka - zwykła średnia z pierwszych n zmian
+                    averageGains[id] += gain / length;
+                    averageLosses[id] += loss / length;
+                } else {
+                    averageGains[id] = (averageGains[id] * (length - 1) + gain) / length;
+                    averageLosses[id] = (averageLosses[id] * (length - 1) + loss) / length;
+                }
+            }
+            lastPrices[id] = price;
+            if (count <= length) {
+                counts[id] = count + 1;
+            }
+            if (counts[id] > length) {
+                double gains = averageGains[id];
+                double losses = averageLosses[id];
+                out[id] = losses == 0.0 ? (gains == 0.0 ? 50.0 : 100.0) : 100.0 - 100.0 / (1.0 + gains / losses);
+            }
+        }
+    }
+
+    public int getLength() {
+        return length;
+    }
+}
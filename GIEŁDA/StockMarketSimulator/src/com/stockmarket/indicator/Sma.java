@@ -0,0 +1,72 @@
+package com.stockmarket.indicator;
+
+/**
+ * Prosta średnia krocząca z ostatnich n cen.
+ *
+ * Okno cen leży we wspólnym jądrze RollingWindow (bufor cykliczny n × id -
+ * tick zapisuje jeden ciągły wiersz), które aktualizuje sumę w O(1) i co
+ * n ticków liczy ją od nowa, żeby nie gromadziła błędów zaokrągleń.
+ */
+public class Sma extends Indicator {
+
+    final RollingWindow window;
+
+    /**
+     * @param length długość okna w tickach
+     * @throws IllegalArgumentException gdy długość nie jest dodatnia
+     */
+    public Sma(int length) {
+        this(length, false, "sma");
+    }
+
+    Sma(int length, boolean squares, String... outputNames) {
+        super(outputNames);
+        this.window = new RollingWindow(length, squares);
+    }
+
+    @Override
+    void growState(int oldCapacity, int newCapacity) {
+        window.ensureCapacity(newCapacity);
+    }
+
+    @Override
+    void reset(int id) {
+        window.reset(id);
+        clearOutputs(id);
+    }
+
+    @Override
+    void scale(int id, double factor) {
+        window.scale(id, factor);
+        scaleOutputs(id, factor);
+    }
+
+    @Override
+    void update(double[] prices, long step, int from, int to) {
+        int slot = window.slot(step);
+        for (int id = from; id < to; id++) {
+            double price = prices[id];
+            if (Double.isNaN(price)) {
+                if (window.count(id) > 0) {
+                    reset(id);
+                }
+                continue;
+            }
+            window.push(slot, id, price);
+            if (window.isFull(id)) {
+                publish(id);
+            }
+        }
+    }
+
+    /**
+     * Wpisuje wyjścia aktywa z pełnego okna.
+     */
+    void publish(int id) {
+        outputs[0][id] = window.mean(id);
+    }
+
+    public int getLength() {
+        return window.getLength();
+    }
+}
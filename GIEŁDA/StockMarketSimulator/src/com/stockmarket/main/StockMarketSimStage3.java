@@ -4,6 +4,12 @@ import com.stockmarket.model.*;
 import com.stockmarket.portfolio.*;
 import com.stockmarket.market.*;
 import com.stockmarket.exception.*;
+import com.stockmarket.checkpoint.CheckpointReader;
+import com.stockmarket.checkpoint.CheckpointWriter;
+import com.stockmarket.render.ConsoleRenderer;
+import com.stockmarket.render.ConsoleRenderer.Frame;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
@@ -22,6 +28,19 @@ import java.util.*;
  */
 public class StockMarketSimStage3 {
     
+    // Wszystkie ekrany symulacji są składane w pamięci i wypisywane na osobnym wątku.
+    // Przed pisaniem przez System.out (np. komunikaty Portfolio) wołamy renderer.flush(),
+    // żeby zachować kolejność wydruku.
+    private static final ConsoleRenderer renderer = new ConsoleRenderer();
+    
+    // Powtarzalność przebiegu (opcjonalne właściwości systemowe):
+    //   -Dmarket.seed=42              ziarno losowości rynku
+    //   -Dmarket.checkpoint=sim.ckpt  punkt kontrolny po każdym kroku symulacji
+    //   -Dmarket.resume=sim.ckpt      wznowienie od ostatniego punktu kontrolnego
+    private static final String SEED_PROPERTY = System.getProperty("market.seed");
+    private static final String CHECKPOINT_PROPERTY = System.getProperty("market.checkpoint");
+    private static final String RESUME_PROPERTY = System.getProperty("market.resume");
+    
     /**
      * Główna metoda programu - punkt wejścia aplikacji.
      * 
@@ -41,6 +60,9 @@ public class StockMarketSimStage3 {
             System.err.println("Wystąpił nieoczekiwany błąd w aplikacji:");
             System.err.println(e.getMessage());
             e.printStackTrace(); // W prawdziwej aplikacji logowalibyśmy to do pliku
+        } finally {
+            // Wypisujemy ramki które jeszcze czekają w kolejce
+            renderer.close();
         }
     }
     
@@ -51,33 +73,60 @@ public class StockMarketSimStage3 {
      * Każda metoda ma jasno określoną odpowiedzialność - to jest dobra praktyka
      * programistyczna zwana "separation of concerns".
      */
-    private static void runStockMarketSimulation() {
-        System.out.println("=".repeat(60));
-        System.out.println("    SYMULATOR GIEŁDY PAPIERÓW WARTOŚCIOWYCH");
-        System.out.println("                Projekt OOP - Etap 3");
-        System.out.println("=".repeat(60));
-        System.out.println();
+    private static void runStockMarketSimulation() throws IOException {
+        Frame header = renderer.begin();
+        header.repeat('=', 60).newline()
+              .text("    SYMULATOR GIEŁDY PAPIERÓW WARTOŚCIOWYCH").newline()
+              .text("                Projekt OOP - Etap 3").newline()
+              .repeat('=', 60).newline()
+              .newline();
+        renderer.submit(header);
         
         // Krok 1: Przygotowanie danych
         // Tworzymy wszystkie obiekty potrzebne do symulacji
         List<Asset> marketAssets = createMarketAssets();
-        Market market = new Market(marketAssets);
+        Market market = SEED_PROPERTY != null
+            ? new Market(marketAssets, Long.parseLong(SEED_PROPERTY))
+            : new Market(marketAssets);
         Portfolio portfolio = new Portfolio(25000.0); // Startujemy z 25000 PLN
+        market.addListener(portfolio); // portfel rozlicza aktywa wycofywane z rynku
         
-        // Krok 2: Pokazujemy stan początkowy
-        displayWelcomeMessage(portfolio.getCash());
-        displayMarketStatus(market);
-        
-        // Krok 3: Demonstracja transakcji
-        // Pokazujemy jak działa kupno, sprzedaż i obsługa błędów
-        performSampleTransactions(portfolio, market);
+        if (RESUME_PROPERTY != null) {
+            // Wznowienie: rynek i portfel wracają do stanu z punktu kontrolnego,
+            // a kolejne kroki dają dokładnie te same ceny co w oryginalnym przebiegu
+            long tick = CheckpointReader.restoreLatest(Path.of(RESUME_PROPERTY), market, List.of(portfolio));
+            renderer.submit(renderer.begin().text("Wznowiono symulację od kroku ").integer(tick)
+                .text(" (ziarno ").integer(market.getRandomSource().getSeed()).text(")").newline().newline());
+        } else {
+            // Krok 2: Pokazujemy stan początkowy
+            Frame start = renderer.begin();
+            displayWelcomeMessage(start, portfolio.getCash());
+            start.text("Ziarno losowości rynku: ").integer(market.getRandomSource().getSeed()).newline().newline();
+            displayMarketStatus(start, market);
+            renderer.submit(start);
+            
+            // Krok 3: Demonstracja transakcji
+            // Pokazujemy jak działa kupno, sprzedaż i obsługa błędów
+            performSampleTransactions(portfolio, market);
+        }
         
         // Krok 4: Symulacja zmian cen w czasie
         // To jest najciekawsza część - obserwujemy jak polimorfizm działa w praktyce
-        runMarketSimulation(portfolio, market, 10);
+        CheckpointWriter checkpoints = CHECKPOINT_PROPERTY != null
+            ? new CheckpointWriter(Path.of(CHECKPOINT_PROPERTY), market, List.of(portfolio))
+            : null;
+        try {
+            runMarketSimulation(portfolio, market, 10, checkpoints);
+        } finally {
+            if (checkpoints != null) {
+                checkpoints.close();
+            }
+        }
         
         // Krok 5: Podsumowanie końcowe
-        displayFinalResults(portfolio);
+        Frame summary = renderer.begin();
+        displayFinalResults(summary, portfolio);
+        renderer.submit(summary);
     }
     
     /**
@@ -118,12 +167,12 @@ public class StockMarketSimStage3 {
      * Dobra aplikacja zawsze informuje użytkownika o tym co się dzieje.
      * Nawet w aplikacji konsolowej warto zadbać o przyjazny interfejs.
      */
-    private static void displayWelcomeMessage(double initialCash) {
-        System.out.println("Witamy w symulatorze giełdy papierów wartościowych!");
-        System.out.printf("Na start masz do dyspozycji: %.2f PLN%n", initialCash);
-        System.out.println("Możesz kupować i sprzedawać różne instrumenty finansowe.");
-        System.out.println("Obserwuj jak zmieniają się ceny i wartość Twojego portfela!");
-        System.out.println();
+    private static void displayWelcomeMessage(Frame frame, double initialCash) {
+        frame.text("Witamy w symulatorze giełdy papierów wartościowych!").newline()
+             .text("Na start masz do dyspozycji: ").number(initialCash, 2).text(" PLN").newline()
+             .text("Możesz kupować i sprzedawać różne instrumenty finansowe.").newline()
+             .text("Obserwuj jak zmieniają się ceny i wartość Twojego portfela!").newline()
+             .newline();
     }
     
     /**
@@ -132,30 +181,33 @@ public class StockMarketSimStage3 {
      * Ta metoda demonstruje polimorfizm - iterujemy po liście Asset,
      * ale sprawdzamy konkretny typ obiektu żeby wyświetlić odpowiednie informacje.
      */
-    private static void displayMarketStatus(Market market) {
-        System.out.println("📈 AKTUALNY STAN RYNKU 📈");
-        System.out.println("-".repeat(50));
+    private static void displayMarketStatus(Frame frame, Market market) {
+        frame.text("📈 AKTUALNY STAN RYNKU 📈").newline()
+             .repeat('-', 50).newline();
         
         // Grupujemy aktywa według typu dla lepszej prezentacji
-        System.out.println("AKCJE:");
+        frame.text("AKCJE:").newline();
         for (Asset asset : market.getAllAssets().values()) {
             if (asset instanceof Stock) {
                 // instanceof pozwala nam sprawdzić typ obiektu w runtime
-                System.out.printf("  %-6s %-25s %8.2f PLN%n", 
-                    asset.getSymbol(), asset.getName(), asset.getCurrentPrice());
+                frame.text("  ").padRight(asset.getSymbol(), 6).text(' ')
+                     .padRight(asset.getName(), 25).text(' ')
+                     .number(asset.getCurrentPrice(), 2, 8).text(" PLN").newline();
             }
         }
         
-        System.out.println("\nOBLIGACJE:");
+        frame.newline().text("OBLIGACJE:").newline();
         for (Asset asset : market.getAllAssets().values()) {
             if (asset instanceof Bond) {
                 // Rzutujemy na Bond żeby uzyskać dostęp do getInterestRate()
                 Bond bond = (Bond) asset;
-                System.out.printf("  %-6s %-25s %8.2f PLN (%.1f%% rocznie)%n", 
-                    bond.getSymbol(), bond.getName(), bond.getCurrentPrice(), bond.getInterestRate());
+                frame.text("  ").padRight(bond.getSymbol(), 6).text(' ')
+                     .padRight(bond.getName(), 25).text(' ')
+                     .number(bond.getCurrentPrice(), 2, 8).text(" PLN (")
+                     .number(bond.getInterestRate(), 1).text("% rocznie)").newline();
             }
         }
-        System.out.println();
+        frame.newline();
     }
     
     /**
@@ -166,6 +218,7 @@ public class StockMarketSimStage3 {
      * tego jak wszystkie nasze klasy współpracują ze sobą.
      */
     private static void performSampleTransactions(Portfolio portfolio, Market market) {
+        renderer.flush(); // Portfolio pisze bezpośrednio na System.out
         System.out.println("💼 PRZYKŁADOWE TRANSAKCJE 💼");
         System.out.println("-".repeat(40));
         
@@ -182,7 +235,10 @@ public class StockMarketSimStage3 {
             System.out.println();
             
             // Pokazujemy aktualny stan portfela
-            displayPortfolioSummary(portfolio);
+            Frame frame = renderer.begin();
+            displayPortfolioSummary(frame, portfolio);
+            renderer.submit(frame);
+            renderer.flush();
             
             // Seria transakcji sprzedaży
             System.out.println("💰 Sprzedajemy część pozycji...");
@@ -270,51 +326,64 @@ public class StockMarketSimStage3 {
      * Każdy typ aktywa aktualizuje cenę według własnej logiki, ale my nie musimy
      * wiedzieć jakiego konkretnie typu to jest. To jest piękno programowania obiektowego!
      */
-    private static void runMarketSimulation(Portfolio portfolio, Market market, int steps) {
-        System.out.println("📊 SYMULACJA ZMIAN CEN NA RYNKU 📊");
-        System.out.println("-".repeat(50));
-        
+    private static void runMarketSimulation(Portfolio portfolio, Market market, int steps,
+                                            CheckpointWriter checkpoints) throws IOException {
         double initialPortfolioValue = portfolio.calculateTotalValue();
-        System.out.printf("Wartość początkowa portfela: %.2f PLN%n", initialPortfolioValue);
-        System.out.println("Obserwuj jak zmieniają się ceny różnych typów aktywów...");
-        System.out.println();
         
-        // Symulacja przez określoną liczbę kroków czasowych
-        for (int step = 1; step <= steps; step++) {
-            System.out.printf("🕐 KROK CZASOWY %d 🕐%n", step);
-            System.out.println("-".repeat(25));
+        Frame intro = renderer.begin();
+        intro.text("📊 SYMULACJA ZMIAN CEN NA RYNKU 📊").newline()
+             .repeat('-', 50).newline()
+             .text("Wartość początkowa portfela: ").number(initialPortfolioValue, 2).text(" PLN").newline()
+             .text("Obserwuj jak zmieniają się ceny różnych typów aktywów...").newline()
+             .newline();
+        renderer.submit(intro);
+        
+        // Symulacja przez określoną liczbę kroków czasowych. Numeracja zaczyna się
+        // od ticka rynku, więc po wznowieniu z punktu kontrolnego kroki są kontynuowane
+        long firstStep = market.getSnapshot().getTick() + 1;
+        for (long step = firstStep; step < firstStep + steps; step++) {
+            // Każdy krok to jedna ramka - wypisze ją wątek renderera, a my liczymy dalej
+            Frame frame = renderer.begin();
+            frame.text("🕐 KROK CZASOWY ").integer(step).text(" 🕐").newline()
+                 .repeat('-', 25).newline();
             
             // Aktualizujemy ceny wszystkich aktywów na rynku
             // To jest moment gdzie polimorfizm błyszczy - jedna metoda,
             // ale różne zachowania dla Stock vs Bond
             market.updatePrices();
             
+            // Zapisujemy punkt kontrolny - od tego kroku można później wznowić symulację
+            if (checkpoints != null) {
+                checkpoints.checkpoint();
+            }
+            
             // Pokazujemy jak zmieniły się ceny aktywów które posiadamy
-            displayPriceChangesForOwnedAssets(portfolio, market);
+            displayPriceChangesForOwnedAssets(frame, portfolio, market);
             
             // Obliczamy i pokazujemy aktualną wartość portfela
             double currentValue = portfolio.calculateTotalValue();
             double change = currentValue - initialPortfolioValue;
             double changePercent = (change / initialPortfolioValue) * 100;
             
-            System.out.printf("💰 Wartość portfela: %.2f PLN ", currentValue);
+            frame.text("💰 Wartość portfela: ").number(currentValue, 2).text(" PLN ");
             
             // Kolorujemy output w zależności od zysku/straty (wizualnie)
             if (change > 0) {
-                System.out.printf("(📈 +%.2f PLN, +%.2f%%)%n", change, changePercent);
+                frame.text("(📈 +").number(change, 2).text(" PLN, +").number(changePercent, 2).text("%)").newline();
             } else if (change < 0) {
-                System.out.printf("(📉 %.2f PLN, %.2f%%)%n", change, changePercent);
+                frame.text("(📉 ").number(change, 2).text(" PLN, ").number(changePercent, 2).text("%)").newline();
             } else {
-                System.out.printf("(➡️  bez zmian)%n");
+                frame.text("(➡️  bez zmian)").newline();
             }
             
-            System.out.println();
+            frame.newline();
+            renderer.submit(frame);
             
             // Krótka pauza dla lepszej czytelności (symulacja czasu rzeczywistego)
             try {
                 Thread.sleep(1200); // 1.2 sekundy przerwy między krokami
             } catch (InterruptedException e) {
-                System.out.println("Symulacja została przerwana.");
+                renderer.submit(renderer.begin().text("Symulacja została przerwana.").newline());
                 break;
             }
         }
@@ -324,20 +393,23 @@ public class StockMarketSimStage3 {
         double totalChange = finalValue - initialPortfolioValue;
         double totalChangePercent = (totalChange / initialPortfolioValue) * 100;
         
-        System.out.println("📋 PODSUMOWANIE SYMULACJI 📋");
-        System.out.println("-".repeat(35));
-        System.out.printf("Wartość początkowa: %.2f PLN%n", initialPortfolioValue);
-        System.out.printf("Wartość końcowa:    %.2f PLN%n", finalValue);
-        System.out.printf("Zmiana całkowita:   %+.2f PLN (%+.2f%%)%n", totalChange, totalChangePercent);
+        Frame frame = renderer.begin();
+        frame.text("📋 PODSUMOWANIE SYMULACJI 📋").newline()
+             .repeat('-', 35).newline()
+             .text("Wartość początkowa: ").number(initialPortfolioValue, 2).text(" PLN").newline()
+             .text("Wartość końcowa:    ").number(finalValue, 2).text(" PLN").newline()
+             .text("Zmiana całkowita:   ").signedNumber(totalChange, 2).text(" PLN (")
+             .signedNumber(totalChangePercent, 2).text("%)").newline();
         
         if (totalChange > 0) {
-            System.out.println("🎉 Gratulacje! Twój portfel zyskał na wartości!");
+            frame.text("🎉 Gratulacje! Twój portfel zyskał na wartości!").newline();
         } else if (totalChange < 0) {
-            System.out.println("📉 Tym razem portfel stracił na wartości. To normalne na giełdzie!");
+            frame.text("📉 Tym razem portfel stracił na wartości. To normalne na giełdzie!").newline();
         } else {
-            System.out.println("➡️  Portfel zakończył bez zmian wartości.");
+            frame.text("➡️  Portfel zakończył bez zmian wartości.").newline();
         }
-        System.out.println();
+        frame.newline();
+        renderer.submit(frame);
     }
     
     /**
@@ -346,13 +418,13 @@ public class StockMarketSimStage3 {
      * Ta metoda demonstruje jak enkapsulacja pozwala nam bezpiecznie
      * dostać się do danych bez naruszania integralności obiektów.
      */
-    private static void displayPriceChangesForOwnedAssets(Portfolio portfolio, Market market) {
+    private static void displayPriceChangesForOwnedAssets(Frame frame, Portfolio portfolio, Market market) {
         if (portfolio.isEmpty()) {
-            System.out.println("Portfel jest pusty - brak aktywów do monitorowania.");
+            frame.text("Portfel jest pusty - brak aktywów do monitorowania.").newline();
             return;
         }
         
-        System.out.println("Zmiany cen posiadanych aktywów:");
+        frame.text("Zmiany cen posiadanych aktywów:").newline();
         for (PortfolioPosition position : portfolio.getPositions().values()) {
             Asset asset = position.asset();
             String symbol = asset.getSymbol();
@@ -362,8 +434,9 @@ public class StockMarketSimStage3 {
             
             String assetType = asset instanceof Stock ? "Akcja" : "Obligacja";
             
-            System.out.printf("  %-6s: %.2f PLN × %d szt. = %.2f PLN [%s]%n", 
-                symbol, currentPrice, quantity, positionValue, assetType);
+            frame.text("  ").padRight(symbol, 6).text(": ").number(currentPrice, 2)
+                 .text(" PLN × ").integer(quantity).text(" szt. = ").number(positionValue, 2)
+                 .text(" PLN [").text(assetType).text(']').newline();
         }
     }
     
@@ -373,30 +446,31 @@ public class StockMarketSimStage3 {
      * Ta metoda pokazuje jak używać getterów i metod obliczeniowych
      * z naszych klas do prezentacji danych użytkownikowi.
      */
-    private static void displayPortfolioSummary(Portfolio portfolio) {
-        System.out.println("💼 AKTUALNY STAN PORTFELA 💼");
-        System.out.println("-".repeat(35));
+    private static void displayPortfolioSummary(Frame frame, Portfolio portfolio) {
+        frame.text("💼 AKTUALNY STAN PORTFELA 💼").newline()
+             .repeat('-', 35).newline();
         
         if (portfolio.isEmpty()) {
-            System.out.println("Portfel jest pusty - brak pozycji.");
+            frame.text("Portfel jest pusty - brak pozycji.").newline();
         } else {
-            System.out.println("Posiadane pozycje:");
+            frame.text("Posiadane pozycje:").newline();
             for (PortfolioPosition position : portfolio.getPositions().values()) {
                 Asset asset = position.asset();
                 int quantity = position.quantity();
                 double positionValue = position.getTotalValue();
                 String assetType = asset instanceof Stock ? "Akcja" : "Obligacja";
                 
-                System.out.printf("  • %-6s: %3d szt. × %.2f PLN = %8.2f PLN [%s]%n",
-                    asset.getSymbol(), quantity, asset.getCurrentPrice(), 
-                    positionValue, assetType);
+                frame.text("  • ").padRight(asset.getSymbol(), 6).text(": ").integer(quantity, 3)
+                     .text(" szt. × ").number(asset.getCurrentPrice(), 2)
+                     .text(" PLN = ").number(positionValue, 2, 8)
+                     .text(" PLN [").text(assetType).text(']').newline();
             }
         }
         
-        System.out.printf("Gotówka:             %8.2f PLN%n", portfolio.getCash());
-        System.out.printf("Wartość aktywów:     %8.2f PLN%n", portfolio.calculateAssetsValue());
-        System.out.printf("WARTOŚĆ CAŁKOWITA:   %8.2f PLN%n", portfolio.calculateTotalValue());
-        System.out.println();
+        frame.text("Gotówka:             ").number(portfolio.getCash(), 2, 8).text(" PLN").newline()
+             .text("Wartość aktywów:     ").number(portfolio.calculateAssetsValue(), 2, 8).text(" PLN").newline()
+             .text("WARTOŚĆ CAŁKOWITA:   ").number(portfolio.calculateTotalValue(), 2, 8).text(" PLN").newline()
+             .newline();
     }
     
     /**
@@ -405,39 +479,39 @@ public class StockMarketSimStage3 {
      * Końcowa metoda która podsumowuje wszystko co się wydarzyło
      * i przypomina użytkownikowi o kluczowych koncepcjach które zostały zademonstrowane.
      */
-    private static void displayFinalResults(Portfolio portfolio) {
-        System.out.println("🎯 PODSUMOWANIE KOŃCOWE 🎯");
-        System.out.println("=".repeat(45));
+    private static void displayFinalResults(Frame frame, Portfolio portfolio) {
+        frame.text("🎯 PODSUMOWANIE KOŃCOWE 🎯").newline();
+        frame.repeat('=', 45).newline();
         
         // Szczegółowy stan portfela
-        displayPortfolioSummary(portfolio);
+        displayPortfolioSummary(frame, portfolio);
         
         // Statystyki portfela
-        System.out.println("📊 STATYSTYKI PORTFELA:");
-        System.out.printf("Liczba różnych pozycji: %d%n", portfolio.getPositionCount());
+        frame.text("📊 STATYSTYKI PORTFELA:").newline();
+        frame.text("Liczba różnych pozycji: ").integer(portfolio.getPositionCount()).newline();
         
         if (!portfolio.isEmpty()) {
             double averagePositionValue = portfolio.calculateAssetsValue() / portfolio.getPositionCount();
-            System.out.printf("Średnia wartość pozycji: %.2f PLN%n", averagePositionValue);
+            frame.text("Średnia wartość pozycji: ").number(averagePositionValue, 2).text(" PLN").newline();
             
             double cashRatio = (portfolio.getCash() / portfolio.calculateTotalValue()) * 100;
-            System.out.printf("Udział gotówki w portfelu: %.1f%%%n", cashRatio);
+            frame.text("Udział gotówki w portfelu: ").number(cashRatio, 1).text("%").newline();
         }
         
-        System.out.println();
-        System.out.println("🎉 Dziękujemy za skorzystanie z symulatora giełdy! 🎉");
-        System.out.println();
-        System.out.println("Ten projekt demonstruje kluczowe koncepcje programowania obiektowego:");
-        System.out.println("• Enkapsulację (prywatne pola, publiczne metody do kontrolowanego dostępu)");
-        System.out.println("• Dziedziczenie (Asset → Stock/Bond, wspólny kod w klasie bazowej)");
-        System.out.println("• Polimorfizm (różne implementacje updatePrice() dla różnych typów aktywów)");
-        System.out.println("• Interfejsy (Tradable określa kontrakt dla obiektów którymi można handlować)");
-        System.out.println("• Obsługę wyjątków (własne klasy Exception dla błędów biznesowych)");
-        System.out.println("• Organizację kodu w pakiety (logiczne grupowanie powiązanych klas)");
-        System.out.println("• Używanie kolekcji (Map dla szybkiego wyszukiwania, List dla sekwencji, Optional dla bezpieczeństwa)");
-        System.out.println();
-        System.out.println("Każda z tych koncepcji została zastosowana w praktycznym kontekście,");
-        System.out.println("pokazując jak programowanie obiektowe pomaga w tworzeniu");
-        System.out.println("złożonych, ale dobrze zorganizowanych aplikacji.");
+        frame.newline();
+        frame.text("🎉 Dziękujemy za skorzystanie z symulatora giełdy! 🎉").newline();
+        frame.newline();
+        frame.text("Ten projekt demonstruje kluczowe koncepcje programowania obiektowego:").newline();
+        frame.text("• Enkapsulację (prywatne pola, publiczne metody do kontrolowanego dostępu)").newline();
+        frame.text("• Dziedziczenie (Asset → Stock/Bond, wspólny kod w klasie bazowej)").newline();
+        frame.text("• Polimorfizm (różne implementacje updatePrice() dla różnych typów aktywów)").newline();
+        frame.text("• Interfejsy (Tradable określa kontrakt dla obiektów którymi można handlować)").newline();
+        frame.text("• Obsługę wyjątków (własne klasy Exception dla błędów biznesowych)").newline();
+        frame.text("• Organizację kodu w pakiety (logiczne grupowanie powiązanych klas)").newline();
+        frame.text("• Używanie kolekcji (Map dla szybkiego wyszukiwania, List dla sekwencji, Optional dla bezpieczeństwa)").newline();
+        frame.newline();
+        frame.text("Każda z tych koncepcji została zastosowana w praktycznym kontekście,").newline();
+        frame.text("pokazując jak programowanie obiektowe pomaga w tworzeniu").newline();
+        frame.text("złożonych, ale dobrze zorganizowanych aplikacji.").newline();
     }
 }
\ No newline at end of file
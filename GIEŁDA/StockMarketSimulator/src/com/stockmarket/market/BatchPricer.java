@@ -0,0 +1,22 @@
+package com.stockmarket.market;
+
+/**
+ * Interfejs dla silników wyceny, które przeliczają ceny wielu aktywów naraz.
+ *
+ * Market wywołuje wszystkie zarejestrowane silniki w każdym ticku - po
+ * updatePrice() pojedynczych aktywów, ale przed publikacją migawki cen.
+ * Dzięki temu ceny wyliczone przez silnik (np. obligacji z krzywej rentowności)
+ * trafiają do tej samej migawki co ceny akcji. Silniki są wywoływane
+ * w kolejności rejestracji, więc silnik wyceniający instrumenty pochodne
+ * powinien być zarejestrowany po silnikach instrumentów bazowych.
+ */
+public interface BatchPricer {
+
+    /**
+     * Przelicza ceny aktywów obsługiwanych przez silnik.
+     *
+     * @param market rynek, na którym odbywa się wycena
+     * @param tick numer bieżącego kroku czasowego
+     */
+    void reprice(Market market, long tick);
+}
@@ -0,0 +1,111 @@
+package com.stockmarket.market;
+
+/**
+ * Sortowanie tablic identyfikatorów aktywów według klucza typu double.
+ *
+ * Działa na typach prostych (int[] + double[]), więc nie tworzy obiektów
+ * Integer ani komparatorów - ma znaczenie przy milionach aktywów na tick.
+ */
+final class IdSort {
+
+    private static final int INSERTION_SORT_THRESHOLD = 24;
+
+    private IdSort() {
+    }
+
+    /**
+     * Sortuje rosnąco pierwsze n elementów tablicy ids według keys[id].
+     */
+    static void sortByKey(int[] ids, int n, double[] keys) {
+        quickSort(ids, 0, n - 1, keys);
+    }
+
+    /**
+     * Sortuje rosnąco pierwsze n elementów obu tablic według values (keys przesuwane razem z ids).
+     */
+    static void sortParallel(int[] ids, double[] values, int n) {
+        quickSortParallel(ids, values, 0, n - 1);
+    }
+
+    private static void quickSort(int[] ids, int lo, int hi, double[] keys) {
+        while (hi - lo > INSERTION_SORT_THRESHOLD) {
+            double pivot = keys[ids[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (keys[ids[i]] < pivot) i++;
+                while (keys[ids[j]] > pivot) j--;
+                if (i <= j) {
+                    int tmp = ids[i];
+                    ids[i] = ids[j];
+                    ids[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            // Rekurencja na mniejszej części, pętla na większej - stos O(log n)
+            if (j - lo < hi - i) {
+                quickSort(ids, lo, j, keys);
+                lo = i;
+            } else {
+                quickSort(ids, i, hi, keys);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            int id = ids[i];
+            double key = keys[id];
+            int j = i - 1;
+            while (j >= lo && keys[ids[j]] > key) {
+                ids[j + 1] = ids[j];
+                j--;
+            }
+            ids[j + 1] = id;
+        }
+    }
+
+    private static void quickSortParallel(int[] ids, double[] values, int lo, int hi) {
+        while (hi - lo > INSERTION_SORT_THRESHOLD) {
+            double pivot = values[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    swap(ids, values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (j - lo < hi - i) {
+                quickSortParallel(ids, values, lo, j);
+                lo = i;
+            } else {
+                quickSortParallel(ids, values, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            int id = ids[i];
+            double value = values[i];
+            int j = i - 1;
+            while (j >= lo && values[j] > value) {
+                ids[j + 1] = ids[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            values[j + 1] = value;
+        }
+    }
+
+    private static void swap(int[] ids, double[] values, int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
@@ -1,51 +1,398 @@
 package com.stockmarket.market;
 
 import com.stockmarket.model.Asset;
+import com.stockmarket.random.RandomSource;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Klasa reprezentująca giełdę - przechowuje wszystkie dostępne aktywa i zarządza ich cenami.
+ *
+ * Aktywa można dodawać (listAsset) i wycofywać (delistAsset) w trakcie działania
+ * symulacji. Wyszukiwanie aktywów przy handlu nie blokuje - korzysta z mapy
+ * współbieżnej. Zmiany struktury rynku i ticki cenowe są wykonywane po kolei,
+ * ale każda z tych operacji trwa krótko i nie wstrzymuje czytelników migawek.
  */
 public class Market {
-    
+
+    // Jeden krok czasowy symulacji to jeden miesiąc (tak jak w Bond.updatePrice())
+    public static final double TICKS_PER_YEAR = 12.0;
+
     // Mapa wszystkich aktywów: klucz = symbol, wartość = obiekt Asset
-    private Map<String, Asset> assetMap;
-    
+    private final Map<String, Asset> assetMap;
+
+    // Aktywa w kolejności identyfikatorów (id = indeks w tablicy cen migawki).
+    // Tablica ma zapas miejsca i rośnie geometrycznie - nowe id są dopisywane
+    // za końcem, którego migawki nie widzą. Pierwsze sharedCount pozycji
+    // współdzielą opublikowane migawki, więc ich zmiana wymaga kopii tablicy.
+    private Asset[] assetsById;
+    private int assetCount;
+    private int sharedCount;
+    private MarketSnapshot.Layout layout;   // układ ostatniej migawki, null po zmianie struktury
+    private final Map<String, Integer> idsBySymbol;
+    private final Deque<Integer> freeIds;   // id po wycofanych aktywach do ponownego użycia
+
+    // Numer bieżącego kroku czasowego i ostatnio opublikowana migawka cen.
+    // volatile gwarantuje że inne wątki zobaczą kompletną, nową migawkę.
+    private long tick;
+    private volatile MarketSnapshot snapshot;
+
+    // Liczby losowe są generowane hurtowo dla całego ticka z odtwarzalnego źródła
+    private RandomSource random;
+    private double[] randomDraws = new double[0];
+
+    private final List<MarketListener> listeners;
+    private final List<BatchPricer> pricers;
+
     /**
      * Konstruktor tworzy rynek na podstawie listy aktywów.
      */
     public Market(List<Asset> assets) {
-        this.assetMap = new HashMap<>();
-        
-        // Przekształcamy listę w mapę dla szybszego wyszukiwania
+        this(assets, RandomSource.withRandomSeed());
+    }
+
+    /**
+     * Konstruktor tworzy rynek z ziarnem losowości - ten sam seed
+     * i te same aktywa dają zawsze ten sam przebieg cen.
+     */
+    public Market(List<Asset> assets, long seed) {
+        this(assets, new RandomSource(seed));
+    }
+
+    private Market(List<Asset> assets, RandomSource random) {
+        this.random = random;
+        this.assetMap = new ConcurrentHashMap<>();
+        this.idsBySymbol = new ConcurrentHashMap<>();
+        this.assetsById = new Asset[0];
+        this.freeIds = new ArrayDeque<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.pricers = new CopyOnWriteArrayList<>();
+
+        // Kolejne aktywa z listy dostają kolejne identyfikatory
+        listAssets(assets);
+    }
+
+    /**
+     * Rejestruje słuchacza zdarzeń rynkowych.
+     */
+    public void addListener(MarketListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Wyrejestrowuje słuchacza zdarzeń rynkowych.
+     */
+    public void removeListener(MarketListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Rejestruje silnik wyceny i od razu wycenia nim aktywa w bieżącym ticku.
+     */
+    public synchronized void addPricer(BatchPricer pricer) {
+        pricers.add(pricer);
+        pricer.reprice(this, tick);
+        publishSnapshot();
+    }
+
+    /**
+     * Ponownie uruchamia wszystkie silniki wyceny w bieżącym ticku
+     * (np. po przesunięciu krzywej rentowności) i publikuje nową migawkę.
+     * Słuchacze nie dostają onPricesUpdated - numer ticka się nie zmienia.
+     */
+    public synchronized void repriceNow() {
+        for (BatchPricer pricer : pricers) {
+            pricer.reprice(this, tick);
+        }
+        publishSnapshot();
+    }
+
+    /**
+     * Dodaje nowe aktywo do rynku w trakcie działania symulacji.
+     *
+     * @param asset aktywo do dodania
+     * @return identyfikator nadany aktywu
+     * @throws IllegalArgumentException gdy aktywo o tym symbolu już jest na rynku
+     */
+    public int listAsset(Asset asset) {
+        return listAssets(List.of(asset))[0];
+    }
+
+    /**
+     * Dodaje wiele aktywów naraz - migawka jest publikowana i słuchacze
+     * powiadamiani raz na całą partię, więc to zalecany sposób przy dużej
+     * liczbie nowych instrumentów.
+     *
+     * @param assets aktywa do dodania
+     * @return identyfikatory nadane aktywom (w tej samej kolejności)
+     * @throws IllegalArgumentException gdy któryś symbol już jest na rynku
+     */
+    public synchronized int[] listAssets(Collection<? extends Asset> assets) {
+        Set<String> newSymbols = new HashSet<>();
+        for (Asset asset : assets) {
+            if (assetMap.containsKey(asset.getSymbol()) || !newSymbols.add(asset.getSymbol())) {
+                throw new IllegalArgumentException("Aktywo " + asset.getSymbol() + " już jest na rynku");
+            }
+        }
+
+        // Wolne id leżą w części widocznej dla migawek - wtedy kopiujemy tablicę raz.
+        // Nowe id trafiają za koniec układu, więc zwykle wystarcza zapas miejsca.
+        if (assets.size() > 0 && !freeIds.isEmpty()) {
+            unshareLayout();
+        }
+        ensureCapacity(assetCount + Math.max(0, assets.size() - freeIds.size()));
+
+        int[] ids = new int[assets.size()];
+        int i = 0;
         for (Asset asset : assets) {
+            int id = freeIds.isEmpty() ? assetCount++ : freeIds.pop();
+            assetsById[id] = asset;
+            idsBySymbol.put(asset.getSymbol(), id);
             assetMap.put(asset.getSymbol(), asset);
+            ids[i++] = id;
+        }
+        layout = null;
+        publishSnapshot();
+
+        i = 0;
+        for (Asset asset : assets) {
+            for (MarketListener listener : listeners) {
+                listener.onAssetListed(asset, ids[i]);
+            }
+            i++;
+        }
+        return ids;
+    }
+
+    /**
+     * Wycofuje aktywo z rynku.
+     *
+     * Słuchacze (np. portfele) są powiadamiani z ostatnią ceną aktywa,
+     * żeby mogli rozliczyć posiadane pozycje.
+     *
+     * @param symbol symbol aktywa do wycofania
+     * @return wycofane aktywo lub pusty Optional gdy nie było go na rynku
+     */
+    public Optional<Asset> delistAsset(String symbol) {
+        List<Asset> delisted = delistAssets(List.of(symbol));
+        return delisted.isEmpty() ? Optional.empty() : Optional.of(delisted.get(0));
+    }
+
+    /**
+     * Wycofuje wiele aktywów naraz - tablica identyfikatorów jest kopiowana
+     * i migawka publikowana tylko raz. Symbole, których nie ma na rynku, są pomijane.
+     *
+     * @param symbols symbole aktywów do wycofania
+     * @return wycofane aktywa (w kolejności symboli)
+     */
+    public synchronized List<Asset> delistAssets(Collection<String> symbols) {
+        List<Asset> delisted = new ArrayList<>();
+        int[] ids = new int[symbols.size()];
+        for (String symbol : symbols) {
+            Asset asset = assetMap.remove(symbol);
+            if (asset == null) {
+                continue;
+            }
+            if (delisted.isEmpty()) {
+                unshareLayout();    // stare migawki dalej widzą wycofywane aktywa
+            }
+            int id = idsBySymbol.remove(symbol);
+            assetsById[id] = null;
+            freeIds.push(id);
+            ids[delisted.size()] = id;
+            delisted.add(asset);
+        }
+        if (delisted.isEmpty()) {
+            return delisted;
+        }
+        layout = null;
+        publishSnapshot();
+
+        for (int i = 0; i < delisted.size(); i++) {
+            for (MarketListener listener : listeners) {
+                listener.onAssetDelisted(delisted.get(i), ids[i]);
+            }
+        }
+        return delisted;
+    }
+
+    /**
+     * Przed zmianą pozycji widocznej dla migawek kopiuje tablicę układu
+     * (copy-on-write) - raz na operację, a nie raz na aktywo.
+     */
+    private void unshareLayout() {
+        if (sharedCount > 0) {
+            assetsById = assetsById.clone();
+            sharedCount = 0;
         }
     }
-    
+
+    /**
+     * Zapewnia miejsce na podaną liczbę id. Tablica rośnie co najmniej
+     * dwukrotnie, więc dopisywanie aktywów po jednym kosztuje zamortyzowane O(1).
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > assetsById.length) {
+            assetsById = Arrays.copyOf(assetsById, Math.max(capacity, 2 * assetsById.length));
+            sharedCount = 0;
+        }
+    }
+
+    /**
+     * Dzieli akcje aktywa w proporcji numerator:denominator (np. 2:1).
+     *
+     * Cena aktywa jest przeliczana od razu i publikowana w nowej migawce
+     * (z tym samym numerem ticka), a słuchacze dostają onAssetSplit, żeby
+     * przeliczyć swoje indeksy pozycji. Portfele przeliczają swoje ilości
+     * same, przy najbliższym sięgnięciu po pozycję.
+     *
+     * @return podzielone aktywo lub pusty Optional gdy nie ma go na rynku
+     * @throws IllegalArgumentException gdy proporcja nie jest dodatnia
+     */
+    public synchronized Optional<Asset> splitAsset(String symbol, int numerator, int denominator) {
+        Asset asset = assetMap.get(symbol);
+        if (asset == null) {
+            return Optional.empty();
+        }
+        asset.applySplit(numerator, denominator);
+        publishSnapshot();
+
+        int id = idsBySymbol.get(symbol);
+        for (MarketListener listener : listeners) {
+            listener.onAssetSplit(asset, id, numerator, denominator);
+        }
+        return Optional.of(asset);
+    }
+
     /**
      * Zwraca aktywo o podanym symbolu.
      */
     public Optional<Asset> getAsset(String symbol) {
         return Optional.ofNullable(assetMap.get(symbol));
     }
-    
+
+    /**
+     * Zwraca identyfikator aktywa o podanym symbolu lub -1 gdy go nie ma.
+     */
+    public int getAssetId(String symbol) {
+        Integer id = idsBySymbol.get(symbol);
+        return id != null ? id : -1;
+    }
+
     /**
      * Aktualizuje ceny wszystkich aktywów na rynku.
+     *
+     * Po aktualizacji publikuje nową niezmienną migawkę cen - czytelnicy
+     * korzystający z getSnapshot() widzą albo cały stary, albo cały nowy tick.
      */
-    public void updatePrices() {
-        for (Asset asset : assetMap.values()) {
-            asset.updatePrice(); // Polimorfizm w akcji!
+    public synchronized void updatePrices() {
+        // Jedna liczba losowa na każde id - losujemy wszystkie naraz
+        if (randomDraws.length < assetCount) {
+            randomDraws = new double[assetCount];
         }
+        RandomSource.fill(random.forTick(tick + 1), randomDraws, assetCount);
+
+        for (int id = 0; id < assetCount; id++) {
+            Asset asset = assetsById[id];
+            if (asset != null) {
+                asset.updatePrice(randomDraws[id]); // Polimorfizm w akcji!
+            }
+        }
+        tick++;
+        // Silniki wyceny przeliczają swoje aktywa hurtowo, po aktywach bazowych
+        for (BatchPricer pricer : pricers) {
+            pricer.reprice(this, tick);
+        }
+        MarketSnapshot previous = snapshot;
+        publishSnapshot();
+
+        for (MarketListener listener : listeners) {
+            listener.onPricesUpdated(previous, snapshot);
+        }
+    }
+
+    /**
+     * Przywraca stan rynku zapisany w punkcie kontrolnym: numer ticka, ziarno
+     * losowości i ceny wszystkich aktywów (indeksowane id).
+     *
+     * Rynek musi mieć ten sam układ aktywów co w chwili zapisu - sprawdza to
+     * odczyt punktu kontrolnego. Ponieważ liczby losowe każdego ticka wynikają
+     * tylko z ziarna i numeru ticka, dalszy przebieg jest identyczny z oryginałem.
+     * Silniki wyceny przeliczają swoje aktywa, a słuchacze nie są powiadamiani.
+     *
+     * @throws IllegalArgumentException gdy liczba cen nie zgadza się z liczbą id
+     */
+    public synchronized void restoreState(long seed, long restoredTick, double[] pricesById) {
+        if (pricesById.length != assetCount) {
+            throw new IllegalArgumentException("Punkt kontrolny ma " + pricesById.length
+                    + " cen, a rynek " + assetCount + " identyfikatorów");
+        }
+        for (int id = 0; id < assetCount; id++) {
+            if (assetsById[id] != null) {
+                assetsById[id].setCurrentPrice(pricesById[id]);
+            }
+        }
+        random = new RandomSource(seed);
+        tick = restoredTick;
+        for (BatchPricer pricer : pricers) {
+            pricer.reprice(this, tick);
+        }
+        publishSnapshot();
+    }
+
+    /**
+     * Tworzy i publikuje migawkę aktualnych cen.
+     * Jedna nowa tablica na tick - starymi migawkami zajmie się garbage collector,
+     * gdy ostatni czytelnik przestanie ich używać.
+     */
+    private void publishSnapshot() {
+        double[] prices = new double[assetCount];
+        for (int id = 0; id < assetCount; id++) {
+            Asset asset = assetsById[id];
+            prices[id] = asset != null ? asset.getCurrentPrice() : Double.NaN;
+        }
+        if (layout == null) {
+            layout = new MarketSnapshot.Layout(assetsById, assetCount);
+            sharedCount = assetCount;
+        }
+        snapshot = new MarketSnapshot(tick, layout, prices);
     }
-    
+
+    /**
+     * Zwraca ostatnią opublikowaną migawkę cen.
+     *
+     * Metoda nie blokuje i nie alokuje pamięci - może być wywoływana
+     * z wielu wątków jednocześnie, również w trakcie updatePrices().
+     */
+    public MarketSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Zwraca źródło liczb losowych rynku (np. żeby zapisać ziarno przebiegu).
+     */
+    public RandomSource getRandomSource() {
+        return random;
+    }
+
+    /**
+     * Zwraca numer bieżącego kroku czasowego.
+     */
+    public long getTick() {
+        return snapshot.getTick();
+    }
+
     /**
      * Zwraca mapę wszystkich aktywów (tylko do odczytu).
+     *
+     * Uwaga: obiekty Asset zmieniają ceny w trakcie updatePrices().
+     * Do spójnego odczytu cen z innych wątków służy getSnapshot().
      */
     public Map<String, Asset> getAllAssets() {
         return Collections.unmodifiableMap(assetMap);
     }
-    
+
     /**
      * Sprawdza czy aktywo o danym symbolu istnieje na rynku.
      */
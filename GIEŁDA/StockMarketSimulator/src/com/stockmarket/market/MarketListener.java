@@ -0,0 +1,52 @@
+package com.stockmarket.market;
+
+import com.stockmarket.model.Asset;
+
+/**
+ * Interfejs dla obiektów, które chcą być powiadamiane o zdarzeniach na rynku.
+ *
+ * Wszystkie metody mają domyślne (puste) implementacje, więc słuchacz
+ * nadpisuje tylko te zdarzenia, które go interesują.
+ * Powiadomienia są wysyłane z wątku, który zmienił stan rynku,
+ * i nigdy równolegle dla tego samego rynku.
+ */
+public interface MarketListener {
+
+    /**
+     * Wywoływana po dodaniu aktywa do rynku.
+     *
+     * @param asset nowe aktywo
+     * @param id identyfikator nadany aktywu (może być ponownie użytym id po wycofanym aktywie)
+     */
+    default void onAssetListed(Asset asset, int id) {
+    }
+
+    /**
+     * Wywoływana po wycofaniu aktywa z rynku.
+     *
+     * @param asset wycofane aktywo (z ostatnią ceną rynkową)
+     * @param id identyfikator, który od teraz jest wolny
+     */
+    default void onAssetDelisted(Asset asset, int id) {
+    }
+
+    /**
+     * Wywoływana po podziale akcji (split), gdy nowa cena jest już opublikowana.
+     * Ilości w pozycjach zmieniają się w proporcji numerator/denominator
+     * (z obcięciem ułamka - Asset.splitQuantity()).
+     *
+     * @param asset podzielone aktywo (z ceną po podziale)
+     * @param id identyfikator aktywa
+     */
+    default void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+    }
+
+    /**
+     * Wywoływana po każdej aktualizacji cen, gdy nowa migawka jest już opublikowana.
+     *
+     * @param previous migawka z poprzedniego ticka
+     * @param current migawka z bieżącego ticka
+     */
+    default void onPricesUpdated(MarketSnapshot previous, MarketSnapshot current) {
+    }
+}
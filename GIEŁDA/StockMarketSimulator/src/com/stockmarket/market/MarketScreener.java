@@ -0,0 +1,387 @@
+package com.stockmarket.market;
+
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.Bond;
+import java.util.*;
+
+/**
+ * Warstwa zapytań nad rynkiem - indeksy wtórne do szybkiego przesiewania aktywów.
+ *
+ * Screener utrzymuje:
+ * - partycje aktywów według typu (Stock, Bond, ...),
+ * - indeks każdej partycji posortowany po cenie,
+ * - indeks obligacji posortowany po stopie procentowej,
+ * - ranking K aktywów o największej zmianie ceny w ostatnim ticku (kopiec K-elementowy).
+ *
+ * Indeksy są przebudowywane raz na tick w wątku symulacji i publikowane
+ * jako niezmienny stan przez pole volatile. Zapytania nie skanują rynku -
+ * korzystają z wyszukiwania binarnego i kosztują O(log n + wynik).
+ * Aktywa dodane lub wycofane między tickami pojawiają się w indeksach po najbliższym ticku.
+ * Podział akcji zmienia cenę poza tickiem, więc indeksy cenowe są wtedy
+ * przebudowywane od razu, z migawki po podziale; ranking zmian zostaje
+ * z ostatniego ticka (następny tick porównuje już ceny po podziale).
+ */
+public class MarketScreener implements MarketListener {
+
+    private final Market market;
+    private final int moversCapacity;
+
+    // Członkostwo w partycjach - modyfikowane tylko przez wątek rynku
+    private final Map<Class<? extends Asset>, IdSet> partitions;
+    private final IdSet bonds;
+    private boolean bondRatesDirty;
+
+    // Ostatnio opublikowany stan indeksów
+    private volatile ScreenerState state;
+
+    /**
+     * Tworzy screener i rejestruje go jako słuchacza rynku.
+     *
+     * @param market rynek do indeksowania
+     * @param moversCapacity ile największych zmian cen ma być śledzonych w każdym ticku
+     */
+    public MarketScreener(Market market, int moversCapacity) {
+        if (moversCapacity <= 0) {
+            throw new IllegalArgumentException("Liczba śledzonych aktywów musi być dodatnia");
+        }
+        this.market = market;
+        this.moversCapacity = moversCapacity;
+        this.partitions = new HashMap<>();
+        this.bonds = new IdSet();
+
+        synchronized (market) {
+            MarketSnapshot snapshot = market.getSnapshot();
+            for (int id = 0; id < snapshot.size(); id++) {
+                Asset asset = snapshot.getAsset(id);
+                if (asset != null) {
+                    onAssetListed(asset, id);
+                }
+            }
+            rebuild(snapshot, snapshot);
+            market.addListener(this);
+        }
+    }
+
+    @Override
+    public void onAssetListed(Asset asset, int id) {
+        partitions.computeIfAbsent(asset.getClass(), type -> new IdSet()).add(id);
+        if (asset instanceof Bond) {
+            bonds.add(id);
+            bondRatesDirty = true;
+        }
+    }
+
+    @Override
+    public void onAssetDelisted(Asset asset, int id) {
+        IdSet partition = partitions.get(asset.getClass());
+        if (partition != null) {
+            partition.remove(id);
+        }
+        if (asset instanceof Bond) {
+            bonds.remove(id);
+            bondRatesDirty = true;
+        }
+    }
+
+    @Override
+    public void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+        ScreenerState old = state;
+        MarketSnapshot current = market.getSnapshot();
+        state = new ScreenerState(current, indexByPrice(current), old.bondsByRate, old.topMovers);
+    }
+
+    @Override
+    public void onPricesUpdated(MarketSnapshot previous, MarketSnapshot current) {
+        rebuild(previous, current);
+    }
+
+    /**
+     * Przebudowuje indeksy cenowe, ranking zmian i (jeśli trzeba) indeks stóp procentowych.
+     */
+    private void rebuild(MarketSnapshot previous, MarketSnapshot current) {
+        Map<Class<? extends Asset>, SortedColumn> byPrice = indexByPrice(current);
+
+        ScreenerState old = state;
+        SortedColumn bondsByRate;
+        if (old == null || bondRatesDirty) {
+            double[] rates = new double[current.size()];
+            for (int i = 0; i < bonds.size; i++) {
+                int id = bonds.ids[i];
+                rates[id] = ((Bond) current.getAsset(id)).getInterestRate();
+            }
+            bondsByRate = SortedColumn.sortedBy(bonds, rates);
+            bondRatesDirty = false;
+        } else {
+            bondsByRate = old.bondsByRate;
+        }
+
+        state = new ScreenerState(current, byPrice, bondsByRate, findTopMovers(previous, current));
+    }
+
+    /**
+     * Sortuje każdą partycję po cenach z podanej migawki.
+     */
+    private Map<Class<? extends Asset>, SortedColumn> indexByPrice(MarketSnapshot current) {
+        double[] prices = new double[current.size()];
+        current.copyPrices(prices);
+
+        Map<Class<? extends Asset>, SortedColumn> byPrice = new HashMap<>();
+        for (Map.Entry<Class<? extends Asset>, IdSet> entry : partitions.entrySet()) {
+            byPrice.put(entry.getKey(), SortedColumn.sortedBy(entry.getValue(), prices));
+        }
+        return byPrice;
+    }
+
+    /**
+     * Wybiera K aktywów o największej bezwzględnej zmianie procentowej ceny.
+     * Kopiec minimalny rozmiaru K - koszt O(n log K) zamiast sortowania całego rynku.
+     */
+    private SortedColumn findTopMovers(MarketSnapshot previous, MarketSnapshot current) {
+        int[] heapIds = new int[moversCapacity];
+        double[] heapKeys = new double[moversCapacity];
+        int heapSize = 0;
+
+        int n = Math.min(previous.size(), current.size());
+        for (int id = 0; id < n; id++) {
+            double before = previous.getPrice(id);
+            double after = current.getPrice(id);
+            // Pomijamy wolne id, nowe aktywa i id ponownie użyte przez inne aktywo
+            if (!(before > 0) || Double.isNaN(after) || previous.getAsset(id) != current.getAsset(id)) {
+                continue;
+            }
+            double key = Math.abs(after / before - 1.0);
+            if (heapSize < moversCapacity) {
+                heapIds[heapSize] = id;
+                heapKeys[heapSize] = key;
+                siftUp(heapIds, heapKeys, heapSize++);
+            } else if (key > heapKeys[0]) {
+                heapIds[0] = id;
+                heapKeys[0] = key;
+                siftDown(heapIds, heapKeys, heapSize);
+            }
+        }
+
+        IdSort.sortParallel(heapIds, heapKeys, heapSize);
+        return new SortedColumn(heapIds, heapKeys, heapSize);
+    }
+
+    private static void siftUp(int[] ids, double[] keys, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= keys[i]) {
+                break;
+            }
+            swap(ids, keys, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] ids, double[] keys, int size) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int smallest = left + 1 < size && keys[left + 1] < keys[left] ? left + 1 : left;
+            if (keys[i] <= keys[smallest]) {
+                break;
+            }
+            swap(ids, keys, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] ids, double[] keys, int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+    }
+
+    // ========== ZAPYTANIA ==========
+
+    /**
+     * Zwraca migawkę rynku, z której pochodzą aktualne indeksy.
+     */
+    public MarketSnapshot getSnapshot() {
+        return state.snapshot;
+    }
+
+    /**
+     * Zwraca wszystkie aktywa danego typu posortowane rosnąco po cenie.
+     */
+    public List<Asset> getAssetsOfType(Class<? extends Asset> type) {
+        ScreenerState current = state;
+        SortedColumn column = current.byPrice.get(type);
+        return column == null ? List.of() : column.assets(current.snapshot, 0, column.size);
+    }
+
+    /**
+     * Zwraca aktywa danego typu o cenie z przedziału [minPrice, maxPrice], rosnąco po cenie.
+     */
+    public List<Asset> findByPrice(Class<? extends Asset> type, double minPrice, double maxPrice) {
+        ScreenerState current = state;
+        SortedColumn column = current.byPrice.get(type);
+        if (column == null) {
+            return List.of();
+        }
+        int from = column.lowerBound(minPrice);
+        int to = column.upperBound(maxPrice);
+        return column.assets(current.snapshot, from, to);
+    }
+
+    /**
+     * Zwraca obligacje o stopie procentowej większej niż podana, rosnąco po stopie.
+     */
+    public List<Bond> findBondsWithRateAbove(double interestRate) {
+        ScreenerState current = state;
+        SortedColumn column = current.bondsByRate;
+        int from = column.upperBound(interestRate);
+        List<Bond> result = new ArrayList<>(column.size - from);
+        for (int i = from; i < column.size; i++) {
+            result.add((Bond) current.snapshot.getAsset(column.ids[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Zwraca k aktywów o największej bezwzględnej zmianie ceny w ostatnim ticku,
+     * od największej zmiany.
+     *
+     * @throws IllegalArgumentException gdy k przekracza liczbę śledzonych aktywów
+     */
+    public List<Asset> getTopMovers(int k) {
+        if (k > moversCapacity) {
+            throw new IllegalArgumentException(
+                String.format("Screener śledzi tylko %d największych zmian", moversCapacity));
+        }
+        ScreenerState current = state;
+        SortedColumn movers = current.topMovers;
+        int count = Math.min(k, movers.size);
+        List<Asset> result = new ArrayList<>(count);
+        for (int i = movers.size - 1; i >= movers.size - count; i--) {
+            result.add(current.snapshot.getAsset(movers.ids[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Zwraca rynek, nad którym działa screener.
+     */
+    public Market getMarket() {
+        return market;
+    }
+
+    // ========== STRUKTURY POMOCNICZE ==========
+
+    /**
+     * Zbiór identyfikatorów z usuwaniem w O(1) (zamiana z ostatnim elementem).
+     */
+    private static final class IdSet {
+        private int[] ids = new int[16];
+        private int[] positions = new int[16];  // id -> pozycja w ids + 1 (0 = brak)
+        private int size;
+
+        void add(int id) {
+            if (id >= positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(id + 1, positions.length * 2));
+            }
+            if (positions[id] != 0) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size] = id;
+            positions[id] = ++size;
+        }
+
+        void remove(int id) {
+            if (id >= positions.length || positions[id] == 0) {
+                return;
+            }
+            int index = positions[id] - 1;
+            int last = ids[--size];
+            ids[index] = last;
+            positions[last] = index + 1;
+            positions[id] = 0;
+        }
+    }
+
+    /**
+     * Identyfikatory posortowane rosnąco po kluczu razem z kopią kluczy
+     * (do wyszukiwania binarnego bez sięgania do tablicy cen).
+     */
+    private static final class SortedColumn {
+        final int[] ids;
+        final double[] keys;
+        final int size;
+
+        SortedColumn(int[] ids, double[] keys, int size) {
+            this.ids = ids;
+            this.keys = keys;
+            this.size = size;
+        }
+
+        static SortedColumn sortedBy(IdSet set, double[] keyById) {
+            int[] ids = Arrays.copyOf(set.ids, set.size);
+            IdSort.sortByKey(ids, ids.length, keyById);
+            double[] keys = new double[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                keys[i] = keyById[ids[i]];
+            }
+            return new SortedColumn(ids, keys, ids.length);
+        }
+
+        /** Pierwsza pozycja z kluczem >= value. */
+        int lowerBound(double value) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid] < value) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        /** Pierwsza pozycja z kluczem > value. */
+        int upperBound(double value) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid] <= value) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        List<Asset> assets(MarketSnapshot snapshot, int from, int to) {
+            List<Asset> result = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                result.add(snapshot.getAsset(ids[i]));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Niezmienny komplet indeksów z jednego ticka.
+     */
+    private static final class ScreenerState {
+        final MarketSnapshot snapshot;
+        final Map<Class<? extends Asset>, SortedColumn> byPrice;
+        final SortedColumn bondsByRate;
+        final SortedColumn topMovers;
+
+        ScreenerState(MarketSnapshot snapshot, Map<Class<? extends Asset>, SortedColumn> byPrice,
+                      SortedColumn bondsByRate, SortedColumn topMovers) {
+            this.snapshot = snapshot;
+            this.byPrice = byPrice;
+            this.bondsByRate = bondsByRate;
+            this.topMovers = topMovers;
+        }
+    }
+}
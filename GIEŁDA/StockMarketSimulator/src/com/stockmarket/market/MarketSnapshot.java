@@ -0,0 +1,135 @@
+package com.stockmarket.market;
+
+import com.stockmarket.model.Asset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Niezmienna migawka cen wszystkich aktywów z jednego kroku czasowego (ticka).
+ *
+ * Market publikuje nową migawkę po każdym updatePrices() przez pole volatile,
+ * więc dowolna liczba wątków może ją odczytać bez blokowania wątku symulacji.
+ * Wszystkie ceny w jednej migawce pochodzą z tego samego ticka - czytelnik
+ * nigdy nie zobaczy połowy starych i połowy nowych cen.
+ *
+ * Aktywa są numerowane identyfikatorami (id) - indeksami w tablicy cen.
+ * Tablica aktywów jest współdzielona przez kolejne migawki o tym samym układzie,
+ * nowa jest tylko tablica cen. Tablica może być dłuższa niż migawka (rynek
+ * dopisuje nowe aktywa za jej końcem) - migawka widzi tylko pierwsze size() pozycji.
+ * Indeks symboli należy do układu, a nie do rynku - nie zmienia się po
+ * późniejszym dodaniu, wycofaniu czy ponownym użyciu id. Id wycofanego aktywa ma w migawce wartość null
+ * i cenę Double.NaN, dopóki rynek nie użyje go ponownie.
+ */
+public final class MarketSnapshot {
+
+    private final long tick;
+    private final Layout layout;                // układ wspólny z migawkami o tej samej strukturze
+    private final Asset[] assets;               // id -> aktywo (tylko do odczytu!)
+    private final double[] prices;              // id -> cena w tym ticku
+
+    /**
+     * Konstruktor dostępny tylko dla Market - tablice nie są kopiowane,
+     * więc nikt poza rynkiem nie może ich później zmodyfikować.
+     */
+    MarketSnapshot(long tick, Layout layout, double[] prices) {
+        this.tick = tick;
+        this.layout = layout;
+        this.assets = layout.assets;
+        this.prices = prices;
+    }
+
+    /**
+     * Układ aktywów jednej epoki struktury rynku: pierwsze size pozycji tablicy
+     * id -> aktywo i indeks symbol -> id. Market tworzy nowy układ przy każdym
+     * dodaniu lub wycofaniu aktywów, a ticki cenowe i podziały go współdzielą.
+     *
+     * Indeks symboli jest budowany dopiero przy pierwszym wyszukiwaniu - dodawanie
+     * aktywów po jednym nie kopiuje przy każdym wywołaniu całej mapy.
+     */
+    static final class Layout {
+
+        final Asset[] assets;
+        final int size;
+        private volatile Map<String, Integer> ids;
+
+        Layout(Asset[] assets, int size) {
+            this.assets = assets;
+            this.size = size;
+        }
+
+        Map<String, Integer> ids() {
+            Map<String, Integer> index = ids;
+            if (index == null) {
+                // Wyścig dwóch wątków zbuduje dwa identyczne indeksy - to nieszkodliwe
+                index = new HashMap<>(size * 2);
+                for (int id = 0; id < size; id++) {
+                    if (assets[id] != null) {
+                        index.put(assets[id].getSymbol(), id);
+                    }
+                }
+                ids = index;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Zwraca numer kroku czasowego z którego pochodzi migawka (0 = stan początkowy).
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Zwraca liczbę identyfikatorów aktywów w migawce.
+     */
+    public int size() {
+        return prices.length;
+    }
+
+    /**
+     * Zwraca aktywo o podanym identyfikatorze lub null gdy id jest wolne.
+     */
+    public Asset getAsset(int id) {
+        return assets[Objects.checkIndex(id, prices.length)];
+    }
+
+    /**
+     * Zwraca symbol aktywa o podanym identyfikatorze.
+     */
+    public String getSymbol(int id) {
+        Asset asset = assets[Objects.checkIndex(id, prices.length)];
+        return asset != null ? asset.getSymbol() : null;
+    }
+
+    /**
+     * Zwraca cenę aktywa o podanym identyfikatorze.
+     */
+    public double getPrice(int id) {
+        return prices[id];
+    }
+
+    /**
+     * Zwraca identyfikator aktywa o podanym symbolu lub -1 gdy go nie ma w tej migawce.
+     */
+    public int indexOf(String symbol) {
+        Integer id = layout.ids().get(symbol);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Zwraca cenę aktywa o podanym symbolu lub Double.NaN gdy go nie ma.
+     */
+    public double getPrice(String symbol) {
+        int id = indexOf(symbol);
+        return id >= 0 ? prices[id] : Double.NaN;
+    }
+
+    /**
+     * Kopiuje wszystkie ceny do podanej tablicy (np. bufora wielokrotnego użytku czytelnika).
+     */
+    public void copyPrices(double[] target) {
+        System.arraycopy(prices, 0, target, 0, prices.length);
+    }
+}
@@ -1,7 +1,11 @@
 package com.stockmarket.model;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Abstrakcyjna klasa bazowa reprezentująca dowolny instrument finansowy.
+ * Cena aktywa jest wyrażona w jego walucie notowań (domyślnie PLN).
  */
 public abstract class Asset {
     
@@ -9,11 +13,26 @@ public abstract class Asset {
     protected String symbol;        
     protected String name;          
     protected double currentPrice;  
+    protected final Currency currency;
+    // Łączna liczba sztuk w transakcjach - LongAdder, bo portfele handlują z wielu wątków
+    private final LongAdder tradedVolume = new LongAdder();
+    // Historia podziałów akcji: epoka = liczba dotychczasowych podziałów
+    private volatile int splitEpoch;
+    private int[] splitNumerators = new int[0];
+    private int[] splitDenominators = new int[0];
+    private double[] splitPrices = new double[0];   // cena zaraz po podziale (do wyceny ułamków)
     
     /**
-     * Konstruktor klasy bazowej.
+     * Konstruktor klasy bazowej - aktywo notowane w PLN.
      */
     public Asset(String symbol, String name, double initialPrice) {
+        this(symbol, name, initialPrice, Currency.PLN);
+    }
+    
+    /**
+     * Konstruktor aktywa notowanego w podanej walucie.
+     */
+    public Asset(String symbol, String name, double initialPrice, Currency currency) {
         // Sprawdzamy poprawność danych wejściowych
         if (symbol == null || symbol.trim().isEmpty()) {
             throw new IllegalArgumentException("Symbol aktywa nie może być pusty");
@@ -24,7 +43,11 @@ public abstract class Asset {
         if (initialPrice < 0) {
             throw new IllegalArgumentException("Cena aktywa nie może być ujemna");
         }
+        if (currency == null) {
+            throw new IllegalArgumentException("Waluta aktywa nie może być null");
+        }
         
+        this.currency = currency;
         this.symbol = symbol;
         this.name = name;
         this.currentPrice = initialPrice;
@@ -43,11 +66,111 @@ public abstract class Asset {
         return currentPrice;
     }
     
+    public Currency getCurrency() {
+        return currency;
+    }
+    
+    /**
+     * Dolicza transakcję do wolumenu obrotu aktywem.
+     * 
+     * @param quantity liczba sztuk w transakcji
+     */
+    public void recordTrade(int quantity) {
+        tradedVolume.add(quantity);
+    }
+    
+    /**
+     * Zwraca łączny wolumen obrotu od początku symulacji (liczbę sztuk).
+     * Wolumen w danym okresie to różnica dwóch odczytów.
+     */
+    public long getTradedVolume() {
+        return tradedVolume.sum();
+    }
+    
+    /**
+     * Dzieli akcje w proporcji numerator:denominator (np. 2:1 - każda akcja
+     * staje się dwiema, 1:10 - scalenie dziesięciu akcji w jedną). Cena jest
+     * przeliczana od razu; ilości w portfelach przelicza się przez
+     * adjustForSplits(), gdy portfel sięga po pozycję. Wywoływane przez Market.splitAsset().
+     *
+     * @throws IllegalArgumentException gdy proporcja nie jest dodatnia
+     */
+    public synchronized void applySplit(int numerator, int denominator) {
+        if (numerator <= 0 || denominator <= 0) {
+            throw new IllegalArgumentException("Proporcja podziału musi być dodatnia");
+        }
+        currentPrice = currentPrice * denominator / numerator;
+        int epoch = splitEpoch;
+        splitNumerators = Arrays.copyOf(splitNumerators, epoch + 1);
+        splitDenominators = Arrays.copyOf(splitDenominators, epoch + 1);
+        splitPrices = Arrays.copyOf(splitPrices, epoch + 1);
+        splitNumerators[epoch] = numerator;
+        splitDenominators[epoch] = denominator;
+        splitPrices[epoch] = currentPrice;
+        splitEpoch = epoch + 1;
+    }
+    
+    /**
+     * Zwraca liczbę dotychczasowych podziałów akcji (epokę podziałów).
+     */
+    public int getSplitEpoch() {
+        return splitEpoch;
+    }
+    
+    /**
+     * Przelicza ilość zapisaną w podanej epoce przez wszystkie późniejsze podziały.
+     * Ułamki sztuk są obcinane, a ich wartość (po cenie z chwili podziału)
+     * zwracana jako gotówka.
+     */
+    public synchronized SplitAdjustment adjustForSplits(int quantity, int fromEpoch) {
+        double cashInLieu = 0.0;
+        for (int epoch = fromEpoch; epoch < splitEpoch; epoch++) {
+            int adjusted = splitQuantity(quantity, splitNumerators[epoch], splitDenominators[epoch]);
+            double exact = (double) quantity * splitNumerators[epoch] / splitDenominators[epoch];
+            cashInLieu += (exact - adjusted) * splitPrices[epoch];
+            quantity = adjusted;
+        }
+        return new SplitAdjustment(quantity, cashInLieu, splitEpoch);
+    }
+    
+    /**
+     * Ilość po jednym podziale - z obcięciem ułamka w stronę zera (także dla
+     * krótkich pozycji). Ta sama reguła obowiązuje w portfelach i w indeksach posiadaczy.
+     *
+     * @throws ArithmeticException gdy wynik nie mieści się w int
+     */
+    public static int splitQuantity(int quantity, int numerator, int denominator) {
+        return Math.toIntExact((long) quantity * numerator / denominator);
+    }
+    
+    /**
+     * Ustawia cenę wyliczoną z zewnątrz - np. przez silnik wyceny obligacji
+     * przeliczający wiele aktywów naraz.
+     * 
+     * @param price nowa cena
+     * @throws IllegalArgumentException gdy cena jest ujemna lub nie jest liczbą
+     */
+    public void setCurrentPrice(double price) {
+        if (!(price >= 0)) {
+            throw new IllegalArgumentException("Cena aktywa nie może być ujemna");
+        }
+        this.currentPrice = price;
+    }
+    
     /**
      * Abstrakcyjna metoda - każda klasa dziedzicząca MUSI ją zaimplementować.
      */
     public abstract void updatePrice();
     
+    /**
+     * Aktualizuje cenę z użyciem liczby losowej z przedziału [0, 1) dostarczonej przez rynek.
+     * Rynek losuje liczby hurtowo dla wszystkich aktywów z ziarnem, więc przebieg
+     * jest powtarzalny. Domyślnie liczba jest ignorowana - aktywa z losową ceną ją nadpisują.
+     */
+    public void updatePrice(double randomDraw) {
+        updatePrice();
+    }
+    
     /**
      * Sprawdza czy dwa aktywa są identyczne na podstawie symbolu.
      */
@@ -72,6 +195,6 @@ public abstract class Asset {
      */
     @Override
     public String toString() {
-        return String.format("%s (%s): %.2f PLN", symbol, name, currentPrice);
+        return String.format("%s (%s): %.2f %s", symbol, name, currentPrice, currency);
     }
 }
\ No newline at end of file
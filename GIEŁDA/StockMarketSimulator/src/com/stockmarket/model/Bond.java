@@ -1,34 +1,137 @@
 package com.stockmarket.model;
 
+import com.stockmarket.market.Market;
 import com.stockmarket.market.Tradable;
 
 /**
  * Klasa reprezentująca obligacje.
+ *
+ * Obligacja może być prosta (tylko stopa procentowa, cena rośnie co miesiąc)
+ * albo mieć pełny harmonogram: wartość nominalną, termin wykupu i kupony
+ * płacone kilka razy w roku. Obligacje z harmonogramem wycenia BondPricer
+ * na podstawie krzywej rentowności - wtedy updatePrice() nic nie robi.
  */
 public class Bond extends Asset implements Tradable {
-    
-    private double interestRate; // stopa procentowa roczna
-    
+
+    private double interestRate; // stopa procentowa roczna (dla obligacji z harmonogramem - stopa kuponu)
+
+    private final double faceValue;     // wartość nominalna wypłacana przy wykupie
+    private final long maturityTick;    // krok czasowy wykupu (0 = obligacja bez harmonogramu)
+    private final int couponsPerYear;   // liczba kuponów w roku
+
     /**
      * Konstruktor obligacji z dodatkowym parametrem dla stopy procentowej.
      */
     public Bond(String symbol, String name, double initialPrice, double interestRate) {
         super(symbol, name, initialPrice);
         this.interestRate = interestRate;
+        this.faceValue = initialPrice;
+        this.maturityTick = 0;
+        this.couponsPerYear = 0;
+    }
+
+    /**
+     * Konstruktor obligacji kuponowej z harmonogramem płatności.
+     *
+     * Jeden krok czasowy symulacji to jeden miesiąc, więc kupony muszą
+     * przypadać na pełne miesiące (1, 2, 3, 4, 6 lub 12 kuponów w roku).
+     * Cena początkowa równa się wartości nominalnej, do czasu pierwszej wyceny.
+     *
+     * @param faceValue wartość nominalna
+     * @param couponRate roczna stopa kuponu w procentach
+     * @param maturityTick krok czasowy wykupu
+     * @param couponsPerYear liczba kuponów w roku
+     * @throws IllegalArgumentException gdy parametry harmonogramu są nieprawidłowe
+     */
+    public Bond(String symbol, String name, double faceValue, double couponRate,
+                long maturityTick, int couponsPerYear) {
+        this(symbol, name, faceValue, couponRate, maturityTick, couponsPerYear, Currency.PLN);
+    }
+
+    /**
+     * Konstruktor obligacji kuponowej notowanej w podanej walucie -
+     * kupony i wykup są wypłacane w tej samej walucie.
+     */
+    public Bond(String symbol, String name, double faceValue, double couponRate,
+                long maturityTick, int couponsPerYear, Currency currency) {
+        super(symbol, name, faceValue, currency);
+        if (faceValue <= 0) {
+            throw new IllegalArgumentException("Wartość nominalna obligacji musi być dodatnia");
+        }
+        if (maturityTick <= 0) {
+            throw new IllegalArgumentException("Termin wykupu obligacji musi być dodatni");
+        }
+        if (couponsPerYear <= 0 || (int) Market.TICKS_PER_YEAR % couponsPerYear != 0) {
+            throw new IllegalArgumentException("Liczba kuponów w roku musi dzielić liczbę miesięcy w roku");
+        }
+        this.interestRate = couponRate;
+        this.faceValue = faceValue;
+        this.maturityTick = maturityTick;
+        this.couponsPerYear = couponsPerYear;
     }
-    
+
     /**
      * Zwraca stopę procentową obligacji.
      */
     public double getInterestRate() {
         return interestRate;
     }
-    
+
+    /**
+     * Sprawdza czy obligacja ma harmonogram kuponów i termin wykupu.
+     */
+    public boolean hasSchedule() {
+        return maturityTick > 0;
+    }
+
+    public double getFaceValue() {
+        return faceValue;
+    }
+
+    public long getMaturityTick() {
+        return maturityTick;
+    }
+
+    public int getCouponsPerYear() {
+        return couponsPerYear;
+    }
+
+    /**
+     * Zwraca liczbę kroków czasowych między kolejnymi kuponami.
+     */
+    public int getCouponInterval() {
+        return hasSchedule() ? (int) Market.TICKS_PER_YEAR / couponsPerYear : 0;
+    }
+
+    /**
+     * Zwraca kwotę pojedynczego kuponu na jedną obligację.
+     */
+    public double getCouponAmount() {
+        return hasSchedule() ? faceValue * interestRate / 100.0 / couponsPerYear : 0.0;
+    }
+
+    /**
+     * Zwraca kwotę wypłacaną na jedną obligację w danym kroku czasowym
+     * (kupon, a w dniu wykupu kupon razem z wartością nominalną).
+     */
+    public double getCashFlowAt(long tick) {
+        if (!hasSchedule() || tick > maturityTick || tick <= 0) {
+            return 0.0;
+        }
+        long ticksToMaturity = maturityTick - tick;
+        double cashFlow = ticksToMaturity % getCouponInterval() == 0 ? getCouponAmount() : 0.0;
+        return tick == maturityTick ? cashFlow + faceValue : cashFlow;
+    }
+
     /**
      * Obligacje rosną powoli i przewidywalnie na podstawie stopy procentowej.
+     * Obligacje z harmonogramem są wyceniane przez BondPricer.
      */
     @Override
     public void updatePrice() {
+        if (hasSchedule()) {
+            return;
+        }
         // Miesięczny wzrost na podstawie rocznej stopy procentowej
         double monthlyGrowth = interestRate / 12.0 / 100.0;
         this.currentPrice = this.currentPrice * (1.0 + monthlyGrowth);
@@ -0,0 +1,142 @@
+package com.stockmarket.model;
+
+import com.stockmarket.market.Tradable;
+import java.util.List;
+
+/**
+ * Klasa reprezentująca aktywo złożone - indeks giełdowy albo fundusz ETF
+ * zbudowany jako koszyk innych aktywów z wagami.
+ *
+ * Wartość = suma(waga * cena składnika) / dzielnik. Dzielnik pozwala startować
+ * indeks od okrągłej wartości (np. 1000 punktów) niezależnie od cen składników.
+ * Wartość w kolejnych tickach wylicza CompositePricer z przyrostów cen
+ * składników - dlatego updatePrice() nic nie robi. Podział akcji składnika
+ * zwiększa jej wagę w tej samej proporcji (koszyk trzyma więcej tańszych
+ * sztuk), więc wartość koszyka się nie zmienia.
+ *
+ * Przykład (indeks w stylu WIG20, startujący od 1000 punktów):
+ * <pre>
+ * CompositeAsset index = CompositeAsset.withBaseValue("WIG4", "Indeks czterech spółek",
+ *         CompositeAsset.Type.INDEX, List.of(cdr, pko, kgh, peo), new double[] {1, 5, 2, 1}, 1000.0);
+ * </pre>
+ */
+public class CompositeAsset extends Asset implements Tradable {
+
+    /**
+     * Rodzaj aktywa złożonego (informacyjnie - oba są wyceniane i handlowane tak samo).
+     */
+    public enum Type {
+        INDEX,
+        ETF
+    }
+
+    private final Type type;
+    private final List<Asset> constituents;
+    private final double[] weights;
+    private final double divisor;
+
+    /**
+     * Konstruktor aktywa złożonego.
+     *
+     * @param constituents składniki koszyka (bez innych aktywów złożonych)
+     * @param weights wagi składników - liczba sztuk składnika w koszyku
+     * @param divisor dzielnik wartości koszyka
+     * @throws IllegalArgumentException gdy koszyk jest pusty, wagi nie są dodatnie,
+     *         składniki mają różne waluty albo któryś jest aktywem złożonym
+     */
+    public CompositeAsset(String symbol, String name, Type type, List<? extends Asset> constituents,
+                          double[] weights, double divisor) {
+        super(symbol, name, 0.0, constituents.isEmpty() ? Currency.PLN : constituents.get(0).getCurrency());
+        if (constituents.isEmpty() || constituents.size() != weights.length) {
+            throw new IllegalArgumentException("Koszyk musi mieć składniki i po jednej wadze na składnik");
+        }
+        if (!(divisor > 0)) {
+            throw new IllegalArgumentException("Dzielnik koszyka musi być dodatni");
+        }
+        for (int i = 0; i < weights.length; i++) {
+            Asset constituent = constituents.get(i);
+            if (!(weights[i] > 0)) {
+                throw new IllegalArgumentException("Waga składnika " + constituent.getSymbol() + " musi być dodatnia");
+            }
+            if (constituent instanceof CompositeAsset) {
+                throw new IllegalArgumentException("Składnik " + constituent.getSymbol() + " nie może być koszykiem");
+            }
+            if (constituent.getCurrency() != currency) {
+                throw new IllegalArgumentException("Składniki koszyka muszą mieć tę samą walutę");
+            }
+        }
+        this.type = type;
+        this.constituents = List.copyOf(constituents);
+        this.weights = weights.clone();
+        this.divisor = divisor;
+        this.currentPrice = calculateValue();
+    }
+
+    /**
+     * Tworzy aktywo złożone, którego bieżąca wartość równa się podanej wartości
+     * bazowej (dzielnik jest dobierany automatycznie).
+     */
+    public static CompositeAsset withBaseValue(String symbol, String name, Type type,
+                                               List<? extends Asset> constituents, double[] weights,
+                                               double baseValue) {
+        double sum = 0.0;
+        for (int i = 0; i < weights.length && i < constituents.size(); i++) {
+            sum += weights[i] * constituents.get(i).getCurrentPrice();
+        }
+        return new CompositeAsset(symbol, name, type, constituents, weights, sum / baseValue);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public List<Asset> getConstituents() {
+        return constituents;
+    }
+
+    /**
+     * Zwraca wagę (liczbę sztuk w koszyku) składnika o podanym numerze.
+     */
+    public synchronized double getWeight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Przelicza wagę podzielonego składnika w proporcji numerator/denominator.
+     * Wywoływane przez CompositePricer.onAssetSplit().
+     *
+     * @return true gdy aktywo jest składnikiem koszyka
+     */
+    public synchronized boolean applyConstituentSplit(Asset constituent, int numerator, int denominator) {
+        boolean found = false;
+        for (int i = 0; i < weights.length; i++) {
+            if (constituents.get(i) == constituent) {
+                weights[i] = weights[i] * numerator / denominator;
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    public double getDivisor() {
+        return divisor;
+    }
+
+    /**
+     * Liczy wartość koszyka od zera z bieżących cen składników.
+     */
+    public synchronized double calculateValue() {
+        double sum = 0.0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i] * constituents.get(i).getCurrentPrice();
+        }
+        return sum / divisor;
+    }
+
+    /**
+     * Aktywa złożone są wyceniane przez CompositePricer.
+     */
+    @Override
+    public void updatePrice() {
+    }
+}
@@ -0,0 +1,30 @@
+package com.stockmarket.model;
+
+/**
+ * Waluty, w których mogą być notowane aktywa i trzymana gotówka.
+ *
+ * Waluty są numerowane (ordinal()), więc kursy i salda gotówki mogą być
+ * przechowywane w zwykłych tablicach indeksowanych walutą, bez map.
+ * Walutą bazową - w której liczona jest skonsolidowana wartość portfela - jest PLN.
+ */
+public enum Currency {
+    PLN,
+    EUR,
+    USD,
+    GBP,
+    CHF;
+
+    public static final Currency BASE = PLN;
+
+    // values() za każdym razem kopiuje tablicę - trzymamy jedną kopię
+    private static final Currency[] VALUES = values();
+
+    public static final int COUNT = VALUES.length;
+
+    /**
+     * Zwraca walutę o podanym numerze (odwrotność ordinal()).
+     */
+    public static Currency byIndex(int index) {
+        return VALUES[index];
+    }
+}
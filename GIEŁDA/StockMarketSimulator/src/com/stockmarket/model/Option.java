@@ -0,0 +1,134 @@
+package com.stockmarket.model;
+
+import com.stockmarket.market.Tradable;
+
+/**
+ * Klasa reprezentująca opcję na akcję - prawo (bez obowiązku) kupna (call)
+ * albo sprzedaży (put) akcji po cenie wykonania do terminu wygaśnięcia.
+ *
+ * Opcja europejska może być wykonana tylko w terminie wygaśnięcia,
+ * amerykańska - w dowolnym momencie. Cenę opcji wylicza OptionPricer
+ * z ceny akcji bazowej, hurtowo dla wszystkich opcji - dlatego updatePrice()
+ * nic nie robi. Do pierwszej wyceny cena równa się wartości wewnętrznej.
+ * Opcja jest notowana w walucie akcji bazowej.
+ *
+ * Opcja obejmuje początkowo jedną akcję. Podział akcji bazowej nie zmienia
+ * wartości opcji - tak jak na giełdzie korygowana jest cena wykonania
+ * i liczba akcji, której dotyczy opcja (mnożnik).
+ */
+public class Option extends Asset implements Tradable {
+
+    /**
+     * Rodzaj opcji.
+     */
+    public enum Type {
+        /** Prawo kupna - zyskuje, gdy cena akcji rośnie ponad cenę wykonania. */
+        CALL,
+        /** Prawo sprzedaży - zyskuje, gdy cena akcji spada poniżej ceny wykonania. */
+        PUT
+    }
+
+    private final Stock underlying;
+    private final Type type;
+    private double strike;                // cena wykonania (jednej akcji)
+    private double multiplier = 1.0;      // liczba akcji bazowych objętych opcją
+    private final long expiryTick;        // krok czasowy wygaśnięcia
+    private final double volatility;      // roczna zmienność akcji bazowej w procentach
+    private final boolean american;
+
+    /**
+     * Konstruktor opcji.
+     *
+     * @param underlying akcja bazowa
+     * @param type rodzaj opcji (CALL lub PUT)
+     * @param strike cena wykonania
+     * @param expiryTick krok czasowy wygaśnięcia
+     * @param volatility roczna zmienność akcji bazowej w procentach (np. 30.0)
+     * @param american true dla opcji amerykańskiej, false dla europejskiej
+     * @throws IllegalArgumentException gdy parametry są nieprawidłowe
+     */
+    public Option(String symbol, String name, Stock underlying, Type type, double strike,
+                  long expiryTick, double volatility, boolean american) {
+        super(symbol, name, 0.0, underlying == null ? Currency.PLN : underlying.getCurrency());
+        if (underlying == null || type == null) {
+            throw new IllegalArgumentException("Opcja musi mieć akcję bazową i rodzaj");
+        }
+        if (!(strike > 0)) {
+            throw new IllegalArgumentException("Cena wykonania opcji musi być dodatnia");
+        }
+        if (expiryTick <= 0) {
+            throw new IllegalArgumentException("Termin wygaśnięcia opcji musi być dodatni");
+        }
+        if (!(volatility > 0)) {
+            throw new IllegalArgumentException("Zmienność musi być dodatnia");
+        }
+        this.underlying = underlying;
+        this.type = type;
+        this.strike = strike;
+        this.expiryTick = expiryTick;
+        this.volatility = volatility;
+        this.american = american;
+        this.currentPrice = getIntrinsicValue(underlying.getCurrentPrice());
+    }
+
+    public Stock getUnderlying() {
+        return underlying;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isCall() {
+        return type == Type.CALL;
+    }
+
+    public synchronized double getStrike() {
+        return strike;
+    }
+
+    /**
+     * Zwraca liczbę akcji bazowych objętych opcją (1, dopóki akcja nie zostanie podzielona).
+     */
+    public synchronized double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Koryguje opcję po podziale akcji bazowej: cena wykonania maleje, a mnożnik
+     * rośnie w proporcji numerator/denominator - wartość opcji się nie zmienia.
+     * Wywoływane przez OptionPricer.onAssetSplit().
+     */
+    public synchronized void applyUnderlyingSplit(int numerator, int denominator) {
+        strike = strike * denominator / numerator;
+        multiplier = multiplier * numerator / denominator;
+    }
+
+    public long getExpiryTick() {
+        return expiryTick;
+    }
+
+    public double getVolatility() {
+        return volatility;
+    }
+
+    public boolean isAmerican() {
+        return american;
+    }
+
+    /**
+     * Zwraca wartość wewnętrzną - ile byłoby warte natychmiastowe wykonanie
+     * przy podanej cenie akcji (za wszystkie akcje objęte opcją).
+     */
+    public synchronized double getIntrinsicValue(double spot) {
+        double perShare = isCall() ? Math.max(0.0, spot - strike) : Math.max(0.0, strike - spot);
+        return perShare * multiplier;
+    }
+
+    /**
+     * Opcje są wyceniane przez OptionPricer.
+     */
+    @Override
+    public void updatePrice() {
+    }
+}
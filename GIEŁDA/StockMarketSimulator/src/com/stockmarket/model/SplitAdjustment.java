@@ -0,0 +1,11 @@
+package com.stockmarket.model;
+
+/**
+ * Wynik przeliczenia pozycji przez zaległe podziały akcji.
+ *
+ * @param quantity ilość po podziałach (ułamki sztuk są obcinane)
+ * @param cashInLieu gotówka za obcięte ułamki sztuk, w walucie aktywa
+ * @param splitEpoch epoka podziałów, do której przeliczono pozycję
+ */
+public record SplitAdjustment(int quantity, double cashInLieu, int splitEpoch) {
+}
@@ -1,6 +1,7 @@
 package com.stockmarket.model;
 
 import com.stockmarket.market.Tradable;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Klasa reprezentująca akcje spółki.
@@ -14,16 +15,31 @@ public class Stock extends Asset implements Tradable {
         super(symbol, name, initialPrice); // Wywołujemy konstruktor klasy Asset
     }
     
+    /**
+     * Konstruktor akcji notowanych w obcej walucie (np. na giełdzie zagranicznej).
+     */
+    public Stock(String symbol, String name, double initialPrice, Currency currency) {
+        super(symbol, name, initialPrice, currency);
+    }
+    
     /**
      * Akcje mają zmienne ceny - mogą rosnąć i spadać losowo.
      */
     @Override
     public void updatePrice() {
+        updatePrice(ThreadLocalRandom.current().nextDouble());
+    }
+    
+    /**
+     * Zmiana ceny na podstawie liczby losowej od rynku (powtarzalna przy tym samym ziarnie).
+     */
+    @Override
+    public void updatePrice(double randomDraw) {
         // Losowa zmiana ceny o maksymalnie +/- 10%
-        double changePercent = (Math.random() - 0.5) * 0.2;
+        double changePercent = (randomDraw - 0.5) * 0.2;
         this.currentPrice = this.currentPrice * (1.0 + changePercent);
         
-        // Akcje nie mogą kosztować mniej niż 1 PLN
+        // Akcje nie mogą kosztować mniej niż 1 jednostkę waluty
         if (this.currentPrice < 1.0) {
             this.currentPrice = 1.0;
         }
@@ -0,0 +1,46 @@
+package com.stockmarket.portfolio;
+
+/**
+ * Zaplanowane zdarzenie korporacyjne - dywidenda pieniężna albo podział akcji.
+ *
+ * @param type rodzaj zdarzenia
+ * @param symbol symbol aktywa
+ * @param tick krok czasowy, w którym zdarzenie zostanie rozliczone (po cenach tego ticka)
+ * @param amountPerShare dywidenda na jedną akcję (tylko DIVIDEND)
+ * @param numerator licznik proporcji podziału (tylko SPLIT)
+ * @param denominator mianownik proporcji podziału (tylko SPLIT)
+ */
+public record CorporateAction(Type type, String symbol, long tick, double amountPerShare,
+                              int numerator, int denominator) {
+
+    public enum Type {
+        DIVIDEND,
+        SPLIT
+    }
+
+    public CorporateAction {
+        if (type == null || symbol == null) {
+            throw new IllegalArgumentException("Zdarzenie musi mieć rodzaj i symbol");
+        }
+        if (type == Type.DIVIDEND && !(amountPerShare > 0)) {
+            throw new IllegalArgumentException("Dywidenda musi być dodatnia");
+        }
+        if (type == Type.SPLIT && (numerator <= 0 || denominator <= 0)) {
+            throw new IllegalArgumentException("Proporcja podziału musi być dodatnia");
+        }
+    }
+
+    /**
+     * Dywidenda pieniężna wypłacana posiadaczom akcji.
+     */
+    public static CorporateAction dividend(String symbol, long tick, double amountPerShare) {
+        return new CorporateAction(Type.DIVIDEND, symbol, tick, amountPerShare, 0, 0);
+    }
+
+    /**
+     * Podział akcji w proporcji numerator:denominator (np. 2:1, albo 1:10 dla scalenia).
+     */
+    public static CorporateAction split(String symbol, long tick, int numerator, int denominator) {
+        return new CorporateAction(Type.SPLIT, symbol, tick, 0.0, numerator, denominator);
+    }
+}
@@ -0,0 +1,251 @@
+package com.stockmarket.portfolio;
+
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.Bond;
+import com.stockmarket.model.Currency;
+import java.util.*;
+
+/**
+ * Silnik zdarzeń korporacyjnych: dywidend, podziałów akcji i kuponów obligacji.
+ *
+ * Dla każdego aktywa trzyma listę portfeli, które mają w nim pozycję, razem
+ * z ilościami (indeks odwrotny, aktualizowany zdarzeniami pozycji). Każde
+ * zdarzenie to jeden przebieg po liście posiadaczy jednego aktywa - bez
+ * przeglądania wszystkich portfeli i bez szukania pozycji w mapach portfeli:
+ * <ul>
+ *   <li>dywidenda - gotówka dopisywana posiadaczom, a cena akcji spada o dywidendę
+ *       (widać to w migawce najbliższego ticka),</li>
+ *   <li>podział - Market.splitAsset(); tutaj przeliczana jest tylko tablica ilości,
+ *       a portfele przeliczają swoje pozycje same, gdy po nie sięgają,</li>
+ *   <li>kupony i wykup obligacji z harmonogramem - w ticku płatności, posiadaczom
+ *       z indeksu. To jedyne miejsce wypłaty przepływów obligacji - BondPricer
+ *       tylko je wycenia.</li>
+ * </ul>
+ * Krótkie pozycje płacą dywidendę i kupon (ujemna ilość - ujemna kwota).
+ *
+ * Przykład:
+ * <pre>
+ * CorporateActionEngine actions = new CorporateActionEngine(market);
+ * actions.register(portfolio);
+ * actions.schedule(CorporateAction.dividend("PKO", 6, 1.50));
+ * actions.schedule(CorporateAction.split("LPP", 12, 10, 1));
+ * </pre>
+ */
+public class CorporateActionEngine implements MarketListener, PositionListener {
+
+    private final Market market;
+    private final Map<Asset, Holders> holders = new IdentityHashMap<>();
+    private final Set<Bond> heldBonds = new LinkedHashSet<>();
+    private final TreeMap<Long, List<CorporateAction>> scheduled = new TreeMap<>();
+
+    public CorporateActionEngine(Market market) {
+        this.market = market;
+        market.addListener(this);
+    }
+
+    /**
+     * Dodaje portfel do indeksu posiadaczy - jego istniejące pozycje są
+     * wpisywane od razu, a kolejne zmiany docierają zdarzeniami pozycji.
+     */
+    public synchronized void register(Portfolio portfolio) {
+        portfolio.addPositionListener(this);
+        for (PortfolioPosition position : portfolio.getPositions().values()) {
+            onPositionChanged(portfolio, position.asset(), 0, position.quantity());
+        }
+    }
+
+    /**
+     * Planuje zdarzenie - zostanie rozliczone po cenach ticka action.tick()
+     * (albo najbliższego ticka, jeśli ten już minął).
+     */
+    public synchronized void schedule(CorporateAction action) {
+        scheduled.computeIfAbsent(action.tick(), tick -> new ArrayList<>()).add(action);
+    }
+
+    /**
+     * Wypłaca dywidendę od razu wszystkim posiadaczom akcji.
+     *
+     * @return łączna wypłacona kwota (w walucie aktywa)
+     * @throws IllegalArgumentException gdy aktywa nie ma na rynku
+     */
+    public synchronized double payDividend(String symbol, double amountPerShare) {
+        Asset asset = market.getAsset(symbol).orElseThrow(() ->
+            new IllegalArgumentException("Aktywo " + symbol + " nie istnieje na rynku"));
+        double total = distribute(asset, amountPerShare);
+        // Po dniu dywidendy akcja jest warta mniej o wypłaconą kwotę
+        asset.setCurrentPrice(Math.max(0.0, asset.getCurrentPrice() - amountPerShare));
+        return total;
+    }
+
+    /**
+     * Dzieli akcje od razu (przez rynek, który powiadamia wszystkie indeksy pozycji).
+     *
+     * @throws IllegalArgumentException gdy aktywa nie ma na rynku albo proporcja nie jest dodatnia
+     */
+    public void split(String symbol, int numerator, int denominator) {
+        // Bez blokady silnika - rynek wywoła onAssetSplit ze swoją blokadą
+        if (market.splitAsset(symbol, numerator, denominator).isEmpty()) {
+            throw new IllegalArgumentException("Aktywo " + symbol + " nie istnieje na rynku");
+        }
+    }
+
+    /**
+     * Zwraca liczbę portfeli z pozycją w aktywie.
+     */
+    public synchronized int getHolderCount(Asset asset) {
+        Holders list = holders.get(asset);
+        return list != null ? list.count : 0;
+    }
+
+    @Override
+    public synchronized void onPricesUpdated(MarketSnapshot previous, MarketSnapshot current) {
+        long tick = current.getTick();
+        for (Bond bond : heldBonds) {
+            double cashFlow = bond.getCashFlowAt(tick);
+            if (cashFlow > 0) {
+                distribute(bond, cashFlow);
+            }
+        }
+
+        while (!scheduled.isEmpty() && scheduled.firstKey() <= tick) {
+            for (CorporateAction action : scheduled.pollFirstEntry().getValue()) {
+                if (!market.hasAsset(action.symbol())) {
+                    continue;   // aktywo wycofane przed terminem - nie ma czego rozliczać
+                }
+                if (action.type() == CorporateAction.Type.DIVIDEND) {
+                    payDividend(action.symbol(), action.amountPerShare());
+                } else {
+                    split(action.symbol(), action.numerator(), action.denominator());
+                }
+            }
+        }
+    }
+
+    /**
+     * Dopisuje kwotę na sztukę wszystkim posiadaczom aktywa - jeden przebieg po tablicach.
+     */
+    private double distribute(Asset asset, double amountPerShare) {
+        Holders list = holders.get(asset);
+        if (list == null) {
+            return 0.0;
+        }
+        Currency currency = asset.getCurrency();
+        double total = 0.0;
+        for (int h = 0; h < list.count; h++) {
+            double amount = amountPerShare * list.quantities[h];
+            list.portfolios[h].creditCash(currency, amount);
+            total += amount;
+        }
+        return total;
+    }
+
+    /**
+     * Przelicza ilości posiadaczy po podziale - tablica intów, bez dotykania portfeli.
+     */
+    @Override
+    public synchronized void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+        Holders list = holders.get(asset);
+        if (list == null) {
+            return;
+        }
+        int[] quantities = list.quantities;
+        if (denominator == 1) {
+            // Zwykły podział - ilości tylko rosną, nikt nie wypada z listy
+            for (int h = 0; h < list.count; h++) {
+                quantities[h] = Math.multiplyExact(quantities[h], numerator);
+            }
+            return;
+        }
+        // Od końca - usunięcie przenosi ostatni wpis na miejsce usuwanego
+        for (int h = list.count - 1; h >= 0; h--) {
+            quantities[h] = Asset.splitQuantity(quantities[h], numerator, denominator);
+            if (quantities[h] == 0) {
+                list.remove(h);
+            }
+        }
+        if (list.count == 0) {
+            removeAsset(asset);
+        }
+    }
+
+    @Override
+    public synchronized void onPositionChanged(Portfolio portfolio, Asset asset, int oldQuantity, int newQuantity) {
+        Holders list = holders.get(asset);
+        if (newQuantity != 0) {
+            if (list == null) {
+                list = new Holders();
+                holders.put(asset, list);
+                if (asset instanceof Bond && ((Bond) asset).hasSchedule()) {
+                    heldBonds.add((Bond) asset);
+                }
+            }
+            Integer slot = list.slots.get(portfolio);
+            if (slot != null) {
+                list.quantities[slot] = newQuantity;
+            } else {
+                list.add(portfolio, newQuantity);
+            }
+        } else if (list != null) {
+            Integer slot = list.slots.get(portfolio);
+            if (slot != null) {
+                list.remove(slot);
+                if (list.count == 0) {
+                    removeAsset(asset);
+                }
+            }
+        }
+    }
+
+    /**
+     * Portfele rozliczają wycofane aktywo same - indeks tylko zapomina posiadaczy.
+     */
+    @Override
+    public synchronized void onAssetDelisted(Asset asset, int id) {
+        removeAsset(asset);
+    }
+
+    private void removeAsset(Asset asset) {
+        holders.remove(asset);
+        if (asset instanceof Bond) {
+            heldBonds.remove(asset);
+        }
+    }
+
+    /**
+     * Posiadacze jednego aktywa - portfele i ich ilości w równoległych tablicach.
+     */
+    private static final class Holders {
+        Portfolio[] portfolios = new Portfolio[4];
+        int[] quantities = new int[4];
+        int count;
+        final Map<Portfolio, Integer> slots = new IdentityHashMap<>();
+
+        void add(Portfolio portfolio, int quantity) {
+            if (count == portfolios.length) {
+                portfolios = Arrays.copyOf(portfolios, count * 2);
+                quantities = Arrays.copyOf(quantities, count * 2);
+            }
+            portfolios[count] = portfolio;
+            quantities[count] = quantity;
+            slots.put(portfolio, count);
+            count++;
+        }
+
+        /**
+         * Usuwa wpis, przenosząc ostatni na jego miejsce.
+         */
+        void remove(int slot) {
+            slots.remove(portfolios[slot]);
+            int last = --count;
+            if (slot != last) {
+                portfolios[slot] = portfolios[last];
+                quantities[slot] = quantities[last];
+                slots.put(portfolios[slot], slot);
+            }
+            portfolios[last] = null;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.stockmarket.portfolio;
+
+import com.stockmarket.model.Asset;
+
+/**
+ * Partie (loty) jednej pozycji w trzech równoległych tablicach prymitywów.
+ *
+ * Dla FIFO i LIFO tablice tworzą bufor cykliczny (deque) - partia jest
+ * zdejmowana z początku albo z końca w O(1), a każda partia jest zdejmowana
+ * najwyżej raz, więc zamknięcie pozycji kosztuje zamortyzowane O(1) na partię.
+ * Dla HIGHEST_COST te same tablice są kopcem binarnym według kosztu - O(log n).
+ * Częściowe zamknięcie partii zmniejsza tylko jej ilość w miejscu.
+ *
+ * Wszystkie partie mają ten sam kierunek (sign): długie albo krótkie.
+ */
+final class LotQueue {
+
+    private final LotReliefMethod method;
+    Asset asset;
+    int sign;               // 1 = partie długie, -1 = krótkie, 0 = brak partii
+    int splitEpoch;
+    double realizedGain;
+
+    int[] quantities = new int[4];     // zawsze dodatnie
+    double[] prices = new double[4];   // koszt na sztukę (dla krótkich - cena sprzedaży)
+    long[] ticks = new long[4];
+    int head;
+    int size;
+
+    LotQueue(Asset asset, LotReliefMethod method) {
+        this.asset = asset;
+        this.method = method;
+        this.splitEpoch = asset.getSplitEpoch();
+    }
+
+    /**
+     * Zwraca indeks tablicy dla i-tej partii w kolejności przechowywania.
+     */
+    int index(int i) {
+        int index = head + i;
+        return index < quantities.length ? index : index - quantities.length;
+    }
+
+    void add(int quantity, double price, long tick) {
+        if (size == quantities.length) {
+            grow();
+        }
+        if (method != LotReliefMethod.HIGHEST_COST) {
+            int index = index(size++);
+            quantities[index] = quantity;
+            prices[index] = price;
+            ticks[index] = tick;
+            return;
+        }
+        // Kopiec: przesiewanie w górę
+        int i = size++;
+        double key = key(price);
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (key(prices[parent]) >= key) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        quantities[i] = quantity;
+        prices[i] = price;
+        ticks[i] = tick;
+    }
+
+    /**
+     * Zwraca indeks partii, która zostanie zamknięta jako następna.
+     */
+    int next() {
+        switch (method) {
+            case FIFO:
+                return head;
+            case LIFO:
+                return index(size - 1);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Usuwa partię wskazaną przez next().
+     */
+    void removeNext() {
+        switch (method) {
+            case FIFO:
+                head = index(1);
+                size--;
+                break;
+            case LIFO:
+                size--;
+                break;
+            default:
+                removeHeapTop();
+        }
+        if (size == 0) {
+            head = 0;
+            sign = 0;
+        }
+    }
+
+    private void removeHeapTop() {
+        int last = --size;
+        if (last == 0) {
+            return;
+        }
+        int quantity = quantities[last];
+        double price = prices[last];
+        long tick = ticks[last];
+        double key = key(price);
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && key(prices[child + 1]) > key(prices[child])) {
+                child++;
+            }
+            if (key >= key(prices[child])) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        quantities[i] = quantity;
+        prices[i] = price;
+        ticks[i] = tick;
+    }
+
+    /**
+     * Klucz kopca: najdroższa partia długa, najtańsza krótka na szczycie.
+     */
+    private double key(double price) {
+        return sign >= 0 ? price : -price;
+    }
+
+    private void move(int from, int to) {
+        quantities[to] = quantities[from];
+        prices[to] = prices[from];
+        ticks[to] = ticks[from];
+    }
+
+    private void grow() {
+        int capacity = quantities.length * 2;
+        int[] newQuantities = new int[capacity];
+        double[] newPrices = new double[capacity];
+        long[] newTicks = new long[capacity];
+        // Rozwijamy bufor cykliczny od początku (dla kopca head jest zawsze 0)
+        for (int i = 0; i < size; i++) {
+            int index = index(i);
+            newQuantities[i] = quantities[index];
+            newPrices[i] = prices[index];
+            newTicks[i] = ticks[index];
+        }
+        quantities = newQuantities;
+        prices = newPrices;
+        ticks = newTicks;
+        head = 0;
+    }
+
+    /**
+     * Przelicza partie przez zaległe podziały akcji.
+     *
+     * Ilości partii są wyznaczane z sum narastających, więc razem dają dokładnie
+     * tyle co pozycja w portfelu (Asset.adjustForSplits na całej ilości).
+     * Zachowana partia zachowuje swój łączny koszt; partia wyzerowana przez
+     * scalenie akcji jest zamykana, a gotówka za ułamki jest jej przychodem
+     * (w przybliżeniu - ułamki zachowanych partii też trafiają do tej gotówki).
+     */
+    void applySplits() {
+        int fromEpoch = splitEpoch;
+        splitEpoch = asset.getSplitEpoch();
+        if (size == 0) {
+            return;
+        }
+        long cumulative = 0;
+        int adjustedBefore = 0;
+        int kept = 0;
+        double droppedBasis = 0.0;
+        int[] newQuantities = new int[quantities.length];
+        double[] newPrices = new double[quantities.length];
+        long[] newTicks = new long[quantities.length];
+        for (int i = 0; i < size; i++) {
+            int index = index(i);
+            cumulative += quantities[index];
+            int adjusted = asset.adjustForSplits(Math.toIntExact(cumulative), fromEpoch).quantity();
+            int lot = adjusted - adjustedBefore;
+            adjustedBefore = adjusted;
+            if (lot == 0) {
+                droppedBasis += quantities[index] * prices[index];
+                continue;
+            }
+            newQuantities[kept] = lot;
+            newPrices[kept] = prices[index] * quantities[index] / lot;
+            newTicks[kept] = ticks[index];
+            kept++;
+        }
+        double cashInLieu = asset.adjustForSplits(Math.toIntExact(cumulative), fromEpoch).cashInLieu();
+        realizedGain += (cashInLieu - droppedBasis) * sign;
+        int oldSign = sign;
+        quantities = newQuantities;
+        prices = newPrices;
+        ticks = newTicks;
+        head = 0;
+        size = 0;
+        sign = kept > 0 ? oldSign : 0;
+        // Kolejność FIFO/LIFO jest zachowana; kopiec odbudowujemy wstawiając od nowa
+        if (method == LotReliefMethod.HIGHEST_COST) {
+            for (int i = 0; i < kept; i++) {
+                add(quantities[i], prices[i], ticks[i]);
+            }
+        } else {
+            size = kept;
+        }
+    }
+}
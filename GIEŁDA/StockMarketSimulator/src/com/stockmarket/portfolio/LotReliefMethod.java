@@ -0,0 +1,16 @@
+package com.stockmarket.portfolio;
+
+/**
+ * Kolejność zamykania partii (lotów) przy sprzedaży.
+ */
+public enum LotReliefMethod {
+    /** Najpierw najstarsze partie (first in, first out). */
+    FIFO,
+    /** Najpierw najnowsze partie (last in, first out). */
+    LIFO,
+    /**
+     * Najpierw partie o najwyższym koszcie - najmniejszy zysk do opodatkowania.
+     * Dla krótkich pozycji: najpierw partie o najniższej cenie sprzedaży.
+     */
+    HIGHEST_COST
+}
@@ -0,0 +1,157 @@
+package com.stockmarket.portfolio;
+
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stan rachunku z depozytem zabezpieczającym jednego portfela.
+ *
+ * Rachunek pozwala na krótką sprzedaż (ujemne pozycje) i pożyczanie gotówki
+ * (ujemne saldo). Wartość netto pozycji i ekspozycja brutto są sumami
+ * utrzymywanymi przyrostowo przez MarginMonitor - przy transakcji i przy każdej
+ * zmianie ceny posiadanego aktywa - więc sprawdzenie ryzyka przed transakcją
+ * kosztuje O(1), niezależnie od liczby pozycji.
+ *
+ * Wszystkie wartości liczone są w PLN, po cenach z ostatniego ticka rynku (cenach
+ * rozliczeniowych) i kursach walut monitora. Gotówka wchodzi do kapitału własnego
+ * ze wszystkich walut - zadłużenie w USD po kupnie akcji z NYSE obniża kapitał
+ * tak samo jak zadłużenie w PLN.
+ */
+public class MarginAccount {
+
+    private final Portfolio portfolio;
+    private final MarginRules rules;
+    private final MarginMonitor monitor;
+
+    double netValue;        // suma ilość × cena (krótkie pozycje zmniejszają)
+    double grossExposure;   // suma |ilość| × cena
+    boolean marginCall;
+
+    // id aktywa -> miejsce tego rachunku na liście posiadaczy w MarginMonitor
+    final Map<Integer, Integer> holderSlots = new HashMap<>();
+    long touchedInTick = -1;
+
+    MarginAccount(Portfolio portfolio, MarginRules rules, MarginMonitor monitor) {
+        this.portfolio = portfolio;
+        this.rules = rules;
+        this.monitor = monitor;
+    }
+
+    public Portfolio getPortfolio() {
+        return portfolio;
+    }
+
+    public MarginRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Zwraca kapitał własny w PLN: gotówka we wszystkich walutach (może być
+     * ujemna) plus wartość netto pozycji.
+     */
+    public double getEquity() {
+        return cashValue() + netValue;
+    }
+
+    /**
+     * Gotówka przeliczona na PLN po kursach monitora. W monitorze bez kursów
+     * gotówka w walutach obcych nie jest zabezpieczeniem - nie może tam też
+     * powstać dług w walucie obcej, bo transakcje w tych walutach są odrzucane.
+     */
+    private double cashValue() {
+        double total = 0.0;
+        for (int c = 0; c < Currency.COUNT; c++) {
+            Currency currency = Currency.byIndex(c);
+            double amount = portfolio.getCash(currency);
+            if (amount != 0.0 && monitor.supports(currency)) {
+                total += amount * monitor.rate(currency);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Zwraca wartość netto pozycji (długie minus krótkie).
+     */
+    public double getNetValue() {
+        return netValue;
+    }
+
+    /**
+     * Zwraca ekspozycję brutto - sumę wartości długich i krótkich pozycji.
+     */
+    public double getGrossExposure() {
+        return grossExposure;
+    }
+
+    /**
+     * Zwraca stosunek kapitału własnego do ekspozycji brutto (nieskończoność bez pozycji).
+     */
+    public double getMarginRatio() {
+        return grossExposure > 0 ? getEquity() / grossExposure : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Sprawdza czy rachunek jest w stanie wezwania do uzupełnienia depozytu.
+     */
+    public boolean isMarginCall() {
+        return marginCall;
+    }
+
+    /**
+     * Sprawdza czy rachunek może mieć pozycję w aktywie (w jego walucie).
+     */
+    public boolean supports(Asset asset) {
+        return monitor.supports(asset.getCurrency());
+    }
+
+    /**
+     * Sprawdza transakcję przed jej wykonaniem, w czasie stałym.
+     *
+     * Transakcje zmniejszające ekspozycję są zawsze dozwolone (żeby można było
+     * zamknąć pozycje przy wezwaniu). Zwiększające ekspozycję muszą zmieścić się
+     * w limicie i zostawić kapitał własny na poziomie depozytu początkowego.
+     * Aktywa w walutach obcych są odrzucane, gdy monitor nie ma kursów walut.
+     *
+     * @param asset aktywo transakcji
+     * @param oldQuantity ilość przed transakcją
+     * @param newQuantity ilość po transakcji
+     * @param cashChange zmiana gotówki w walucie aktywa (ujemna przy kupnie, z kosztami)
+     * @return null gdy transakcja jest dozwolona, w przeciwnym razie opis powodu odrzucenia
+     */
+    public String checkTrade(Asset asset, int oldQuantity, int newQuantity, double cashChange) {
+        if (!monitor.supports(asset.getCurrency())) {
+            return MarginMonitor.currencyRejection(asset);
+        }
+        double mark = monitor.markPrice(asset);
+        double grossAfter = grossExposure + ((long) Math.abs(newQuantity) - Math.abs(oldQuantity)) * mark;
+        if (grossAfter <= grossExposure) {
+            return null;
+        }
+        double equityAfter = cashValue() + cashChange * monitor.rate(asset.getCurrency())
+            + netValue + ((long) newQuantity - oldQuantity) * mark;
+        if (grossAfter > rules.maxGrossExposure()) {
+            return String.format("Przekroczony limit ekspozycji: %.2f PLN > %.2f PLN",
+                grossAfter, rules.maxGrossExposure());
+        }
+        if (equityAfter < rules.initialMargin() * grossAfter) {
+            return String.format("Niewystarczający depozyt. Wymagany kapitał: %.2f PLN, po transakcji: %.2f PLN",
+                rules.initialMargin() * grossAfter, equityAfter);
+        }
+        return null;
+    }
+
+    /**
+     * Sprawdza poziom depozytu minimalnego i aktualizuje stan wezwania.
+     *
+     * @return true gdy rachunek właśnie wszedł w stan wezwania
+     */
+    boolean updateMarginCall() {
+        boolean below = grossExposure > 0 && getEquity() < rules.maintenanceMargin() * grossExposure;
+        boolean entered = below && !marginCall;
+        marginCall = below;
+        return entered;
+    }
+}
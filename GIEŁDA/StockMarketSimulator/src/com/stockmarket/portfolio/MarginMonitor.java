@@ -0,0 +1,380 @@
+package com.stockmarket.portfolio;
+
+import com.stockmarket.fx.FxRates;
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.Currency;
+import java.util.*;
+
+/**
+ * Monitor ryzyka rachunków z depozytem zabezpieczającym.
+ *
+ * Dla każdego aktywa trzyma listę rachunków, które mają w nim pozycję (indeks
+ * odwrotny). W każdym ticku przechodzi tylko po aktywach, które ktoś posiada:
+ * zmiana ceny jest od razu doliczana do sum rachunków posiadaczy, a rachunki,
+ * których to dotyczy, są sprawdzane pod kątem depozytu minimalnego. Wezwania
+ * (margin call) powstają w tym samym przebiegu co aktualizacja cen - bez
+ * przeglądania wszystkich portfeli.
+ *
+ * Sumy rachunków są liczone w PLN. Monitor utworzony z kursami walut (FxRates)
+ * przelicza ceny rozliczeniowe aktywów notowanych w walutach obcych na PLN
+ * w każdym ticku - zmiana samego kursu też zmienia sumy. Monitor bez kursów
+ * obsługuje tylko aktywa w PLN i odrzuca transakcje w innych walutach.
+ *
+ * Przykład:
+ * <pre>
+ * MarginMonitor monitor = new MarginMonitor(market);
+ * monitor.addMarginCallHandler(account -> System.out.println("Wezwanie! " + account.getEquity()));
+ * monitor.register(portfolio, MarginRules.standard());
+ * portfolio.sell("CDR", 100, market);   // krótka sprzedaż
+ * </pre>
+ */
+public class MarginMonitor implements MarketListener, PositionListener {
+
+    /**
+     * Reakcja na wezwanie do uzupełnienia depozytu.
+     */
+    @FunctionalInterface
+    public interface MarginCallHandler {
+        void onMarginCall(MarginAccount account);
+    }
+
+    private final Market market;
+    private final FxRates fxRates;   // null = rachunki handlują tylko aktywami w PLN
+    private final List<MarginCallHandler> handlers = new ArrayList<>();
+    private final List<MarginAccount> accounts = new ArrayList<>();
+
+    // Ceny rozliczeniowe w PLN (id -> cena), po których liczone są sumy rachunków
+    private double[] marks = new double[0];
+    // id -> posiadacze; heldIds to lista id z co najmniej jednym posiadaczem
+    private Holders[] holders = new Holders[0];
+    private int[] heldIds = new int[16];
+    private int heldCount;
+
+    private MarginAccount[] touched = new MarginAccount[16];
+    private long passNumber;
+
+    public MarginMonitor(Market market) {
+        this(market, null);
+    }
+
+    /**
+     * Tworzy monitor, który pozwala handlować na depozycie aktywami we wszystkich
+     * walutach - pozycje i gotówka są przeliczane na PLN po kursach z fxRates.
+     *
+     * @param fxRates kursy walut lub null gdy rachunki handlują tylko w PLN
+     */
+    public MarginMonitor(Market market, FxRates fxRates) {
+        this.market = market;
+        this.fxRates = fxRates;
+        market.addListener(this);
+    }
+
+    /**
+     * Zakłada rachunek z depozytem dla portfela. Istniejące pozycje są od razu
+     * wliczane do sum rachunku.
+     *
+     * @throws IllegalArgumentException gdy portfel ma już rachunek z depozytem albo
+     *         (w monitorze bez kursów walut) ma pozycje w aktywach spoza PLN
+     */
+    public synchronized MarginAccount register(Portfolio portfolio, MarginRules rules) {
+        if (portfolio.getMarginAccount() != null) {
+            throw new IllegalArgumentException("Portfel ma już rachunek z depozytem");
+        }
+        for (PortfolioPosition position : portfolio.getPositions().values()) {
+            if (!supports(position.asset().getCurrency())) {
+                throw new IllegalArgumentException(currencyRejection(position.asset()));
+            }
+        }
+        MarginAccount account = new MarginAccount(portfolio, rules, this);
+        portfolio.attachMarginAccount(account);
+        accounts.add(account);
+        portfolio.addPositionListener(this);
+        for (PortfolioPosition position : portfolio.getPositions().values()) {
+            onPositionChanged(portfolio, position.asset(), 0, position.quantity());
+        }
+        account.updateMarginCall();
+        return account;
+    }
+
+    public void addMarginCallHandler(MarginCallHandler handler) {
+        handlers.add(handler);
+    }
+
+    /**
+     * Zwraca cenę rozliczeniową aktywa w PLN - cenę z ostatniego ticka
+     * przeliczoną po kursie z tego ticka, po której liczone są sumy rachunków.
+     */
+    public synchronized double markPrice(Asset asset) {
+        int id = market.getAssetId(asset.getSymbol());
+        if (id >= 0 && id < holders.length && holders[id] != null && holders[id].count > 0) {
+            return marks[id];
+        }
+        // Nikt jeszcze nie ma pozycji - cena rozliczeniowa to cena z bieżącej migawki
+        MarketSnapshot snapshot = market.getSnapshot();
+        double price = id >= 0 && id < snapshot.size() ? snapshot.getPrice(id) : Double.NaN;
+        return (Double.isNaN(price) ? asset.getCurrentPrice() : price) * rate(asset.getCurrency());
+    }
+
+    /**
+     * Sprawdza czy rachunki mogą mieć pozycje w aktywach notowanych w tej walucie.
+     */
+    public boolean supports(Currency currency) {
+        return currency == Currency.BASE || fxRates != null;
+    }
+
+    /**
+     * Zwraca ile PLN kosztuje jednostka waluty (NaN dla waluty obcej w monitorze bez kursów).
+     */
+    double rate(Currency currency) {
+        if (currency == Currency.BASE) {
+            return 1.0;
+        }
+        return fxRates != null ? fxRates.getRate(currency) : Double.NaN;
+    }
+
+    static String currencyRejection(Asset asset) {
+        return "Rachunek z depozytem bez kursów walut obsługuje tylko aktywa w PLN, "
+            + asset.getSymbol() + " jest notowane w " + asset.getCurrency();
+    }
+
+    @Override
+    public synchronized void onPositionChanged(Portfolio portfolio, Asset asset, int oldQuantity, int newQuantity) {
+        MarginAccount account = portfolio.getMarginAccount();
+        int id = market.getAssetId(asset.getSymbol());
+        if (account == null || id < 0) {
+            return;
+        }
+        double mark = markPrice(asset);
+        account.netValue += ((long) newQuantity - oldQuantity) * mark;
+        account.grossExposure += ((long) Math.abs(newQuantity) - Math.abs(oldQuantity)) * mark;
+
+        ensureCapacity(id + 1);
+        Holders list = holders[id];
+        if (list == null) {
+            list = holders[id] = new Holders();
+        }
+        Integer slot = account.holderSlots.get(id);
+        if (slot == null && newQuantity != 0) {
+            if (list.count == 0) {
+                marks[id] = mark;
+                addHeldId(id);
+            }
+            account.holderSlots.put(id, list.add(account, newQuantity));
+        } else if (slot != null && newQuantity != 0) {
+            list.quantities[slot] = newQuantity;
+        } else if (slot != null) {
+            account.holderSlots.remove(id);
+            MarginAccount moved = list.remove(slot);
+            if (moved != null) {
+                moved.holderSlots.put(id, slot);
+            }
+            if (list.count == 0) {
+                removeHeldId(id);
+            }
+        }
+        // Zamknięcie pozycji może zakończyć wezwanie, a nowa pozycja - je wywołać
+        if (account.updateMarginCall()) {
+            notifyHandlers(account);
+        }
+    }
+
+    @Override
+    public synchronized void onPricesUpdated(MarketSnapshot previous, MarketSnapshot current) {
+        passNumber++;
+        int touchedCount = 0;
+        // Kursy z tego samego ticka co ceny - FxRates losuje je razem z rynkiem
+        double[] rates = fxRates != null ? fxRates.getConversionVector() : null;
+        for (int i = 0; i < heldCount; i++) {
+            int id = heldIds[i];
+            if (id >= current.size()) {
+                continue;
+            }
+            double price = current.getPrice(id);
+            if (rates != null && !Double.isNaN(price)) {
+                price *= rates[current.getAsset(id).getCurrency().ordinal()];
+            }
+            double delta = price - marks[id];
+            if (Double.isNaN(price) || delta == 0.0) {
+                continue;
+            }
+            marks[id] = price;
+            Holders list = holders[id];
+            for (int h = 0; h < list.count; h++) {
+                MarginAccount account = list.accounts[h];
+                int quantity = list.quantities[h];
+                account.netValue += quantity * delta;
+                account.grossExposure += Math.abs(quantity) * delta;
+                if (account.touchedInTick != passNumber) {
+                    account.touchedInTick = passNumber;
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = account;
+                }
+            }
+        }
+
+        // Sprawdzamy tylko rachunki, których wartość się zmieniła
+        for (int i = 0; i < touchedCount; i++) {
+            MarginAccount account = touched[i];
+            touched[i] = null;
+            if (account.updateMarginCall()) {
+                notifyHandlers(account);
+            }
+        }
+    }
+
+    private void notifyHandlers(MarginAccount account) {
+        for (MarginCallHandler handler : handlers) {
+            handler.onMarginCall(account);
+        }
+    }
+
+    /**
+     * Przelicza sumy wszystkich rachunków od zera.
+     *
+     * Sumy aktualizowane przyrostowo przez miliony ticków gromadzą błędy
+     * zaokrągleń - warto je co jakiś czas (np. przy punkcie kontrolnym) odświeżyć.
+     */
+    public synchronized void recompute() {
+        for (MarginAccount account : accounts) {
+            account.netValue = 0.0;
+            account.grossExposure = 0.0;
+        }
+        for (int i = 0; i < heldCount; i++) {
+            int id = heldIds[i];
+            Holders list = holders[id];
+            for (int h = 0; h < list.count; h++) {
+                int quantity = list.quantities[h];
+                list.accounts[h].netValue += quantity * marks[id];
+                list.accounts[h].grossExposure += Math.abs(quantity) * marks[id];
+            }
+        }
+        for (MarginAccount account : accounts) {
+            account.updateMarginCall();
+        }
+    }
+
+    /**
+     * Zamyka pozycje wszystkich posiadaczy w aktywie wycofanym z rynku.
+     * Portfele rozliczają je same (po ostatniej cenie), a id aktywa może zaraz
+     * zostać użyte przez nowe aktywo - dlatego czyścimy listę posiadaczy od razu.
+     */
+    @Override
+    public synchronized void onAssetDelisted(Asset asset, int id) {
+        if (id >= holders.length || holders[id] == null || holders[id].count == 0) {
+            return;
+        }
+        Holders list = holders[id];
+        for (int h = 0; h < list.count; h++) {
+            MarginAccount account = list.accounts[h];
+            int quantity = list.quantities[h];
+            account.netValue -= quantity * marks[id];
+            account.grossExposure -= Math.abs(quantity) * marks[id];
+            account.holderSlots.remove(id);
+            list.accounts[h] = null;
+        }
+        list.count = 0;
+        removeHeldId(id);
+    }
+
+    /**
+     * Przelicza ilości posiadaczy i cenę rozliczeniową po podziale akcji - tą
+     * samą regułą, którą portfele stosują przy przeliczaniu swoich pozycji.
+     * Wartość ułamków sztuk znika z sum rachunku i wraca jako gotówka, gdy
+     * portfel przeliczy pozycję.
+     */
+    @Override
+    public synchronized void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+        if (id >= holders.length || holders[id] == null || holders[id].count == 0) {
+            return;
+        }
+        Holders list = holders[id];
+        double oldMark = marks[id];
+        double newMark = oldMark * denominator / numerator;
+        marks[id] = newMark;
+        // Od końca - usunięcie przenosi ostatni wpis na miejsce usuwanego
+        for (int h = list.count - 1; h >= 0; h--) {
+            MarginAccount account = list.accounts[h];
+            int oldQuantity = list.quantities[h];
+            int newQuantity = Asset.splitQuantity(oldQuantity, numerator, denominator);
+            account.netValue += newQuantity * newMark - oldQuantity * oldMark;
+            account.grossExposure += Math.abs(newQuantity) * newMark - Math.abs(oldQuantity) * oldMark;
+            if (newQuantity != 0) {
+                list.quantities[h] = newQuantity;
+                continue;
+            }
+            account.holderSlots.remove(id);
+            MarginAccount moved = list.remove(h);
+            if (moved != null) {
+                moved.holderSlots.put(id, h);
+            }
+        }
+        if (list.count == 0) {
+            removeHeldId(id);
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (holders.length < size) {
+            int capacity = Math.max(size, holders.length * 2);
+            holders = Arrays.copyOf(holders, capacity);
+            marks = Arrays.copyOf(marks, capacity);
+        }
+    }
+
+    private void addHeldId(int id) {
+        if (heldCount == heldIds.length) {
+            heldIds = Arrays.copyOf(heldIds, heldCount * 2);
+        }
+        holders[id].heldIndex = heldCount;
+        heldIds[heldCount++] = id;
+    }
+
+    private void removeHeldId(int id) {
+        int index = holders[id].heldIndex;
+        int lastId = heldIds[--heldCount];
+        heldIds[index] = lastId;
+        holders[lastId].heldIndex = index;
+    }
+
+    /**
+     * Lista posiadaczy jednego aktywa - rachunki i ich ilości w równoległych tablicach.
+     */
+    private static final class Holders {
+        MarginAccount[] accounts = new MarginAccount[4];
+        int[] quantities = new int[4];
+        int count;
+        int heldIndex;
+
+        int add(MarginAccount account, int quantity) {
+            if (count == accounts.length) {
+                accounts = Arrays.copyOf(accounts, count * 2);
+                quantities = Arrays.copyOf(quantities, count * 2);
+            }
+            accounts[count] = account;
+            quantities[count] = quantity;
+            return count++;
+        }
+
+        /**
+         * Usuwa wpis, przenosząc ostatni na jego miejsce.
+         *
+         * @return rachunek przeniesiony na zwolnione miejsce albo null
+         */
+        MarginAccount remove(int slot) {
+            int last = --count;
+            MarginAccount moved = null;
+            if (slot != last) {
+                accounts[slot] = accounts[last];
+                quantities[slot] = quantities[last];
+                moved = accounts[slot];
+            }
+            accounts[last] = null;
+            return moved;
+        }
+    }
+}
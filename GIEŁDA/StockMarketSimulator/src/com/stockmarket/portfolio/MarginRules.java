@@ -0,0 +1,32 @@
+package com.stockmarket.portfolio;
+
+/**
+ * Zasady rachunku z depozytem zabezpieczającym (margin).
+ *
+ * @param initialMargin wymagany kapitał własny przy otwieraniu pozycji jako ułamek
+ *        ekspozycji brutto (0.5 = dźwignia najwyżej 2x)
+ * @param maintenanceMargin minimalny kapitał własny utrzymywany później - poniżej
+ *        tego poziomu następuje wezwanie do uzupełnienia depozytu (margin call)
+ * @param maxGrossExposure maksymalna ekspozycja brutto (suma |ilość| × cena) w PLN
+ */
+public record MarginRules(double initialMargin, double maintenanceMargin, double maxGrossExposure) {
+
+    public MarginRules {
+        if (!(initialMargin > 0 && initialMargin <= 1)) {
+            throw new IllegalArgumentException("Depozyt początkowy musi być z przedziału (0, 1]");
+        }
+        if (!(maintenanceMargin >= 0 && maintenanceMargin <= initialMargin)) {
+            throw new IllegalArgumentException("Depozyt minimalny musi być z przedziału [0, depozyt początkowy]");
+        }
+        if (!(maxGrossExposure > 0)) {
+            throw new IllegalArgumentException("Limit ekspozycji musi być dodatni");
+        }
+    }
+
+    /**
+     * Typowe zasady: depozyt początkowy 50%, minimalny 25%, bez limitu kwotowego.
+     */
+    public static MarginRules standard() {
+        return new MarginRules(0.5, 0.25, Double.POSITIVE_INFINITY);
+    }
+}
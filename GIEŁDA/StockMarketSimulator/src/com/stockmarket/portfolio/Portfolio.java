@@ -1,10 +1,16 @@
 package com.stockmarket.portfolio;
 
 import com.stockmarket.model.Asset;
+import com.stockmarket.model.Currency;
+import com.stockmarket.model.SplitAdjustment;
+import com.stockmarket.fx.FxRates;
 import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
 import com.stockmarket.market.Tradable;
 import com.stockmarket.exception.*;
+import com.stockmarket.execution.ExecutionCostModel;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Klasa reprezentująca portfel inwestycyjny użytkownika.
@@ -12,12 +18,35 @@ import java.util.*;
  * 
  * Portfolio przechowuje gotówkę i wszystkie posiadane aktywa.
  * Udostępnia metody do kupna, sprzedaży i obliczania wartości portfela.
+ * 
+ * Portfel zarejestrowany jako słuchacz rynku (market.addListener(portfolio))
+ * automatycznie rozlicza pozycje w aktywach wycofywanych z rynku.
+ * 
+ * Domyślnie transakcje są wykonywane po cenie rynkowej bez kosztów.
+ * Po ustawieniu modelu kosztów (setExecutionCostModel) portfel płaci prowizję,
+ * spread i wpływ na rynek, a duże zlecenia przesuwają cenę aktywa.
+ * 
+ * Portfel zarejestrowany w MarginMonitor staje się rachunkiem z depozytem:
+ * może pożyczać gotówkę i sprzedawać aktywa, których nie posiada (krótka
+ * sprzedaż), a każda transakcja przechodzi wcześniej kontrolę ryzyka.
+ * 
+ * Gotówka jest trzymana osobno w każdej walucie. Transakcje rozliczane są
+ * w walucie notowań aktywa, a walutę wymienia się metodą exchange().
+ * Skonsolidowana wartość portfela jest liczona w PLN po kursach z FxRates.
  */
-public class Portfolio {
+public class Portfolio implements MarketListener {
     
-    private double cash;  // ilość gotówki w portfelu
-    // Mapa pozycji: klucz = symbol aktywa, wartość = PortfolioPosition
+    // Gotówka w portfelu - osobne saldo dla każdej waluty (indeks = currency.ordinal())
+    private final double[] cash = new double[Currency.COUNT];
+    private FxRates fxRates;                     // null = wszystkie kwoty liczone jak w PLN
+    // Mapa pozycji: klucz = symbol aktywa, wartość = PortfolioPosition.
+    // Współbieżna, bo odczyt po podziale akcji może przeliczać pozycje (currentPosition)
     private Map<String, PortfolioPosition> positions;
+    private boolean transactionLogging = true;  // czy wypisywać potwierdzenia transakcji
+    private ExecutionCostModel costModel;        // null = transakcje bez kosztów
+    private MarginAccount marginAccount;         // null = zwykły rachunek gotówkowy
+    private TaxLotLedger taxLots;                // null = bez ewidencji partii podatkowych
+    private final List<PositionListener> positionListeners = new ArrayList<>();
     
     /**
      * Konstruktor tworzy nowy portfel z określoną gotówką startową.
@@ -29,8 +58,8 @@ public class Portfolio {
         if (initialCash < 0) {
             throw new IllegalArgumentException("Początkowa gotówka nie może być ujemna");
         }
-        this.cash = initialCash;
-        this.positions = new HashMap<>();
+        this.cash[Currency.BASE.ordinal()] = initialCash;
+        this.positions = new ConcurrentHashMap<>();
     }
     
     /**
@@ -40,18 +69,25 @@ public class Portfolio {
      * 1. Sprawdza czy aktywo istnieje na rynku
      * 2. Weryfikuje czy można nim handlować (Tradable)
      * 3. Oblicza koszt transakcji
-     * 4. Sprawdza czy mamy wystarczająco gotówki
+     * 4. Sprawdza czy mamy wystarczająco gotówki (na rachunku z depozytem - czy
+     *    transakcja mieści się w zasadach depozytu)
      * 5. Wykonuje transakcję (odejmuje gotówkę, dodaje aktywa)
      * 
      * @param symbol symbol aktywa do kupienia
      * @param quantity ilość do kupienia
      * @param market rynek z którego kupujemy
-     * @throws InsufficientFundsException gdy nie mamy wystarczającej gotówki
+     * @throws InsufficientFundsException gdy nie mamy wystarczającej gotówki lub depozytu
      * @throws AssetNotFoundException gdy aktywa nie ma na rynku lub nie można nim handlować
+     * @throws IllegalArgumentException gdy ilość nie jest dodatnia
      */
     public void buy(String symbol, int quantity, Market market) 
             throws InsufficientFundsException, AssetNotFoundException {
         
+        // Ujemna ilość odwróciłaby transakcję z pominięciem kontroli środków
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Ilość do kupienia musi być dodatnia");
+        }
+        
         // Krok 1: Sprawdzamy czy aktywo istnieje na rynku
         Optional<Asset> assetOpt = market.getAsset(symbol);
         if (assetOpt.isEmpty()) {
@@ -69,23 +105,45 @@ public class Portfolio {
         Tradable tradableAsset = (Tradable) asset;
         double currentPrice = tradableAsset.getCurrentPrice();
         
-        // Krok 3: Obliczamy całkowity koszt transakcji
-        double totalCost = currentPrice * quantity;
+        // Krok 3: Obliczamy całkowity koszt transakcji (z prowizją, spreadem i wpływem na rynek)
+        double executionPrice = costModel != null ? costModel.buyPrice(currentPrice, quantity) : currentPrice;
+        double commission = costModel != null
+                ? costModel.commission(executionPrice * quantity, plnPerUnit(asset.getCurrency())) : 0.0;
+        double totalCost = executionPrice * quantity + commission;
+        int currency = asset.getCurrency().ordinal();  // płacimy w walucie notowań
         
         // Krok 4: Sprawdzamy czy mamy wystarczająco gotówki
-        if (cash < totalCost) {
+        if (marginAccount != null) {
+            // Rachunek z depozytem może pożyczać - liczy się kapitał własny, nie gotówka
+            int owned = getAssetQuantity(symbol);
+            String rejection = marginAccount.checkTrade(asset, owned, owned + quantity, -totalCost);
+            if (rejection != null) {
+                throw new InsufficientFundsException(rejection);
+            }
+        } else if (cash[currency] < totalCost) {
             throw new InsufficientFundsException(
-                String.format("Niewystarczające środki. Potrzeba: %.2f PLN, dostępne: %.2f PLN", 
-                totalCost, cash));
+                String.format("Niewystarczające środki. Potrzeba: %.2f %s, dostępne: %.2f %s", 
+                totalCost, asset.getCurrency(), cash[currency], asset.getCurrency()));
         }
         
         // Krok 5: Wykonujemy transakcję
-        cash -= totalCost;  // odejmujemy gotówkę
+        cash[currency] -= totalCost;  // odejmujemy gotówkę
         addAssetToPortfolio(asset, quantity);  // dodajemy aktywa
+        asset.recordTrade(quantity);
+        if (taxLots != null) {
+            taxLots.recordTrade(asset, quantity, totalCost / quantity, market.getTick());
+        }
+        if (costModel != null) {
+            // Nasze kupno podbija cenę rynkową
+            asset.setCurrentPrice(costModel.priceAfterBuy(currentPrice, quantity));
+        }
         
         // Wyświetlamy potwierdzenie transakcji
-        System.out.printf("✓ KUPNO: %d x %s @ %.2f PLN = %.2f PLN%n", 
-            quantity, symbol, currentPrice, totalCost);
+        if (transactionLogging) {
+            System.out.printf("✓ KUPNO: %d x %s @ %.2f %s = %.2f %s%s%n", 
+                quantity, symbol, executionPrice, asset.getCurrency(), totalCost, asset.getCurrency(),
+                describeCommission(commission, asset.getCurrency()));
+        }
     }
     
     /**
@@ -93,31 +151,39 @@ public class Portfolio {
      * 
      * Proces podobny do kupna ale w drugą stronę:
      * 1. Sprawdza czy mamy to aktywo w portfelu
-     * 2. Weryfikuje czy mamy wystarczającą ilość
+     * 2. Weryfikuje czy mamy wystarczającą ilość (na rachunku z depozytem można
+     *    sprzedać więcej niż posiadamy - powstaje krótka pozycja)
      * 3. Pobiera aktualną cenę z rynku
      * 4. Wykonuje transakcję (dodaje gotówkę, usuwa aktywa)
      * 
      * @param symbol symbol aktywa do sprzedania
      * @param quantity ilość do sprzedania
      * @param market rynek na którym sprzedajemy
-     * @throws InsufficientAssetsException gdy nie mamy wystarczającej ilości
+     * @throws InsufficientAssetsException gdy nie mamy wystarczającej ilości lub
+     *         krótka sprzedaż przekracza zasady depozytu
      * @throws AssetNotFoundException gdy nie mamy tego aktywa lub nie można nim handlować
+     * @throws IllegalArgumentException gdy ilość nie jest dodatnia
      */
     public void sell(String symbol, int quantity, Market market) 
             throws InsufficientAssetsException, AssetNotFoundException {
         
-        // Krok 1: Sprawdzamy czy mamy taką pozycję w portfelu
-        if (!positions.containsKey(symbol)) {
-            throw new AssetNotFoundException("Nie posiadasz aktywa " + symbol + " w portfelu");
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Ilość do sprzedania musi być dodatnia");
         }
         
-        PortfolioPosition position = positions.get(symbol);
-        
-        // Krok 2: Sprawdzamy czy mamy wystarczającą ilość do sprzedania
-        if (position.quantity() < quantity) {
-            throw new InsufficientAssetsException(
-                String.format("Niewystarczająca ilość %s. Posiadasz: %d, próbujesz sprzedać: %d", 
-                symbol, position.quantity(), quantity));
+        int owned = getAssetQuantity(symbol);
+        if (marginAccount == null) {
+            // Krok 1: Sprawdzamy czy mamy taką pozycję w portfelu
+            if (currentPosition(symbol) == null) {
+                throw new AssetNotFoundException("Nie posiadasz aktywa " + symbol + " w portfelu");
+            }
+            
+            // Krok 2: Sprawdzamy czy mamy wystarczającą ilość do sprzedania
+            if (owned < quantity) {
+                throw new InsufficientAssetsException(
+                    String.format("Niewystarczająca ilość %s. Posiadasz: %d, próbujesz sprzedać: %d", 
+                    symbol, owned, quantity));
+            }
         }
         
         // Krok 3: Pobieramy aktualne aktywo z rynku (potrzebujemy świeżej ceny!)
@@ -134,15 +200,47 @@ public class Portfolio {
         Tradable tradableAsset = (Tradable) asset;
         double currentPrice = tradableAsset.getCurrentPrice();
         
-        // Krok 4: Obliczamy wartość sprzedaży
-        double totalValue = currentPrice * quantity;
+        // Krok 4: Obliczamy wartość sprzedaży (po potrąceniu kosztów)
+        double executionPrice = costModel != null ? costModel.sellPrice(currentPrice, quantity) : currentPrice;
+        double grossValue = executionPrice * quantity;
+        // Prowizja nie może przekroczyć wartości sprzedaży
+        double commission = costModel != null
+                ? Math.min(grossValue, costModel.commission(grossValue, plnPerUnit(asset.getCurrency()))) : 0.0;
+        double totalValue = grossValue - commission;
+        
+        if (marginAccount != null) {
+            String rejection = marginAccount.checkTrade(asset, owned, owned - quantity, totalValue);
+            if (rejection != null) {
+                throw new InsufficientAssetsException(rejection);
+            }
+        }
         
         // Krok 5: Wykonujemy transakcję
-        cash += totalValue;  // dodajemy gotówkę
-        removeAssetFromPortfolio(symbol, quantity);  // usuwamy aktywa
+        cash[asset.getCurrency().ordinal()] += totalValue;  // dodajemy gotówkę
+        removeAssetFromPortfolio(asset, quantity);  // usuwamy aktywa
+        asset.recordTrade(quantity);
+        if (taxLots != null) {
+            taxLots.recordTrade(asset, -quantity, totalValue / quantity, market.getTick());
+        }
+        if (costModel != null) {
+            // Nasza sprzedaż obniża cenę rynkową
+            asset.setCurrentPrice(costModel.priceAfterSell(currentPrice, quantity));
+        }
         
-        System.out.printf("✓ SPRZEDAŻ: %d x %s @ %.2f PLN = %.2f PLN%n", 
-            quantity, symbol, currentPrice, totalValue);
+        if (transactionLogging) {
+            System.out.printf("✓ SPRZEDAŻ: %d x %s @ %.2f %s = %.2f %s%s%n", 
+                quantity, symbol, executionPrice, asset.getCurrency(), totalValue, asset.getCurrency(),
+                describeCommission(commission, asset.getCurrency()));
+        }
+    }
+    
+    // Kurs waluty notowań do przeliczenia minimalnej prowizji (podanej w PLN)
+    private double plnPerUnit(Currency currency) {
+        return fxRates != null ? fxRates.getRate(currency) : 1.0;
+    }
+    
+    private static String describeCommission(double commission, Currency currency) {
+        return commission > 0 ? String.format(" (prowizja %.2f %s)", commission, currency) : "";
     }
     
     /**
@@ -155,41 +253,119 @@ public class Portfolio {
      * @param quantity ilość do dodania
      */
     private void addAssetToPortfolio(Asset asset, int quantity) {
-        String symbol = asset.getSymbol();
-        
-        if (positions.containsKey(symbol)) {
-            // Mamy już to aktywo - zwiększamy ilość
-            // Record jest immutable więc musimy stworzyć nowy PortfolioPosition
-            PortfolioPosition currentPosition = positions.get(symbol);
-            int newQuantity = currentPosition.quantity() + quantity;
-            positions.put(symbol, new PortfolioPosition(asset, newQuantity));
-        } else {
-            // Nie mamy tego aktywa - tworzymy nową pozycję
-            positions.put(symbol, new PortfolioPosition(asset, quantity));
-        }
+        setPositionQuantity(asset, getAssetQuantity(asset.getSymbol()) + quantity);
     }
     
     /**
      * Prywatna metoda pomocnicza do usuwania aktywów z portfela.
      * 
-     * Jeśli sprzedajemy wszystkie sztuki, usuwa pozycję całkowicie.
-     * Jeśli zostaje coś, aktualizuje ilość.
+     * Na rachunku z depozytem ilość może spaść poniżej zera (krótka pozycja).
      * 
-     * @param symbol symbol aktywa do usunięcia
+     * @param asset aktywo do usunięcia
      * @param quantity ilość do usunięcia
      */
-    private void removeAssetFromPortfolio(String symbol, int quantity) {
+    private void removeAssetFromPortfolio(Asset asset, int quantity) {
+        setPositionQuantity(asset, getAssetQuantity(asset.getSymbol()) - quantity);
+    }
+    
+    /**
+     * Ustawia nową ilość aktywa i powiadamia słuchaczy pozycji.
+     * 
+     * Przy ilości 0 usuwa pozycję całkowicie. W przeciwnym razie tworzy nowy
+     * PortfolioPosition - record jest immutable.
+     */
+    private void setPositionQuantity(Asset asset, int newQuantity) {
+        String symbol = asset.getSymbol();
+        PortfolioPosition old = newQuantity == 0
+            ? positions.remove(symbol)
+            : positions.put(symbol, new PortfolioPosition(asset, newQuantity));
+        int oldQuantity = old != null ? old.quantity() : 0;
+        firePositionChanged(asset, oldQuantity, newQuantity);
+    }
+    
+    private void firePositionChanged(Asset asset, int oldQuantity, int newQuantity) {
+        if (oldQuantity == newQuantity) {
+            return;
+        }
+        for (PositionListener listener : positionListeners) {
+            listener.onPositionChanged(this, asset, oldQuantity, newQuantity);
+        }
+    }
+    
+    /**
+     * Zwraca pozycję w aktywie, najpierw przeliczając ją przez zaległe podziały akcji.
+     * 
+     * Podział akcji trzymanych przez miliony portfeli nie przechodzi po
+     * portfelach - każdy portfel przelicza pozycję sam, gdy po nią sięga.
+     * Indeksy posiadaczy (np. w MarginMonitor) przeliczają ilości od razu
+     * (onAssetSplit) według tej samej reguły, więc nie dostają zdarzeń pozycji.
+     * 
+     * @return pozycja lub null gdy jej nie ma (także gdy scalenie akcji ją wyzerowało)
+     */
+    private PortfolioPosition currentPosition(String symbol) {
         PortfolioPosition position = positions.get(symbol);
-        int newQuantity = position.quantity() - quantity;
-        
-        if (newQuantity == 0) {
-            // Sprzedaliśmy wszystko - usuwamy pozycję całkowicie
+        if (position == null || position.splitEpoch() == position.asset().getSplitEpoch()) {
+            return position;
+        }
+        return settleSplit(symbol);
+    }
+    
+    /**
+     * Przelicza jedną pozycję przez zaległe podziały.
+     * 
+     * Trafiają tu także metody tylko do odczytu, wołane równolegle - np. przez
+     * strategie StrategyEngine, które dzielą jeden portfel. Dlatego przeliczenie
+     * jest synchronizowane, a epoka sprawdzana ponownie pod blokadą: gotówka za
+     * ułamki sztuk jest dopisywana dokładnie raz, a mapa pozycji jest współbieżna.
+     */
+    private synchronized PortfolioPosition settleSplit(String symbol) {
+        PortfolioPosition position = positions.get(symbol);
+        if (position == null || position.splitEpoch() == position.asset().getSplitEpoch()) {
+            return position;   // inny wątek zdążył już przeliczyć pozycję
+        }
+        Asset asset = position.asset();
+        SplitAdjustment adjustment = asset.adjustForSplits(position.quantity(), position.splitEpoch());
+        cash[asset.getCurrency().ordinal()] += adjustment.cashInLieu();
+        if (transactionLogging) {
+            System.out.printf("✓ PODZIAŁ: %s %d szt. -> %d szt.%s%n", symbol, position.quantity(),
+                adjustment.quantity(), adjustment.cashInLieu() != 0
+                    ? String.format(" (za ułamki %.2f %s)", adjustment.cashInLieu(), asset.getCurrency()) : "");
+        }
+        if (adjustment.quantity() == 0) {
             positions.remove(symbol);
-        } else {
-            // Zostało coś - aktualizujemy ilość
-            // Znów tworzymy nowy PortfolioPosition bo record jest immutable
-            positions.put(symbol, new PortfolioPosition(position.asset(), newQuantity));
+            return null;
         }
+        PortfolioPosition adjusted = new PortfolioPosition(asset, adjustment.quantity(), adjustment.splitEpoch());
+        positions.put(symbol, adjusted);
+        return adjusted;
+    }
+    
+    /**
+     * Przelicza przez zaległe podziały wszystkie pozycje portfela.
+     */
+    private void settleSplits() {
+        List<String> stale = null;
+        for (PortfolioPosition position : positions.values()) {
+            if (position.splitEpoch() != position.asset().getSplitEpoch()) {
+                if (stale == null) {
+                    stale = new ArrayList<>();
+                }
+                stale.add(position.asset().getSymbol());
+            }
+        }
+        if (stale != null) {
+            for (String symbol : stale) {
+                currentPosition(symbol);
+            }
+        }
+    }
+    
+    /**
+     * Dopisuje gotówkę bez komunikatu - dla operacji hurtowych na wielu
+     * portfelach naraz (np. wypłata dywidendy wszystkim posiadaczom).
+     */
+    void creditCash(Currency currency, double amount) {
+        cash[currency.ordinal()] += amount;
     }
     
     /**
@@ -198,20 +374,282 @@ public class Portfolio {
      * 
      * @param asset aktywo do dodania
      * @param quantity ilość do dodania
+     * @throws IllegalArgumentException gdy rachunek z depozytem nie obsługuje waluty aktywa
      */
     public void addAsset(Asset asset, int quantity) {
+        if (marginAccount != null && !marginAccount.supports(asset)) {
+            throw new IllegalArgumentException(MarginMonitor.currencyRejection(asset));
+        }
         addAssetToPortfolio(asset, quantity);
+        if (taxLots != null && quantity != 0) {
+            // Koszt nabycia nieznany - przyjmujemy bieżącą cenę
+            taxLots.recordTrade(asset, quantity, asset.getCurrentPrice());
+        }
+    }
+    
+    /**
+     * Dopisuje do gotówki dochód z posiadanego aktywa (np. kupon obligacji).
+     * 
+     * @param symbol symbol aktywa, które wypłaca dochód
+     * @param amountPerUnit kwota na jedną sztukę aktywa (w walucie aktywa)
+     * @return łączna kwota dopisana do gotówki (0 gdy nie mamy pozycji)
+     */
+    public double receiveIncome(String symbol, double amountPerUnit) {
+        PortfolioPosition position = currentPosition(symbol);
+        if (position == null) {
+            return 0.0;
+        }
+        
+        Currency currency = position.asset().getCurrency();
+        double income = amountPerUnit * position.quantity();
+        cash[currency.ordinal()] += income;
+        
+        if (transactionLogging) {
+            System.out.printf("✓ WPŁYW: %d x %s @ %.2f %s = %.2f %s%n", 
+                position.quantity(), symbol, amountPerUnit, currency, income, currency);
+        }
+        return income;
+    }
+    
+    /**
+     * Rozlicza pozycję w aktywie wycofanym z rynku.
+     * 
+     * Posiadane sztuki są zamieniane na gotówkę po ostatniej cenie rynkowej,
+     * a pozycja znika z portfela. Krótka pozycja jest odkupowana po tej samej cenie.
+     * 
+     * @param asset wycofane aktywo
+     * @param id identyfikator aktywa na rynku (nieużywany)
+     */
+    @Override
+    public void onAssetDelisted(Asset asset, int id) {
+        currentPosition(asset.getSymbol());
+        PortfolioPosition position = positions.remove(asset.getSymbol());
+        if (position == null) {
+            return;  // nie mieliśmy tego aktywa - nic do rozliczenia
+        }
+        
+        double settlementValue = asset.getCurrentPrice() * position.quantity();
+        cash[asset.getCurrency().ordinal()] += settlementValue;
+        firePositionChanged(asset, position.quantity(), 0);
+        if (taxLots != null) {
+            taxLots.recordTrade(asset, -position.quantity(), asset.getCurrentPrice());
+        }
+        
+        if (transactionLogging) {
+            System.out.printf("✓ ROZLICZENIE: %s wycofane z rynku, %d szt. @ %.2f %s = %.2f %s%n", 
+                asset.getSymbol(), position.quantity(), asset.getCurrentPrice(), asset.getCurrency(),
+                settlementValue, asset.getCurrency());
+        }
+    }
+    
+    /**
+     * Zastępuje gotówkę we wszystkich walutach i wszystkie pozycje stanem
+     * odczytanym z punktu kontrolnego.
+     * 
+     * @param savedCash salda gotówki indeksowane currency.ordinal() (Currency.COUNT wartości)
+     * @param quantities ilości sztuk według symbolu aktywa
+     * @param market rynek, z którego pobieramy obiekty aktywów
+     * @throws IllegalArgumentException gdy liczba sald się nie zgadza albo któregoś aktywa nie ma na rynku
+     */
+    public void restoreState(double[] savedCash, Map<String, Integer> quantities, Market market) {
+        if (savedCash.length != Currency.COUNT) {
+            throw new IllegalArgumentException("Oczekiwano " + Currency.COUNT + " sald gotówki, a podano "
+                + savedCash.length);
+        }
+        settleSplits();
+        Map<String, PortfolioPosition> restored = new ConcurrentHashMap<>();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            Asset asset = market.getAsset(entry.getKey()).orElseThrow(() ->
+                new IllegalArgumentException("Aktywo " + entry.getKey() + " nie istnieje na rynku"));
+            restored.put(entry.getKey(), new PortfolioPosition(asset, entry.getValue()));
+        }
+        Map<String, PortfolioPosition> previous = positions;
+        System.arraycopy(savedCash, 0, cash, 0, Currency.COUNT);
+        this.positions = restored;
+        
+        // Słuchacze pozycji (np. monitor depozytu) dostają różnicę stanu
+        for (PortfolioPosition position : previous.values()) {
+            if (!restored.containsKey(position.asset().getSymbol())) {
+                firePositionChanged(position.asset(), position.quantity(), 0);
+            }
+        }
+        for (PortfolioPosition position : restored.values()) {
+            PortfolioPosition old = previous.get(position.asset().getSymbol());
+            firePositionChanged(position.asset(), old != null ? old.quantity() : 0, position.quantity());
+        }
+        if (taxLots != null) {
+            // Bez zapisanych partii otwieramy je od nowa po bieżących cenach; CheckpointReader
+            // zastępuje je potem partiami z punktu kontrolnego (TaxLotLedger.restoreState)
+            taxLots.clearOpenLots();
+            seedTaxLots();
+        }
+    }
+    
+    /**
+     * Włącza ewidencję partii podatkowych (lotów) z podaną metodą zamykania.
+     * 
+     * Istniejące pozycje stają się pojedynczymi partiami po bieżącej cenie,
+     * bo ich historyczny koszt nabycia nie jest znany. Kolejne transakcje
+     * portfel zgłasza do ewidencji sam.
+     * 
+     * @param method kolejność zamykania partii przy sprzedaży
+     * @return ewidencja partii (do odczytu zysków i podpięcia słuchaczy)
+     * @throws IllegalStateException gdy ewidencja jest już włączona
+     */
+    public TaxLotLedger enableTaxLots(LotReliefMethod method) {
+        if (taxLots != null) {
+            throw new IllegalStateException("Ewidencja partii jest już włączona");
+        }
+        taxLots = new TaxLotLedger(method);
+        seedTaxLots();
+        return taxLots;
+    }
+    
+    /**
+     * Zwraca ewidencję partii podatkowych albo null, gdy nie jest włączona.
+     */
+    public TaxLotLedger getTaxLots() {
+        return taxLots;
+    }
+    
+    private void seedTaxLots() {
+        settleSplits();
+        for (PortfolioPosition position : positions.values()) {
+            taxLots.recordTrade(position.asset(), position.quantity(), position.asset().getCurrentPrice());
+        }
+    }
+    
+    /**
+     * Ustawia model kosztów wykonania transakcji.
+     * 
+     * @param costModel model kosztów lub null aby handlować po cenie rynkowej bez kosztów
+     */
+    public void setExecutionCostModel(ExecutionCostModel costModel) {
+        this.costModel = costModel;
+    }
+    
+    public ExecutionCostModel getExecutionCostModel() {
+        return costModel;
+    }
+    
+    /**
+     * Ustawia kursy walut używane do wymiany gotówki i wyceny portfela w PLN.
+     * 
+     * @param fxRates kursy walut lub null gdy portfel handluje tylko w PLN
+     */
+    public void setFxRates(FxRates fxRates) {
+        this.fxRates = fxRates;
+    }
+    
+    public FxRates getFxRates() {
+        return fxRates;
+    }
+    
+    /**
+     * Wymienia gotówkę po bieżącym kursie.
+     * 
+     * @param from waluta sprzedawana
+     * @param to waluta kupowana
+     * @param amount kwota w walucie sprzedawanej
+     * @return kwota otrzymana w walucie kupowanej
+     * @throws InsufficientFundsException gdy brakuje gotówki w walucie sprzedawanej
+     * @throws IllegalStateException gdy portfel nie ma ustawionych kursów walut
+     */
+    public double exchange(Currency from, Currency to, double amount) throws InsufficientFundsException {
+        if (fxRates == null) {
+            throw new IllegalStateException("Portfel nie ma ustawionych kursów walut");
+        }
+        if (amount < 0) {
+            throw new IllegalArgumentException("Kwota wymiany nie może być ujemna");
+        }
+        if (cash[from.ordinal()] < amount) {
+            throw new InsufficientFundsException(
+                String.format("Niewystarczające środki. Potrzeba: %.2f %s, dostępne: %.2f %s", 
+                amount, from, cash[from.ordinal()], from));
+        }
+        double received = fxRates.convert(amount, from, to);
+        cash[from.ordinal()] -= amount;
+        cash[to.ordinal()] += received;
+        
+        if (transactionLogging) {
+            System.out.printf("✓ WYMIANA: %.2f %s -> %.2f %s%n", amount, from, received, to);
+        }
+        return received;
+    }
+    
+    /**
+     * Dodaje słuchacza powiadamianego o każdej zmianie ilości aktywa w portfelu.
+     */
+    public void addPositionListener(PositionListener listener) {
+        positionListeners.add(listener);
+    }
+    
+    public void removePositionListener(PositionListener listener) {
+        positionListeners.remove(listener);
+    }
+    
+    /**
+     * Zwraca rachunek z depozytem albo null dla zwykłego rachunku gotówkowego.
+     */
+    public MarginAccount getMarginAccount() {
+        return marginAccount;
+    }
+    
+    // Ustawiane przez MarginMonitor.register
+    void attachMarginAccount(MarginAccount account) {
+        this.marginAccount = account;
+    }
+    
+    /**
+     * Włącza lub wyłącza wypisywanie potwierdzeń transakcji na konsolę.
+     * Przydatne gdy portfelem handluje automatyczna strategia - tysiące
+     * transakcji na tick zasypałyby konsolę.
+     * 
+     * @param enabled true aby wypisywać potwierdzenia (domyślnie)
+     */
+    public void setTransactionLogging(boolean enabled) {
+        this.transactionLogging = enabled;
     }
     
     // ========== GETTERY I METODY OBLICZENIOWE ==========
     
     /**
-     * Zwraca ilość gotówki w portfelu.
+     * Zwraca ilość gotówki w portfelu w walucie bazowej (PLN).
      * 
      * @return gotówka jako double
      */
     public double getCash() {
-        return cash;
+        return cash[Currency.BASE.ordinal()];
+    }
+    
+    /**
+     * Zwraca ilość gotówki w podanej walucie.
+     */
+    public double getCash(Currency currency) {
+        return cash[currency.ordinal()];
+    }
+    
+    /**
+     * Zwraca całą gotówkę przeliczoną na PLN po kursach bieżącego ticka.
+     */
+    public double calculateCashValue() {
+        if (fxRates == null) {
+            return sumOf(cash);
+        }
+        double[] rates = fxRates.getConversionVector();
+        double total = 0.0;
+        for (int c = 0; c < cash.length; c++) {
+            total += cash[c] * rates[c];
+        }
+        return total;
+    }
+    
+    private static double sumOf(double[] values) {
+        double total = 0.0;
+        for (double value : values) {
+            total += value;
+        }
+        return total;
     }
     
     /**
@@ -220,6 +658,7 @@ public class Portfolio {
      * @return mapa pozycji (tylko do odczytu)
      */
     public Map<String, PortfolioPosition> getPositions() {
+        settleSplits();
         return Collections.unmodifiableMap(positions);
     }
     
@@ -227,28 +666,38 @@ public class Portfolio {
      * Oblicza łączną wartość wszystkich aktywów w portfelu.
      * 
      * Iteruje po wszystkich pozycjach i sumuje ich wartości
-     * na podstawie aktualnych cen rynkowych.
+     * na podstawie aktualnych cen rynkowych, przeliczonych na PLN
+     * wektorem kursów z bieżącego ticka.
      * 
-     * @return łączna wartość aktywów
+     * @return łączna wartość aktywów w PLN
      */
     public double calculateAssetsValue() {
+        settleSplits();
         double totalValue = 0.0;
         
-        for (PortfolioPosition position : positions.values()) {
-            // getTotalValue() to metoda którą dodaliśmy do PortfolioPosition
-            totalValue += position.getTotalValue();
+        if (fxRates == null) {
+            for (PortfolioPosition position : positions.values()) {
+                // getTotalValue() to metoda którą dodaliśmy do PortfolioPosition
+                totalValue += position.getTotalValue();
+            }
+            return totalValue;
         }
         
+        // Jeden odczyt wektora na całą wycenę - wszystkie pozycje po kursach z tego samego ticka
+        double[] rates = fxRates.getConversionVector();
+        for (PortfolioPosition position : positions.values()) {
+            totalValue += position.getTotalValue() * rates[position.asset().getCurrency().ordinal()];
+        }
         return totalValue;
     }
     
     /**
-     * Oblicza całkowitą wartość portfela (aktywa + gotówka).
+     * Oblicza całkowitą wartość portfela (aktywa + gotówka we wszystkich walutach).
      * 
-     * @return całkowita wartość portfela
+     * @return całkowita wartość portfela w PLN
      */
     public double calculateTotalValue() {
-        return calculateAssetsValue() + cash;
+        return calculateAssetsValue() + calculateCashValue();
     }
     
     /**
@@ -258,7 +707,7 @@ public class Portfolio {
      * @return true jeśli mamy pozycję, false w przeciwnym razie
      */
     public boolean hasPosition(String symbol) {
-        return positions.containsKey(symbol);
+        return currentPosition(symbol) != null;
     }
     
     /**
@@ -268,7 +717,7 @@ public class Portfolio {
      * @return ilość sztuk (0 jeśli nie mamy pozycji)
      */
     public int getAssetQuantity(String symbol) {
-        PortfolioPosition position = positions.get(symbol);
+        PortfolioPosition position = currentPosition(symbol);
         return position != null ? position.quantity() : 0;
     }
     
@@ -278,6 +727,7 @@ public class Portfolio {
      * @return liczba unikalnych pozycji
      */
     public int getPositionCount() {
+        settleSplits();
         return positions.size();
     }
     
@@ -287,6 +737,7 @@ public class Portfolio {
      * @return true jeśli nie ma żadnych pozycji
      */
     public boolean isEmpty() {
+        settleSplits();
         return positions.isEmpty();
     }
 }
\ No newline at end of file
@@ -4,9 +4,19 @@ import com.stockmarket.model.Asset;
 
 /**
  * Record reprezentujący pozycję w portfelu - aktywo i jego ilość.
+ * Ujemna ilość oznacza krótką pozycję (możliwą tylko na rachunku z depozytem).
+ * Epoka podziałów mówi, po ilu podziałach akcji zapisano ilość - portfel
+ * przelicza pozycję, gdy aktywo zostało od tego czasu podzielone.
  * Record automatycznie tworzy konstruktor, gettery, equals, hashCode i toString.
  */
-public record PortfolioPosition(Asset asset, int quantity) {
+public record PortfolioPosition(Asset asset, int quantity, int splitEpoch) {
+    
+    /**
+     * Tworzy pozycję z ilością aktualną dla bieżącej epoki podziałów aktywa.
+     */
+    public PortfolioPosition(Asset asset, int quantity) {
+        this(asset, quantity, asset != null ? asset.getSplitEpoch() : 0);
+    }
     
     /**
      * Compact constructor - pozwala na walidację bez pisania pełnego konstruktora.
@@ -15,13 +25,13 @@ public record PortfolioPosition(Asset asset, int quantity) {
         if (asset == null) {
             throw new IllegalArgumentException("Asset w pozycji nie może być null");
         }
-        if (quantity <= 0) {
-            throw new IllegalArgumentException("Ilość w pozycji musi być dodatnia");
+        if (quantity == 0) {
+            throw new IllegalArgumentException("Ilość w pozycji nie może być zerowa");
         }
     }
     
     /**
-     * Oblicza całkowitą wartość tej pozycji (cena × ilość).
+     * Oblicza całkowitą wartość tej pozycji (cena × ilość, ujemna dla krótkiej pozycji).
      */
     public double getTotalValue() {
         return asset.getCurrentPrice() * quantity;
@@ -0,0 +1,20 @@
+package com.stockmarket.portfolio;
+
+import com.stockmarket.model.Asset;
+
+/**
+ * Interfejs dla obiektów, które śledzą zmiany pozycji w portfelu
+ * (np. monitor depozytu zabezpieczającego albo indeks posiadaczy aktywa).
+ */
+public interface PositionListener {
+
+    /**
+     * Wywoływana po każdej zmianie ilości aktywa w portfelu.
+     *
+     * @param portfolio portfel, w którym zmieniła się pozycja
+     * @param asset aktywo
+     * @param oldQuantity ilość przed zmianą (0 = brak pozycji, ujemna = krótka pozycja)
+     * @param newQuantity ilość po zmianie
+     */
+    void onPositionChanged(Portfolio portfolio, Asset asset, int oldQuantity, int newQuantity);
+}
@@ -0,0 +1,23 @@
+package com.stockmarket.portfolio;
+
+import com.stockmarket.model.Asset;
+
+/**
+ * Interfejs dla obiektów śledzących zamknięte partie (np. raport podatkowy).
+ * Dostaje same liczby - zamknięcie partii nie tworzy żadnego obiektu.
+ */
+@FunctionalInterface
+public interface RealizedLotListener {
+
+    /**
+     * Wywoływana po zamknięciu (całej lub części) partii.
+     *
+     * @param asset aktywo
+     * @param quantity zamknięta ilość (ujemna dla partii krótkiej pozycji)
+     * @param entryPrice koszt nabycia na sztukę (dla krótkiej partii - cena sprzedaży)
+     * @param exitPrice cena zamknięcia na sztukę (po kosztach transakcji)
+     * @param entryTick tick otwarcia partii
+     * @param exitTick tick zamknięcia partii
+     */
+    void onLotClosed(Asset asset, int quantity, double entryPrice, double exitPrice, long entryTick, long exitTick);
+}
@@ -0,0 +1,266 @@
+package com.stockmarket.portfolio;
+
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.Currency;
+import java.util.*;
+
+/**
+ * Ewidencja partii (lotów) podatkowych portfela.
+ *
+ * Każde kupno otwiera partię z kosztem nabycia na sztukę (razem z prowizją),
+ * a każda sprzedaż zamyka partie w kolejności wybranej metodą (FIFO, LIFO
+ * albo najwyższy koszt) i dolicza zrealizowany zysk. Na rachunku z depozytem
+ * sprzedaż ponad posiadaną ilość otwiera partie krótkie, zamykane przy
+ * odkupieniu.
+ *
+ * Partie pozycji leżą w tablicach prymitywów (LotQueue), więc kolejne
+ * transakcje nie tworzą obiektów na partię. Zamknięte partie można śledzić
+ * słuchaczem RealizedLotListener, który dostaje same liczby.
+ *
+ * Ewidencję włącza Portfolio.enableTaxLots(); portfel zgłasza do niej
+ * transakcje sam. Kwoty są w walucie notowań aktywa.
+ */
+public class TaxLotLedger {
+
+    /**
+     * Odbiorca partii jednej pozycji (do przeglądania bez kopiowania).
+     */
+    @FunctionalInterface
+    public interface LotVisitor {
+        /**
+         * @param quantity ilość w partii (ujemna dla partii krótkiej)
+         * @param price koszt nabycia na sztukę (dla krótkiej - cena sprzedaży)
+         * @param tick tick otwarcia partii
+         */
+        void visit(int quantity, double price, long tick);
+    }
+
+    private final LotReliefMethod method;
+    private final Map<String, LotQueue> lots = new HashMap<>();
+    private final double[] realizedByCurrency = new double[Currency.COUNT];
+    private final List<RealizedLotListener> listeners = new ArrayList<>();
+    private long lastTick;
+
+    TaxLotLedger(LotReliefMethod method) {
+        this.method = method;
+    }
+
+    public LotReliefMethod getMethod() {
+        return method;
+    }
+
+    public void addListener(RealizedLotListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RealizedLotListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Zapisuje transakcję: najpierw zamyka partie przeciwnego kierunku,
+     * a nadwyżka otwiera nową partię.
+     *
+     * @param quantity ilość ze znakiem (dodatnia = kupno, ujemna = sprzedaż)
+     * @param price cena na sztukę po kosztach transakcji
+     * @param tick tick transakcji
+     */
+    void recordTrade(Asset asset, int quantity, double price, long tick) {
+        lastTick = Math.max(lastTick, tick);
+        LotQueue queue = queueFor(asset);
+        int direction = Integer.signum(quantity);
+        int remaining = Math.abs(quantity);
+        if (queue.sign != 0 && queue.sign != direction) {
+            remaining = relieve(queue, remaining, price, tick);
+        }
+        if (remaining > 0) {
+            queue.sign = direction;
+            queue.add(remaining, price, tick);
+        }
+    }
+
+    /**
+     * Transakcja bez podanego ticka (np. dodanie aktywów, rozliczenie wycofania) -
+     * przyjmujemy ostatni znany tick.
+     */
+    void recordTrade(Asset asset, int quantity, double price) {
+        recordTrade(asset, quantity, price, lastTick);
+    }
+
+    /**
+     * Zamyka partie w kolejności metody - zamortyzowane O(1) na partię dla FIFO i LIFO.
+     *
+     * @return ilość, której nie pokryły istniejące partie
+     */
+    private int relieve(LotQueue queue, int quantity, double exitPrice, long tick) {
+        Asset asset = queue.asset;
+        int sign = queue.sign;
+        int currency = asset.getCurrency().ordinal();
+        while (quantity > 0 && queue.size > 0) {
+            int index = queue.next();
+            int lotQuantity = queue.quantities[index];
+            int closed = Math.min(lotQuantity, quantity);
+            double entryPrice = queue.prices[index];
+            long entryTick = queue.ticks[index];
+            double gain = (exitPrice - entryPrice) * closed * sign;
+            queue.realizedGain += gain;
+            realizedByCurrency[currency] += gain;
+            if (closed == lotQuantity) {
+                queue.removeNext();
+            } else {
+                queue.quantities[index] = lotQuantity - closed;
+            }
+            quantity -= closed;
+            for (RealizedLotListener listener : listeners) {
+                listener.onLotClosed(asset, closed * sign, entryPrice, exitPrice, entryTick, tick);
+            }
+        }
+        return quantity;
+    }
+
+    /**
+     * Zwraca partie aktywa, najpierw przeliczając je przez zaległe podziały akcji.
+     */
+    private LotQueue queueFor(Asset asset) {
+        LotQueue queue = lots.get(asset.getSymbol());
+        if (queue == null) {
+            queue = new LotQueue(asset, method);
+            lots.put(asset.getSymbol(), queue);
+        } else if (queue.asset != asset && queue.size == 0) {
+            // Nowe aktywo pod symbolem wycofanego - zrealizowany zysk zostaje
+            queue.asset = asset;
+            queue.splitEpoch = asset.getSplitEpoch();
+        }
+        if (queue.splitEpoch != asset.getSplitEpoch()) {
+            double before = queue.realizedGain;
+            queue.applySplits();
+            realizedByCurrency[asset.getCurrency().ordinal()] += queue.realizedGain - before;
+        }
+        return queue;
+    }
+
+    /**
+     * Zapomina wszystkie otwarte partie (zrealizowane zyski zostają) -
+     * np. przed odtworzeniem portfela z punktu kontrolnego.
+     */
+    void clearOpenLots() {
+        for (LotQueue queue : lots.values()) {
+            queue.size = 0;
+            queue.head = 0;
+            queue.sign = 0;
+        }
+    }
+
+    /**
+     * Zastępuje całą ewidencję stanem z punktu kontrolnego: usuwa wszystkie
+     * partie i zrealizowane zyski, ustawia sumy zysków według walut. Partie
+     * aktywów wczytuje się potem przez restoreLots().
+     *
+     * @param realizedGains zrealizowany zysk indeksowany currency.ordinal() (Currency.COUNT wartości)
+     * @param tick tick punktu kontrolnego (dla transakcji zgłaszanych bez ticka)
+     * @throws IllegalArgumentException gdy liczba sum się nie zgadza
+     */
+    public void restoreState(double[] realizedGains, long tick) {
+        if (realizedGains.length != Currency.COUNT) {
+            throw new IllegalArgumentException("Oczekiwano " + Currency.COUNT + " sum zysków, a podano "
+                + realizedGains.length);
+        }
+        lots.clear();
+        System.arraycopy(realizedGains, 0, realizedByCurrency, 0, Currency.COUNT);
+        lastTick = tick;
+    }
+
+    /**
+     * Odtwarza partie i zrealizowany zysk jednego aktywa, w kolejności
+     * przechowywania z forEachLot(). Ilości muszą być w jednostkach bieżącej
+     * epoki podziałów aktywa (forEachLot() rozlicza zaległe podziały przed odczytem).
+     *
+     * @param quantities ilości partii ze znakiem (ujemne dla partii krótkich)
+     * @param prices koszty na sztukę
+     * @param ticks ticki otwarcia
+     * @throws IllegalArgumentException gdy tablice mają różne długości albo partie mają różne kierunki
+     */
+    public void restoreLots(Asset asset, double realizedGain, int[] quantities, double[] prices, long[] ticks) {
+        if (quantities.length != prices.length || quantities.length != ticks.length) {
+            throw new IllegalArgumentException("Tablice partii mają różne długości");
+        }
+        int sign = quantities.length > 0 ? Integer.signum(quantities[0]) : 0;
+        for (int quantity : quantities) {
+            if (quantity == 0 || Integer.signum(quantity) != sign) {
+                throw new IllegalArgumentException("Partie aktywa " + asset.getSymbol()
+                    + " muszą mieć niezerowe ilości tego samego znaku");
+            }
+        }
+        LotQueue queue = new LotQueue(asset, method);
+        queue.realizedGain = realizedGain;
+        queue.sign = sign;
+        for (int i = 0; i < quantities.length; i++) {
+            queue.add(Math.abs(quantities[i]), prices[i], ticks[i]);
+        }
+        lots.put(asset.getSymbol(), queue);
+    }
+
+    // ========== ODCZYT ==========
+
+    /**
+     * Zwraca symbole wszystkich aktywów, dla których ewidencja ma partie albo zrealizowany zysk.
+     */
+    public Set<String> getSymbols() {
+        return Collections.unmodifiableSet(lots.keySet());
+    }
+
+    /**
+     * Zwraca zrealizowany zysk (stratę gdy ujemny) na aktywie, w jego walucie.
+     */
+    public double getRealizedGain(String symbol) {
+        LotQueue queue = lots.get(symbol);
+        if (queue == null) {
+            return 0.0;
+        }
+        queueFor(queue.asset);
+        return queue.realizedGain;
+    }
+
+    /**
+     * Zwraca łączny zrealizowany zysk na aktywach notowanych w podanej walucie.
+     */
+    public double getRealizedGain(Currency currency) {
+        for (LotQueue queue : lots.values()) {
+            queueFor(queue.asset);
+        }
+        return realizedByCurrency[currency.ordinal()];
+    }
+
+    /**
+     * Zwraca liczbę otwartych partii aktywa.
+     */
+    public int getLotCount(String symbol) {
+        LotQueue queue = lots.get(symbol);
+        return queue != null ? queueFor(queue.asset).size : 0;
+    }
+
+    /**
+     * Zwraca łączny koszt nabycia otwartych partii (ujemny dla krótkiej pozycji).
+     */
+    public double getCostBasis(String symbol) {
+        double[] basis = new double[1];
+        forEachLot(symbol, (quantity, price, tick) -> basis[0] += quantity * price);
+        return basis[0];
+    }
+
+    /**
+     * Przekazuje odbiorcy otwarte partie aktywa w kolejności przechowywania
+     * (dla FIFO i LIFO - od najstarszej; dla HIGHEST_COST - w kolejności kopca).
+     */
+    public void forEachLot(String symbol, LotVisitor visitor) {
+        LotQueue queue = lots.get(symbol);
+        if (queue == null) {
+            return;
+        }
+        queueFor(queue.asset);
+        for (int i = 0; i < queue.size; i++) {
+            int index = queue.index(i);
+            visitor.visit(queue.quantities[index] * queue.sign, queue.prices[index], queue.ticks[index]);
+        }
+    }
+}
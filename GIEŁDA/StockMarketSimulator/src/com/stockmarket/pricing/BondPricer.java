@@ -0,0 +1,300 @@
+package com.stockmarket.pricing;
+
+import com.stockmarket.market.BatchPricer;
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.Bond;
+import java.util.*;
+
+/**
+ * Silnik wyceny obligacji kuponowych na podstawie krzywej rentowności.
+ *
+ * Wszystkie obligacje z harmonogramem są przechowywane kolumnowo (osobna
+ * tablica na każdy parametr) i wyceniane w jednym przebiegu po tablicach.
+ * Przepływy pieniężne przypadają zawsze na pełne kroki czasowe, więc w każdym
+ * ticku liczymy czynniki dyskontujące tylko raz dla każdego odstępu od "teraz",
+ * a potem sumy prefiksowe co interwał kuponowy. Dzięki temu cena, duration
+ * i wypukłość każdej obligacji kosztują O(1), niezależnie od liczby kuponów.
+ *
+ * Kolumny zmieniają się w wątku rynku (wycena, nowe i wycofane obligacje),
+ * a wyniki mogą być czytane z innych wątków - wszystkie te metody synchronizują
+ * się na silniku, więc odczyt nigdy nie trafi na przesuwane sloty. Rynek wywołuje
+ * silnik pod swoją blokadą, a silnik nie sięga z powrotem do rynku, więc
+ * kolejność blokad jest zawsze ta sama.
+ */
+public class BondPricer implements BatchPricer, MarketListener {
+
+    private volatile YieldCurve curve;
+
+    // Kolumny - indeks to numer obligacji w silniku (nie id na rynku)
+    private Bond[] bonds = new Bond[16];
+    private double[] faceValues = new double[16];
+    private double[] couponAmounts = new double[16];
+    private long[] maturityTicks = new long[16];
+    private int[] couponIntervals = new int[16];
+    private double[] durations = new double[16];
+    private double[] convexities = new double[16];
+    private double[] cashFlowsDue = new double[16];
+    private int size;
+    private final Map<Bond, Integer> slots = new IdentityHashMap<>();
+
+    // Bufory wielokrotnego użytku: czynniki dyskontujące i sumy prefiksowe na interwał
+    private double[] discountFactors = new double[0];
+    private final double[][] sumDf = new double[(int) Market.TICKS_PER_YEAR + 1][];
+    private final double[][] sumTimeDf = new double[(int) Market.TICKS_PER_YEAR + 1][];
+    private final double[][] sumTime2Df = new double[(int) Market.TICKS_PER_YEAR + 1][];
+
+    private long lastTick;
+
+    /**
+     * Tworzy silnik, rejestruje w nim wszystkie obligacje z harmonogramem
+     * i podłącza go do rynku (wycena w każdym ticku, śledzenie nowych obligacji).
+     */
+    public BondPricer(Market market, YieldCurve curve) {
+        this.curve = curve;
+        synchronized (market) {
+            MarketSnapshot snapshot = market.getSnapshot();
+            for (int id = 0; id < snapshot.size(); id++) {
+                Asset asset = snapshot.getAsset(id);
+                if (asset != null) {
+                    onAssetListed(asset, id);
+                }
+            }
+            market.addListener(this);
+            market.addPricer(this);
+        }
+    }
+
+    /**
+     * Podmienia krzywą rentowności. Nowa krzywa zostanie użyta przy najbliższym
+     * ticku albo od razu po wywołaniu market.repriceNow().
+     */
+    public void setYieldCurve(YieldCurve curve) {
+        this.curve = curve;
+    }
+
+    public YieldCurve getYieldCurve() {
+        return curve;
+    }
+
+    @Override
+    public synchronized void onAssetListed(Asset asset, int id) {
+        if (asset instanceof Bond && ((Bond) asset).hasSchedule()) {
+            add((Bond) asset);
+        }
+    }
+
+    @Override
+    public synchronized void onAssetDelisted(Asset asset, int id) {
+        Integer slot = slots.remove(asset);
+        if (slot == null) {
+            return;
+        }
+        // Przenosimy ostatnią obligację na zwolnione miejsce
+        int last = --size;
+        if (slot != last) {
+            moveSlot(last, slot);
+            slots.put(bonds[slot], slot);
+        }
+        bonds[last] = null;
+    }
+
+    private void add(Bond bond) {
+        if (slots.containsKey(bond)) {
+            return;
+        }
+        if (size == bonds.length) {
+            grow(size * 2);
+        }
+        bonds[size] = bond;
+        faceValues[size] = bond.getFaceValue();
+        couponAmounts[size] = bond.getCouponAmount();
+        maturityTicks[size] = bond.getMaturityTick();
+        couponIntervals[size] = bond.getCouponInterval();
+        slots.put(bond, size);
+        size++;
+    }
+
+    private void moveSlot(int from, int to) {
+        bonds[to] = bonds[from];
+        faceValues[to] = faceValues[from];
+        couponAmounts[to] = couponAmounts[from];
+        maturityTicks[to] = maturityTicks[from];
+        couponIntervals[to] = couponIntervals[from];
+        durations[to] = durations[from];
+        convexities[to] = convexities[from];
+        cashFlowsDue[to] = cashFlowsDue[from];
+    }
+
+    private void grow(int capacity) {
+        bonds = Arrays.copyOf(bonds, capacity);
+        faceValues = Arrays.copyOf(faceValues, capacity);
+        couponAmounts = Arrays.copyOf(couponAmounts, capacity);
+        maturityTicks = Arrays.copyOf(maturityTicks, capacity);
+        couponIntervals = Arrays.copyOf(couponIntervals, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        convexities = Arrays.copyOf(convexities, capacity);
+        cashFlowsDue = Arrays.copyOf(cashFlowsDue, capacity);
+    }
+
+    /**
+     * Wycenia wszystkie obligacje w jednym przebiegu.
+     */
+    @Override
+    public synchronized void reprice(Market market, long tick) {
+        lastTick = tick;
+        YieldCurve currentCurve = curve;
+
+        // Krok 1: najdłuższy pozostały termin decyduje o rozmiarze tablic
+        int maxRemaining = 0;
+        boolean[] usedIntervals = new boolean[sumDf.length];
+        for (int i = 0; i < size; i++) {
+            long remaining = maturityTicks[i] - tick;
+            if (remaining > 0) {
+                maxRemaining = (int) Math.max(maxRemaining, remaining);
+                usedIntervals[couponIntervals[i]] = true;
+            }
+        }
+
+        // Krok 2: czynniki dyskontujące dla każdego odstępu 0..maxRemaining ticków
+        if (discountFactors.length < maxRemaining + 1) {
+            discountFactors = new double[maxRemaining + 1];
+        }
+        for (int m = 0; m <= maxRemaining; m++) {
+            discountFactors[m] = currentCurve.discountFactor(m / Market.TICKS_PER_YEAR);
+        }
+
+        // Krok 3: sumy prefiksowe co interwał kuponowy - kupony przypadają na m, m-iv, m-2iv, ... > 0
+        for (int interval = 1; interval < usedIntervals.length; interval++) {
+            if (usedIntervals[interval]) {
+                buildPrefixSums(interval, maxRemaining);
+            }
+        }
+
+        // Krok 4: cena, duration i wypukłość każdej obligacji w O(1)
+        for (int i = 0; i < size; i++) {
+            long remaining = maturityTicks[i] - tick;
+            cashFlowsDue[i] = bonds[i].getCashFlowAt(tick);
+            if (remaining <= 0) {
+                // Po wykupie obligacja nie ma już przyszłych przepływów
+                bonds[i].setCurrentPrice(0.0);
+                durations[i] = 0.0;
+                convexities[i] = 0.0;
+                continue;
+            }
+            int m = (int) remaining;
+            int interval = couponIntervals[i];
+            double years = m / Market.TICKS_PER_YEAR;
+            double principalPv = faceValues[i] * discountFactors[m];
+            double coupon = couponAmounts[i];
+
+            double price = coupon * sumDf[interval][m] + principalPv;
+            double timeWeighted = coupon * sumTimeDf[interval][m] + years * principalPv;
+            double time2Weighted = coupon * sumTime2Df[interval][m] + years * years * principalPv;
+
+            bonds[i].setCurrentPrice(price);
+            durations[i] = timeWeighted / price;
+            convexities[i] = time2Weighted / price;
+        }
+    }
+
+    private void buildPrefixSums(int interval, int maxRemaining) {
+        if (sumDf[interval] == null || sumDf[interval].length < maxRemaining + 1) {
+            sumDf[interval] = new double[maxRemaining + 1];
+            sumTimeDf[interval] = new double[maxRemaining + 1];
+            sumTime2Df[interval] = new double[maxRemaining + 1];
+        }
+        double[] s0 = sumDf[interval];
+        double[] s1 = sumTimeDf[interval];
+        double[] s2 = sumTime2Df[interval];
+        s0[0] = 0.0;
+        s1[0] = 0.0;
+        s2[0] = 0.0;
+        for (int m = 1; m <= maxRemaining; m++) {
+            double t = m / Market.TICKS_PER_YEAR;
+            double df = discountFactors[m];
+            int previous = m - interval;
+            s0[m] = df + (previous > 0 ? s0[previous] : 0.0);
+            s1[m] = t * df + (previous > 0 ? s1[previous] : 0.0);
+            s2[m] = t * t * df + (previous > 0 ? s2[previous] : 0.0);
+        }
+    }
+
+    // ========== WYNIKI WYCENY ==========
+
+    /**
+     * Zwraca duration Macaulaya obligacji (w latach) z ostatniej wyceny.
+     * Przy dyskontowaniu ciągłym jest równe duration zmodyfikowanemu.
+     */
+    public synchronized double getDuration(Bond bond) {
+        return durations[slotOf(bond)];
+    }
+
+    /**
+     * Zwraca wypukłość obligacji (w latach do kwadratu) z ostatniej wyceny.
+     */
+    public synchronized double getConvexity(Bond bond) {
+        return convexities[slotOf(bond)];
+    }
+
+    /**
+     * Zwraca rentowność do wykupu (w procentach, kapitalizacja ciągła)
+     * przy której wartość przepływów równa się bieżącej cenie obligacji.
+     * Liczona metodą Newtona - na żądanie, nie w każdym ticku.
+     */
+    public synchronized double getYieldToMaturity(Bond bond) {
+        int slot = slotOf(bond);
+        double price = bond.getCurrentPrice();
+        long remaining = maturityTicks[slot] - lastTick;
+        if (remaining <= 0 || price <= 0) {
+            return Double.NaN;
+        }
+        int interval = couponIntervals[slot];
+        double coupon = couponAmounts[slot];
+        double face = faceValues[slot];
+
+        double y = bond.getInterestRate() / 100.0;
+        for (int iteration = 0; iteration < 50; iteration++) {
+            double value = 0.0;
+            double derivative = 0.0;
+            for (long m = remaining; m > 0; m -= interval) {
+                double t = m / Market.TICKS_PER_YEAR;
+                double cashFlow = m == remaining ? coupon + face : coupon;
+                double discounted = cashFlow * Math.exp(-y * t);
+                value += discounted;
+                derivative -= t * discounted;
+            }
+            double step = (value - price) / derivative;
+            y -= step;
+            if (Math.abs(step) < 1e-12) {
+                break;
+            }
+        }
+        return y * 100.0;
+    }
+
+    /**
+     * Zwraca kwotę (na jedną obligację) wypłacaną w bieżącym ticku.
+     * Silnik tylko wycenia - kupony i wykup wypłaca posiadaczom CorporateActionEngine.
+     */
+    public synchronized double getCashFlowDue(Bond bond) {
+        return cashFlowsDue[slotOf(bond)];
+    }
+
+    /**
+     * Zwraca liczbę obligacji wycenianych przez silnik.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private int slotOf(Bond bond) {
+        Integer slot = slots.get(bond);
+        if (slot == null) {
+            throw new IllegalArgumentException("Obligacja " + bond.getSymbol() + " nie jest wyceniana przez silnik");
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,228 @@
+package com.stockmarket.pricing;
+
+import com.stockmarket.market.BatchPricer;
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.CompositeAsset;
+import java.util.*;
+
+/**
+ * Silnik wyceny indeksów i funduszy ETF (aktywów złożonych).
+ *
+ * Zamiast co tick sumować każdy koszyk od nowa, silnik trzyma indeks odwrotny
+ * składnik -&gt; koszyki (w formacie CSR: jeden wiersz na składnik, ciągłe
+ * tablice z numerami koszyków i współczynnikami waga / dzielnik). W ticku
+ * przechodzi po składnikach, liczy przyrost ceny od poprzedniego ticka
+ * i dolicza go do wartości koszyków z wiersza. Składnik, którego cena się nie
+ * zmieniła (np. wycofany z rynku), nie kosztuje nic poza jednym porównaniem.
+ * Cena każdego składnika jest czytana raz, niezależnie od tego, w ilu
+ * koszykach występuje.
+ *
+ * Suma przyrostów gubi z czasem najmłodsze bity, więc co RESYNC_INTERVAL
+ * ticków wartości są liczone od zera (tym samym przebiegiem po wierszach).
+ *
+ * Silnik musi być zarejestrowany po silnikach wyceniających składniki
+ * (np. po BondPricer, jeśli koszyk zawiera obligacje).
+ *
+ * Podział akcji składnika zwiększa jej wagę w koszykach i współczynniki jej
+ * wiersza, a ostatnią cenę wiersza przelicza tą samą proporcją w drugą
+ * stronę - wartości koszyków nie skaczą.
+ */
+public class CompositePricer implements BatchPricer, MarketListener {
+
+    static final int RESYNC_INTERVAL = 256;
+
+    // Kolumny koszyków - indeks to numer koszyka w silniku
+    private CompositeAsset[] composites = new CompositeAsset[16];
+    private double[] values = new double[16];
+    private int size;
+    private final Map<CompositeAsset, Integer> slots = new IdentityHashMap<>();
+
+    // Indeks odwrotny: wiersz = składnik, wpisy wierszy leżą w ciągłych tablicach
+    private Asset[] rowAssets = new Asset[0];
+    private double[] lastPrices = new double[0];
+    private int[] rowOffsets = new int[1];
+    private int[] entryTargets = new int[0];
+    private double[] entryCoefficients = new double[0];
+    private int rowCount;
+
+    private boolean indexDirty;
+    private int ticksSinceResync;
+
+    /**
+     * Tworzy silnik, rejestruje w nim wszystkie koszyki z rynku i podłącza go
+     * do rynku (wycena w każdym ticku, śledzenie nowych koszyków).
+     */
+    public CompositePricer(Market market) {
+        synchronized (market) {
+            MarketSnapshot snapshot = market.getSnapshot();
+            for (int id = 0; id < snapshot.size(); id++) {
+                Asset asset = snapshot.getAsset(id);
+                if (asset != null) {
+                    onAssetListed(asset, id);
+                }
+            }
+            market.addListener(this);
+            market.addPricer(this);
+        }
+    }
+
+    @Override
+    public void onAssetListed(Asset asset, int id) {
+        if (asset instanceof CompositeAsset && !slots.containsKey(asset)) {
+            if (size == composites.length) {
+                composites = Arrays.copyOf(composites, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            composites[size] = (CompositeAsset) asset;
+            slots.put((CompositeAsset) asset, size);
+            size++;
+            indexDirty = true;
+        }
+    }
+
+    @Override
+    public void onAssetDelisted(Asset asset, int id) {
+        Integer slot = slots.remove(asset);
+        if (slot == null) {
+            return;
+        }
+        // Przenosimy ostatni koszyk na zwolnione miejsce
+        int last = --size;
+        if (slot != last) {
+            composites[slot] = composites[last];
+            values[slot] = values[last];
+            slots.put(composites[slot], slot);
+        }
+        composites[last] = null;
+        indexDirty = true;
+    }
+
+    @Override
+    public void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+        boolean held = false;
+        for (int slot = 0; slot < size; slot++) {
+            held |= composites[slot].applyConstituentSplit(asset, numerator, denominator);
+        }
+        if (!held || indexDirty) {
+            return;   // indeks i tak zostanie zbudowany od nowa, z nowymi wagami
+        }
+        for (int row = 0; row < rowCount; row++) {
+            if (rowAssets[row] != asset) {
+                continue;
+            }
+            // współczynnik * ostatnia cena (wkład do wartości koszyka) zostaje bez zmian
+            lastPrices[row] = lastPrices[row] * denominator / numerator;
+            for (int entry = rowOffsets[row]; entry < rowOffsets[row + 1]; entry++) {
+                entryCoefficients[entry] = entryCoefficients[entry] * numerator / denominator;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Buduje indeks odwrotny od zera - po zmianie zbioru koszyków.
+     * Koszt proporcjonalny do łącznej liczby składników wszystkich koszyków.
+     */
+    private void rebuildIndex() {
+        Map<Asset, Integer> rowOf = new IdentityHashMap<>();
+        List<Asset> rows = new ArrayList<>();
+        int entryCount = 0;
+        for (int slot = 0; slot < size; slot++) {
+            for (Asset constituent : composites[slot].getConstituents()) {
+                if (rowOf.putIfAbsent(constituent, rows.size()) == null) {
+                    rows.add(constituent);
+                }
+                entryCount++;
+            }
+        }
+
+        rowCount = rows.size();
+        rowAssets = rows.toArray(new Asset[0]);
+        lastPrices = new double[rowCount];
+        rowOffsets = new int[rowCount + 1];
+        entryTargets = new int[entryCount];
+        entryCoefficients = new double[entryCount];
+
+        // Zliczanie wpisów na wiersz, potem sumy prefiksowe jako początki wierszy
+        for (int slot = 0; slot < size; slot++) {
+            for (Asset constituent : composites[slot].getConstituents()) {
+                rowOffsets[rowOf.get(constituent) + 1]++;
+            }
+        }
+        for (int row = 0; row < rowCount; row++) {
+            rowOffsets[row + 1] += rowOffsets[row];
+        }
+        int[] fill = Arrays.copyOf(rowOffsets, rowCount);
+        for (int slot = 0; slot < size; slot++) {
+            CompositeAsset composite = composites[slot];
+            List<Asset> constituents = composite.getConstituents();
+            for (int i = 0; i < constituents.size(); i++) {
+                int entry = fill[rowOf.get(constituents.get(i))]++;
+                entryTargets[entry] = slot;
+                entryCoefficients[entry] = composite.getWeight(i) / composite.getDivisor();
+            }
+        }
+        indexDirty = false;
+    }
+
+    /**
+     * Przelicza wartości koszyków z przyrostów cen składników.
+     */
+    @Override
+    public void reprice(Market market, long tick) {
+        if (indexDirty) {
+            rebuildIndex();
+            ticksSinceResync = RESYNC_INTERVAL;
+        }
+        if (++ticksSinceResync >= RESYNC_INTERVAL) {
+            resync();
+        } else {
+            for (int row = 0; row < rowCount; row++) {
+                double price = rowAssets[row].getCurrentPrice();
+                double delta = price - lastPrices[row];
+                if (delta == 0.0) {
+                    continue;
+                }
+                lastPrices[row] = price;
+                for (int entry = rowOffsets[row]; entry < rowOffsets[row + 1]; entry++) {
+                    values[entryTargets[entry]] += entryCoefficients[entry] * delta;
+                }
+            }
+        }
+        for (int slot = 0; slot < size; slot++) {
+            composites[slot].setCurrentPrice(Math.max(0.0, values[slot]));
+        }
+    }
+
+    /**
+     * Liczy wartości wszystkich koszyków od zera (tym samym przebiegiem po wierszach).
+     */
+    private void resync() {
+        Arrays.fill(values, 0, size, 0.0);
+        for (int row = 0; row < rowCount; row++) {
+            double price = rowAssets[row].getCurrentPrice();
+            lastPrices[row] = price;
+            for (int entry = rowOffsets[row]; entry < rowOffsets[row + 1]; entry++) {
+                values[entryTargets[entry]] += entryCoefficients[entry] * price;
+            }
+        }
+        ticksSinceResync = 0;
+    }
+
+    /**
+     * Zwraca liczbę koszyków wycenianych przez silnik.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Zwraca liczbę różnych składników we wszystkich koszykach (wierszy indeksu odwrotnego).
+     */
+    public int getConstituentCount() {
+        return rowCount;
+    }
+}
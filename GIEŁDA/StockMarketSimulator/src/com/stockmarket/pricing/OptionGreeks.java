@@ -0,0 +1,13 @@
+package com.stockmarket.pricing;
+
+/**
+ * Wrażliwości ceny opcji ("greki") z ostatniej wyceny.
+ *
+ * @param delta zmiana ceny opcji na jednostkę zmiany ceny akcji
+ * @param gamma zmiana delty na jednostkę zmiany ceny akcji
+ * @param vega zmiana ceny opcji przy wzroście zmienności o 1 punkt procentowy
+ * @param theta zmiana ceny opcji po upływie jednego ticka (miesiąca)
+ * @param rho zmiana ceny opcji przy wzroście stopy procentowej o 1 punkt procentowy
+ */
+public record OptionGreeks(double delta, double gamma, double vega, double theta, double rho) {
+}
@@ -0,0 +1,436 @@
+package com.stockmarket.pricing;
+
+import com.stockmarket.market.BatchPricer;
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.Option;
+import com.stockmarket.model.Stock;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Silnik wyceny opcji na akcje.
+ *
+ * Tak jak BondPricer trzyma wszystkie opcje kolumnowo i wycenia je w jednym
+ * przebiegu po tablicach, równolegle po fragmentach (BLOCK_SIZE opcji na
+ * zadanie). Silnik musi być zarejestrowany po silnikach wyceniających akcje
+ * bazowe - czyta ich ceny z bieżącego ticka.
+ *
+ * Opcje europejskie (i amerykańskie opcje call - na akcje bez dywidend
+ * wcześniejsze wykonanie call się nie opłaca) są wyceniane wzorem
+ * Blacka-Scholesa. Amerykańskie opcje put - drzewem dwumianowym
+ * Coxa-Rossa-Rubinsteina; delta, gamma i theta pochodzą z pierwszych węzłów
+ * drzewa, a vega i rho z wzoru dla odpowiadającej opcji europejskiej
+ * (przybliżenie - dokładne wymagałoby kolejnych drzew).
+ *
+ * Stopa procentowa pochodzi z krzywej rentowności i jest liczona raz na tick
+ * dla każdego pozostałego terminu, a nie osobno dla każdej opcji.
+ *
+ * Wzory liczą wartość na jedną akcję bazową; cena i greckie wrażliwości są
+ * mnożone przez mnożnik opcji (po podziale akcji opcja obejmuje więcej akcji).
+ */
+public class OptionPricer implements BatchPricer, MarketListener {
+
+    // Tyle opcji wycenia jedno zadanie
+    static final int BLOCK_SIZE = 4096;
+    public static final int DEFAULT_BINOMIAL_STEPS = 64;
+
+    private volatile YieldCurve curve;
+    private volatile int binomialSteps = DEFAULT_BINOMIAL_STEPS;
+
+    // Kolumny - indeks to numer opcji w silniku (nie id na rynku)
+    private Option[] options = new Option[16];
+    private Stock[] underlyings = new Stock[16];
+    private double[] strikes = new double[16];
+    private double[] multipliers = new double[16];
+    private long[] expiryTicks = new long[16];
+    private double[] volatilities = new double[16];   // ułamek, nie procent
+    private boolean[] calls = new boolean[16];
+    private boolean[] americans = new boolean[16];
+    private double[] deltas = new double[16];
+    private double[] gammas = new double[16];
+    private double[] vegas = new double[16];
+    private double[] thetas = new double[16];
+    private double[] rhos = new double[16];
+    private int size;
+    private final Map<Option, Integer> slots = new IdentityHashMap<>();
+
+    // Bufory wielokrotnego użytku
+    private double[] spots = new double[16];
+    private double[] rates = new double[0];   // pozostałe ticki -> stopa (ułamek)
+
+    /**
+     * Tworzy silnik, rejestruje w nim wszystkie opcje z rynku i podłącza go
+     * do rynku (wycena w każdym ticku, śledzenie nowych opcji).
+     */
+    public OptionPricer(Market market, YieldCurve curve) {
+        this.curve = curve;
+        synchronized (market) {
+            MarketSnapshot snapshot = market.getSnapshot();
+            for (int id = 0; id < snapshot.size(); id++) {
+                Asset asset = snapshot.getAsset(id);
+                if (asset != null) {
+                    onAssetListed(asset, id);
+                }
+            }
+            market.addListener(this);
+            market.addPricer(this);
+        }
+    }
+
+    /**
+     * Podmienia krzywą rentowności. Nowa krzywa zostanie użyta przy najbliższym
+     * ticku albo od razu po wywołaniu market.repriceNow().
+     */
+    public void setYieldCurve(YieldCurve curve) {
+        this.curve = curve;
+    }
+
+    public YieldCurve getYieldCurve() {
+        return curve;
+    }
+
+    /**
+     * Ustawia liczbę kroków drzewa dwumianowego dla opcji amerykańskich.
+     * Koszt wyceny rośnie z kwadratem liczby kroków, a błąd maleje mniej więcej
+     * jak 1/kroki.
+     *
+     * @throws IllegalArgumentException gdy liczba kroków jest mniejsza niż 2
+     */
+    public void setBinomialSteps(int steps) {
+        if (steps < 2) {
+            throw new IllegalArgumentException("Drzewo musi mieć co najmniej 2 kroki");
+        }
+        this.binomialSteps = steps;
+    }
+
+    public int getBinomialSteps() {
+        return binomialSteps;
+    }
+
+    @Override
+    public void onAssetListed(Asset asset, int id) {
+        if (asset instanceof Option) {
+            add((Option) asset);
+        }
+    }
+
+    @Override
+    public void onAssetDelisted(Asset asset, int id) {
+        Integer slot = slots.remove(asset);
+        if (slot == null) {
+            return;
+        }
+        // Przenosimy ostatnią opcję na zwolnione miejsce
+        int last = --size;
+        if (slot != last) {
+            moveSlot(last, slot);
+            slots.put(options[slot], slot);
+        }
+        options[last] = null;
+        underlyings[last] = null;
+    }
+
+    /**
+     * Podział akcji bazowej koryguje jej opcje: cenę wykonania i mnożnik.
+     * Cena opcji zostaje bez zmian - w tym samym ticku zmieniła się tylko
+     * liczba akcji, a nie wartość, którą opcja obejmuje.
+     */
+    @Override
+    public void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+        if (!(asset instanceof Stock)) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            if (underlyings[i] == asset) {
+                options[i].applyUnderlyingSplit(numerator, denominator);
+                strikes[i] = options[i].getStrike();
+                multipliers[i] = options[i].getMultiplier();
+            }
+        }
+    }
+
+    private void add(Option option) {
+        if (slots.containsKey(option)) {
+            return;
+        }
+        if (size == options.length) {
+            grow(size * 2);
+        }
+        options[size] = option;
+        underlyings[size] = option.getUnderlying();
+        strikes[size] = option.getStrike();
+        multipliers[size] = option.getMultiplier();
+        expiryTicks[size] = option.getExpiryTick();
+        volatilities[size] = option.getVolatility() / 100.0;
+        calls[size] = option.isCall();
+        americans[size] = option.isAmerican();
+        slots.put(option, size);
+        size++;
+    }
+
+    private void moveSlot(int from, int to) {
+        options[to] = options[from];
+        underlyings[to] = underlyings[from];
+        strikes[to] = strikes[from];
+        multipliers[to] = multipliers[from];
+        expiryTicks[to] = expiryTicks[from];
+        volatilities[to] = volatilities[from];
+        calls[to] = calls[from];
+        americans[to] = americans[from];
+        deltas[to] = deltas[from];
+        gammas[to] = gammas[from];
+        vegas[to] = vegas[from];
+        thetas[to] = thetas[from];
+        rhos[to] = rhos[from];
+    }
+
+    private void grow(int capacity) {
+        options = Arrays.copyOf(options, capacity);
+        underlyings = Arrays.copyOf(underlyings, capacity);
+        strikes = Arrays.copyOf(strikes, capacity);
+        multipliers = Arrays.copyOf(multipliers, capacity);
+        expiryTicks = Arrays.copyOf(expiryTicks, capacity);
+        volatilities = Arrays.copyOf(volatilities, capacity);
+        calls = Arrays.copyOf(calls, capacity);
+        americans = Arrays.copyOf(americans, capacity);
+        deltas = Arrays.copyOf(deltas, capacity);
+        gammas = Arrays.copyOf(gammas, capacity);
+        vegas = Arrays.copyOf(vegas, capacity);
+        thetas = Arrays.copyOf(thetas, capacity);
+        rhos = Arrays.copyOf(rhos, capacity);
+    }
+
+    /**
+     * Wycenia wszystkie opcje w jednym przebiegu.
+     */
+    @Override
+    public void reprice(Market market, long tick) {
+        YieldCurve currentCurve = curve;
+        int steps = binomialSteps;
+
+        // Krok 1: ceny akcji bazowych i najdłuższy pozostały termin
+        if (spots.length < options.length) {
+            spots = new double[options.length];
+        }
+        int maxRemaining = 0;
+        for (int i = 0; i < size; i++) {
+            spots[i] = underlyings[i].getCurrentPrice();
+            maxRemaining = (int) Math.max(maxRemaining, expiryTicks[i] - tick);
+        }
+
+        // Krok 2: stopa dla każdego pozostałego terminu 1..maxRemaining ticków
+        if (rates.length < maxRemaining + 1) {
+            rates = new double[maxRemaining + 1];
+        }
+        for (int m = 1; m <= maxRemaining; m++) {
+            rates[m] = currentCurve.rateAt(m / Market.TICKS_PER_YEAR) / 100.0;
+        }
+
+        // Krok 3: wycena fragmentami, równolegle
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            int from = block * BLOCK_SIZE;
+            int to = Math.min(size, from + BLOCK_SIZE);
+            double[] tree = null;
+            for (int i = from; i < to; i++) {
+                long remaining = expiryTicks[i] - tick;
+                if (remaining < 0) {
+                    continue;   // opcja wygasła - cena zostaje równa wypłacie
+                }
+                if (remaining == 0) {
+                    settle(i);
+                    continue;
+                }
+                double price = blackScholes(i, remaining / Market.TICKS_PER_YEAR, rates[(int) remaining]);
+                if (americans[i] && !calls[i]) {
+                    if (tree == null) {
+                        tree = new double[steps + 1];
+                    }
+                    price = binomialPut(i, remaining / Market.TICKS_PER_YEAR, rates[(int) remaining], steps, tree);
+                }
+                options[i].setCurrentPrice(Math.max(0.0, price) * scaleGreeks(i));
+            }
+        });
+    }
+
+    /**
+     * W terminie wygaśnięcia cena to wypłata, a delta to 1 (lub -1) dla opcji w pieniądzu.
+     */
+    private void settle(int i) {
+        double payoff = options[i].getIntrinsicValue(spots[i]);
+        options[i].setCurrentPrice(payoff);
+        deltas[i] = payoff > 0 ? (calls[i] ? multipliers[i] : -multipliers[i]) : 0.0;
+        gammas[i] = 0.0;
+        vegas[i] = 0.0;
+        thetas[i] = 0.0;
+        rhos[i] = 0.0;
+    }
+
+    /**
+     * Przelicza greckie wrażliwości z jednej akcji na całą opcję.
+     *
+     * @return mnożnik opcji (do przeliczenia ceny)
+     */
+    private double scaleGreeks(int i) {
+        double multiplier = multipliers[i];
+        if (multiplier != 1.0) {
+            deltas[i] *= multiplier;
+            gammas[i] *= multiplier;
+            vegas[i] *= multiplier;
+            thetas[i] *= multiplier;
+            rhos[i] *= multiplier;
+        }
+        return multiplier;
+    }
+
+    /**
+     * Wzór Blacka-Scholesa z greckimi wrażliwościami (zapisywanymi do kolumn).
+     *
+     * @return cena opcji europejskiej
+     */
+    private double blackScholes(int i, double years, double rate) {
+        double spot = spots[i];
+        double strike = strikes[i];
+        double sigma = volatilities[i];
+        double sqrtT = Math.sqrt(years);
+        double sigmaSqrtT = sigma * sqrtT;
+        double d1 = (Math.log(spot / strike) + (rate + 0.5 * sigma * sigma) * years) / sigmaSqrtT;
+        double d2 = d1 - sigmaSqrtT;
+        double discountedStrike = strike * Math.exp(-rate * years);
+        double density = normalDensity(d1);
+
+        gammas[i] = density / (spot * sigmaSqrtT);
+        vegas[i] = spot * density * sqrtT / 100.0;
+        double decay = -spot * density * sigma / (2.0 * sqrtT);
+        if (calls[i]) {
+            double nd1 = normalCdf(d1);
+            double nd2 = normalCdf(d2);
+            deltas[i] = nd1;
+            thetas[i] = (decay - rate * discountedStrike * nd2) / Market.TICKS_PER_YEAR;
+            rhos[i] = discountedStrike * years * nd2 / 100.0;
+            return spot * nd1 - discountedStrike * nd2;
+        }
+        double nMinusD1 = normalCdf(-d1);
+        double nMinusD2 = normalCdf(-d2);
+        deltas[i] = -nMinusD1;
+        thetas[i] = (decay + rate * discountedStrike * nMinusD2) / Market.TICKS_PER_YEAR;
+        rhos[i] = -discountedStrike * years * nMinusD2 / 100.0;
+        return discountedStrike * nMinusD2 - spot * nMinusD1;
+    }
+
+    /**
+     * Amerykańska opcja put na drzewie dwumianowym CRR. Nadpisuje deltę, gammę
+     * i thetę wartościami z węzłów drzewa.
+     *
+     * @param tree bufor na wartości węzłów (co najmniej steps + 1 elementów)
+     * @return cena opcji amerykańskiej
+     */
+    private double binomialPut(int i, double years, double rate, int steps, double[] tree) {
+        double spot = spots[i];
+        double strike = strikes[i];
+        double dt = years / steps;
+        double up = Math.exp(volatilities[i] * Math.sqrt(dt));
+        double down = 1.0 / up;
+        double up2 = up * up;
+        double growth = Math.exp(rate * dt);
+        double p = (growth - down) / (up - down);
+        double q = 1.0 - p;
+        double discount = 1.0 / growth;
+
+        // Liście: cena akcji S * u^(2j - N)
+        double lowest = spot * Math.pow(down, steps);
+        double node = lowest;
+        for (int j = 0; j <= steps; j++) {
+            tree[j] = Math.max(0.0, strike - node);
+            node *= up2;
+        }
+
+        // Cofamy się do korzenia; w każdym węźle porównujemy z natychmiastowym wykonaniem
+        double step2Low = tree[0];
+        double step2Mid = tree[1];
+        double step2High = tree[2];   // gdy drzewo ma tylko 2 kroki, to są liście
+        double step1Low = 0.0;
+        double step1High = 0.0;
+        for (int step = steps - 1; step >= 0; step--) {
+            lowest *= up;
+            node = lowest;
+            for (int j = 0; j <= step; j++) {
+                double continuation = discount * (p * tree[j + 1] + q * tree[j]);
+                tree[j] = Math.max(continuation, strike - node);
+                node *= up2;
+            }
+            if (step == 2) {
+                step2Low = tree[0];
+                step2Mid = tree[1];
+                step2High = tree[2];
+            } else if (step == 1) {
+                step1Low = tree[0];
+                step1High = tree[1];
+            }
+        }
+        double price = tree[0];
+
+        double spotUp = spot * up;
+        double spotDown = spot * down;
+        deltas[i] = (step1High - step1Low) / (spotUp - spotDown);
+        double spotUp2 = spot * up2;
+        double spotDown2 = spot / up2;
+        double deltaHigh = (step2High - step2Mid) / (spotUp2 - spot);
+        double deltaLow = (step2Mid - step2Low) / (spot - spotDown2);
+        gammas[i] = (deltaHigh - deltaLow) / (0.5 * (spotUp2 - spotDown2));
+        // Węzeł środkowy po dwóch krokach ma tę samą cenę akcji co korzeń
+        thetas[i] = (step2Mid - price) / (2.0 * dt) / Market.TICKS_PER_YEAR;
+        return price;
+    }
+
+    private static double normalDensity(double x) {
+        return Math.exp(-0.5 * x * x) * 0.3989422804014327;
+    }
+
+    /**
+     * Dystrybuanta rozkładu normalnego - przybliżenie wielomianowe
+     * Abramowitza i Steguna (26.2.17), błąd poniżej 7.5e-8.
+     */
+    private static double normalCdf(double x) {
+        double t = 1.0 / (1.0 + 0.2316419 * Math.abs(x));
+        double polynomial = t * (0.319381530 + t * (-0.356563782 + t * (1.781477937
+                + t * (-1.821255978 + t * 1.330274429))));
+        double tail = normalDensity(x) * polynomial;
+        return x >= 0 ? 1.0 - tail : tail;
+    }
+
+    // ========== WYNIKI WYCENY ==========
+
+    /**
+     * Zwraca greckie wrażliwości opcji z ostatniej wyceny.
+     */
+    public OptionGreeks getGreeks(Option option) {
+        int slot = slotOf(option);
+        return new OptionGreeks(deltas[slot], gammas[slot], vegas[slot], thetas[slot], rhos[slot]);
+    }
+
+    /**
+     * Zwraca deltę opcji z ostatniej wyceny.
+     */
+    public double getDelta(Option option) {
+        return deltas[slotOf(option)];
+    }
+
+    /**
+     * Zwraca liczbę opcji wycenianych przez silnik.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int slotOf(Option option) {
+        Integer slot = slots.get(option);
+        if (slot == null) {
+            throw new IllegalArgumentException("Opcja " + option.getSymbol() + " nie jest wyceniana przez silnik");
+        }
+        return slot;
+    }
+}
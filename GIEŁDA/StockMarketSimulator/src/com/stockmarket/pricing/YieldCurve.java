@@ -0,0 +1,81 @@
+package com.stockmarket.pricing;
+
+import java.util.Arrays;
+
+/**
+ * Niezmienna krzywa rentowności - stopy zerokuponowe dla różnych terminów.
+ *
+ * Między punktami krzywej stopy są interpolowane liniowo, poza zakresem
+ * przyjmujemy stopę z najbliższego punktu. Dyskontowanie jest ciągłe:
+ * DF(t) = exp(-r(t) * t), gdzie t to czas w latach.
+ */
+public final class YieldCurve {
+
+    private final double[] tenors;  // terminy w latach, rosnąco
+    private final double[] rates;   // stopy w procentach
+
+    /**
+     * Tworzy krzywą z punktów (termin w latach, stopa w procentach).
+     *
+     * @throws IllegalArgumentException gdy tablice mają różne długości,
+     *         są puste albo terminy nie są rosnące
+     */
+    public YieldCurve(double[] tenors, double[] rates) {
+        if (tenors.length == 0 || tenors.length != rates.length) {
+            throw new IllegalArgumentException("Krzywa musi mieć tyle samo terminów co stóp");
+        }
+        for (int i = 1; i < tenors.length; i++) {
+            if (tenors[i] <= tenors[i - 1]) {
+                throw new IllegalArgumentException("Terminy krzywej muszą być rosnące");
+            }
+        }
+        this.tenors = tenors.clone();
+        this.rates = rates.clone();
+    }
+
+    /**
+     * Tworzy płaską krzywą z jedną stopą dla wszystkich terminów.
+     */
+    public static YieldCurve flat(double rate) {
+        return new YieldCurve(new double[] {1.0}, new double[] {rate});
+    }
+
+    /**
+     * Zwraca stopę zerokuponową (w procentach) dla terminu w latach.
+     */
+    public double rateAt(double years) {
+        if (years <= tenors[0]) {
+            return rates[0];
+        }
+        int last = tenors.length - 1;
+        if (years >= tenors[last]) {
+            return rates[last];
+        }
+        int i = Arrays.binarySearch(tenors, years);
+        if (i >= 0) {
+            return rates[i];
+        }
+        int upper = -i - 1;
+        int lower = upper - 1;
+        double weight = (years - tenors[lower]) / (tenors[upper] - tenors[lower]);
+        return rates[lower] + weight * (rates[upper] - rates[lower]);
+    }
+
+    /**
+     * Zwraca czynnik dyskontujący dla terminu w latach.
+     */
+    public double discountFactor(double years) {
+        return Math.exp(-rateAt(years) / 100.0 * years);
+    }
+
+    /**
+     * Zwraca nową krzywą przesuniętą równolegle o podaną liczbę punktów bazowych.
+     */
+    public YieldCurve shift(double basisPoints) {
+        double[] shifted = new double[rates.length];
+        for (int i = 0; i < rates.length; i++) {
+            shifted[i] = rates[i] + basisPoints / 100.0;
+        }
+        return new YieldCurve(tenors, shifted);
+    }
+}
@@ -0,0 +1,81 @@
+package com.stockmarket.random;
+
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Źródło liczb losowych dla symulacji, odtwarzalne na podstawie ziarna.
+ *
+ * Korzysta z generatora L64X128MixRandom - szybkiego i niesynchronizowanego
+ * (w przeciwieństwie do java.util.Random, który przy każdym losowaniu
+ * wykonuje operację CAS na AtomicLong).
+ *
+ * Każdy tick (i każdy strumień w obrębie ticka) dostaje własny generator,
+ * którego ziarno wynika z ziarna głównego i numeru ticka. Dzięki temu:
+ * - ten sam seed daje zawsze ten sam przebieg symulacji,
+ * - symulację można wznowić od dowolnego ticka bez odtwarzania wcześniejszych losowań,
+ * - równoległe fragmenty rynku mogą losować niezależnie, bez współdzielenia stanu.
+ */
+public final class RandomSource {
+
+    public static final String ALGORITHM = "L64X128MixRandom";
+
+    private static final RandomGeneratorFactory<RandomGenerator> FACTORY =
+        RandomGeneratorFactory.of(ALGORITHM);
+
+    private final long seed;
+
+    /**
+     * Tworzy źródło z podanym ziarnem.
+     */
+    public RandomSource(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Tworzy źródło z losowym ziarnem (przebieg nie będzie powtarzalny,
+     * chyba że zapiszemy wartość zwróconą przez getSeed()).
+     */
+    public static RandomSource withRandomSeed() {
+        return new RandomSource(mix(System.nanoTime(), System.identityHashCode(new Object())));
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Zwraca generator dla danego ticka. Generator nie jest bezpieczny
+     * wątkowo - powinien go używać jeden wątek.
+     */
+    public RandomGenerator forTick(long tick) {
+        return FACTORY.create(mix(seed, tick));
+    }
+
+    /**
+     * Zwraca generator dla jednego z wielu niezależnych strumieni w danym ticku
+     * (np. jednego fragmentu rynku przetwarzanego równolegle).
+     */
+    public RandomGenerator forStream(long tick, long stream) {
+        return FACTORY.create(mix(mix(seed, tick), stream));
+    }
+
+    /**
+     * Wypełnia pierwsze n elementów tablicy liczbami z przedziału [0, 1).
+     */
+    public static void fill(RandomGenerator generator, double[] target, int n) {
+        for (int i = 0; i < n; i++) {
+            target[i] = generator.nextDouble();
+        }
+    }
+
+    /**
+     * Miesza dwie wartości funkcją SplitMix64 - bliskie wejścia dają odległe ziarna.
+     */
+    private static long mix(long a, long b) {
+        long z = a + 0x9E3779B97F4A7C15L * (b + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
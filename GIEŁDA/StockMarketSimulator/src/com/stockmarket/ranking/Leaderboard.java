@@ -0,0 +1,552 @@
+package com.stockmarket.ranking;
+
+import com.stockmarket.fx.FxRates;
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.Currency;
+import com.stockmarket.portfolio.Portfolio;
+import com.stockmarket.portfolio.PortfolioPosition;
+import com.stockmarket.portfolio.PositionListener;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Ranking portfeli według wartości (calculateTotalValue), aktualizowany
+ * w każdym ticku bez sortowania wszystkich portfeli.
+ *
+ * Wartości leżą w kolumnie indeksowanej numerem portfela w rankingu. W ticku
+ * każdy portfel dolicza tylko przyrost wartości swoich pozycji (ilość razy
+ * zmiana ceny w PLN od poprzedniego ticka) - równolegle, fragmentami po
+ * BLOCK_SIZE portfeli. Portfel, w którym zmieniła się pozycja (transakcja,
+ * podział akcji), jest wyceniany od nowa przy najbliższym ticku lub zapytaniu.
+ * Zmiany samej gotówki (dywidenda, wymiana walut) nie wywołują zdarzeń - do
+ * ich uwzględnienia służy refresh(), a co RESYNC_INTERVAL ticków wszystkie
+ * wartości są i tak liczone od zera.
+ *
+ * Nad wartościami działa szkic kwantyli (ValueHistogram): miejsce portfela
+ * i wartość na danym percentylu są liczone w O(log kubełków), niezależnie od
+ * liczby portfeli, z dokładnością do jednego kubełka (ok. 0,012% wartości).
+ * Najlepsze i najgorsze portfele (top-K / bottom-K) są wybierane dokładnie: szkic
+ * wskazuje kubełek k-tego portfela, a pełne porównanie wartości dotyczy
+ * tylko portfeli z kubełków powyżej (poniżej) niego. Wynik jest pamiętany do
+ * następnej zmiany wartości.
+ *
+ * Pozycje w walutach obcych są przeliczane kursami z FxRates podanego
+ * w konstruktorze - portfele powinny używać tych samych kursów. Gotówka
+ * w walutach obcych też zmienia wartość z kursem: wpis pamięta jej salda
+ * z ostatniej wyceny i w każdym ticku dolicza saldo razy zmianę kursu.
+ *
+ * Indeks posiadaczy (aktywo -> wpisy z pozycją w nim) pozwala po podziale
+ * akcji oznaczyć do wyceny tylko posiadaczy, bez przeglądania wszystkich portfeli.
+ *
+ * Przykład:
+ * <pre>
+ * Leaderboard leaderboard = new Leaderboard(market);
+ * players.forEach(leaderboard::register);
+ * market.updatePrices();
+ * leaderboard.getTop(10).forEach(s -&gt; System.out.println(s.rank() + ". " + s.value()));
+ * int rank = leaderboard.getRank(players.get(0));
+ * </pre>
+ */
+public class Leaderboard implements MarketListener, PositionListener {
+
+    static final int RESYNC_INTERVAL = 256;
+    // Tylu portfeli wartości liczy jedno zadanie równoległego przebiegu
+    static final int BLOCK_SIZE = 4096;
+
+    private final FxRates fxRates;       // null = wszystkie kwoty liczone jak w PLN
+    private final Map<Portfolio, Entry> entries = new IdentityHashMap<>();
+    private final Map<Asset, Set<Entry>> holders = new IdentityHashMap<>();
+    private final ValueHistogram histogram = new ValueHistogram();
+
+    // Kolumny portfeli - indeks to numer portfela w rankingu
+    private Entry[] slots = new Entry[16];
+    private double[] values = new double[16];
+    private int[] buckets = new int[16];     // kubełki wliczone do histogramu
+    private int[] pending = new int[16];     // kubełki po ostatnim przeliczeniu
+    private int size;
+
+    private int[] dirty = new int[16];
+    private int dirtyCount;
+    private int ticksSinceResync;
+
+    // Zapamiętane top-K / bottom-K - ważne dopóki nie zmieni się żadna wartość
+    private long version;
+    private Standing[] top = new Standing[0];
+    private long topVersion = -1;
+    private Standing[] bottom = new Standing[0];
+    private long bottomVersion = -1;
+
+    public Leaderboard(Market market) {
+        this(market, null);
+    }
+
+    /**
+     * @param fxRates kursy do przeliczania pozycji w walutach obcych (null = wszystko jak w PLN)
+     */
+    public Leaderboard(Market market, FxRates fxRates) {
+        this.fxRates = fxRates;
+        market.addListener(this);
+    }
+
+    /**
+     * Dodaje portfel do rankingu i wycenia go od razu.
+     *
+     * @throws IllegalArgumentException gdy portfel już jest w rankingu
+     */
+    public synchronized void register(Portfolio portfolio) {
+        if (entries.containsKey(portfolio)) {
+            throw new IllegalArgumentException("Portfel jest już w rankingu");
+        }
+        if (size == slots.length) {
+            int capacity = size * 2;
+            slots = Arrays.copyOf(slots, capacity);
+            values = Arrays.copyOf(values, capacity);
+            buckets = Arrays.copyOf(buckets, capacity);
+            pending = Arrays.copyOf(pending, capacity);
+        }
+        Entry entry = new Entry(portfolio, size);
+        slots[size] = entry;
+        entries.put(portfolio, entry);
+        revalue(entry);
+        reindex(entry);
+        buckets[size] = pending[size];
+        histogram.add(buckets[size]);
+        size++;
+        version++;
+        portfolio.addPositionListener(this);
+    }
+
+    /**
+     * Wycenia portfel od nowa - po zmianie gotówki, której ranking nie widzi
+     * (dywidenda, kupon, wymiana walut).
+     *
+     * @throws IllegalArgumentException gdy portfela nie ma w rankingu
+     */
+    public synchronized void refresh(Portfolio portfolio) {
+        markDirty(entryOf(portfolio));
+    }
+
+    /**
+     * Wycenia od nowa wszystkie portfele (równolegle).
+     */
+    public synchronized void resync() {
+        dirtyCount = 0;
+        forEachBlock((from, to) -> {
+            for (int slot = from; slot < to; slot++) {
+                slots[slot].dirty = false;
+                revalue(slots[slot]);
+            }
+        });
+        // Indeks posiadaczy jest wspólny - poprawiamy go po równoległym przebiegu, jednym wątkiem
+        for (int slot = 0; slot < size; slot++) {
+            reindex(slots[slot]);
+        }
+        commitAll();
+        ticksSinceResync = 0;
+    }
+
+    @Override
+    public synchronized void onPositionChanged(Portfolio portfolio, Asset asset, int oldQuantity, int newQuantity) {
+        Entry entry = entries.get(portfolio);
+        if (entry != null) {
+            markDirty(entry);
+        }
+    }
+
+    /**
+     * Po podziale akcji cena spada, a ilości w portfelach rosną dopiero przy
+     * ich odczycie - posiadaczy (z indeksu) wyceniamy od nowa zamiast liczyć przyrost.
+     */
+    @Override
+    public synchronized void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+        Set<Entry> holding = holders.get(asset);
+        if (holding != null) {
+            holding.forEach(this::markDirty);
+        }
+    }
+
+    @Override
+    public synchronized void onPricesUpdated(MarketSnapshot previous, MarketSnapshot current) {
+        if (++ticksSinceResync >= RESYNC_INTERVAL) {
+            resync();
+            return;
+        }
+        flushDirty();
+        double[] rates = fxRates != null ? fxRates.getConversionVector() : null;
+        forEachBlock((from, to) -> {
+            for (int slot = from; slot < to; slot++) {
+                Entry entry = slots[slot];
+                if (entry.count == 0 && entry.cash == null) {
+                    continue;
+                }
+                double value = values[slot];
+                for (int i = 0; i < entry.count; i++) {
+                    double mark = markOf(entry.assets[i], rates);
+                    value += entry.quantities[i] * (mark - entry.marks[i]);
+                    entry.marks[i] = mark;
+                }
+                if (entry.cash != null) {
+                    for (int c = 0; c < Currency.COUNT; c++) {
+                        value += entry.cash[c] * (rates[c] - entry.cashRates[c]);
+                        entry.cashRates[c] = rates[c];
+                    }
+                }
+                values[slot] = value;
+                pending[slot] = ValueHistogram.bucketOf(value);
+            }
+        });
+        commitAll();
+    }
+
+    // ========== ZAPYTANIA ==========
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Zwraca wartość portfela w PLN, według której jest układany ranking.
+     *
+     * @throws IllegalArgumentException gdy portfela nie ma w rankingu
+     */
+    public synchronized double getValue(Portfolio portfolio) {
+        Entry entry = entryOf(portfolio);
+        flushDirty();
+        return values[entry.slot];
+    }
+
+    /**
+     * Zwraca k portfeli o najwyższej wartości, od najlepszego - dokładnie.
+     */
+    public synchronized List<Standing> getTop(int k) {
+        flushDirty();
+        if (topVersion != version || top.length < Math.min(k, size)) {
+            top = select(Math.min(Math.max(k, 0), size), true);
+            topVersion = version;
+        }
+        return List.of(top).subList(0, Math.min(Math.max(k, 0), top.length));
+    }
+
+    /**
+     * Zwraca k portfeli o najniższej wartości, od najgorszego - dokładnie.
+     * Miejsca w wynikach liczone są od góry rankingu (najgorszy ma miejsce size()).
+     */
+    public synchronized List<Standing> getBottom(int k) {
+        flushDirty();
+        if (bottomVersion != version || bottom.length < Math.min(k, size)) {
+            bottom = select(Math.min(Math.max(k, 0), size), false);
+            bottomVersion = version;
+        }
+        return List.of(bottom).subList(0, Math.min(Math.max(k, 0), bottom.length));
+    }
+
+    /**
+     * Zwraca przybliżone miejsce portfela (1 = najwyższa wartość).
+     *
+     * Portfele z wyższych kubełków są liczone dokładnie, a w kubełku portfela
+     * miejsce jest szacowane z położenia wartości między granicami kubełka -
+     * błąd nie przekracza liczby portfeli w tym kubełku.
+     *
+     * @throws IllegalArgumentException gdy portfela nie ma w rankingu
+     */
+    public synchronized int getRank(Portfolio portfolio) {
+        Entry entry = entryOf(portfolio);
+        flushDirty();
+        int bucket = buckets[entry.slot];
+        double lower = ValueHistogram.lowerBound(bucket);
+        double upper = ValueHistogram.upperBound(bucket);
+        double fractionAbove = (upper - values[entry.slot]) / (upper - lower);
+        int sameBucket = histogram.count(bucket) - 1;
+        int estimate = (int) Math.round(Math.max(0.0, Math.min(1.0, fractionAbove)) * sameBucket);
+        return 1 + histogram.countAbove(bucket) + estimate;
+    }
+
+    /**
+     * Zwraca przybliżony percentyl portfela - jaki procent pozostałych
+     * portfeli ma niższą wartość (100 = najlepszy).
+     *
+     * @throws IllegalArgumentException gdy portfela nie ma w rankingu
+     */
+    public synchronized double getPercentile(Portfolio portfolio) {
+        int rank = getRank(portfolio);
+        return size > 1 ? 100.0 * (size - rank) / (size - 1) : 100.0;
+    }
+
+    /**
+     * Zwraca przybliżoną wartość portfela na podanym percentylu
+     * (0 = najniższa, 50 = mediana, 100 = najwyższa).
+     *
+     * @return wartość w PLN albo NaN gdy ranking jest pusty
+     * @throws IllegalArgumentException gdy percentyl jest spoza przedziału 0-100
+     */
+    public synchronized double getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0.0 && percentile <= 100.0)) {
+            throw new IllegalArgumentException("Percentyl musi być z przedziału 0-100: " + percentile);
+        }
+        flushDirty();
+        if (size == 0) {
+            return Double.NaN;
+        }
+        int k = (int) Math.round(percentile / 100.0 * (size - 1));
+        int bucket = histogram.bucketOfRank(k);
+        // Wartości w kubełku przyjmujemy za rozłożone równomiernie
+        double position = (k - histogram.countBelow(bucket) + 0.5) / histogram.count(bucket);
+        double lower = ValueHistogram.lowerBound(bucket);
+        double upper = ValueHistogram.upperBound(bucket);
+        return lower + position * (upper - lower);
+    }
+
+    // ========== WNĘTRZE ==========
+
+    private Entry entryOf(Portfolio portfolio) {
+        Entry entry = entries.get(portfolio);
+        if (entry == null) {
+            throw new IllegalArgumentException("Portfela nie ma w rankingu");
+        }
+        return entry;
+    }
+
+    private void markDirty(Entry entry) {
+        if (entry.dirty) {
+            return;
+        }
+        entry.dirty = true;
+        if (dirtyCount == dirty.length) {
+            dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+        }
+        dirty[dirtyCount++] = entry.slot;
+    }
+
+    /**
+     * Wycenia od nowa portfele ze zmienionymi pozycjami.
+     */
+    private void flushDirty() {
+        for (int i = 0; i < dirtyCount; i++) {
+            Entry entry = slots[dirty[i]];
+            entry.dirty = false;
+            revalue(entry);
+            reindex(entry);
+            commit(entry.slot);
+        }
+        if (dirtyCount > 0) {
+            dirtyCount = 0;
+            version++;
+        }
+    }
+
+    /**
+     * Przepisuje pozycje portfela do tablic wpisu i liczy jego pełną wartość.
+     * Dotyka tylko kolumn swojego portfela - można wołać równolegle.
+     */
+    private void revalue(Entry entry) {
+        Portfolio portfolio = entry.portfolio;
+        Map<String, PortfolioPosition> positions = portfolio.getPositions();
+        entry.ensureCapacity(positions.size());
+        double[] rates = fxRates != null ? fxRates.getConversionVector() : null;
+        int count = 0;
+        for (PortfolioPosition position : positions.values()) {
+            entry.assets[count] = position.asset();
+            entry.quantities[count] = position.quantity();
+            entry.marks[count] = markOf(position.asset(), rates);
+            count++;
+        }
+        Arrays.fill(entry.assets, count, entry.assets.length, null);
+        entry.count = count;
+        captureForeignCash(entry, rates);
+        values[entry.slot] = portfolio.calculateTotalValue();
+        pending[entry.slot] = ValueHistogram.bucketOf(values[entry.slot]);
+    }
+
+    /**
+     * Zapamiętuje salda gotówki w walutach obcych i kursy, po których je wyceniono
+     * (cash = null gdy portfel nie ma obcej gotówki albo ranking nie ma kursów).
+     */
+    private static void captureForeignCash(Entry entry, double[] rates) {
+        entry.cash = null;
+        if (rates == null) {
+            return;
+        }
+        for (int c = 0; c < Currency.COUNT; c++) {
+            Currency currency = Currency.byIndex(c);
+            double balance = currency == Currency.BASE ? 0.0 : entry.portfolio.getCash(currency);
+            if (balance == 0.0) {
+                continue;
+            }
+            if (entry.cash == null) {
+                entry.cash = new double[Currency.COUNT];
+                entry.cashRates = rates.clone();
+            }
+            entry.cash[c] = balance;
+        }
+    }
+
+    /**
+     * Przepisuje wpis w indeksie posiadaczy na aktywa z ostatniej wyceny
+     * (jeden wątek - indeks jest wspólny dla wszystkich wpisów).
+     */
+    private void reindex(Entry entry) {
+        if (entry.indexed.length == entry.count) {
+            int same = 0;
+            while (same < entry.count && entry.indexed[same] == entry.assets[same]) {
+                same++;
+            }
+            if (same == entry.count) {
+                return;   // te same aktywa w tej samej kolejności - indeks jest aktualny
+            }
+        }
+        for (Asset asset : entry.indexed) {
+            Set<Entry> holding = holders.get(asset);
+            holding.remove(entry);
+            if (holding.isEmpty()) {
+                holders.remove(asset);
+            }
+        }
+        entry.indexed = Arrays.copyOf(entry.assets, entry.count);
+        for (Asset asset : entry.indexed) {
+            holders.computeIfAbsent(asset, a -> Collections.newSetFromMap(new IdentityHashMap<>())).add(entry);
+        }
+    }
+
+    private static double markOf(Asset asset, double[] rates) {
+        double price = asset.getCurrentPrice();
+        return rates != null ? price * rates[asset.getCurrency().ordinal()] : price;
+    }
+
+    private void commit(int slot) {
+        if (pending[slot] != buckets[slot]) {
+            histogram.move(buckets[slot], pending[slot]);
+            buckets[slot] = pending[slot];
+        }
+    }
+
+    private void commitAll() {
+        for (int slot = 0; slot < size; slot++) {
+            commit(slot);
+        }
+        version++;
+    }
+
+    @FunctionalInterface
+    private interface BlockTask {
+        void run(int from, int to);
+    }
+
+    private void forEachBlock(BlockTask task) {
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            int from = block * BLOCK_SIZE;
+            task.run(from, Math.min(size, from + BLOCK_SIZE));
+        });
+    }
+
+    /**
+     * Wybiera k najlepszych (najgorszych) portfeli.
+     *
+     * Szkic wskazuje kubełek k-tego portfela; kandydatami są tylko portfele
+     * z tego kubełka i lepszych (gorszych), a spośród nich k najlepszych
+     * wybiera kopiec rozmiaru k. Koszt: jeden przebieg po kolumnie kubełków
+     * i O(kandydaci * log k).
+     */
+    private Standing[] select(int k, boolean best) {
+        if (k == 0) {
+            return new Standing[0];
+        }
+        int threshold = histogram.bucketOfRank(best ? size - k : k - 1);
+        // Kopiec z najsłabszym z wybranych na szczycie; klucz = wartość (ze znakiem minus dla najgorszych)
+        int[] heap = new int[k];
+        int heapSize = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (best ? buckets[slot] < threshold : buckets[slot] > threshold) {
+                continue;
+            }
+            double key = best ? values[slot] : -values[slot];
+            if (heapSize < k) {
+                siftUp(heap, heapSize++, slot, key, best);
+            } else if (key > keyOf(heap[0], best)) {
+                siftDown(heap, heapSize, slot, key, best);
+            }
+        }
+        // Zdejmujemy najsłabszych ze szczytu - od końca tablicy wyników
+        Standing[] result = new Standing[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            int slot = heap[0];
+            int rank = best ? i + 1 : size - i;
+            result[i] = new Standing(rank, slots[slot].portfolio, values[slot]);
+            int last = heap[--heapSize];
+            if (heapSize > 0) {
+                siftDown(heap, heapSize, last, keyOf(last, best), best);
+            }
+        }
+        return result;
+    }
+
+    private double keyOf(int slot, boolean best) {
+        return best ? values[slot] : -values[slot];
+    }
+
+    private void siftUp(int[] heap, int index, int slot, double key, boolean best) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (keyOf(heap[parent], best) <= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = slot;
+    }
+
+    /**
+     * Wstawia slot na szczyt kopca (w miejsce obecnego) i przesiewa w dół.
+     */
+    private void siftDown(int[] heap, int heapSize, int slot, double key, boolean best) {
+        int index = 0;
+        int half = heapSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < heapSize && keyOf(heap[child + 1], best) < keyOf(heap[child], best)) {
+                child++;
+            }
+            if (key <= keyOf(heap[child], best)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = slot;
+    }
+
+    /**
+     * Portfel w rankingu - jego numer i kopia pozycji z cenami (w PLN) oraz
+     * gotówki w walutach obcych z kursami z ostatniej wyceny, od których
+     * liczony jest przyrost wartości.
+     */
+    private static final class Entry {
+        final Portfolio portfolio;
+        final int slot;
+        Asset[] assets = new Asset[0];
+        int[] quantities = new int[0];
+        double[] marks = new double[0];
+        int count;
+        Asset[] indexed = new Asset[0];   // aktywa, pod którymi wpis jest w indeksie posiadaczy
+        double[] cash;                    // salda walut obcych z ostatniej wyceny (null = brak)
+        double[] cashRates;               // kursy, po których je wyceniono
+        boolean dirty;
+
+        Entry(Portfolio portfolio, int slot) {
+            this.portfolio = portfolio;
+            this.slot = slot;
+        }
+
+        void ensureCapacity(int capacity) {
+            if (assets.length < capacity) {
+                assets = new Asset[capacity];
+                quantities = new int[capacity];
+                marks = new double[capacity];
+            }
+        }
+    }
+}
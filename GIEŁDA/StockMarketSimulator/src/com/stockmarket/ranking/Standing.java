@@ -0,0 +1,13 @@
+package com.stockmarket.ranking;
+
+import com.stockmarket.portfolio.Portfolio;
+
+/**
+ * Miejsce portfela w rankingu.
+ *
+ * @param rank miejsce (1 = najwyższa wartość)
+ * @param portfolio portfel
+ * @param value wartość portfela w PLN
+ */
+public record Standing(int rank, Portfolio portfolio, double value) {
+}
@@ -0,0 +1,162 @@
+package com.stockmarket.ranking;
+
+/**
+ * Histogram wartości portfeli o stałej liczbie kubełków z drzewem Fenwicka
+ * nad licznikami - szkic kwantyli dla rankingu.
+ *
+ * Kubełki mają stałą szerokość względną (2^-MANTISSA_BITS, ok. 0,012%
+ * wartości): numer kubełka to wykładnik i najstarsze bity mantysy liczby
+ * double, więc wyznacza się go kilkoma operacjami na bitach, bez logarytmu.
+ * Kubełki rosną razem z wartością - ujemne wartości (rachunki z depozytem)
+ * leżą poniżej kubełka ZERO (|v| &lt; 1), dodatnie powyżej.
+ *
+ * Drzewo Fenwicka odpowiada na pytania o liczbę wartości poniżej kubełka
+ * i o kubełek k-tej wartości w O(log BUCKETS), niezależnie od liczby
+ * portfeli. Gdy między zapytaniami zmienia się bardzo wiele kubełków (cały
+ * tick milionów portfeli), taniej jest przestać aktualizować drzewo
+ * i zbudować je raz od nowa w O(BUCKETS) przy najbliższym zapytaniu.
+ */
+final class ValueHistogram {
+
+    static final int MANTISSA_BITS = 13;
+    private static final int BINADES = 48;                  // |v| od 1 do 2^48 (ok. 2,8 * 10^14)
+    static final int HALF = BINADES << MANTISSA_BITS;       // kubełków na znak
+    static final int ZERO = HALF;                           // kubełek dla |v| < 1
+    static final int BUCKETS = 2 * HALF + 1;
+
+    private static final long ONE_BITS = Double.doubleToRawLongBits(1.0);
+    private static final int SHIFT = 52 - MANTISSA_BITS;
+    private static final double MAX = Math.nextDown(0x1p48);
+    // Po tylu aktualizacjach drzewa przebudowa od zera kosztuje mniej niż kolejne
+    private static final int REBUILD_THRESHOLD = BUCKETS >>> 5;
+
+    private final int[] counts = new int[BUCKETS];
+    private final int[] tree = new int[BUCKETS + 1];
+    private int total;
+    private int updatesSinceBuild;
+    private boolean treeDirty;
+
+    /**
+     * Zwraca kubełek wartości (NaN trafia do kubełka ZERO).
+     */
+    static int bucketOf(double value) {
+        double magnitude = Math.abs(value);
+        if (!(magnitude >= 1.0)) {
+            return ZERO;
+        }
+        long bits = Double.doubleToRawLongBits(Math.min(magnitude, MAX));
+        int offset = (int) ((bits - ONE_BITS) >>> SHIFT);
+        return value > 0 ? ZERO + 1 + offset : ZERO - 1 - offset;
+    }
+
+    /**
+     * Zwraca najmniejszą wartość należącą do kubełka.
+     */
+    static double lowerBound(int bucket) {
+        if (bucket == ZERO) {
+            return -1.0;
+        }
+        return bucket > ZERO ? magnitude(bucket - ZERO - 1) : -magnitude(ZERO - bucket);
+    }
+
+    /**
+     * Zwraca kres górny wartości w kubełku (pierwszą wartość następnego kubełka).
+     */
+    static double upperBound(int bucket) {
+        if (bucket == ZERO) {
+            return 1.0;
+        }
+        return bucket > ZERO ? magnitude(bucket - ZERO) : -magnitude(ZERO - bucket - 1);
+    }
+
+    private static double magnitude(int offset) {
+        return Double.longBitsToDouble(ONE_BITS + ((long) offset << SHIFT));
+    }
+
+    void add(int bucket) {
+        total++;
+        update(bucket, 1);
+    }
+
+    void move(int from, int to) {
+        update(from, -1);
+        update(to, 1);
+    }
+
+    private void update(int bucket, int delta) {
+        counts[bucket] += delta;
+        if (treeDirty) {
+            return;
+        }
+        if (++updatesSinceBuild > REBUILD_THRESHOLD) {
+            treeDirty = true;
+            return;
+        }
+        for (int i = bucket + 1; i <= BUCKETS; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Buduje drzewo od zera w O(BUCKETS) - każdy węzeł oddaje sumę rodzicowi.
+     */
+    private void ensureTree() {
+        if (!treeDirty) {
+            return;
+        }
+        System.arraycopy(counts, 0, tree, 1, BUCKETS);
+        for (int i = 1; i <= BUCKETS; i++) {
+            int parent = i + (i & -i);
+            if (parent <= BUCKETS) {
+                tree[parent] += tree[i];
+            }
+        }
+        treeDirty = false;
+        updatesSinceBuild = 0;
+    }
+
+    int total() {
+        return total;
+    }
+
+    int count(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * Zwraca liczbę wartości w kubełkach poniżej podanego.
+     */
+    int countBelow(int bucket) {
+        ensureTree();
+        int sum = 0;
+        for (int i = bucket; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Zwraca liczbę wartości w kubełkach powyżej podanego.
+     */
+    int countAbove(int bucket) {
+        return total - countBelow(bucket) - counts[bucket];
+    }
+
+    /**
+     * Zwraca kubełek, w którym leży k-ta najmniejsza wartość (k od 0) -
+     * zejście po drzewie Fenwicka.
+     */
+    int bucketOfRank(int k) {
+        ensureTree();
+        int position = 0;
+        int remaining = k;
+        for (int step = Integer.highestOneBit(BUCKETS); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= BUCKETS && tree[next] <= remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,345 @@
+package com.stockmarket.render;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Buforowany renderer konsoli - składa całe ekrany (ramki) w pamięci
+ * i wypisuje je na osobnym wątku.
+ *
+ * Zamiast System.out.printf dla każdej linii (blokada strumienia, parsowanie
+ * formatu i zapis przy każdym wywołaniu) wątek symulacji dopisuje tekst
+ * do ramki wielokrotnego użytku, a liczby formatuje ręcznie bez String.format.
+ * Gotowa ramka trafia do kolejki, a wątek renderera koduje ją w kodowaniu
+ * konsoli i zapisuje jednym wywołaniem write(). Wątek symulacji nigdy nie czeka na konsolę.
+ *
+ * Przykład:
+ * <pre>
+ * Frame frame = renderer.begin();
+ * frame.text("Cena: ").number(price, 2).text(" PLN").newline();
+ * renderer.submit(frame);
+ * </pre>
+ */
+public class ConsoleRenderer implements AutoCloseable {
+
+    private static final Frame POISON = new Frame();
+
+    private final OutputStream out;
+    private final ConcurrentLinkedQueue<Frame> pool;
+    private final BlockingQueue<Frame> pending;
+    private final Thread writerThread;
+    private final CharsetEncoder encoder;
+    private ByteBuffer bytes;
+
+    private final Object flushLock = new Object();
+    private long submitted;   // liczba ramek przekazanych do wypisania
+    private long written;     // liczba ramek już wypisanych
+
+    /**
+     * Tworzy renderer piszący bezpośrednio na standardowe wyjście,
+     * w tym samym kodowaniu co System.out.
+     */
+    public ConsoleRenderer() {
+        this(new FileOutputStream(FileDescriptor.out), consoleCharset());
+    }
+
+    /**
+     * Tworzy renderer piszący do podanego strumienia w UTF-8.
+     */
+    public ConsoleRenderer(OutputStream out) {
+        this(out, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tworzy renderer piszący do podanego strumienia w podanym kodowaniu.
+     * Znaki, których kodowanie nie obsługuje (np. polskie litery w ASCII), są zastępowane.
+     */
+    public ConsoleRenderer(OutputStream out, Charset charset) {
+        this.out = out;
+        this.pool = new ConcurrentLinkedQueue<>();
+        this.pending = new LinkedBlockingQueue<>();
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(64 * 1024);
+        this.writerThread = new Thread(this::writeLoop, "console-renderer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Kodowanie, którego używa System.out. Piszemy z pominięciem System.out,
+     * więc musimy kodować tak samo - inaczej np. konsola Windows w cp852
+     * pokaże polskie litery jako krzaki. Właściwość stdout.encoding ustawia JVM
+     * od Javy 19, starsze wersje podają sun.stdout.encoding (tylko gdy wyjście
+     * jest terminalem); w ostateczności zostaje domyślne kodowanie systemu.
+     */
+    public static Charset consoleCharset() {
+        for (String property : new String[] {"stdout.encoding", "sun.stdout.encoding"}) {
+            String name = System.getProperty(property);
+            if (name != null) {
+                try {
+                    return Charset.forName(name);
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                    // spróbuj następnej właściwości
+                }
+            }
+        }
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * Zwraca pustą ramkę do wypełnienia. Ramki są wielokrotnego użytku -
+     * nowa powstaje tylko wtedy, gdy wszystkie czekają jeszcze na wypisanie.
+     */
+    public Frame begin() {
+        Frame frame = pool.poll();
+        return frame != null ? frame : new Frame();
+    }
+
+    /**
+     * Przekazuje ramkę do wypisania. Metoda nie blokuje.
+     * Po wywołaniu ramka należy do renderera i nie wolno jej dalej używać.
+     */
+    public void submit(Frame frame) {
+        synchronized (flushLock) {
+            submitted++;
+        }
+        pending.add(frame);
+    }
+
+    /**
+     * Czeka aż wszystkie przekazane ramki zostaną wypisane.
+     * Przydatne przed pisaniem na System.out z innych miejsc, żeby zachować kolejność.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            while (written < submitted) {
+                try {
+                    flushLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Wypisuje pozostałe ramki i zatrzymuje wątek renderera.
+     */
+    @Override
+    public void close() {
+        flush();
+        pending.add(POISON);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Frame frame;
+            try {
+                frame = pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (frame == POISON) {
+                return;
+            }
+            write(frame);
+            frame.builder.setLength(0);
+            pool.add(frame);
+            synchronized (flushLock) {
+                written++;
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Koduje ramkę w buforze wielokrotnego użytku i zapisuje ją jednym wywołaniem.
+     */
+    private void write(Frame frame) {
+        CharBuffer chars = CharBuffer.wrap(frame.builder);
+        int needed = (int) (frame.builder.length() * encoder.maxBytesPerChar());
+        if (bytes.capacity() < needed) {
+            bytes = ByteBuffer.allocate(needed);
+        }
+        bytes.clear();
+        encoder.reset();
+        CoderResult result = encoder.encode(chars, bytes, true);
+        if (!result.isError()) {
+            encoder.flush(bytes);
+        }
+        try {
+            // Inne miejsca mogą pisać przez System.out - opróżniamy go, żeby nie pomieszać kolejności
+            System.out.flush();
+            out.write(bytes.array(), 0, bytes.position());
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Błąd zapisu na konsolę: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ramka - jeden ekran tekstu budowany w StringBuilderze wielokrotnego użytku.
+     * Metody zwracają this, więc wywołania można łączyć w łańcuch.
+     */
+    public static final class Frame {
+
+        private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L
+        };
+
+        private final StringBuilder builder = new StringBuilder(4096);
+
+        private Frame() {
+        }
+
+        public Frame text(String text) {
+            builder.append(text);
+            return this;
+        }
+
+        public Frame text(char c) {
+            builder.append(c);
+            return this;
+        }
+
+        public Frame newline() {
+            builder.append('\n');
+            return this;
+        }
+
+        /**
+         * Powtarza znak podaną liczbę razy (np. linia oddzielająca).
+         */
+        public Frame repeat(char c, int count) {
+            for (int i = 0; i < count; i++) {
+                builder.append(c);
+            }
+            return this;
+        }
+
+        /**
+         * Tekst wyrównany do lewej i dopełniony spacjami do szerokości (jak %-Ns).
+         */
+        public Frame padRight(String text, int width) {
+            builder.append(text);
+            return repeat(' ', width - text.length());
+        }
+
+        public Frame integer(long value) {
+            builder.append(value);
+            return this;
+        }
+
+        /**
+         * Liczba całkowita wyrównana do prawej (jak %Nd).
+         */
+        public Frame integer(long value, int width) {
+            int start = builder.length();
+            builder.append(value);
+            return alignRight(start, width);
+        }
+
+        /**
+         * Liczba z ustaloną liczbą miejsc po przecinku (jak %.Nf), bez String.format.
+         */
+        public Frame number(double value, int decimals) {
+            appendFixed(builder, value, decimals, false);
+            return this;
+        }
+
+        /**
+         * Liczba ze znakiem + dla wartości dodatnich (jak %+.Nf).
+         */
+        public Frame signedNumber(double value, int decimals) {
+            appendFixed(builder, value, decimals, true);
+            return this;
+        }
+
+        /**
+         * Liczba wyrównana do prawej w polu o podanej szerokości (jak %W.Nf).
+         */
+        public Frame number(double value, int decimals, int width) {
+            int start = builder.length();
+            appendFixed(builder, value, decimals, false);
+            return alignRight(start, width);
+        }
+
+        private Frame alignRight(int start, int width) {
+            int padding = width - (builder.length() - start);
+            for (int i = 0; i < padding; i++) {
+                builder.insert(start, ' ');
+            }
+            return this;
+        }
+
+        /**
+         * Szybka zamiana liczby na tekst: zaokrąglamy do liczby całkowitej
+         * w jednostkach 10^-decimals i dopisujemy cyfry.
+         *
+         * Wynik jest taki sam jak String.format(Locale.ROOT, "%.Nf"): printf
+         * zaokrągla "połówką w górę" dziesiętny zapis liczby (1.005 -> 1.01),
+         * a mnożenie w double potrafi dać 100.49999... Dlatego liczby leżące
+         * o włos od połówki idą wolniejszą ścieżką. Znak minus zostaje też
+         * przy wyniku zerowym (-0.001 -> -0.00), tak jak w printf.
+         */
+        static void appendFixed(StringBuilder sb, double value, int decimals, boolean forceSign) {
+            if (Double.isNaN(value) || Double.isInfinite(value)
+                    || decimals >= POWERS_OF_TEN.length || Math.abs(value) >= 9.0e12) {
+                // Przypadki brzegowe - rzadkie, więc wolniejsza ścieżka jest w porządku
+                appendFormatted(sb, value, decimals, forceSign);
+                return;
+            }
+            long scale = POWERS_OF_TEN[decimals];
+            double exact = Math.abs(value) * scale;
+            double fromHalf = exact - Math.floor(exact) - 0.5;
+            if (Math.abs(fromHalf) <= exact * 1e-15 + 1e-9) {
+                // Prawie połówka - błąd mnożenia mógłby zaokrąglić w złą stronę
+                appendFormatted(sb, value, decimals, forceSign);
+                return;
+            }
+            long scaled = Math.round(exact);
+            if (Double.doubleToRawLongBits(value) < 0) {   // bit znaku - także dla -0.0
+                sb.append('-');
+            } else if (forceSign) {
+                sb.append('+');
+            }
+            sb.append(scaled / scale);
+            if (decimals > 0) {
+                sb.append('.');
+                long fraction = scaled % scale;
+                for (long p = scale / 10; p > fraction && p > 1; p /= 10) {
+                    sb.append('0');
+                }
+                sb.append(fraction);
+            }
+        }
+
+        private static void appendFormatted(StringBuilder sb, double value, int decimals, boolean forceSign) {
+            // Locale.ROOT - kropka dziesiętna niezależnie od ustawień systemu, jak w szybkiej ścieżce
+            sb.append(String.format(Locale.ROOT, "%" + (forceSign ? "+" : "") + "." + decimals + "f", value));
+        }
+    }
+}
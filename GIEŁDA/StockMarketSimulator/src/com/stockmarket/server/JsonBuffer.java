@@ -0,0 +1,180 @@
+package com.stockmarket.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Bufor bajtów wielokrotnego użytku, do którego odpowiedzi są zapisywane od
+ * razu jako JSON w UTF-8.
+ *
+ * Liczby są formatowane ręcznie (jak w ConsoleRenderer.Frame), a napisy
+ * kodowane znak po znaku - bez String.format, StringBuildera i kodowania
+ * całej odpowiedzi na końcu. Bufor rośnie do największej odpowiedzi
+ * i jest potem używany ponownie (pula w MarketServer).
+ *
+ * Zapis przecinków między elementami jest po stronie wywołującego -
+ * metody dopisują dokładnie to, co mówi ich nazwa.
+ */
+final class JsonBuffer {
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L
+    };
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private byte[] bytes;
+    private int length;
+
+    JsonBuffer(int capacity) {
+        this.bytes = new byte[capacity];
+    }
+
+    void reset() {
+        length = 0;
+    }
+
+    int length() {
+        return length;
+    }
+
+    int capacity() {
+        return bytes.length;
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(length + extra, bytes.length * 2));
+        }
+    }
+
+    /**
+     * Dopisuje tekst ASCII bez cudzysłowów i escapowania (składnia JSON, nagłówki SSE).
+     */
+    JsonBuffer raw(String ascii) {
+        int n = ascii.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            bytes[length++] = (byte) ascii.charAt(i);
+        }
+        return this;
+    }
+
+    JsonBuffer raw(char c) {
+        ensure(1);
+        bytes[length++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Dopisuje nazwę pola z dwukropkiem: "name":
+     */
+    JsonBuffer name(String name) {
+        return string(name).raw(':');
+    }
+
+    /**
+     * Dopisuje napis w cudzysłowach - escapowany i zakodowany w UTF-8.
+     */
+    JsonBuffer string(String text) {
+        if (text == null) {
+            return raw("null");
+        }
+        int n = text.length();
+        ensure(n + 2);
+        bytes[length++] = '"';
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            ensure(6);   // najdłuższy zapis jednego znaku to sekwencja escape (6 bajtów)
+            if (c == '"' || c == '\\') {
+                bytes[length++] = '\\';
+                bytes[length++] = (byte) c;
+            } else if (c < 0x20) {
+                bytes[length++] = '\\';
+                bytes[length++] = 'u';
+                bytes[length++] = '0';
+                bytes[length++] = '0';
+                bytes[length++] = HEX[c >> 4];
+                bytes[length++] = HEX[c & 0xF];
+            } else if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        ensure(1);
+        bytes[length++] = '"';
+        return this;
+    }
+
+    JsonBuffer integer(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return raw(Long.toString(value));
+            }
+            raw('-');
+            value = -value;
+        }
+        ensure(19);
+        int start = length;
+        do {
+            bytes[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        // Cyfry powstały od końca - odwracamy je w miejscu
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte tmp = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = tmp;
+        }
+        return this;
+    }
+
+    /**
+     * Dopisuje liczbę z ustaloną liczbą miejsc po przecinku; NaN i nieskończoność
+     * jako null (JSON ich nie zna).
+     */
+    JsonBuffer number(double value, int decimals) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return raw("null");
+        }
+        if (decimals >= POWERS_OF_TEN.length || Math.abs(value) >= 9.0e12) {
+            // Przypadki brzegowe - rzadkie, więc wolniejsza ścieżka jest w porządku
+            return raw(Double.toString(value));
+        }
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            raw('-');
+        }
+        integer(scaled / scale);
+        if (decimals > 0) {
+            raw('.');
+            long fraction = scaled % scale;
+            for (long p = scale / 10; p > fraction && p > 1; p /= 10) {
+                raw('0');
+            }
+            integer(fraction);
+        }
+        return this;
+    }
+}
@@ -0,0 +1,413 @@
+package com.stockmarket.server;
+
+import com.stockmarket.exception.AssetNotFoundException;
+import com.stockmarket.exception.InsufficientAssetsException;
+import com.stockmarket.exception.InsufficientFundsException;
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.Currency;
+import com.stockmarket.portfolio.Portfolio;
+import com.stockmarket.portfolio.PortfolioPosition;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lokalny serwer HTTP z notowaniami rynku i operacjami na portfelach.
+ *
+ * Serwer nasłuchuje tylko na adresie pętli zwrotnej (127.0.0.1) i używa
+ * wbudowanego w JDK com.sun.net.httpserver. Każde żądanie obsługuje osobny
+ * wątek - wirtualny, gdy pozwala na to JVM (Java 21+), a w starszych
+ * wersjach zwykły wątek z małym stosem. Dzięki temu strumień SSE może po
+ * prostu czekać na kolejny tick w pętli, bez obsługi zdarzeń i wywołań
+ * zwrotnych, także przy tysiącach podłączonych klientów.
+ *
+ * Odpowiedzi są zapisywane od razu jako bajty JSON do buforów z puli
+ * (JsonBuffer), a ramki SSE są kodowane raz na tick dla wszystkich klientów
+ * (PriceStream).
+ *
+ * Opóźnienia: serwer z JDK domyślnie nie wyłącza algorytmu Nagle'a, więc mała
+ * odpowiedź wysłana po nagłówkach czeka na opóźnione ACK klienta (ok. 40 ms na
+ * żądanie). Przy pomiarach warto uruchomić JVM z
+ * {@code -Dsun.net.httpserver.nodelay=true} - właściwość jest czytana raz,
+ * przy pierwszym użyciu HttpServer, więc ustawia ją program (jak ServerLoadTest),
+ * a nie ta klasa za plecami całej JVM.
+ *
+ * Blokady: wszystkie operacje na portfelach idą pod blokadą rynku (Market),
+ * tą samą, pod którą wątek ticków woła słuchaczy rynku - TriggerEngine,
+ * CorporateActionEngine i wycofywanie aktywów z portfeli. Dlatego portfel
+ * udostępniony przez HTTP można też zarejestrować w tych silnikach.
+ * Blokada samego portfela nie wystarczała: zlecenia z wątku ticków jej nie
+ * biorą, a kolejność portfel -&gt; silnik była odwrotna do kolejności z ticka.
+ *
+ * Ścieżki:
+ * <pre>
+ * GET  /quotes                              notowania wszystkich aktywów
+ * GET  /quotes/{symbol}                     notowanie jednego aktywa
+ * GET  /portfolios/{name}                   wycena portfela i jego pozycje
+ * POST /portfolios/{name}/buy?symbol=X&amp;quantity=N
+ * POST /portfolios/{name}/sell?symbol=X&amp;quantity=N
+ * GET  /stream                              paczki cen po każdym ticku (text/event-stream)
+ * </pre>
+ *
+ * Przykład:
+ * <pre>
+ * try (MarketServer server = new MarketServer(market, 8080)) {
+ *     server.addPortfolio("demo", portfolio);
+ *     server.start();
+ *     // curl -N http://127.0.0.1:8080/stream
+ * }
+ * </pre>
+ */
+public class MarketServer implements AutoCloseable {
+
+    private static final int VALUE_DECIMALS = 2;
+    private static final int BACKLOG = 4096;
+    // Komentarz SSE co tyle sekund bez ticka - wykrywa rozłączonych klientów
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final byte[] HEARTBEAT = ": keepalive\n\n".getBytes(StandardCharsets.US_ASCII);
+    // Większych buforów nie trzymamy w puli - jedna duża odpowiedź nie zajmuje pamięci na zawsze
+    private static final int MAX_POOLED_CAPACITY = 1 << 20;
+    private static final long PLATFORM_THREAD_STACK = 256 * 1024;
+
+    private final Market market;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final PriceStream stream;
+    private final Map<String, Portfolio> portfolios = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<JsonBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Tworzy serwer (jeszcze nie uruchomiony) i podłącza strumień cen do rynku.
+     *
+     * @param port port na adresie 127.0.0.1 (0 = dowolny wolny, zob. getPort())
+     * @throws IOException gdy nie można zająć portu
+     */
+    public MarketServer(Market market, int port) throws IOException {
+        this.market = market;
+        this.stream = new PriceStream(market);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/quotes", this::handleQuotes);
+        server.createContext("/portfolios", this::handlePortfolios);
+        server.createContext("/stream", this::handleStream);
+    }
+
+    /**
+     * Udostępnia portfel pod podaną nazwą (/portfolios/{name}).
+     */
+    public void addPortfolio(String name, Portfolio portfolio) {
+        portfolios.put(name, portfolio);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public PriceStream getPriceStream() {
+        return stream;
+    }
+
+    /**
+     * Kończy strumienie SSE i zatrzymuje serwer.
+     */
+    @Override
+    public void close() {
+        stream.close();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Wątek wirtualny na żądanie, gdy JVM go obsługuje (Java 21+). Szukamy
+     * metody przez refleksję, żeby kod kompilował się i działał także na Javie 17.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadFactory factory = task -> {
+                Thread thread = new Thread(null, task, "http-" + counter.incrementAndGet(), PLATFORM_THREAD_STACK);
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+
+    // ========== NOTOWANIA ==========
+
+    private void handleQuotes(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Dozwolona metoda: GET");
+                return;
+            }
+            MarketSnapshot snapshot = market.getSnapshot();
+            String symbol = pathTail(exchange, "/quotes");
+            JsonBuffer body = acquire();
+            try {
+                if (symbol.isEmpty()) {
+                    body.raw('{').name("tick").integer(snapshot.getTick()).raw(',').name("quotes").raw('[');
+                    boolean first = true;
+                    for (int id = 0; id < snapshot.size(); id++) {
+                        Asset asset = snapshot.getAsset(id);
+                        if (asset != null) {
+                            if (!first) {
+                                body.raw(',');
+                            }
+                            first = false;
+                            writeQuote(body, asset, snapshot.getPrice(id));
+                        }
+                    }
+                    body.raw("]}");
+                } else {
+                    int id = snapshot.indexOf(symbol);
+                    if (id < 0) {
+                        sendError(exchange, 404, "Aktywo " + symbol + " nie istnieje na rynku");
+                        return;
+                    }
+                    writeQuote(body, snapshot.getAsset(id), snapshot.getPrice(id));
+                }
+                send(exchange, 200, body);
+            } finally {
+                release(body);
+            }
+        }
+    }
+
+    private static void writeQuote(JsonBuffer body, Asset asset, double price) {
+        body.raw('{').name("symbol").string(asset.getSymbol())
+            .raw(',').name("name").string(asset.getName())
+            .raw(',').name("currency").string(asset.getCurrency().name())
+            .raw(',').name("price").number(price, PriceStream.PRICE_DECIMALS)
+            .raw('}');
+    }
+
+    // ========== PORTFELE ==========
+
+    private void handlePortfolios(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String[] parts = pathTail(exchange, "/portfolios").split("/");
+            Portfolio portfolio = portfolios.get(parts[0]);
+            if (portfolio == null) {
+                sendError(exchange, 404, "Nie ma portfela " + parts[0]);
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            if (parts.length == 1 && "GET".equals(method)) {
+                sendValuation(exchange, parts[0], portfolio);
+            } else if (parts.length == 2 && ("buy".equals(parts[1]) || "sell".equals(parts[1]))) {
+                if (!"POST".equals(method)) {
+                    sendError(exchange, 405, "Dozwolona metoda: POST");
+                    return;
+                }
+                trade(exchange, parts[0], portfolio, "buy".equals(parts[1]));
+            } else {
+                sendError(exchange, 404, "Nieznana ścieżka " + exchange.getRequestURI().getPath());
+            }
+        }
+    }
+
+    private void trade(HttpExchange exchange, String name, Portfolio portfolio, boolean buy) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String symbol = query.get("symbol");
+        int quantity;
+        try {
+            quantity = Integer.parseInt(query.getOrDefault("quantity", ""));
+        } catch (NumberFormatException e) {
+            quantity = 0;
+        }
+        if (symbol == null || quantity <= 0) {
+            sendError(exchange, 400, "Wymagane parametry: symbol i quantity > 0");
+            return;
+        }
+        try {
+            // Portfel nie jest bezpieczny wątkowo - blokada rynku szereguje transakcje
+            // z HTTP razem ze zleceniami i akcjami korporacyjnymi z wątku ticków
+            synchronized (market) {
+                if (buy) {
+                    portfolio.buy(symbol, quantity, market);
+                } else {
+                    portfolio.sell(symbol, quantity, market);
+                }
+            }
+        } catch (AssetNotFoundException e) {
+            sendError(exchange, 404, e.getMessage());
+            return;
+        } catch (InsufficientFundsException | InsufficientAssetsException e) {
+            sendError(exchange, 409, e.getMessage());
+            return;
+        }
+        sendValuation(exchange, name, portfolio);
+    }
+
+    private void sendValuation(HttpExchange exchange, String name, Portfolio portfolio) throws IOException {
+        JsonBuffer body = acquire();
+        try {
+            synchronized (market) {
+                body.raw('{').name("name").string(name)
+                    .raw(',').name("cash").number(portfolio.getCash(Currency.BASE), VALUE_DECIMALS)
+                    .raw(',').name("assetsValue").number(portfolio.calculateAssetsValue(), VALUE_DECIMALS)
+                    .raw(',').name("totalValue").number(portfolio.calculateTotalValue(), VALUE_DECIMALS)
+                    .raw(',').name("positions").raw('[');
+                boolean first = true;
+                for (PortfolioPosition position : portfolio.getPositions().values()) {
+                    if (!first) {
+                        body.raw(',');
+                    }
+                    first = false;
+                    Asset asset = position.asset();
+                    body.raw('{').name("symbol").string(asset.getSymbol())
+                        .raw(',').name("quantity").integer(position.quantity())
+                        .raw(',').name("price").number(asset.getCurrentPrice(), PriceStream.PRICE_DECIMALS)
+                        .raw(',').name("value").number(position.getTotalValue(), VALUE_DECIMALS)
+                        .raw(',').name("currency").string(asset.getCurrency().name())
+                        .raw('}');
+                }
+                body.raw("]}");
+            }
+            send(exchange, 200, body);
+        } finally {
+            release(body);
+        }
+    }
+
+    // ========== STRUMIEŃ SSE ==========
+
+    /**
+     * Obsługuje jednego klienta SSE przez cały czas połączenia - wątek żądania
+     * czeka na kolejne ramki i wysyła je, aż klient się rozłączy.
+     */
+    private void handleStream(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Dozwolona metoda: GET");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);    // 0 = odpowiedź w kawałkach, bez długości
+            OutputStream out = exchange.getResponseBody();
+            stream.subscribed();
+            try {
+                long lastTick = -1;
+                while (true) {
+                    PriceStream.Frame frame = stream.await(lastTick, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                    if (frame == null) {
+                        if (stream.isClosed()) {
+                            return;
+                        }
+                        out.write(HEARTBEAT);
+                        out.flush();
+                        continue;
+                    }
+                    try {
+                        frame.buffer.writeTo(out);
+                        out.flush();
+                        lastTick = frame.tick;
+                    } finally {
+                        stream.release(frame);
+                    }
+                }
+            } catch (IOException e) {
+                // Klient się rozłączył - kończymy jego strumień
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stream.unsubscribed();
+            }
+        }
+    }
+
+    // ========== POMOCNICZE ==========
+
+    private JsonBuffer acquire() {
+        JsonBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new JsonBuffer(4096);
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    private void release(JsonBuffer buffer) {
+        if (buffer.capacity() <= MAX_POOLED_CAPACITY) {
+            buffers.offer(buffer);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, JsonBuffer body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length() > 0 ? body.length() : -1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonBuffer body = acquire();
+        try {
+            body.raw('{').name("error").string(message).raw('}');
+            send(exchange, status, body);
+        } finally {
+            release(body);
+        }
+    }
+
+    /**
+     * Zwraca część ścieżki po prefiksie kontekstu, bez ukośników na brzegach.
+     */
+    private static String pathTail(HttpExchange exchange, String prefix) {
+        String path = exchange.getRequestURI().getPath();
+        String tail = path.length() > prefix.length() ? path.substring(prefix.length()) : "";
+        int start = 0;
+        int end = tail.length();
+        while (start < end && tail.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && tail.charAt(end - 1) == '/') {
+            end--;
+        }
+        return tail.substring(start, end);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String text) {
+        return URLDecoder.decode(text, StandardCharsets.UTF_8);
+    }
+}
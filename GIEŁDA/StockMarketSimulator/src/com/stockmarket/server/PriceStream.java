@@ -0,0 +1,198 @@
+package com.stockmarket.server;
+
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Strumień paczek cen dla klientów Server-Sent Events.
+ *
+ * Po każdym ticku rynku ceny, które się zmieniły, są kodowane raz - do
+ * ramki SSE w buforze z puli - i ta sama ramka jest wysyłana wszystkim
+ * subskrybentom. Ramka ma licznik odwołań: wraca do puli, gdy zastąpi ją
+ * nowsza i ostatni subskrybent skończy ją wysyłać.
+ *
+ * Subskrybent zawsze dostaje najnowszą ramkę - wolny klient, który nie
+ * nadąża, pomija pośrednie ticki zamiast zbierać zaległości w pamięci
+ * serwera. Pełne ceny (np. po pominięciu ticków) zwraca GET /quotes.
+ *
+ * Subskrybenci czekają na nową ramkę w Phaser - nowa ramka przesuwa fazę
+ * i budzi wszystkich naraz, a obudzony nie musi potem przejmować żadnej
+ * blokady (przy Condition.signalAll tysiące wątków brałyby blokadę po kolei).
+ * Phaser usypia wątki przez LockSupport, więc nie blokuje wątków nośnych
+ * wątków wirtualnych - w przeciwieństwie do wait() w bloku synchronized.
+ *
+ * Format ramki:
+ * <pre>
+ * id: 42
+ * event: prices
+ * data: {"tick":42,"prices":{"PKO":41.2530,"CDR":120.0000}}
+ * </pre>
+ */
+public class PriceStream implements MarketListener {
+
+    static final int PRICE_DECIMALS = 4;
+    private static final int INITIAL_FRAME_CAPACITY = 64 * 1024;
+
+    private final ConcurrentLinkedQueue<Frame> pool = new ConcurrentLinkedQueue<>();
+    private final Phaser frames = new Phaser(1);   // jedna strona - strumień; faza = numer ramki
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private volatile Frame current;
+    private volatile boolean closed;
+
+    public PriceStream(Market market) {
+        market.addListener(this);
+    }
+
+    @Override
+    public void onPricesUpdated(MarketSnapshot previous, MarketSnapshot current) {
+        if (subscribers.get() == 0) {
+            return;   // nikt nie słucha - nie kodujemy
+        }
+        Frame frame = pool.poll();
+        if (frame == null) {
+            frame = new Frame();
+        }
+        frame.tick = current.getTick();
+        encode(frame.buffer, previous, current);
+        publish(frame);
+    }
+
+    /**
+     * Koduje do ramki ceny, które zmieniły się od poprzedniego ticka.
+     */
+    private static void encode(JsonBuffer buffer, MarketSnapshot previous, MarketSnapshot current) {
+        buffer.reset();
+        buffer.raw("id: ").integer(current.getTick()).raw("\nevent: prices\ndata: {");
+        buffer.name("tick").integer(current.getTick()).raw(',').name("prices").raw('{');
+        boolean first = true;
+        for (int id = 0; id < current.size(); id++) {
+            Asset asset = current.getAsset(id);
+            double price = current.getPrice(id);
+            if (asset == null || Double.isNaN(price)) {
+                continue;
+            }
+            if (previous != null && id < previous.size() && previous.getAsset(id) == asset
+                    && previous.getPrice(id) == price) {
+                continue;
+            }
+            if (!first) {
+                buffer.raw(',');
+            }
+            first = false;
+            buffer.name(asset.getSymbol()).number(price, PRICE_DECIMALS);
+        }
+        buffer.raw("}}\n\n");
+    }
+
+    /**
+     * Wywoływana tylko z onPricesUpdated (pod blokadą rynku) - jeden publikujący naraz.
+     */
+    private void publish(Frame frame) {
+        // Odwołanie strumienia, zwalniane przy zastąpieniu ramki. Ustawiane dopiero
+        // po zakodowaniu - ramki z licznikiem 0 (w puli, w trakcie kodowania) nikt nie przejmie
+        frame.refs.set(1);
+        Frame replaced = current;
+        current = frame;
+        frames.arrive();
+        if (replaced != null) {
+            release(replaced);
+        }
+    }
+
+    /**
+     * Czeka na ramkę nowszą niż afterTick i zwraca ją z odwołaniem
+     * subskrybenta - po wysłaniu trzeba ją oddać przez release().
+     *
+     * @return ramka albo null, gdy minął czas oczekiwania lub strumień zamknięto
+     */
+    Frame await(long afterTick, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!closed) {
+            // Faza odczytana przed sprawdzeniem ramki - publikacja w międzyczasie nie zginie
+            int phase = frames.getPhase();
+            Frame frame = acquireCurrent(afterTick);
+            if (frame != null) {
+                return frame;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            try {
+                frames.awaitAdvanceInterruptibly(phase, remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Przejmuje odwołanie do bieżącej ramki bez blokady. Licznik jest
+     * zwiększany tylko gdy jest dodatni - ramka, która właśnie wróciła do puli,
+     * jest pomijana i czytamy nowszą.
+     */
+    private Frame acquireCurrent(long afterTick) {
+        while (true) {
+            Frame frame = current;
+            if (frame == null || frame.tick <= afterTick) {
+                return null;
+            }
+            int refs = frame.refs.get();
+            if (refs > 0 && frame.refs.compareAndSet(refs, refs + 1)) {
+                // Nawet jeśli ramka zdążyła wrócić do puli i zostać wydana ponownie,
+                // to jako nowsza, w pełni zakodowana ramka
+                return frame;
+            }
+        }
+    }
+
+    void release(Frame frame) {
+        if (frame.refs.decrementAndGet() == 0) {
+            pool.offer(frame);
+        }
+    }
+
+    void subscribed() {
+        subscribers.incrementAndGet();
+    }
+
+    void unsubscribed() {
+        subscribers.decrementAndGet();
+    }
+
+    /**
+     * Zwraca liczbę podłączonych klientów SSE.
+     */
+    public int getSubscriberCount() {
+        return subscribers.get();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Budzi wszystkich subskrybentów i kończy ich strumienie.
+     */
+    public void close() {
+        closed = true;
+        frames.forceTermination();
+    }
+
+    /**
+     * Zakodowana ramka SSE jednego ticka.
+     */
+    static final class Frame {
+        final JsonBuffer buffer = new JsonBuffer(INITIAL_FRAME_CAPACITY);
+        final AtomicInteger refs = new AtomicInteger();
+        volatile long tick;
+    }
+}
@@ -0,0 +1,268 @@
+package com.stockmarket.server;
+
+import com.stockmarket.market.Market;
+import com.stockmarket.model.Asset;
+import com.stockmarket.model.Stock;
+import com.stockmarket.portfolio.Portfolio;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Test obciążeniowy MarketServer na localhost.
+ *
+ * Uruchamia rynek i serwer w tym samym procesie, podłącza wielu klientów SSE
+ * (/stream) i równolegle wysyła żądania HTTP (notowania, kupno, wycena
+ * portfela). Na koniec wypisuje:
+ * <ul>
+ *   <li>dla SSE - ile ramek dotarło i opóźnienie od rozpoczęcia ticka do
+ *       odebrania ramki przez klienta (p50/p99/p99.9/max),</li>
+ *   <li>dla żądań - liczbę żądań na sekundę i opóźnienia odpowiedzi.</li>
+ * </ul>
+ * Klienci działają na tym samym wykonawcy co serwer (wątki wirtualne na Javie 21+).
+ *
+ * Użycie: java com.stockmarket.server.ServerLoadTest [klienci SSE] [aktywa] [sekundy] [ms na tick] [wątki żądań]
+ */
+public final class ServerLoadTest {
+
+    private static final byte[] ID_PREFIX = "\nid: ".getBytes(StandardCharsets.US_ASCII);
+
+    private ServerLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Bez tego każda mała odpowiedź czeka ok. 40 ms na opóźnione ACK (algorytm Nagle'a)
+        // i test mierzyłby timer TCP, a nie serwer. Musi być ustawione przed pierwszym HttpServer
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int assetCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int tickMillis = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int requestThreads = args.length > 4 ? Integer.parseInt(args[4]) : 32;
+
+        List<Asset> assets = new ArrayList<>();
+        for (int i = 0; i < assetCount; i++) {
+            assets.add(new Stock("S" + i, "Spółka " + i, 10.0 + i % 500));
+        }
+        Market market = new Market(assets, 42);
+        Portfolio portfolio = new Portfolio(1e12);
+        portfolio.setTransactionLogging(false);
+
+        int maxTicks = seconds * 1000 / Math.max(1, tickMillis) + 16;
+        AtomicLongArray tickStart = new AtomicLongArray(maxTicks + 1);
+
+        long[][] sseLatencies = new long[clients][];
+        AtomicInteger sseErrors = new AtomicInteger();
+        CountDownLatch sseDone = new CountDownLatch(clients);
+        long[][] requestLatencies = new long[requestThreads][];
+        AtomicInteger requestErrors = new AtomicInteger();
+        CountDownLatch requestsDone = new CountDownLatch(requestThreads);
+        ExecutorService clientExecutor = MarketServer.newRequestExecutor();
+        int ticks = 0;
+        long elapsed;
+
+        MarketServer server = new MarketServer(market, 0);
+        try {
+            server.addPortfolio("demo", portfolio);
+            server.start();
+            int port = server.getPort();
+
+            // Klienci SSE - każdy zbiera opóźnienia odebranych ramek
+            for (int i = 0; i < clients; i++) {
+                int index = i;
+                clientExecutor.execute(() -> {
+                    try {
+                        sseLatencies[index] = readStream(port, tickStart, maxTicks);
+                    } catch (IOException e) {
+                        sseErrors.incrementAndGet();
+                    } finally {
+                        sseDone.countDown();
+                    }
+                });
+            }
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (server.getPriceStream().getSubscriberCount() + sseErrors.get() < clients
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            System.out.printf("Klienci SSE podłączeni: %d / %d%n", server.getPriceStream().getSubscriberCount(), clients);
+
+            // Wątki żądań HTTP
+            long endAt = System.nanoTime() + seconds * 1_000_000_000L;
+            for (int i = 0; i < requestThreads; i++) {
+                int index = i;
+                clientExecutor.execute(() -> {
+                    try {
+                        requestLatencies[index] = sendRequests(port, assetCount, endAt, requestErrors);
+                    } finally {
+                        requestsDone.countDown();
+                    }
+                });
+            }
+
+            // Ticki rynku - czas rozpoczęcia ticka jest punktem odniesienia opóźnienia SSE
+            long started = System.nanoTime();
+            while (System.nanoTime() < endAt && ticks < maxTicks) {
+                long tick = market.getTick() + 1;
+                tickStart.set((int) tick, System.nanoTime());
+                market.updatePrices();
+                ticks++;
+                Thread.sleep(tickMillis);
+            }
+            requestsDone.await();
+            elapsed = System.nanoTime() - started;
+        } finally {
+            // Zamknięcie serwera kończy strumienie klientów SSE
+            server.close();
+        }
+        sseDone.await();
+        clientExecutor.shutdown();
+
+        long[] sse = merge(sseLatencies);
+        System.out.printf("Ticki: %d, ramki SSE odebrane: %d (oczekiwane do %d), błędy: %d%n",
+            ticks, sse.length, (long) ticks * clients, sseErrors.get());
+        printLatencies("Opóźnienie SSE", sse);
+        long[] requests = merge(requestLatencies);
+        System.out.printf("Żądania HTTP: %d w %.2f s = %.0f żądań/s (błędy: %d)%n",
+            requests.length, elapsed / 1e9, requests.length / (elapsed / 1e9), requestErrors.get());
+        printLatencies("Opóźnienie żądań", requests);
+    }
+
+    /**
+     * Czyta strumień SSE surowym gniazdem i dla każdej ramki (linia "id: N")
+     * zapisuje czas od rozpoczęcia ticka N.
+     */
+    private static long[] readStream(int port, AtomicLongArray tickStart, int maxTicks) throws IOException {
+        long[] latencies = new long[64];
+        int count = 0;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /stream HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n"
+                .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[64 * 1024];
+            int matched = 0;
+            long tick = -1;
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                for (int i = 0; i < n; i++) {
+                    byte b = buffer[i];
+                    if (tick >= 0) {
+                        if (b >= '0' && b <= '9') {
+                            tick = tick * 10 + (b - '0');
+                            continue;
+                        }
+                        long received = System.nanoTime();
+                        if (tick <= maxTicks && tickStart.get((int) tick) != 0) {
+                            if (count == latencies.length) {
+                                latencies = Arrays.copyOf(latencies, count * 2);
+                            }
+                            latencies[count++] = received - tickStart.get((int) tick);
+                        }
+                        tick = -1;
+                    }
+                    // Szukamy "\nid: " - początku ramki
+                    matched = b == ID_PREFIX[matched] ? matched + 1 : (b == ID_PREFIX[0] ? 1 : 0);
+                    if (matched == ID_PREFIX.length) {
+                        matched = 0;
+                        tick = 0;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (count == 0) {
+                throw e;
+            }
+            // Rozłączenie po zamknięciu serwera - to koniec testu, nie błąd
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    /**
+     * Wysyła żądania do podanej chwili: głównie notowania, co dziesiąte kupno, co dziesiąte wycena portfela.
+     */
+    private static long[] sendRequests(int port, int assetCount, long endAt, AtomicInteger errors) {
+        long[] latencies = new long[1024];
+        int count = 0;
+        byte[] scratch = new byte[16 * 1024];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < endAt) {
+            int kind = random.nextInt(10);
+            String symbol = "S" + random.nextInt(assetCount);
+            String path = kind == 0 ? "/portfolios/demo/buy?symbol=" + symbol + "&quantity=1"
+                : kind == 1 ? "/portfolios/demo" : "/quotes/" + symbol;
+            long start = System.nanoTime();
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+                connection.setRequestMethod(kind == 0 ? "POST" : "GET");
+                int status = connection.getResponseCode();
+                InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+                if (body != null) {
+                    // Doczytanie całej odpowiedzi pozwala użyć połączenia ponownie (keep-alive)
+                    while (body.read(scratch) >= 0) {
+                    }
+                    body.close();
+                }
+                if (status != 200) {
+                    errors.incrementAndGet();
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+                continue;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static long[] merge(long[][] parts) {
+        int total = 0;
+        for (long[] part : parts) {
+            total += part != null ? part.length : 0;
+        }
+        long[] all = new long[total];
+        int position = 0;
+        for (long[] part : parts) {
+            if (part != null) {
+                System.arraycopy(part, 0, all, position, part.length);
+                position += part.length;
+            }
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    private static void printLatencies(String label, long[] sorted) {
+        if (sorted.length == 0) {
+            System.out.println(label + ": brak pomiarów");
+            return;
+        }
+        System.out.printf("%s p50: %.1f us, p99: %.1f us, p99.9: %.1f us, max: %.1f us%n", label,
+            percentile(sorted, 0.50) / 1e3, percentile(sorted, 0.99) / 1e3,
+            percentile(sorted, 0.999) / 1e3, sorted[sorted.length - 1] / 1e3);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
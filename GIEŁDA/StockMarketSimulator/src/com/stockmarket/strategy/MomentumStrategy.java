@@ -0,0 +1,50 @@
+package com.stockmarket.strategy;
+
+/**
+ * Przykładowa strategia momentum dla jednego aktywa.
+ *
+ * Kupuje, gdy cena wzrosła w ostatnim ticku o więcej niż próg,
+ * i sprzedaje całą pozycję, gdy spadła o więcej niż próg.
+ */
+public class MomentumStrategy implements Strategy {
+
+    private final String symbol;
+    private final double threshold;   // np. 0.02 = 2%
+    private final int lotSize;        // ile sztuk kupujemy naraz
+
+    private int id = -1;              // id aktywa zapamiętane po pierwszym wyszukaniu
+
+    public MomentumStrategy(String symbol, double threshold, int lotSize) {
+        if (threshold < 0 || lotSize <= 0) {
+            throw new IllegalArgumentException("Próg nie może być ujemny, a wielkość zlecenia musi być dodatnia");
+        }
+        this.symbol = symbol;
+        this.threshold = threshold;
+        this.lotSize = lotSize;
+    }
+
+    @Override
+    public void onTick(PriceView prices, OrderSink orders) {
+        if (id < 0 || !symbol.equals(prices.getSymbol(id))) {
+            id = prices.indexOf(symbol);
+            if (id < 0) {
+                return;  // aktywa nie ma (jeszcze lub już) na rynku
+            }
+        }
+
+        double change = prices.getReturn(id);
+        if (change > threshold && orders.getCash() >= prices.getPrice(id) * lotSize) {
+            orders.buy(id, lotSize);
+        } else if (change < -threshold) {
+            int owned = orders.getQuantity(id);
+            if (owned > 0) {
+                orders.sell(id, owned);
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Momentum(" + symbol + ", " + threshold + ")";
+    }
+}
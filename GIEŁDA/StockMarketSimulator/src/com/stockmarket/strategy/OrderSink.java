@@ -0,0 +1,35 @@
+package com.stockmarket.strategy;
+
+/**
+ * Miejsce, do którego strategia składa zlecenia w danym ticku.
+ *
+ * Zlecenia są buforowane i wykonywane na portfelu strategii po zakończeniu
+ * ticka, w kolejności złożenia. Stan konta (gotówka, ilości) odpowiada
+ * chwili sprzed wykonania zleceń z bieżącego ticka.
+ */
+public interface OrderSink {
+
+    /**
+     * Składa zlecenie kupna aktywa o podanym identyfikatorze.
+     *
+     * @return false gdy zlecenie odrzucono (limit zleceń na tick lub zła ilość)
+     */
+    boolean buy(int id, int quantity);
+
+    /**
+     * Składa zlecenie sprzedaży aktywa o podanym identyfikatorze.
+     *
+     * @return false gdy zlecenie odrzucono (limit zleceń na tick lub zła ilość)
+     */
+    boolean sell(int id, int quantity);
+
+    /**
+     * Zwraca gotówkę na koncie strategii.
+     */
+    double getCash();
+
+    /**
+     * Zwraca liczbę posiadanych sztuk aktywa o podanym identyfikatorze.
+     */
+    int getQuantity(int id);
+}
@@ -0,0 +1,49 @@
+package com.stockmarket.strategy;
+
+/**
+ * Widok cen przekazywany strategiom w jednym ticku.
+ *
+ * Ceny pochodzą z niezmiennych migawek rynku, więc widok może być czytany
+ * równolegle przez dowolną liczbę strategii. Aktywa są adresowane tymi samymi
+ * identyfikatorami (id) co w MarketSnapshot.
+ */
+public interface PriceView {
+
+    /**
+     * Zwraca numer bieżącego ticka.
+     */
+    long getTick();
+
+    /**
+     * Zwraca liczbę identyfikatorów aktywów (część może być wolna).
+     */
+    int size();
+
+    /**
+     * Zwraca bieżącą cenę aktywa lub Double.NaN gdy id jest wolne.
+     */
+    double getPrice(int id);
+
+    /**
+     * Zwraca cenę z poprzedniego ticka lub Double.NaN gdy aktywa wtedy nie było.
+     */
+    double getPreviousPrice(int id);
+
+    /**
+     * Zwraca identyfikator aktywa o podanym symbolu lub -1 gdy go nie ma.
+     */
+    int indexOf(String symbol);
+
+    /**
+     * Zwraca symbol aktywa lub null gdy id jest wolne.
+     */
+    String getSymbol(int id);
+
+    /**
+     * Zwraca względną zmianę ceny od poprzedniego ticka (0.01 = +1%).
+     */
+    default double getReturn(int id) {
+        double previous = getPreviousPrice(id);
+        return previous > 0 ? getPrice(id) / previous - 1.0 : Double.NaN;
+    }
+}
@@ -0,0 +1,52 @@
+package com.stockmarket.strategy;
+
+import com.stockmarket.market.MarketSnapshot;
+
+/**
+ * Widok cen oparty na dwóch kolejnych migawkach rynku.
+ * Jeden obiekt na tick, współdzielony przez wszystkie strategie.
+ */
+final class SnapshotPriceView implements PriceView {
+
+    private final MarketSnapshot previous;
+    private final MarketSnapshot current;
+
+    SnapshotPriceView(MarketSnapshot previous, MarketSnapshot current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    @Override
+    public long getTick() {
+        return current.getTick();
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    @Override
+    public double getPrice(int id) {
+        return current.getPrice(id);
+    }
+
+    @Override
+    public double getPreviousPrice(int id) {
+        // Id mogło zostać ponownie użyte przez inne aktywo - wtedy poprzednia cena nie pasuje
+        if (id >= previous.size() || previous.getAsset(id) != current.getAsset(id)) {
+            return Double.NaN;
+        }
+        return previous.getPrice(id);
+    }
+
+    @Override
+    public int indexOf(String symbol) {
+        return current.indexOf(symbol);
+    }
+
+    @Override
+    public String getSymbol(int id) {
+        return current.getSymbol(id);
+    }
+}
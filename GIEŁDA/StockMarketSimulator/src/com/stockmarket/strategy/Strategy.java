@@ -0,0 +1,43 @@
+package com.stockmarket.strategy;
+
+/**
+ * Interfejs algorytmu handlowego, który reaguje na zmiany cen.
+ *
+ * StrategyEngine wywołuje onTick() po każdym Market.updatePrices() z jednym,
+ * wspólnym dla wszystkich strategii widokiem cen. Strategie są wywoływane
+ * równolegle, więc implementacja nie może modyfikować stanu współdzielonego
+ * z innymi strategiami - własne pola instancji są bezpieczne, bo jedna
+ * strategia nigdy nie jest wywoływana przez dwa wątki naraz.
+ *
+ * Zlecenia nie są wykonywane od razu - trafiają do bufora i silnik realizuje je
+ * na portfelu strategii, gdy wszystkie strategie skończą dany tick.
+ */
+public interface Strategy {
+
+    /**
+     * Wywoływana raz na tick (albo rzadziej, gdy strategia jest dławiona).
+     *
+     * @param prices ceny z bieżącego i poprzedniego ticka
+     * @param orders miejsce na zlecenia i odczyt stanu konta strategii
+     */
+    void onTick(PriceView prices, OrderSink orders);
+
+    /**
+     * Wywoływana po podziale akcji, między tickami (nigdy równolegle z onTick()).
+     * Strategia, która pamięta ceny aktywa, powinna je tu przeliczyć
+     * (pomnożyć przez denominator / numerator) albo zapomnieć. Ceny w PriceView
+     * są już po podziale - getReturn() w następnym ticku nie pokaże skoku.
+     *
+     * @param id identyfikator podzielonego aktywa
+     */
+    default void onSplit(int id, int numerator, int denominator) {
+    }
+
+    /**
+     * Zwraca nazwę strategii używaną w statystykach.
+     */
+    default String getName() {
+        String name = getClass().getSimpleName();
+        return name.isEmpty() ? getClass().getName() : name;  // klasy anonimowe nie mają prostej nazwy
+    }
+}
@@ -0,0 +1,393 @@
+package com.stockmarket.strategy;
+
+import com.stockmarket.exception.*;
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import com.stockmarket.portfolio.Portfolio;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Silnik uruchamiający strategie handlowe po każdej aktualizacji cen.
+ *
+ * Każdy tick przebiega w dwóch fazach:
+ * 1. Wszystkie strategie dostają ten sam widok cen i są wywoływane równolegle
+ *    na puli ForkJoin (podział na zakresy, wolne wątki podkradają pracę).
+ *    Zlecenia trafiają do prywatnych buforów strategii - bez żadnych blokad.
+ * 2. Zlecenia są wykonywane na portfelach po kolei, w kolejności rejestracji
+ *    strategii, więc wynik nie zależy od liczby wątków.
+ *
+ * Dla każdej strategii mierzymy czas procesora (ThreadMXBean) i liczbę zleceń.
+ * Strategia, której średni czas przekracza budżet, jest dławiona - wywołujemy
+ * ją co kilka ticków, proporcjonalnie do przekroczenia.
+ *
+ * Silnik nie trzyma cen aktywów między tickami (zlecenia z ticka są wykonywane
+ * w tym samym ticku), więc po podziale akcji przekazuje zdarzenie strategiom
+ * (Strategy.onSplit()) - każda sama przelicza albo porzuca zapamiętane ceny.
+ */
+public class StrategyEngine implements MarketListener, AutoCloseable {
+
+    /** Domyślny budżet czasu procesora na jedno wywołanie strategii (1 ms). */
+    public static final long DEFAULT_CPU_BUDGET_NANOS = 1_000_000L;
+
+    /** Domyślny limit zleceń jednej strategii na tick. */
+    public static final int DEFAULT_MAX_ORDERS_PER_TICK = 100;
+
+    private static final int MAX_THROTTLE_INTERVAL = 64;
+    private static final int SEQUENTIAL_THRESHOLD = 32;  // tyle strategii liczy jedno zadanie bez dzielenia
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private final Market market;
+    private final ForkJoinPool pool;
+    private final boolean ownPool;
+
+    private volatile StrategySlot[] slots = new StrategySlot[0];
+    private volatile long cpuBudgetNanos = DEFAULT_CPU_BUDGET_NANOS;
+    private volatile int maxOrdersPerTick = DEFAULT_MAX_ORDERS_PER_TICK;
+
+    /**
+     * Tworzy silnik korzystający ze wspólnej puli ForkJoinPool.commonPool()
+     * i podłącza go do rynku.
+     */
+    public StrategyEngine(Market market) {
+        this(market, ForkJoinPool.commonPool(), false);
+    }
+
+    /**
+     * Tworzy silnik z własną pulą wątków o podanej równoległości.
+     */
+    public StrategyEngine(Market market, int parallelism) {
+        this(market, new ForkJoinPool(parallelism), true);
+    }
+
+    private StrategyEngine(Market market, ForkJoinPool pool, boolean ownPool) {
+        if (CPU_TIME_SUPPORTED && !THREADS.isThreadCpuTimeEnabled()) {
+            THREADS.setThreadCpuTimeEnabled(true);
+        }
+        this.market = market;
+        this.pool = pool;
+        this.ownPool = ownPool;
+        market.addListener(this);
+    }
+
+    /**
+     * Rejestruje strategię handlującą na podanym portfelu.
+     * Kilka strategii może dzielić jeden portfel - zlecenia są wykonywane po kolei.
+     *
+     * @throws IllegalArgumentException gdy strategia jest już zarejestrowana
+     */
+    public synchronized void register(Strategy strategy, Portfolio portfolio) {
+        for (StrategySlot slot : slots) {
+            if (slot.strategy == strategy) {
+                throw new IllegalArgumentException("Strategia " + strategy.getName() + " jest już zarejestrowana");
+            }
+        }
+        StrategySlot[] updated = Arrays.copyOf(slots, slots.length + 1);
+        updated[slots.length] = new StrategySlot(strategy, portfolio);
+        slots = updated;
+    }
+
+    /**
+     * Wyrejestrowuje strategię. Zwraca false gdy nie była zarejestrowana.
+     */
+    public synchronized boolean unregister(Strategy strategy) {
+        StrategySlot[] current = slots;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].strategy == strategy) {
+                StrategySlot[] updated = new StrategySlot[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                slots = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ustawia budżet czasu procesora na jedno wywołanie strategii.
+     * Wartość 0 wyłącza dławienie.
+     */
+    public void setCpuBudgetNanos(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Budżet czasu nie może być ujemny");
+        }
+        this.cpuBudgetNanos = nanos;
+    }
+
+    /**
+     * Ustawia maksymalną liczbę zleceń jednej strategii w jednym ticku.
+     */
+    public void setMaxOrdersPerTick(int maxOrders) {
+        if (maxOrders <= 0) {
+            throw new IllegalArgumentException("Limit zleceń musi być dodatni");
+        }
+        this.maxOrdersPerTick = maxOrders;
+    }
+
+    /**
+     * Zwraca liczbę zarejestrowanych strategii.
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    @Override
+    public void onPricesUpdated(MarketSnapshot previous, MarketSnapshot current) {
+        StrategySlot[] tickSlots = slots;
+        if (tickSlots.length == 0) {
+            return;
+        }
+        SnapshotPriceView view = new SnapshotPriceView(previous, current);
+
+        // Faza 1: strategie równolegle, zlecenia do prywatnych buforów
+        RunStrategies task = new RunStrategies(tickSlots, 0, tickSlots.length, view,
+                cpuBudgetNanos, maxOrdersPerTick);
+        if (tickSlots.length <= SEQUENTIAL_THRESHOLD) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+
+        // Faza 2: wykonanie zleceń po kolei (portfele nie są bezpieczne wątkowo)
+        for (StrategySlot slot : tickSlots) {
+            slot.executeOrders(market, current);
+        }
+    }
+
+    @Override
+    public void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+        for (StrategySlot slot : slots) {
+            slot.split(id, numerator, denominator);
+        }
+    }
+
+    /**
+     * Zwraca statystyki wszystkich strategii w kolejności rejestracji.
+     * Należy wywoływać między tickami.
+     */
+    public List<StrategyStats> getStats() {
+        StrategySlot[] current = slots;
+        List<StrategyStats> stats = new ArrayList<>(current.length);
+        for (StrategySlot slot : current) {
+            stats.add(slot.toStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Zwraca k strategii zużywających najwięcej czasu procesora (od najwolniejszej).
+     */
+    public List<StrategyStats> getSlowest(int k) {
+        List<StrategyStats> stats = getStats();
+        stats.sort(Comparator.comparingLong(StrategyStats::cpuTimeNanos).reversed());
+        return stats.subList(0, Math.min(k, stats.size()));
+    }
+
+    /**
+     * Odłącza silnik od rynku i zamyka własną pulę wątków.
+     */
+    @Override
+    public void close() {
+        market.removeListener(this);
+        if (ownPool) {
+            pool.shutdown();
+        }
+    }
+
+    static long cpuTimeNow() {
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Zadanie ForkJoin - dzieli zakres strategii na pół, dopóki nie jest dość mały.
+     */
+    private static final class RunStrategies extends RecursiveAction {
+
+        // ForkJoinTask jest Serializable, ale zadanie nigdy nie opuszcza procesu
+        private static final long serialVersionUID = 1L;
+
+        private final transient StrategySlot[] slots;
+        private final int from;
+        private final int to;
+        private final transient SnapshotPriceView view;
+        private final long cpuBudgetNanos;
+        private final int maxOrders;
+
+        RunStrategies(StrategySlot[] slots, int from, int to, SnapshotPriceView view,
+                      long cpuBudgetNanos, int maxOrders) {
+            this.slots = slots;
+            this.from = from;
+            this.to = to;
+            this.view = view;
+            this.cpuBudgetNanos = cpuBudgetNanos;
+            this.maxOrders = maxOrders;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    slots[i].run(view, cpuBudgetNanos, maxOrders);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RunStrategies(slots, from, middle, view, cpuBudgetNanos, maxOrders),
+                      new RunStrategies(slots, middle, to, view, cpuBudgetNanos, maxOrders));
+        }
+    }
+
+    /**
+     * Stan jednej strategii: bufor zleceń i liczniki statystyk.
+     * W fazie 1 używany tylko przez jeden wątek, w fazie 2 przez wątek rynku.
+     */
+    private static final class StrategySlot implements OrderSink {
+
+        private final Strategy strategy;
+        private final Portfolio portfolio;
+
+        // Bufor zleceń: id aktywa i ilość (dodatnia = kupno, ujemna = sprzedaż)
+        private int[] orderIds = new int[8];
+        private int[] orderQuantities = new int[8];
+        private int orderCount;
+        private int orderLimit;
+        private SnapshotPriceView view;
+
+        private long cpuTimeNanos;
+        private long invocations;
+        private long ordersExecuted;
+        private long ordersRejected;
+        private double averageCpuNanos;   // średnia krocząca do dławienia
+        private int throttleInterval = 1;
+        private long nextRunTick;
+        private RuntimeException failure;
+
+        StrategySlot(Strategy strategy, Portfolio portfolio) {
+            this.strategy = strategy;
+            this.portfolio = portfolio;
+        }
+
+        void run(SnapshotPriceView view, long cpuBudgetNanos, int maxOrders) {
+            long tick = view.getTick();
+            if (failure != null || tick < nextRunTick) {
+                return;
+            }
+            this.view = view;
+            this.orderLimit = maxOrders;
+
+            long start = cpuTimeNow();
+            try {
+                strategy.onTick(view, this);
+            } catch (RuntimeException e) {
+                // Błędna strategia nie może zatrzymać pozostałych - wyłączamy ją,
+                // a wyjątek trafia do statystyk (getStats), zamiast na konsolę z wątku puli
+                failure = e;
+                ordersRejected += orderCount;
+                orderCount = 0;
+            }
+            long used = cpuTimeNow() - start;
+
+            cpuTimeNanos += used;
+            invocations++;
+            averageCpuNanos += (used - averageCpuNanos) / 8.0;
+
+            // Dławienie: przy przekroczeniu budżetu strategia pomija kilka kolejnych ticków
+            if (cpuBudgetNanos > 0 && averageCpuNanos > cpuBudgetNanos) {
+                throttleInterval = (int) Math.min(MAX_THROTTLE_INTERVAL,
+                        Math.ceil(averageCpuNanos / cpuBudgetNanos));
+            } else {
+                throttleInterval = 1;
+            }
+            nextRunTick = tick + throttleInterval;
+        }
+
+        void split(int id, int numerator, int denominator) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                strategy.onSplit(id, numerator, denominator);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        void executeOrders(Market market, MarketSnapshot snapshot) {
+            for (int i = 0; i < orderCount; i++) {
+                String symbol = snapshot.getSymbol(orderIds[i]);
+                int quantity = orderQuantities[i];
+                try {
+                    if (symbol == null) {
+                        throw new AssetNotFoundException("Aktywo o id " + orderIds[i] + " nie istnieje");
+                    }
+                    if (quantity > 0) {
+                        portfolio.buy(symbol, quantity, market);
+                    } else {
+                        portfolio.sell(symbol, -quantity, market);
+                    }
+                    ordersExecuted++;
+                } catch (InsufficientFundsException | InsufficientAssetsException | AssetNotFoundException e) {
+                    ordersRejected++;
+                } catch (RuntimeException e) {
+                    // Nieoczekiwany błąd wykonania nie może przerwać zleceń pozostałych strategii -
+                    // tak jak przy błędzie w onTick() wyłączamy strategię, a wyjątek trafia do statystyk
+                    ordersRejected++;
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            orderCount = 0;
+            view = null;
+        }
+
+        @Override
+        public boolean buy(int id, int quantity) {
+            return addOrder(id, quantity, quantity);
+        }
+
+        @Override
+        public boolean sell(int id, int quantity) {
+            return addOrder(id, quantity, -quantity);
+        }
+
+        private boolean addOrder(int id, int quantity, int signedQuantity) {
+            if (quantity <= 0 || id < 0 || id >= view.size() || orderCount >= orderLimit) {
+                ordersRejected++;
+                return false;
+            }
+            if (orderCount == orderIds.length) {
+                orderIds = Arrays.copyOf(orderIds, orderCount * 2);
+                orderQuantities = Arrays.copyOf(orderQuantities, orderCount * 2);
+            }
+            orderIds[orderCount] = id;
+            orderQuantities[orderCount] = signedQuantity;
+            orderCount++;
+            return true;
+        }
+
+        @Override
+        public double getCash() {
+            return portfolio.getCash();
+        }
+
+        @Override
+        public int getQuantity(int id) {
+            String symbol = view != null ? view.getSymbol(id) : null;
+            return symbol != null ? portfolio.getAssetQuantity(symbol) : 0;
+        }
+
+        StrategyStats toStats() {
+            return new StrategyStats(strategy.getName(), cpuTimeNanos, invocations,
+                    ordersExecuted, ordersRejected, throttleInterval, failure != null, failure);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.stockmarket.strategy;
+
+/**
+ * Statystyki wykonania jednej strategii w StrategyEngine.
+ *
+ * @param name nazwa strategii
+ * @param cpuTimeNanos łączny czas procesora zużyty przez onTick()
+ * @param invocations liczba wywołań onTick()
+ * @param ordersExecuted liczba wykonanych zleceń
+ * @param ordersRejected liczba zleceń odrzuconych (limit, brak środków lub aktywów, błąd wykonania)
+ * @param throttleInterval co ile ticków strategia jest wywoływana (1 = w każdym)
+ * @param failed czy strategia została wyłączona po rzuceniu wyjątku
+ * @param failure wyjątek, który wyłączył strategię - z onTick() albo z wykonania
+ *                jej zlecenia na portfelu (null gdy działa)
+ */
+public record StrategyStats(String name, long cpuTimeNanos, long invocations,
+                            long ordersExecuted, long ordersRejected,
+                            int throttleInterval, boolean failed, RuntimeException failure) {
+
+    /**
+     * Zwraca średni czas procesora na jedno wywołanie w nanosekundach.
+     */
+    public double getAverageCpuNanos() {
+        return invocations > 0 ? (double) cpuTimeNanos / invocations : 0.0;
+    }
+}
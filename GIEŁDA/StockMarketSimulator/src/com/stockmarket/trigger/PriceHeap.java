@@ -0,0 +1,145 @@
+package com.stockmarket.trigger;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Kopiec binarny (minimum na szczycie) progów cenowych jednego aktywa.
+ *
+ * Klucze i uchwyty zleceń leżą w dwóch tablicach prymitywów, więc nawet
+ * miliony zleceń to dwie ciągłe tablice, a nie miliony obiektów. Kopiec
+ * zleceń "poniżej progu" trzyma progi z przeciwnym znakiem - największy próg
+ * jest wtedy na szczycie tego samego kopca minimum.
+ *
+ * Anulowane zlecenia zostają w kopcu (usunięcie ze środka kosztowałoby
+ * wyszukanie), a są pomijane przy zdjęciu ze szczytu. Gdy martwych wpisów
+ * jest więcej niż żywych, kopiec jest przebudowywany w O(n).
+ */
+final class PriceHeap {
+
+    private double[] keys = new double[4];
+    private int[] handles = new int[4];
+    private int size;
+    int dead;
+
+    int size() {
+        return size;
+    }
+
+    double peekKey() {
+        return keys[0];
+    }
+
+    int peekHandle() {
+        return handles[0];
+    }
+
+    void push(double key, int handle) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            handles = Arrays.copyOf(handles, size * 2);
+        }
+        int i = size++;
+        // Przesiewanie w górę
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            keys[i] = keys[parent];
+            handles[i] = handles[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        handles[i] = handle;
+    }
+
+    /**
+     * Zdejmuje szczyt kopca (najpierw trzeba odczytać peekKey/peekHandle).
+     */
+    void pop() {
+        size--;
+        if (size > 0) {
+            siftDown(0, keys[size], handles[size]);
+        }
+    }
+
+    private void siftDown(int i, double key, int handle) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && keys[right] < keys[child]) {
+                child = right;
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            keys[i] = keys[child];
+            handles[i] = handles[child];
+            i = child;
+        }
+        keys[i] = key;
+        handles[i] = handle;
+    }
+
+    /**
+     * Usuwa wpisy, których uchwyty nie spełniają warunku, i odbudowuje kopiec.
+     *
+     * @param live warunek dla żywych zleceń
+     * @param removed tu trafiają uchwyty usuniętych wpisów (do ponownego użycia)
+     * @return liczba usuniętych wpisów
+     */
+    int compact(IntPredicate live, int[] removed) {
+        int kept = 0;
+        int dropped = 0;
+        for (int i = 0; i < size; i++) {
+            if (live.test(handles[i])) {
+                keys[kept] = keys[i];
+                handles[kept] = handles[i];
+                kept++;
+            } else {
+                removed[dropped++] = handles[i];
+            }
+        }
+        size = kept;
+        dead = 0;
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i, keys[i], handles[i]);
+        }
+        return dropped;
+    }
+
+    /**
+     * Mnoży wszystkie klucze przez dodatni współczynnik. Kolejność kluczy się
+     * nie zmienia, więc kopiec nie wymaga przebudowy.
+     */
+    void scaleKeys(double factor) {
+        for (int i = 0; i < size; i++) {
+            keys[i] *= factor;
+        }
+    }
+
+    /**
+     * Kopiuje uchwyty wszystkich wpisów (kopiec zostaje bez zmian).
+     *
+     * @return liczba skopiowanych uchwytów
+     */
+    int copyHandles(int[] target) {
+        System.arraycopy(handles, 0, target, 0, size);
+        return size;
+    }
+
+    /**
+     * Kopiuje uchwyty wszystkich wpisów i opróżnia kopiec.
+     *
+     * @return liczba skopiowanych uchwytów
+     */
+    int drain(int[] target) {
+        int count = size;
+        System.arraycopy(handles, 0, target, 0, count);
+        size = 0;
+        dead = 0;
+        return count;
+    }
+}
@@ -0,0 +1,474 @@
+package com.stockmarket.trigger;
+
+import com.stockmarket.exception.AssetNotFoundException;
+import com.stockmarket.exception.InsufficientAssetsException;
+import com.stockmarket.exception.InsufficientFundsException;
+import com.stockmarket.market.Market;
+import com.stockmarket.market.MarketListener;
+import com.stockmarket.market.MarketSnapshot;
+import com.stockmarket.model.Asset;
+import com.stockmarket.portfolio.Portfolio;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Silnik zleceń warunkowych (stop-loss, take-profit, kupno stop/limit)
+ * i alertów cenowych.
+ *
+ * Każde aktywo ma dwa kopce progów: "powyżej" (najniższy próg na szczycie)
+ * i "poniżej" (najwyższy próg na szczycie). Szczyty kopców są dodatkowo
+ * skopiowane do dwóch tablic indeksowanych id aktywa, więc tick to jedno
+ * porównanie ceny ze szczytami na aktywo, a kopiec jest dotykany tylko gdy
+ * cena faktycznie przekroczyła próg. Koszt ticka zależy od liczby aktywów
+ * i liczby uruchomionych zleceń - nie od liczby zarejestrowanych.
+ *
+ * Dane zleceń są trzymane kolumnami (tablice prymitywów indeksowane
+ * uchwytem), a uchwyty zwolnionych zleceń są używane ponownie. Identyfikator
+ * zwracany użytkownikowi zawiera numer pokolenia uchwytu, więc anulowanie
+ * starego identyfikatora nie trafi w nowe zlecenie.
+ *
+ * Zlecenie uruchamia się raz: w ticku przekroczenia progu wykonuje kupno lub
+ * sprzedaż po bieżącej cenie rynkowej i znika. Nieudana transakcja (np. brak
+ * gotówki) nie jest ponawiana - słuchacze dostają zdarzenie z powodem. Dotyczy
+ * to także nieoczekiwanego wyjątku z portfela: zlecenie jest zwalniane jako
+ * nieudane, a pozostałe zlecenia ticka wykonują się normalnie.
+ *
+ * Podział akcji przelicza progi jej zleceń tak jak cenę, a ilości tak jak
+ * pozycje w portfelach - stop-loss ustawiony przed podziałem chroni po nim
+ * te same akcje na tym samym poziomie wartości.
+ *
+ * Przykład:
+ * <pre>
+ * TriggerEngine triggers = new TriggerEngine(market);
+ * triggers.addListener(event -&gt; System.out.println(event));
+ * triggers.add(portfolio, "CDR", TriggerType.STOP_LOSS, 95.0, 10);
+ * triggers.addAlert("PKO", TriggerType.ALERT_ABOVE, 50.0);
+ * </pre>
+ */
+public class TriggerEngine implements MarketListener {
+
+    private static final byte FREE = 0;
+    private static final byte ACTIVE = 1;
+    private static final byte CANCELLED = 2;   // jeszcze w kopcu, pomijany przy zdjęciu
+    private static final byte FIRING = 3;      // zdjęty z kopca, czeka na wykonanie
+
+    private final Market market;
+    private final List<TriggerListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Kolumny zleceń (uchwyt -> wartość)
+    private byte[] types = new byte[0];
+    private byte[] states = new byte[0];
+    private int[] assetIds = new int[0];
+    private int[] quantities = new int[0];
+    private int[] generations = new int[0];
+    private double[] thresholds = new double[0];
+    private Portfolio[] portfolios = new Portfolio[0];
+    private int[] freeHandles = new int[16];
+    private int freeCount;
+    private int handleCount;
+    private int activeCount;
+
+    // Kopce i ich szczyty (id aktywa -> wartość)
+    private PriceHeap[] aboveHeaps = new PriceHeap[0];
+    private PriceHeap[] belowHeaps = new PriceHeap[0];
+    private double[] nextAbove = new double[0];   // +nieskończoność gdy brak zleceń
+    private double[] nextBelow = new double[0];   // -nieskończoność gdy brak zleceń
+
+    private double[] prices = new double[0];
+    private int[] fired = new int[16];
+    private double[] firedPrices = new double[16];
+    private int firedCount;
+    private int[] scratch = new int[16];
+
+    public TriggerEngine(Market market) {
+        this.market = market;
+        market.addListener(this);
+    }
+
+    public void addListener(TriggerListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TriggerListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Rejestruje zlecenie warunkowe portfela.
+     *
+     * @param portfolio portfel, na którym zostanie wykonana transakcja
+     * @param symbol symbol aktywa
+     * @param type rodzaj zlecenia (nie alert)
+     * @param threshold próg ceny
+     * @param quantity ilość do kupna lub sprzedaży
+     * @return identyfikator zlecenia (do anulowania)
+     * @throws AssetNotFoundException gdy aktywa nie ma na rynku
+     * @throws IllegalArgumentException gdy parametry są niepoprawne
+     */
+    public long add(Portfolio portfolio, String symbol, TriggerType type, double threshold, int quantity)
+            throws AssetNotFoundException {
+        if (type.isAlert()) {
+            throw new IllegalArgumentException("Alerty rejestruje się przez addAlert");
+        }
+        if (portfolio == null) {
+            throw new IllegalArgumentException("Zlecenie musi mieć portfel");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Ilość musi być dodatnia");
+        }
+        return register(portfolio, symbol, type, threshold, quantity);
+    }
+
+    /**
+     * Rejestruje alert cenowy (bez transakcji - tylko zdarzenie dla słuchaczy).
+     *
+     * @return identyfikator alertu (do anulowania)
+     * @throws AssetNotFoundException gdy aktywa nie ma na rynku
+     * @throws IllegalArgumentException gdy rodzaj nie jest alertem albo próg jest niepoprawny
+     */
+    public long addAlert(String symbol, TriggerType type, double threshold) throws AssetNotFoundException {
+        if (!type.isAlert()) {
+            throw new IllegalArgumentException("Rodzaj " + type + " nie jest alertem");
+        }
+        return register(null, symbol, type, threshold, 0);
+    }
+
+    private long register(Portfolio portfolio, String symbol, TriggerType type, double threshold, int quantity)
+            throws AssetNotFoundException {
+        if (!(threshold > 0) || Double.isInfinite(threshold)) {
+            throw new IllegalArgumentException("Próg ceny musi być dodatni: " + threshold);
+        }
+        // Blokada rynku gwarantuje, że id nie zostanie zwolnione w trakcie rejestracji
+        synchronized (market) {
+            synchronized (this) {
+                int id = market.getAssetId(symbol);
+                if (id < 0) {
+                    throw new AssetNotFoundException("Aktywo " + symbol + " nie istnieje na rynku");
+                }
+                int handle = allocateHandle();
+                types[handle] = (byte) type.ordinal();
+                states[handle] = ACTIVE;
+                assetIds[handle] = id;
+                quantities[handle] = quantity;
+                thresholds[handle] = threshold;
+                portfolios[handle] = portfolio;
+                activeCount++;
+
+                ensureAssetCapacity(id + 1);
+                if (type.isAbove()) {
+                    if (aboveHeaps[id] == null) {
+                        aboveHeaps[id] = new PriceHeap();
+                    }
+                    aboveHeaps[id].push(threshold, handle);
+                    nextAbove[id] = aboveHeaps[id].peekKey();
+                } else {
+                    if (belowHeaps[id] == null) {
+                        belowHeaps[id] = new PriceHeap();
+                    }
+                    belowHeaps[id].push(-threshold, handle);
+                    nextBelow[id] = -belowHeaps[id].peekKey();
+                }
+                return idOf(handle);
+            }
+        }
+    }
+
+    /**
+     * Anuluje zlecenie lub alert.
+     *
+     * @return true gdy zlecenie było aktywne, false gdy już się wykonało lub było anulowane
+     */
+    public synchronized boolean cancel(long triggerId) {
+        int handle = (int) triggerId;
+        if (handle < 0 || handle >= handleCount || generations[handle] != (int) (triggerId >>> 32)
+                || states[handle] != ACTIVE) {
+            return false;
+        }
+        states[handle] = CANCELLED;
+        portfolios[handle] = null;
+        activeCount--;
+
+        int id = assetIds[handle];
+        boolean above = TriggerType.byIndex(types[handle]).isAbove();
+        aboveOrBelow(id, above).dead++;
+        compactIfMostlyDead(id, above);
+        return true;
+    }
+
+    /**
+     * Gdy w kopcu jest więcej martwych wpisów niż żywych - przebudowa zamiast
+     * zdejmowania ich po jednym.
+     */
+    private void compactIfMostlyDead(int id, boolean above) {
+        PriceHeap heap = aboveOrBelow(id, above);
+        if (heap.dead > heap.size() / 2) {
+            ensureScratch(heap.size());
+            int removed = heap.compact(h -> states[h] == ACTIVE, scratch);
+            for (int i = 0; i < removed; i++) {
+                freeHandle(scratch[i]);
+            }
+            refreshTop(id, above);
+        }
+    }
+
+    /**
+     * Sprawdza czy zlecenie czeka jeszcze na przekroczenie progu.
+     */
+    public synchronized boolean isActive(long triggerId) {
+        int handle = (int) triggerId;
+        return handle >= 0 && handle < handleCount && generations[handle] == (int) (triggerId >>> 32)
+                && states[handle] == ACTIVE;
+    }
+
+    /**
+     * Zwraca liczbę aktywnych zleceń i alertów.
+     */
+    public synchronized int getActiveCount() {
+        return activeCount;
+    }
+
+    @Override
+    public synchronized void onPricesUpdated(MarketSnapshot previous, MarketSnapshot current) {
+        int size = Math.min(current.size(), nextAbove.length);
+        if (prices.length < current.size()) {
+            prices = new double[Math.max(current.size(), prices.length * 2)];
+        }
+        current.copyPrices(prices);
+
+        // Faza 1: zdejmujemy z kopców zlecenia, których progi zostały przekroczone
+        // (porównania z NaN są fałszywe, więc id bez ceny są pomijane)
+        firedCount = 0;
+        for (int id = 0; id < size; id++) {
+            double price = prices[id];
+            if (price >= nextAbove[id]) {
+                popCrossed(id, true, price);
+            }
+            if (price <= nextBelow[id]) {
+                popCrossed(id, false, price);
+            }
+        }
+
+        // Faza 2: wykonujemy je (transakcje i słuchacze mogą już dodawać nowe zlecenia)
+        for (int i = 0; i < firedCount; i++) {
+            execute(fired[i], firedPrices[i], current.getSymbol(assetIds[fired[i]]));
+        }
+    }
+
+    /**
+     * Zdejmuje ze szczytu kopca wszystkie progi przekroczone przez cenę.
+     */
+    private void popCrossed(int id, boolean above, double price) {
+        PriceHeap heap = aboveOrBelow(id, above);
+        // W kopcu "poniżej" klucze mają przeciwny znak: próg >= cena <=> -próg <= -cena
+        double limit = above ? price : -price;
+        while (heap.size() > 0 && heap.peekKey() <= limit) {
+            int handle = heap.peekHandle();
+            heap.pop();
+            if (states[handle] == ACTIVE) {
+                states[handle] = FIRING;
+                activeCount--;
+                addFired(handle, price);
+            } else {
+                heap.dead--;
+                freeHandle(handle);
+            }
+        }
+        refreshTop(id, above);
+    }
+
+    private void execute(int handle, double price, String symbol) {
+        TriggerType type = TriggerType.byIndex(types[handle]);
+        Portfolio portfolio = portfolios[handle];
+        int quantity = quantities[handle];
+        String error = null;
+        try {
+            if (type.action == TriggerType.Action.BUY) {
+                portfolio.buy(symbol, quantity, market);
+            } else if (type.action == TriggerType.Action.SELL) {
+                portfolio.sell(symbol, quantity, market);
+            }
+        } catch (InsufficientFundsException | InsufficientAssetsException | AssetNotFoundException e) {
+            error = e.getMessage();
+        } catch (RuntimeException e) {
+            // Błąd jednego zlecenia nie może zostawić pozostałych zdjętych z kopców i niewykonanych
+            error = "Błąd wykonania zlecenia: " + e;
+        }
+        TriggerEvent event = new TriggerEvent(idOf(handle), type, symbol, thresholds[handle],
+                price, quantity, portfolio, error);
+        freeHandle(handle);
+        for (TriggerListener listener : listeners) {
+            listener.onTriggerFired(event);
+        }
+    }
+
+    /**
+     * Wycofanie aktywa anuluje wszystkie jego zlecenia - id może zaraz dostać inne aktywo.
+     */
+    @Override
+    public synchronized void onAssetDelisted(Asset asset, int id) {
+        if (id >= nextAbove.length) {
+            return;
+        }
+        for (int side = 0; side < 2; side++) {
+            boolean above = side == 0;
+            PriceHeap heap = aboveOrBelow(id, above);
+            if (heap == null || heap.size() == 0) {
+                continue;
+            }
+            ensureScratch(heap.size());
+            int count = heap.drain(scratch);
+            int[] handles = Arrays.copyOf(scratch, count);
+            refreshTop(id, above);
+            for (int handle : handles) {
+                if (states[handle] != ACTIVE) {
+                    freeHandle(handle);
+                    continue;
+                }
+                activeCount--;
+                TriggerEvent event = new TriggerEvent(idOf(handle), TriggerType.byIndex(types[handle]),
+                        asset.getSymbol(), thresholds[handle], Double.NaN, quantities[handle],
+                        portfolios[handle], "Aktywo " + asset.getSymbol() + " zostało wycofane z rynku");
+                freeHandle(handle);
+                for (TriggerListener listener : listeners) {
+                    listener.onTriggerFired(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Podział akcji przelicza progi zleceń i alertów w proporcji
+     * denominator/numerator (jak cenę) i ilości zleceń w proporcji
+     * numerator/denominator (z obcięciem, jak pozycje w portfelach). Mnożenie
+     * kluczy przez dodatnią stałą nie zmienia ich kolejności, więc kopce nie
+     * są przebudowywane. Zlecenie, którego ilość spadła po scaleniu akcji do
+     * zera, jest anulowane, a słuchacze dostają zdarzenie z powodem.
+     */
+    @Override
+    public synchronized void onAssetSplit(Asset asset, int id, int numerator, int denominator) {
+        if (id >= nextAbove.length) {
+            return;
+        }
+        double priceFactor = (double) denominator / numerator;
+        List<TriggerEvent> cancelled = null;
+        for (int side = 0; side < 2; side++) {
+            boolean above = side == 0;
+            PriceHeap heap = aboveOrBelow(id, above);
+            if (heap == null || heap.size() == 0) {
+                continue;
+            }
+            heap.scaleKeys(priceFactor);
+            ensureScratch(heap.size());
+            int count = heap.copyHandles(scratch);
+            for (int i = 0; i < count; i++) {
+                int handle = scratch[i];
+                if (states[handle] != ACTIVE) {
+                    continue;
+                }
+                thresholds[handle] *= priceFactor;
+                if (quantities[handle] == 0) {
+                    continue;   // alert - bez ilości
+                }
+                int quantity = Asset.splitQuantity(quantities[handle], numerator, denominator);
+                if (quantity > 0) {
+                    quantities[handle] = quantity;
+                    continue;
+                }
+                if (cancelled == null) {
+                    cancelled = new ArrayList<>();
+                }
+                cancelled.add(new TriggerEvent(idOf(handle), TriggerType.byIndex(types[handle]),
+                        asset.getSymbol(), thresholds[handle], Double.NaN, quantities[handle],
+                        portfolios[handle], "Po scaleniu akcji " + asset.getSymbol() + " ilość w zleceniu spadła do zera"));
+                states[handle] = CANCELLED;
+                portfolios[handle] = null;
+                activeCount--;
+                heap.dead++;
+            }
+            refreshTop(id, above);
+            compactIfMostlyDead(id, above);
+        }
+        if (cancelled != null) {
+            for (TriggerEvent event : cancelled) {
+                for (TriggerListener listener : listeners) {
+                    listener.onTriggerFired(event);
+                }
+            }
+        }
+    }
+
+    private PriceHeap aboveOrBelow(int id, boolean above) {
+        return above ? aboveHeaps[id] : belowHeaps[id];
+    }
+
+    private void refreshTop(int id, boolean above) {
+        PriceHeap heap = aboveOrBelow(id, above);
+        if (above) {
+            nextAbove[id] = heap.size() > 0 ? heap.peekKey() : Double.POSITIVE_INFINITY;
+        } else {
+            nextBelow[id] = heap.size() > 0 ? -heap.peekKey() : Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private long idOf(int handle) {
+        return ((long) generations[handle] << 32) | handle;
+    }
+
+    private int allocateHandle() {
+        if (freeCount > 0) {
+            return freeHandles[--freeCount];
+        }
+        if (handleCount == types.length) {
+            int capacity = Math.max(16, handleCount * 2);
+            types = Arrays.copyOf(types, capacity);
+            states = Arrays.copyOf(states, capacity);
+            assetIds = Arrays.copyOf(assetIds, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            generations = Arrays.copyOf(generations, capacity);
+            thresholds = Arrays.copyOf(thresholds, capacity);
+            portfolios = Arrays.copyOf(portfolios, capacity);
+        }
+        return handleCount++;
+    }
+
+    private void freeHandle(int handle) {
+        states[handle] = FREE;
+        portfolios[handle] = null;
+        generations[handle]++;
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        }
+        freeHandles[freeCount++] = handle;
+    }
+
+    private void addFired(int handle, double price) {
+        if (firedCount == fired.length) {
+            fired = Arrays.copyOf(fired, firedCount * 2);
+            firedPrices = Arrays.copyOf(firedPrices, firedCount * 2);
+        }
+        fired[firedCount] = handle;
+        firedPrices[firedCount] = price;
+        firedCount++;
+    }
+
+    private void ensureScratch(int size) {
+        if (scratch.length < size) {
+            scratch = new int[Math.max(size, scratch.length * 2)];
+        }
+    }
+
+    private void ensureAssetCapacity(int size) {
+        if (nextAbove.length < size) {
+            int oldCapacity = nextAbove.length;
+            int capacity = Math.max(size, oldCapacity * 2);
+            aboveHeaps = Arrays.copyOf(aboveHeaps, capacity);
+            belowHeaps = Arrays.copyOf(belowHeaps, capacity);
+            nextAbove = Arrays.copyOf(nextAbove, capacity);
+            nextBelow = Arrays.copyOf(nextBelow, capacity);
+            Arrays.fill(nextAbove, oldCapacity, capacity, Double.POSITIVE_INFINITY);
+            Arrays.fill(nextBelow, oldCapacity, capacity, Double.NEGATIVE_INFINITY);
+        }
+    }
+}
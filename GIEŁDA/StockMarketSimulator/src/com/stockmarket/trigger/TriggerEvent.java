@@ -0,0 +1,26 @@
+package com.stockmarket.trigger;
+
+import com.stockmarket.portfolio.Portfolio;
+
+/**
+ * Zdarzenie uruchomienia zlecenia warunkowego lub alertu.
+ *
+ * @param triggerId identyfikator nadany przy rejestracji
+ * @param type rodzaj zlecenia
+ * @param symbol symbol aktywa
+ * @param threshold próg ceny
+ * @param price cena rynkowa, która przekroczyła próg (NaN gdy aktywo wycofano)
+ * @param quantity ilość w zleceniu (0 dla alertu)
+ * @param portfolio portfel zlecenia (null dla alertu)
+ * @param error powód niewykonania transakcji lub null gdy się udała
+ */
+public record TriggerEvent(long triggerId, TriggerType type, String symbol, double threshold,
+                           double price, int quantity, Portfolio portfolio, String error) {
+
+    /**
+     * Sprawdza czy zlecenie zostało wykonane (alert jest zawsze "wykonany").
+     */
+    public boolean isExecuted() {
+        return error == null;
+    }
+}
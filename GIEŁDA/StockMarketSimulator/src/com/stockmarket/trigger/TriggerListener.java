@@ -0,0 +1,15 @@
+package com.stockmarket.trigger;
+
+/**
+ * Interfejs dla odbiorców uruchomionych zleceń warunkowych i alertów.
+ */
+public interface TriggerListener {
+
+    /**
+     * Wywoływana po uruchomieniu (albo anulowaniu przez wycofanie aktywa) jednego
+     * zlecenia - już po próbie transakcji.
+     *
+     * @param event szczegóły zdarzenia
+     */
+    void onTriggerFired(TriggerEvent event);
+}
@@ -0,0 +1,52 @@
+package com.stockmarket.trigger;
+
+/**
+ * Rodzaje zleceń warunkowych i alertów cenowych.
+ *
+ * Każdy rodzaj uruchamia się albo gdy cena wzrośnie do progu (above),
+ * albo gdy spadnie do progu - i wtedy kupuje, sprzedaje lub tylko powiadamia.
+ */
+public enum TriggerType {
+    /** Sprzedaj, gdy cena spadnie do progu (ograniczenie straty). */
+    STOP_LOSS(false, Action.SELL),
+    /** Sprzedaj, gdy cena wzrośnie do progu (realizacja zysku). */
+    TAKE_PROFIT(true, Action.SELL),
+    /** Kup, gdy cena wzrośnie do progu (wejście na wybiciu, zamknięcie krótkiej pozycji). */
+    BUY_STOP(true, Action.BUY),
+    /** Kup, gdy cena spadnie do progu (zlecenie z limitem). */
+    BUY_LIMIT(false, Action.BUY),
+    /** Powiadom, gdy cena wzrośnie do progu. */
+    ALERT_ABOVE(true, Action.ALERT),
+    /** Powiadom, gdy cena spadnie do progu. */
+    ALERT_BELOW(false, Action.ALERT);
+
+    enum Action { BUY, SELL, ALERT }
+
+    private static final TriggerType[] VALUES = values();
+
+    private final boolean above;
+    final Action action;
+
+    TriggerType(boolean above, Action action) {
+        this.above = above;
+        this.action = action;
+    }
+
+    /**
+     * Sprawdza czy warunek to cena &gt;= próg (w przeciwnym razie cena &lt;= próg).
+     */
+    public boolean isAbove() {
+        return above;
+    }
+
+    /**
+     * Sprawdza czy to tylko alert (bez transakcji).
+     */
+    public boolean isAlert() {
+        return action == Action.ALERT;
+    }
+
+    static TriggerType byIndex(int index) {
+        return VALUES[index];
+    }
+}
@@ -1,19 +1,20 @@
 package symulator;
 
-import java.util.Random;
-
 // Klasa reprezentująca akcję
 public class Akcja {
+    // Waluta, w której notowane są akcje i liczona jest gotówka portfela.
+    // Portfel ma jedno saldo gotówki, więc wszystkie akcje są notowane w PLN
+    public static final String WALUTA_BAZOWA = "PLN";
+
     private String symbol;
     private String nazwa;
-    private double cena;
-    private Random losowy;
+    // volatile - cenę zmienia wątek notowań, a czytają ją inne wątki
+    private volatile double cena;
 
     public Akcja(String symbol, String nazwa, double cena) {
         this.symbol = symbol;
         this.nazwa = nazwa;
         this.cena = cena;
-        this.losowy = new Random();
     }
 
     public String pobierzSymbol() {
@@ -28,8 +29,14 @@ public class Akcja {
         return cena;
     }
 
-    public void aktualizujCene() {
-        double zmianaProcent = (losowy.nextDouble() * 6) - 3;
+    public String pobierzWalute() {
+        return WALUTA_BAZOWA;
+    }
+
+    // Wywoływana tylko przez Gielda.aktualizujCeny(), jeden wątek naraz
+    // los - liczba z przedziału [0, 1) wylosowana przez giełdę dla tego ticka
+    public void aktualizujCene(double los) {
+        double zmianaProcent = (los * 6) - 3;
         double zmianaKwota = cena * (zmianaProcent / 100.0);
         cena += zmianaKwota;
         if (cena < 0.01) {
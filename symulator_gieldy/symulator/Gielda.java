@@ -1,12 +1,41 @@
 package symulator;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Gielda {
     private Map<String, Akcja> dostepneAkcje;
+    private Akcja[] kolejnoscAkcji;
+    private Map<String, Integer> indeksy;
+
+    // Ostatnia opublikowana migawka cen - czytana bez blokad
+    private volatile Notowania notowania;
+    private long numerTicka;
+
+    // Liczby losowe dla całego ticka losowane naraz, z odtwarzalnym ziarnem
+    private final Losowanie losowanie;
+    private double[] losy = new double[0];
+
+    // Wątek notowań i pomiar jego wydajności
+    private ScheduledExecutorService watekNotowan;
+    private final AtomicLong licznikTickow;
+    private volatile long startNotowanNanos;
+    private long bledyNotowan;
 
     public Gielda() {
-        dostepneAkcje = new HashMap<>();
+        this(System.nanoTime());
+    }
+
+    public Gielda(long ziarno) {
+        losowanie = new Losowanie(ziarno);
+        dostepneAkcje = new ConcurrentHashMap<>();
+        kolejnoscAkcji = new Akcja[0];
+        indeksy = Map.of();
+        licznikTickow = new AtomicLong();
         inicjalizujAkcje();
     }
 
@@ -18,8 +47,16 @@ public class Gielda {
         dodajAkcje(new Akcja("PZU", "PZU", 35.0));
     }
 
-    public void dodajAkcje(Akcja akcja) {
+    public synchronized void dodajAkcje(Akcja akcja) {
+        Akcja[] nowaKolejnosc = Arrays.copyOf(kolejnoscAkcji, kolejnoscAkcji.length + 1);
+        nowaKolejnosc[kolejnoscAkcji.length] = akcja;
+        Map<String, Integer> noweIndeksy = new HashMap<>(indeksy);
+        noweIndeksy.put(akcja.pobierzSymbol(), kolejnoscAkcji.length);
+
         dostepneAkcje.put(akcja.pobierzSymbol(), akcja);
+        kolejnoscAkcji = nowaKolejnosc;
+        indeksy = Collections.unmodifiableMap(noweIndeksy);
+        opublikujNotowania();
     }
 
     public Akcja pobierzAkcje(String symbol) {
@@ -30,17 +67,100 @@ public class Gielda {
         return new ArrayList<>(dostepneAkcje.values());
     }
 
-    public void aktualizujCeny() {
-        for (Akcja akcja : dostepneAkcje.values()) {
-            akcja.aktualizujCene();
+    public long pobierzZiarno() {
+        return losowanie.pobierzZiarno();
+    }
+
+    public Notowania pobierzNotowania() {
+        return notowania;
+    }
+
+    public synchronized void aktualizujCeny() {
+        if (losy.length < kolejnoscAkcji.length) {
+            losy = new double[kolejnoscAkcji.length];
+        }
+        Losowanie.wypelnij(losowanie.dlaTicka(numerTicka + 1), losy, kolejnoscAkcji.length);
+        for (int i = 0; i < kolejnoscAkcji.length; i++) {
+            kolejnoscAkcji[i].aktualizujCene(losy[i]);
+        }
+        numerTicka++;
+        opublikujNotowania();
+        licznikTickow.incrementAndGet();
+    }
+
+    // Wszystkie ceny z jednego ticka trafiają do jednej nowej migawki
+    private void opublikujNotowania() {
+        double[] ceny = new double[kolejnoscAkcji.length];
+        for (int i = 0; i < ceny.length; i++) {
+            ceny[i] = kolejnoscAkcji[i].pobierzCene();
+        }
+        notowania = new Notowania(numerTicka, kolejnoscAkcji, indeksy, ceny);
+    }
+
+    // Uruchamia aktualizację cen na osobnym wątku z podaną częstotliwością
+    public synchronized void uruchomNotowania(double tickiNaSekunde) {
+        if (tickiNaSekunde <= 0) {
+            throw new IllegalArgumentException("Częstotliwość notowań musi być dodatnia");
+        }
+        if (watekNotowan != null) {
+            return;
+        }
+        watekNotowan = Executors.newSingleThreadScheduledExecutor(zadanie -> {
+            Thread watek = new Thread(zadanie, "notowania-gieldy");
+            watek.setDaemon(true);
+            return watek;
+        });
+        long okresNanos = Math.max(1, (long) (1_000_000_000L / tickiNaSekunde));
+        licznikTickow.set(0);
+        startNotowanNanos = System.nanoTime();
+        watekNotowan.scheduleAtFixedRate(this::tickNotowan, okresNanos, okresNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Wyjątek z zadania cyklicznego po cichu wyłącza wszystkie kolejne wywołania
+    // i ceny stają w miejscu - dlatego go łapiemy, wypisujemy i notujemy dalej.
+    // Wypisujemy tylko 1., 2., 4., 8.... błąd, żeby powtarzający się błąd nie zalał konsoli
+    private void tickNotowan() {
+        try {
+            aktualizujCeny();
+        } catch (RuntimeException e) {
+            bledyNotowan++;
+            if (Long.bitCount(bledyNotowan) == 1) {
+                System.err.println("Błąd aktualizacji cen (błędów: " + bledyNotowan + "): " + e);
+            }
+        }
+    }
+
+    public synchronized void zatrzymajNotowania() {
+        if (watekNotowan != null) {
+            watekNotowan.shutdownNow();
+            watekNotowan = null;
+        }
+    }
+
+    // Średnia liczba ticków na sekundę od uruchomienia wątku notowań
+    public double pobierzTickiNaSekunde() {
+        long start = startNotowanNanos;
+        if (start == 0) {
+            return 0.0;
         }
+        double sekundy = (System.nanoTime() - start) / 1e9;
+        return sekundy > 0 ? licznikTickow.get() / sekundy : 0.0;
     }
 
-    public void wyswietlRynek() {
-        System.out.println("--- AKTUALNE NOTOWANIA ---");
-        System.out.println("Symbol	Nazwa		Cena");
-        for (Akcja akcja : dostepneAkcje.values()) {
-            System.out.printf("%-6s	%-12s	%.2f PLN%n", akcja.pobierzSymbol(), akcja.pobierzNazwe(), akcja.pobierzCene());
+    // Ekran notowań składamy w ramce i oddajemy rendererowi - bez printf dla każdej linii
+    public void wyswietlRynek(RendererKonsoli renderer) {
+        Notowania migawka = notowania;
+        RendererKonsoli.Ramka ramka = renderer.nowaRamka();
+        ramka.tekst("--- AKTUALNE NOTOWANIA ---").nowaLinia()
+             .tekst("Tick: ").liczba(migawka.pobierzNumerTicka())
+             .tekst(" (").liczba(Math.round(pobierzTickiNaSekunde())).tekst(" ticków/s)").nowaLinia()
+             .tekst("Symbol\tNazwa\t\tCena").nowaLinia();
+        for (int i = 0; i < migawka.liczbaAkcji(); i++) {
+            Akcja akcja = migawka.pobierzAkcje(i);
+            ramka.kolumna(akcja.pobierzSymbol(), 6).tekst("\t")
+                 .kolumna(akcja.pobierzNazwe(), 12).tekst("\t")
+                 .kwota(migawka.pobierzCene(i)).tekst(" ").tekst(akcja.pobierzWalute()).nowaLinia();
         }
+        renderer.wyslij(ramka);
     }
 }
@@ -0,0 +1,137 @@
+package symulator;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Generator obciążenia dla SerwerGieldy.
+// Otwiera wiele połączeń naraz, każde wysyła serię żądań (cena, kupno, sprzedaż, portfel)
+// i mierzy czas odpowiedzi. Na koniec wypisuje liczbę żądań na sekundę oraz opóźnienia p50/p99.
+//
+// Użycie: java symulator.KlientObciazeniowy [połączenia] [żądania na połączenie] [port]
+public class KlientObciazeniowy {
+    private static final String[] SYMBOLE = {"CDR", "PKO", "KGH", "PKN", "PZU"};
+
+    public static void main(String[] args) throws Exception {
+        int polaczenia = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int zadaniaNaPolaczenie = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : ProtokolGieldy.DOMYSLNY_PORT;
+
+        long[][] opoznienia = new long[polaczenia][];
+        AtomicInteger bledy = new AtomicInteger();
+        CountDownLatch polaczeni = new CountDownLatch(polaczenia);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch koniec = new CountDownLatch(polaczenia);
+
+        ExecutorService wykonawca = ProtokolGieldy.utworzWykonawce();
+        for (int i = 0; i < polaczenia; i++) {
+            int numer = i;
+            wykonawca.execute(() -> {
+                try (Socket gniazdo = new Socket(InetAddress.getLoopbackAddress(), port);
+                     DataInputStream we = new DataInputStream(new BufferedInputStream(gniazdo.getInputStream()));
+                     DataOutputStream wy = new DataOutputStream(new BufferedOutputStream(gniazdo.getOutputStream()))) {
+                    gniazdo.setTcpNoDelay(true);
+                    polaczeni.countDown();
+                    start.await();
+                    opoznienia[numer] = wykonajSerie(we, wy, numer, zadaniaNaPolaczenie);
+                    wy.writeByte(ProtokolGieldy.ROZLACZ);
+                    wy.flush();
+                } catch (IOException | InterruptedException e) {
+                    bledy.incrementAndGet();
+                    polaczeni.countDown();
+                } finally {
+                    koniec.countDown();
+                }
+            });
+        }
+
+        // Pomiar zaczynamy dopiero gdy wszystkie połączenia są otwarte
+        polaczeni.await();
+        long poczatek = System.nanoTime();
+        start.countDown();
+        koniec.await();
+        long czas = System.nanoTime() - poczatek;
+        wykonawca.shutdown();
+
+        wypiszWyniki(opoznienia, czas, bledy.get());
+    }
+
+    private static long[] wykonajSerie(DataInputStream we, DataOutputStream wy, int numer, int liczba) throws IOException {
+        long[] opoznienia = new long[liczba];
+        for (int i = 0; i < liczba; i++) {
+            String symbol = SYMBOLE[(numer + i) % SYMBOLE.length];
+            long t0 = System.nanoTime();
+            switch (i % 4) {
+                case 0 -> {
+                    wy.writeByte(ProtokolGieldy.CENA);
+                    wy.writeUTF(symbol);
+                }
+                case 1 -> {
+                    wy.writeByte(ProtokolGieldy.KUP);
+                    wy.writeUTF(symbol);
+                    wy.writeInt(1);
+                }
+                case 2 -> {
+                    wy.writeByte(ProtokolGieldy.SPRZEDAJ);
+                    wy.writeUTF(SYMBOLE[(numer + i - 1) % SYMBOLE.length]);
+                    wy.writeInt(1);
+                }
+                default -> wy.writeByte(ProtokolGieldy.PORTFEL);
+            }
+            wy.flush();
+            przeczytajOdpowiedz(we, i % 4);
+            opoznienia[i] = System.nanoTime() - t0;
+        }
+        return opoznienia;
+    }
+
+    private static void przeczytajOdpowiedz(DataInputStream we, int rodzaj) throws IOException {
+        if (we.readByte() != ProtokolGieldy.STATUS_OK) {
+            we.readUTF();
+            return;
+        }
+        if (rodzaj == 3) {
+            we.readDouble();
+            we.readDouble();
+            int n = we.readInt();
+            for (int j = 0; j < n; j++) {
+                we.readUTF();
+                we.readInt();
+            }
+        } else {
+            we.readDouble();
+        }
+    }
+
+    private static void wypiszWyniki(long[][] opoznienia, long czas, int bledy) {
+        int razem = 0;
+        for (long[] seria : opoznienia) {
+            razem += seria != null ? seria.length : 0;
+        }
+        long[] wszystkie = new long[razem];
+        int pozycja = 0;
+        for (long[] seria : opoznienia) {
+            if (seria != null) {
+                System.arraycopy(seria, 0, wszystkie, pozycja, seria.length);
+                pozycja += seria.length;
+            }
+        }
+        Arrays.sort(wszystkie);
+
+        System.out.printf("Połączenia: %d (błędy: %d)%n", opoznienia.length, bledy);
+        System.out.printf("Żądania: %d w %.2f s = %.0f żądań/s%n", razem, czas / 1e9, razem / (czas / 1e9));
+        if (razem > 0) {
+            System.out.printf("Opóźnienie p50: %.1f us, p99: %.1f us, max: %.1f us%n",
+                    percentyl(wszystkie, 0.50) / 1e3, percentyl(wszystkie, 0.99) / 1e3, wszystkie[razem - 1] / 1e3);
+        }
+    }
+
+    private static long percentyl(long[] posortowane, double p) {
+        int indeks = (int) Math.ceil(p * posortowane.length) - 1;
+        return posortowane[Math.max(0, indeks)];
+    }
+}
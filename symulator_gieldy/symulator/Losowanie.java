@@ -0,0 +1,41 @@
+package symulator;
+
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+// Wspólne źródło liczb losowych dla notowań.
+// Szybki, niesynchronizowany generator L64X128MixRandom; każdy tick dostaje
+// własny generator wyliczony z ziarna i numeru ticka, więc ten sam seed
+// daje zawsze ten sam przebieg cen.
+public final class Losowanie {
+    private static final RandomGeneratorFactory<RandomGenerator> FABRYKA = RandomGeneratorFactory.of("L64X128MixRandom");
+
+    private final long ziarno;
+
+    public Losowanie(long ziarno) {
+        this.ziarno = ziarno;
+    }
+
+    public long pobierzZiarno() {
+        return ziarno;
+    }
+
+    public RandomGenerator dlaTicka(long numerTicka) {
+        return FABRYKA.create(wymieszaj(ziarno, numerTicka));
+    }
+
+    // Wypełnia pierwsze n elementów liczbami z przedziału [0, 1)
+    public static void wypelnij(RandomGenerator generator, double[] cel, int n) {
+        for (int i = 0; i < n; i++) {
+            cel[i] = generator.nextDouble();
+        }
+    }
+
+    // SplitMix64 - bliskie wartości wejściowe dają odległe ziarna
+    private static long wymieszaj(long a, long b) {
+        long z = a + 0x9E3779B97F4A7C15L * (b + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,54 @@
+package symulator;
+
+import java.util.Map;
+
+// Niezmienna migawka cen wszystkich akcji z jednego ticka.
+// Gielda publikuje nową migawkę po każdej aktualizacji cen, więc menu
+// i portfele czytają spójne ceny bez blokowania wątku notowań.
+public final class Notowania {
+    private final long numerTicka;
+    private final Akcja[] akcje;
+    private final Map<String, Integer> indeksy;
+    private final double[] ceny;
+
+    Notowania(long numerTicka, Akcja[] akcje, Map<String, Integer> indeksy, double[] ceny) {
+        this.numerTicka = numerTicka;
+        this.akcje = akcje;
+        this.indeksy = indeksy;
+        this.ceny = ceny;
+    }
+
+    public long pobierzNumerTicka() {
+        return numerTicka;
+    }
+
+    public int liczbaAkcji() {
+        return ceny.length;
+    }
+
+    public Akcja pobierzAkcje(int indeks) {
+        return akcje[indeks];
+    }
+
+    public double pobierzCene(int indeks) {
+        return ceny[indeks];
+    }
+
+    // Czy obie migawki mają te same akcje pod tymi samymi indeksami.
+    // Giełda podmienia tablicę akcji tylko przy zmianie listy, więc wystarczy porównać referencje
+    boolean tenSamUklad(Notowania inne) {
+        return inne != null && akcje == inne.akcje;
+    }
+
+    // Zwraca indeks akcji w migawce albo -1
+    public int indeksAkcji(String symbol) {
+        Integer indeks = indeksy.get(symbol);
+        return indeks != null ? indeks : -1;
+    }
+
+    // Zwraca cenę akcji albo Double.NaN gdy nie ma jej w migawce
+    public double pobierzCene(String symbol) {
+        int indeks = indeksAkcji(symbol);
+        return indeks >= 0 ? ceny[indeks] : Double.NaN;
+    }
+}
@@ -8,6 +8,9 @@ public class Portfel implements Serializable {
     private static final long serialVersionUID = 1L;
     private double gotowka;
     private Map<String, Integer> akcje;
+    // Licznik zmian - rośnie przy każdej transakcji, po nim WycenaPortfeli poznaje
+    // nieaktualne pozycje. Nie zapisujemy go do pliku
+    private transient volatile long wersja;
 
     public Portfel(double poczatkowaGotowka) {
         this.gotowka = poczatkowaGotowka;
@@ -15,30 +18,49 @@ public class Portfel implements Serializable {
     }
 
     public boolean kupAkcje(Akcja akcja, int ilosc) {
-        if (ilosc <= 0) {
-            System.out.println("Ilość musi być większa od zera.");
+        String blad = kup(akcja, ilosc);
+        if (blad != null) {
+            System.out.println(blad);
             return false;
         }
+        System.out.println("Kupiono " + ilosc + " szt. " + akcja.pobierzSymbol());
+        return true;
+    }
+
+    public boolean sprzedajAkcje(Akcja akcja, int ilosc) {
+        String blad = sprzedaj(akcja, ilosc);
+        if (blad != null) {
+            System.out.println(blad);
+            return false;
+        }
+        System.out.println("Sprzedano " + ilosc + " szt. " + akcja.pobierzSymbol());
+        return true;
+    }
+
+    // Kupno bez wypisywania komunikatów - zwraca null albo opis błędu.
+    // synchronized - WycenaPortfeli kopiuje pozycje z innego wątku
+    synchronized String kup(Akcja akcja, int ilosc) {
+        if (ilosc <= 0) {
+            return "Ilość musi być większa od zera.";
+        }
         double koszt = akcja.pobierzCene() * ilosc;
         if (koszt > gotowka) {
-            System.out.println("Za mało gotówki.");
-            return false;
+            return "Za mało gotówki.";
         }
         gotowka -= koszt;
         akcje.put(akcja.pobierzSymbol(), akcje.getOrDefault(akcja.pobierzSymbol(), 0) + ilosc);
-        System.out.println("Kupiono " + ilosc + " szt. " + akcja.pobierzSymbol());
-        return true;
+        wersja++;
+        return null;
     }
 
-    public boolean sprzedajAkcje(Akcja akcja, int ilosc) {
+    // Sprzedaż bez wypisywania komunikatów - zwraca null albo opis błędu
+    synchronized String sprzedaj(Akcja akcja, int ilosc) {
         if (ilosc <= 0) {
-            System.out.println("Ilość musi być większa od zera.");
-            return false;
+            return "Ilość musi być większa od zera.";
         }
         String symbol = akcja.pobierzSymbol();
         if (!akcje.containsKey(symbol) || akcje.get(symbol) < ilosc) {
-            System.out.println("Brak wystarczającej ilości akcji.");
-            return false;
+            return "Brak wystarczającej ilości akcji.";
         }
         double wartosc = akcja.pobierzCene() * ilosc;
         gotowka += wartosc;
@@ -48,24 +70,31 @@ public class Portfel implements Serializable {
         } else {
             akcje.put(symbol, nowaIlosc);
         }
-        System.out.println("Sprzedano " + ilosc + " szt. " + symbol);
-        return true;
+        wersja++;
+        return null;
     }
 
-    public double pobierzGotowke() {
+    public synchronized double pobierzGotowke() {
         return gotowka;
     }
 
+    // Numer wersji pozycji i gotówki - zmienia się po każdym kupnie i sprzedaży
+    public long pobierzWersje() {
+        return wersja;
+    }
+
     public Map<String, Integer> pobierzAkcje() {
         return akcje;
     }
 
+    // Wycena po cenach z jednej migawki notowań - spójna nawet gdy ceny właśnie się zmieniają
     public double obliczWartoscAkcji(Gielda gielda) {
+        Notowania notowania = gielda.pobierzNotowania();
         double wartosc = 0.0;
         for (var wpis : akcje.entrySet()) {
-            Akcja akcja = gielda.pobierzAkcje(wpis.getKey());
-            if (akcja != null) {
-                wartosc += akcja.pobierzCene() * wpis.getValue();
+            double cena = notowania.pobierzCene(wpis.getKey());
+            if (!Double.isNaN(cena)) {
+                wartosc += cena * wpis.getValue();
             }
         }
         return wartosc;
@@ -0,0 +1,35 @@
+package symulator;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Stałe binarnego protokołu serwera giełdy.
+//
+// Żądanie:   [bajt kodu operacji][dane operacji]
+// Odpowiedź: [bajt statusu][dane odpowiedzi] albo [STATUS_BLAD][komunikat UTF]
+// Liczby zapisywane są przez DataOutputStream (big-endian), symbole przez writeUTF.
+public final class ProtokolGieldy {
+    public static final int DOMYSLNY_PORT = 7070;
+
+    public static final byte ROZLACZ = 0;
+    public static final byte NOTOWANIA = 1;   // -> int n, n x (UTF symbol, double cena)
+    public static final byte CENA = 2;        // UTF symbol -> double cena
+    public static final byte KUP = 3;         // UTF symbol, int ilość -> double gotówka
+    public static final byte SPRZEDAJ = 4;    // UTF symbol, int ilość -> double gotówka
+    public static final byte PORTFEL = 5;     // -> double gotówka, double wartość akcji, int n, n x (UTF symbol, int ilość)
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_BLAD = 1;
+
+    private ProtokolGieldy() {
+    }
+
+    // Wątki wirtualne (Java 21+) gdy są dostępne, w przeciwnym razie zwykła pula wątków
+    static ExecutorService utworzWykonawce() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
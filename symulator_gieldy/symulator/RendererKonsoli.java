@@ -0,0 +1,198 @@
+package symulator;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Buforowane wypisywanie na konsolę - cały ekran składamy w pamięci (Ramka),
+// a wypisuje go osobny wątek jednym zapisem, bez String.format dla każdej linii.
+// Tekst kodujemy tak samo jak System.out, do jednego bufora wielokrotnego użytku.
+public class RendererKonsoli {
+    private static final Ramka KONIEC = new Ramka();
+
+    private final OutputStream wyjscie;
+    private final ConcurrentLinkedQueue<Ramka> wolneRamki;
+    private final BlockingQueue<Ramka> doWypisania;
+    private final Thread watekWypisywania;
+    private final CharsetEncoder koder;
+    private ByteBuffer bajty = ByteBuffer.allocate(16 * 1024);
+
+    private final Object blokada = new Object();
+    private long wyslane;
+    private long wypisane;
+
+    public RendererKonsoli() {
+        wyjscie = new FileOutputStream(FileDescriptor.out);
+        // Polskie litery, których konsola nie obsługuje, zastępujemy zamiast przerywać zapis
+        koder = kodowanieKonsoli().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        wolneRamki = new ConcurrentLinkedQueue<>();
+        doWypisania = new LinkedBlockingQueue<>();
+        watekWypisywania = new Thread(this::petlaWypisywania, "renderer-konsoli");
+        watekWypisywania.setDaemon(true);
+        watekWypisywania.start();
+    }
+
+    // Kodowanie System.out: stdout.encoding (Java 19+), sun.stdout.encoding (starsze,
+    // tylko dla terminala), a w ostateczności domyślne kodowanie systemu
+    static Charset kodowanieKonsoli() {
+        for (String wlasciwosc : new String[] {"stdout.encoding", "sun.stdout.encoding"}) {
+            String nazwa = System.getProperty(wlasciwosc);
+            if (nazwa != null) {
+                try {
+                    return Charset.forName(nazwa);
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                    // spróbuj następnej właściwości
+                }
+            }
+        }
+        return Charset.defaultCharset();
+    }
+
+    // Pusta ramka - nowa powstaje tylko gdy wszystkie czekają jeszcze na wypisanie
+    public Ramka nowaRamka() {
+        Ramka ramka = wolneRamki.poll();
+        return ramka != null ? ramka : new Ramka();
+    }
+
+    // Nie blokuje - po wysłaniu ramki nie wolno jej dalej używać
+    public void wyslij(Ramka ramka) {
+        synchronized (blokada) {
+            wyslane++;
+        }
+        doWypisania.add(ramka);
+    }
+
+    // Czeka aż wszystko zostanie wypisane (np. przed pytaniem użytkownika przez System.out)
+    public void oproznij() {
+        synchronized (blokada) {
+            while (wypisane < wyslane) {
+                try {
+                    blokada.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public void zamknij() {
+        oproznij();
+        doWypisania.add(KONIEC);
+        try {
+            watekWypisywania.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void petlaWypisywania() {
+        while (true) {
+            Ramka ramka;
+            try {
+                ramka = doWypisania.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (ramka == KONIEC) {
+                return;
+            }
+            zakoduj(ramka.tekst);
+            try {
+                System.out.flush();
+                wyjscie.write(bajty.array(), 0, bajty.position());
+                wyjscie.flush();
+            } catch (IOException e) {
+                System.err.println("Błąd zapisu na konsolę: " + e.getMessage());
+            }
+            ramka.tekst.setLength(0);
+            wolneRamki.add(ramka);
+            synchronized (blokada) {
+                wypisane++;
+                blokada.notifyAll();
+            }
+        }
+    }
+
+    // Koduje ramkę do bufora bajty bez tworzenia Stringa i nowej tablicy przy każdym ekranie
+    private void zakoduj(StringBuilder tekst) {
+        int potrzeba = (int) (tekst.length() * koder.maxBytesPerChar());
+        if (bajty.capacity() < potrzeba) {
+            bajty = ByteBuffer.allocate(potrzeba);
+        }
+        bajty.clear();
+        koder.reset();
+        koder.encode(CharBuffer.wrap(tekst), bajty, true);
+        koder.flush(bajty);
+    }
+
+    // Jeden ekran tekstu - metody zwracają this, więc można je łączyć
+    public static class Ramka {
+        private final StringBuilder tekst = new StringBuilder(1024);
+
+        private Ramka() {
+        }
+
+        public Ramka tekst(String s) {
+            tekst.append(s);
+            return this;
+        }
+
+        public Ramka nowaLinia() {
+            tekst.append('\n');
+            return this;
+        }
+
+        // Tekst dopełniony spacjami do szerokości (jak %-Ns)
+        public Ramka kolumna(String s, int szerokosc) {
+            tekst.append(s);
+            for (int i = s.length(); i < szerokosc; i++) {
+                tekst.append(' ');
+            }
+            return this;
+        }
+
+        public Ramka liczba(long wartosc) {
+            tekst.append(wartosc);
+            return this;
+        }
+
+        // Kwota z dwoma miejscami po przecinku - dokładnie jak String.format(Locale.ROOT, "%.2f").
+        // printf zaokrągla połówkę w górę w zapisie dziesiętnym (1.005 -> 1.01), a 1.005 * 100
+        // w double to 100.49999..., więc kwoty o włos od połówki grosza liczy String.format.
+        // Minus zostaje też przy zerze (-0.001 -> -0.00), tak jak w printf.
+        public Ramka kwota(double wartosc) {
+            double wGroszach = Math.abs(wartosc) * 100;
+            if (Double.isNaN(wartosc) || Math.abs(wartosc) >= 9.0e15
+                    || Math.abs(wGroszach - Math.floor(wGroszach) - 0.5) <= wGroszach * 1e-15 + 1e-9) {
+                tekst.append(String.format(Locale.ROOT, "%.2f", wartosc));
+                return this;
+            }
+            long grosze = Math.round(wGroszach);
+            if (Double.doubleToRawLongBits(wartosc) < 0) {   // bit znaku - także dla -0.0
+                tekst.append('-');
+            }
+            tekst.append(grosze / 100).append('.');
+            long reszta = grosze % 100;
+            if (reszta < 10) {
+                tekst.append('0');
+            }
+            tekst.append(reszta);
+            return this;
+        }
+    }
+}
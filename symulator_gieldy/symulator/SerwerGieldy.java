@@ -0,0 +1,195 @@
+package symulator;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Serwer giełdy - wielu klientów jednocześnie handluje na jednej Gieldzie.
+// Każde połączenie obsługuje osobny wątek i ma własny Portfel.
+// Portfele połączonych klientów są zarejestrowane w WycenaPortfeli,
+// więc wszystkie konta da się wycenić naraz jednym przebiegiem po tablicach.
+public class SerwerGieldy {
+    private static final double GOTOWKA_STARTOWA = 10000;
+
+    private final Gielda gielda;
+    private final int port;
+    private final AtomicLong liczbaZadan;
+    private final WycenaPortfeli wycena;
+    private volatile boolean dziala;
+    private ServerSocket gniazdo;
+
+    public SerwerGieldy(Gielda gielda, int port) {
+        this.gielda = gielda;
+        this.port = port;
+        this.liczbaZadan = new AtomicLong();
+        this.wycena = new WycenaPortfeli(gielda);
+    }
+
+    public void uruchom() throws IOException {
+        // Serwer nasłuchuje tylko lokalnie
+        gniazdo = new ServerSocket(port, 10000, InetAddress.getLoopbackAddress());
+        dziala = true;
+        System.out.println("Serwer giełdy nasłuchuje na porcie " + gniazdo.getLocalPort());
+
+        ExecutorService wykonawca = ProtokolGieldy.utworzWykonawce();
+        try {
+            while (dziala) {
+                Socket klient;
+                try {
+                    klient = gniazdo.accept();
+                } catch (IOException e) {
+                    if (dziala) {
+                        System.out.println("Błąd połączenia: " + e.getMessage());
+                    }
+                    continue;
+                }
+                wykonawca.execute(() -> obsluzKlienta(klient));
+            }
+        } finally {
+            wykonawca.shutdown();
+        }
+    }
+
+    public void zatrzymaj() throws IOException {
+        dziala = false;
+        if (gniazdo != null) {
+            gniazdo.close();
+        }
+    }
+
+    public long pobierzLiczbeZadan() {
+        return liczbaZadan.get();
+    }
+
+    // Wartość wszystkich połączonych kont po bieżących cenach
+    public double[] wycenKonta() {
+        return wycena.wycenWszystkie();
+    }
+
+    // Jedna linijka podsumowania: liczba kont, ich łączna wartość i najlepsze konto
+    public String podsumowanie() {
+        double[] wartosci = wycenKonta();
+        double suma = 0;
+        double najlepsze = 0;
+        for (double wartosc : wartosci) {
+            suma += wartosc;
+            najlepsze = Math.max(najlepsze, wartosc);
+        }
+        return String.format("Konta: %d, łączna wartość: %.2f PLN, najlepsze konto: %.2f PLN, żądania: %d",
+                wartosci.length, suma, najlepsze, liczbaZadan.get());
+    }
+
+    private void obsluzKlienta(Socket klient) {
+        Portfel portfel = new Portfel(GOTOWKA_STARTOWA);
+        wycena.dodajKonto(portfel);
+        try (klient;
+             DataInputStream we = new DataInputStream(new BufferedInputStream(klient.getInputStream()));
+             DataOutputStream wy = new DataOutputStream(new BufferedOutputStream(klient.getOutputStream()))) {
+            klient.setTcpNoDelay(true);
+            while (true) {
+                byte operacja = we.readByte();
+                if (operacja == ProtokolGieldy.ROZLACZ) {
+                    return;
+                }
+                obsluzZadanie(operacja, we, wy, portfel);
+                wy.flush();
+                liczbaZadan.incrementAndGet();
+            }
+        } catch (EOFException e) {
+            // klient zamknął połączenie
+        } catch (IOException e) {
+            System.out.println("Błąd klienta: " + e.getMessage());
+        } finally {
+            wycena.usunKonto(portfel);
+        }
+    }
+
+    private void obsluzZadanie(byte operacja, DataInputStream we, DataOutputStream wy, Portfel portfel) throws IOException {
+        switch (operacja) {
+            case ProtokolGieldy.NOTOWANIA -> {
+                Notowania notowania = gielda.pobierzNotowania();
+                wy.writeByte(ProtokolGieldy.STATUS_OK);
+                wy.writeInt(notowania.liczbaAkcji());
+                for (int i = 0; i < notowania.liczbaAkcji(); i++) {
+                    wy.writeUTF(notowania.pobierzAkcje(i).pobierzSymbol());
+                    wy.writeDouble(notowania.pobierzCene(i));
+                }
+            }
+            case ProtokolGieldy.CENA -> {
+                Akcja akcja = gielda.pobierzAkcje(we.readUTF());
+                if (akcja == null) {
+                    wyslijBlad(wy, "Nie znaleziono akcji.");
+                } else {
+                    wy.writeByte(ProtokolGieldy.STATUS_OK);
+                    wy.writeDouble(akcja.pobierzCene());
+                }
+            }
+            case ProtokolGieldy.KUP, ProtokolGieldy.SPRZEDAJ -> {
+                Akcja akcja = gielda.pobierzAkcje(we.readUTF());
+                int ilosc = we.readInt();
+                String blad;
+                if (akcja == null) {
+                    blad = "Nie znaleziono akcji.";
+                } else if (operacja == ProtokolGieldy.KUP) {
+                    blad = portfel.kup(akcja, ilosc);
+                } else {
+                    blad = portfel.sprzedaj(akcja, ilosc);
+                }
+                if (blad != null) {
+                    wyslijBlad(wy, blad);
+                } else {
+                    wy.writeByte(ProtokolGieldy.STATUS_OK);
+                    wy.writeDouble(portfel.pobierzGotowke());
+                }
+            }
+            case ProtokolGieldy.PORTFEL -> {
+                wy.writeByte(ProtokolGieldy.STATUS_OK);
+                wy.writeDouble(portfel.pobierzGotowke());
+                wy.writeDouble(portfel.obliczWartoscAkcji(gielda));
+                wy.writeInt(portfel.pobierzAkcje().size());
+                for (Map.Entry<String, Integer> wpis : portfel.pobierzAkcje().entrySet()) {
+                    wy.writeUTF(wpis.getKey());
+                    wy.writeInt(wpis.getValue());
+                }
+            }
+            default -> throw new IOException("Nieznana operacja: " + operacja);
+        }
+    }
+
+    private void wyslijBlad(DataOutputStream wy, String komunikat) throws IOException {
+        wy.writeByte(ProtokolGieldy.STATUS_BLAD);
+        wy.writeUTF(komunikat);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : ProtokolGieldy.DOMYSLNY_PORT;
+        double tickiNaSekunde = args.length > 1 ? Double.parseDouble(args[1]) : 100;
+        Gielda gielda = new Gielda();
+        gielda.uruchomNotowania(tickiNaSekunde);
+        SerwerGieldy serwer = new SerwerGieldy(gielda, port);
+
+        // Co 10 sekund podsumowanie wszystkich kont - wątek demona nie blokuje zamknięcia programu
+        ScheduledExecutorService raporty = Executors.newSingleThreadScheduledExecutor(zadanie -> {
+            Thread watek = new Thread(zadanie, "raporty-serwera");
+            watek.setDaemon(true);
+            return watek;
+        });
+        raporty.scheduleAtFixedRate(() -> {
+            // Wyjątek zatrzymałby kolejne raporty, więc tylko go wypisujemy
+            try {
+                System.out.println(serwer.podsumowanie());
+            } catch (RuntimeException e) {
+                System.out.println("Błąd wyceny kont: " + e);
+            }
+        }, 10, 10, TimeUnit.SECONDS);
+
+        serwer.uruchom();
+    }
+}
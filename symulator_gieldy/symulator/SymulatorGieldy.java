@@ -4,26 +4,36 @@ import java.util.Scanner;
 import java.util.Map;
 
 public class SymulatorGieldy {
+    // Częstotliwość notowań można zmienić: java -Dgielda.tickiNaSekunde=1000 symulator.SymulatorGieldy
+    private static final double TICKI_NA_SEKUNDE = Double.parseDouble(System.getProperty("gielda.tickiNaSekunde", "1"));
+
     private Gielda gielda;
     private Portfel portfel;
     private Scanner scanner;
+    private RendererKonsoli renderer;
     private boolean dziala;
 
     public SymulatorGieldy() {
-        gielda = new Gielda();
+        // Ziarno losowości można podać, żeby powtórzyć przebieg: -Dgielda.ziarno=42
+        String ziarno = System.getProperty("gielda.ziarno");
+        gielda = ziarno != null ? new Gielda(Long.parseLong(ziarno)) : new Gielda();
         portfel = ZarzadcaPlikow.wczytajPortfel();
         scanner = new Scanner(System.in);
+        renderer = new RendererKonsoli();
         dziala = true;
     }
 
     public void uruchom() {
         System.out.println("--- SYMULATOR GIEŁDY ---");
+        // Ceny zmieniają się na osobnym wątku, niezależnie od tempa pisania w menu
+        gielda.uruchomNotowania(TICKI_NA_SEKUNDE);
 
         while (dziala) {
+            // Menu pisze przez System.out - najpierw czekamy aż renderer wypisze poprzedni ekran
+            renderer.oproznij();
             wyswietlMenu();
             int wybor = pobierzWybor();
             wykonajWybor(wybor);
-            gielda.aktualizujCeny();
         }
     }
 
@@ -48,7 +58,7 @@ public class SymulatorGieldy {
 
     private void wykonajWybor(int wybor) {
         switch (wybor) {
-            case 1 -> gielda.wyswietlRynek();
+            case 1 -> gielda.wyswietlRynek(renderer);
             case 2 -> wyswietlPortfel();
             case 3 -> kupAkcje();
             case 4 -> sprzedajAkcje();
@@ -59,17 +69,24 @@ public class SymulatorGieldy {
     }
 
     private void wyswietlPortfel() {
-        System.out.printf("Gotówka: %.2f PLN%n", portfel.pobierzGotowke());
+        Notowania notowania = gielda.pobierzNotowania();
+        RendererKonsoli.Ramka ramka = renderer.nowaRamka();
+        ramka.tekst("Gotówka: ").kwota(portfel.pobierzGotowke()).tekst(" ").tekst(Akcja.WALUTA_BAZOWA).nowaLinia();
         for (Map.Entry<String, Integer> wpis : portfel.pobierzAkcje().entrySet()) {
-            Akcja akcja = gielda.pobierzAkcje(wpis.getKey());
-            if (akcja != null) {
-                System.out.printf("%s (%s): %d szt. po %.2f PLN%n", akcja.pobierzSymbol(), akcja.pobierzNazwe(), wpis.getValue(), akcja.pobierzCene());
+            int indeks = notowania.indeksAkcji(wpis.getKey());
+            if (indeks >= 0) {
+                Akcja akcja = notowania.pobierzAkcje(indeks);
+                ramka.tekst(akcja.pobierzSymbol()).tekst(" (").tekst(akcja.pobierzNazwe()).tekst("): ")
+                     .liczba(wpis.getValue()).tekst(" szt. po ").kwota(notowania.pobierzCene(indeks))
+                     .tekst(" ").tekst(akcja.pobierzWalute()).nowaLinia();
             }
         }
+        renderer.wyslij(ramka);
     }
 
     private void kupAkcje() {
-        gielda.wyswietlRynek();
+        gielda.wyswietlRynek(renderer);
+        renderer.oproznij();
         System.out.print("Symbol akcji do zakupu: ");
         String symbol = scanner.nextLine().toUpperCase();
         Akcja akcja = gielda.pobierzAkcje(symbol);
@@ -84,6 +101,7 @@ public class SymulatorGieldy {
 
     private void sprzedajAkcje() {
         wyswietlPortfel();
+        renderer.oproznij();
         System.out.print("Symbol akcji do sprzedaży: ");
         String symbol = scanner.nextLine().toUpperCase();
         Akcja akcja = gielda.pobierzAkcje(symbol);
@@ -97,8 +115,12 @@ public class SymulatorGieldy {
     }
 
     private void zakoncz() {
+        gielda.zatrzymajNotowania();
+        System.out.printf("Notowania: %d ticków, średnio %.0f ticków/s%n",
+                gielda.pobierzNotowania().pobierzNumerTicka(), gielda.pobierzTickiNaSekunde());
         ZarzadcaPlikow.zapiszPortfel(portfel);
         dziala = false;
+        renderer.zamknij();
         System.out.println("Dziękujemy za grę!");
     }
 
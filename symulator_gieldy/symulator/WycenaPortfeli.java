@@ -0,0 +1,197 @@
+package symulator;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// Hurtowa wycena wielu portfeli naraz.
+//
+// Pozycje wszystkich kont trzymamy w dwóch płaskich tablicach typów prostych
+// (indeks akcji w notowaniach i ilość), a konto i wskazuje swój wiersz przez
+// poczatki[i] i dlugosci[i]. Wycena to wtedy proste przejście po tablicach
+// z jednym wektorem cen z migawki - bez Integer, bez HashMap i bez szukania symboli.
+// Konta są dzielone na bloki wyceniane równolegle.
+//
+// Tablice odświeżają się same i tylko tam, gdzie trzeba: przy każdej wycenie
+// porównujemy wersję każdego portfela (Portfel.pobierzWersje()) z wersją z jego
+// ostatniego przepisania - to jeden odczyt liczby na konto. Przepisujemy tylko
+// wiersze zmienionych kont. Wiersz ma zapas miejsca; gdy nowe pozycje się nie
+// mieszczą, trafia na koniec tablic, a stare miejsce zostaje puste. Gdy pustych
+// miejsc jest więcej niż zajętych, tablice są raz ściskane (bez czytania portfeli).
+// Całość przebudowujemy tylko po zmianie listy akcji na giełdzie.
+//
+// Gotówka jest kopiowana razem z pozycjami, pod blokadą portfela, więc każde konto
+// jest wyceniane ze spójnego stanu - nawet gdy jego właściciel właśnie handluje.
+public class WycenaPortfeli {
+    private static final int ROZMIAR_BLOKU = 4096;
+    private static final int MIN_POJEMNOSC_WIERSZA = 4;
+
+    private final Gielda gielda;
+    private Portfel[] portfele = new Portfel[16];
+    private int liczbaKont;
+
+    // Wiersz konta: poczatki[k] .. poczatki[k] + dlugosci[k], zarezerwowane pojemnosci[k] miejsc
+    private int[] poczatki = new int[16];
+    private int[] dlugosci = new int[16];
+    private int[] pojemnosci = new int[16];
+    private int[] indeksyAkcji = new int[64];
+    private int[] ilosci = new int[64];
+    private int zajete;   // koniec używanej części tablic pozycji
+    private int puste;    // miejsca po przeniesionych i usuniętych wierszach
+
+    private double[] gotowki = new double[16];
+    // Wersja portfela z ostatniego przepisania wiersza; -1 = wiersza jeszcze nie ma
+    private long[] wersje = new long[16];
+    private Notowania ukladNotowan;
+
+    private double[] wartosci = new double[16];
+
+    public WycenaPortfeli(Gielda gielda) {
+        this.gielda = gielda;
+    }
+
+    // Rejestruje konto i zwraca jego numer (indeks w tablicy z wycenWszystkie)
+    public synchronized int dodajKonto(Portfel portfel) {
+        if (liczbaKont == portfele.length) {
+            int nowyRozmiar = liczbaKont * 2;
+            portfele = Arrays.copyOf(portfele, nowyRozmiar);
+            wartosci = Arrays.copyOf(wartosci, nowyRozmiar);
+            gotowki = Arrays.copyOf(gotowki, nowyRozmiar);
+            wersje = Arrays.copyOf(wersje, nowyRozmiar);
+            poczatki = Arrays.copyOf(poczatki, nowyRozmiar);
+            dlugosci = Arrays.copyOf(dlugosci, nowyRozmiar);
+            pojemnosci = Arrays.copyOf(pojemnosci, nowyRozmiar);
+        }
+        int konto = liczbaKont++;
+        portfele[konto] = portfel;
+        poczatki[konto] = zajete;
+        dlugosci[konto] = 0;
+        pojemnosci[konto] = 0;
+        wersje[konto] = -1;   // wiersz zostanie zapisany przy najbliższej wycenie
+        return konto;
+    }
+
+    // Wyrejestrowuje konto - na jego miejsce trafia ostatnie konto, które zmienia przez to numer
+    public synchronized void usunKonto(Portfel portfel) {
+        for (int konto = 0; konto < liczbaKont; konto++) {
+            if (portfele[konto] == portfel) {
+                puste += pojemnosci[konto];
+                int ostatnie = --liczbaKont;
+                portfele[konto] = portfele[ostatnie];
+                poczatki[konto] = poczatki[ostatnie];
+                dlugosci[konto] = dlugosci[ostatnie];
+                pojemnosci[konto] = pojemnosci[ostatnie];
+                gotowki[konto] = gotowki[ostatnie];
+                wersje[konto] = wersje[ostatnie];
+                portfele[ostatnie] = null;
+                return;
+            }
+        }
+    }
+
+    public synchronized int liczbaKont() {
+        return liczbaKont;
+    }
+
+    // Wycenia wszystkie konta po cenach z jednej migawki i zwraca tablicę wartości (akcje + gotówka)
+    public synchronized double[] wycenWszystkie() {
+        Notowania notowania = gielda.pobierzNotowania();
+        if (!notowania.tenSamUklad(ukladNotowan)) {
+            // Indeksy akcji się zmieniły - nieaktualne są wszystkie wiersze
+            zajete = 0;
+            puste = 0;
+            for (int konto = 0; konto < liczbaKont; konto++) {
+                pojemnosci[konto] = 0;
+                wersje[konto] = -1;
+            }
+            ukladNotowan = notowania;
+        }
+        for (int konto = 0; konto < liczbaKont; konto++) {
+            if (portfele[konto].pobierzWersje() != wersje[konto]) {
+                przepiszWiersz(konto, notowania);
+            }
+        }
+        if (puste > zajete / 2 && puste > ROZMIAR_BLOKU) {
+            scisnij();
+        }
+
+        double[] ceny = new double[notowania.liczbaAkcji()];
+        for (int i = 0; i < ceny.length; i++) {
+            ceny[i] = notowania.pobierzCene(i);
+        }
+
+        int bloki = (liczbaKont + ROZMIAR_BLOKU - 1) / ROZMIAR_BLOKU;
+        IntStream.range(0, bloki).parallel().forEach(blok -> {
+            int od = blok * ROZMIAR_BLOKU;
+            int doKonta = Math.min(liczbaKont, od + ROZMIAR_BLOKU);
+            wycenBlok(ceny, od, doKonta);
+        });
+        return Arrays.copyOf(wartosci, liczbaKont);
+    }
+
+    private void wycenBlok(double[] ceny, int od, int doKonta) {
+        for (int konto = od; konto < doKonta; konto++) {
+            double wartosc = gotowki[konto];
+            int koniec = poczatki[konto] + dlugosci[konto];
+            for (int j = poczatki[konto]; j < koniec; j++) {
+                wartosc += ceny[indeksyAkcji[j]] * ilosci[j];
+            }
+            wartosci[konto] = wartosc;
+        }
+    }
+
+    // Kopiuje pozycje i gotówkę jednego portfela do jego wiersza
+    private void przepiszWiersz(int konto, Notowania notowania) {
+        Portfel portfel = portfele[konto];
+        // Pod blokadą portfela - transakcja z innego wątku nie zmieni mapy w trakcie kopiowania
+        synchronized (portfel) {
+            Map<String, Integer> akcje = portfel.pobierzAkcje();
+            if (akcje.size() > pojemnosci[konto]) {
+                // Nie mieści się - wiersz z zapasem na końcu tablic, stare miejsce zostaje puste
+                puste += pojemnosci[konto];
+                int pojemnosc = Math.max(MIN_POJEMNOSC_WIERSZA, akcje.size() * 2);
+                zapewnijMiejsce(zajete + pojemnosc);
+                poczatki[konto] = zajete;
+                pojemnosci[konto] = pojemnosc;
+                zajete += pojemnosc;
+            }
+            int j = poczatki[konto];
+            for (Map.Entry<String, Integer> wpis : akcje.entrySet()) {
+                int indeks = notowania.indeksAkcji(wpis.getKey());
+                if (indeks >= 0) {
+                    indeksyAkcji[j] = indeks;
+                    ilosci[j] = wpis.getValue();
+                    j++;
+                }
+            }
+            dlugosci[konto] = j - poczatki[konto];
+            gotowki[konto] = portfel.pobierzGotowke();
+            wersje[konto] = portfel.pobierzWersje();
+        }
+    }
+
+    private void zapewnijMiejsce(int potrzeba) {
+        if (indeksyAkcji.length < potrzeba) {
+            int pojemnosc = Math.max(potrzeba, indeksyAkcji.length * 2);
+            indeksyAkcji = Arrays.copyOf(indeksyAkcji, pojemnosc);
+            ilosci = Arrays.copyOf(ilosci, pojemnosc);
+        }
+    }
+
+    // Układa wiersze jeden za drugim, usuwając puste miejsca - bez czytania portfeli
+    private void scisnij() {
+        int[] noweIndeksy = new int[Math.max(64, zajete - puste)];
+        int[] noweIlosci = new int[noweIndeksy.length];
+        int j = 0;
+        for (int konto = 0; konto < liczbaKont; konto++) {
+            System.arraycopy(indeksyAkcji, poczatki[konto], noweIndeksy, j, dlugosci[konto]);
+            System.arraycopy(ilosci, poczatki[konto], noweIlosci, j, dlugosci[konto]);
+            poczatki[konto] = j;
+            j += pojemnosci[konto];
+        }
+        indeksyAkcji = noweIndeksy;
+        ilosci = noweIlosci;
+        zajete = j;
+        puste = 0;
+    }
+}